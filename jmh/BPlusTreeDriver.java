@@ -0,0 +1,129 @@
+import java.util.List;
+import java.util.Random;
+
+import benchmarks.TreeDriver;
+
+/**
+ * TreeDriver for BPlusTree, with the key distributions of the operations
+ * benchmark.
+ */
+public class BPlusTreeDriver implements TreeDriver {
+
+	private static class Tree implements IntTree {
+		private final BPlusTree<Integer, Integer> tree;
+
+		Tree(BPlusTree<Integer, Integer> tree) {
+			this.tree = tree;
+		}
+
+		public void insert(Integer key) {
+			tree.insert(key, key);
+		}
+
+		public Integer exactMatchSearch(Integer key) {
+			return tree.exactMatchSearch(key);
+		}
+
+		public List<Integer> greaterThanEqualToKeySearch(Integer key) {
+			return tree.greaterThanEqualToKeySearch(key);
+		}
+
+		public List<Integer> lessThanEqualToKeySearch(Integer key) {
+			return tree.lessThanEqualToKeySearch(key);
+		}
+
+		public long rangeScan(Integer lo, int length) {
+			long sum = 0;
+			TreeCursor<Integer, Integer> cursor = tree.rangeCursor(lo, true, lo + length, false);
+			while (cursor.hasNext()) {
+				cursor.next();
+				sum += cursor.getValue();
+			}
+			return sum;
+		}
+
+		public void delete(Integer key) {
+			tree.delete(key);
+		}
+	}
+
+	public IntTree newTree(int leafDegree, int indexDegree) {
+		return new Tree(new BPlusTree<Integer, Integer>(leafDegree, indexDegree));
+	}
+
+	public IntTree loadedTree(int leafDegree, int indexDegree, int size) {
+		Integer[] keys = keys(size);
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(leafDegree, indexDegree);
+		tree.bulkLoad(keys, keys);
+		return new Tree(tree);
+	}
+
+	public Integer[][] orderAndProbes(String distribution, int size, int count) {
+		Integer[] keys = keys(size);
+		Random random = new Random(42);
+		Integer[] order = keyOrder(distribution, keys, random);
+		return new Integer[][] { order, probes(distribution, keys, count, random) };
+	}
+
+	private static Integer[] keys(int size) {
+		Integer[] keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = i;
+		}
+		return keys;
+	}
+
+	// The order keys are inserted and deleted in, for the given distribution
+	private static Integer[] keyOrder(String distribution, Integer[] keys, Random random) {
+		if (distribution.equals("sequential")) {
+			return keys.clone();
+		}
+		Integer[] shuffled = Benchmarks.shuffle(keys, random);
+		if (distribution.equals("random")) {
+			return shuffled;
+		}
+		if (!distribution.equals("zipfian")) {
+			throw new IllegalArgumentException("Unknown distribution: " + distribution);
+		}
+		// Keys in the order a scrambled Zipfian stream first draws them, then
+		// the ones it never drew
+		Zipfian zipfian = new Zipfian(keys.length, 0.99);
+		Integer[] order = new Integer[keys.length];
+		boolean[] drawn = new boolean[keys.length];
+		int n = 0;
+		for (int i = 0; i < 2 * keys.length; i++) {
+			int rank = zipfian.next(random);
+			if (!drawn[rank]) {
+				drawn[rank] = true;
+				order[n++] = shuffled[rank];
+			}
+		}
+		for (int rank = 0; rank < keys.length; rank++) {
+			if (!drawn[rank]) {
+				order[n++] = shuffled[rank];
+			}
+		}
+		return order;
+	}
+
+	// Keys to look up, for the given distribution
+	private static Integer[] probes(String distribution, Integer[] keys, int count, Random random) {
+		Integer[] probes = new Integer[count];
+		if (distribution.equals("sequential")) {
+			for (int i = 0; i < count; i++) {
+				probes[i] = keys[i % keys.length];
+			}
+		} else if (distribution.equals("random")) {
+			for (int i = 0; i < count; i++) {
+				probes[i] = keys[random.nextInt(keys.length)];
+			}
+		} else {
+			Integer[] scrambled = Benchmarks.shuffle(keys, random);
+			Zipfian zipfian = new Zipfian(keys.length, 0.99);
+			for (int i = 0; i < count; i++) {
+				probes[i] = scrambled[zipfian.next(random)];
+			}
+		}
+		return probes;
+	}
+}
@@ -0,0 +1,43 @@
+import java.util.Random;
+
+/**
+ * Draws ints in [0, n) with a Zipfian distribution: 0 is the most popular
+ * item, and item i is drawn with probability proportional to 1 / (i +
+ * 1)^theta. Uses the method of Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases", as YCSB does; theta = 0.99 matches
+ * YCSB's default skew.
+ */
+public class Zipfian {
+	private final int n;
+	private final double theta;
+	private final double zetan;
+	private final double alpha;
+	private final double eta;
+
+	public Zipfian(int n, double theta) {
+		if (n < 1 || theta <= 0 || theta >= 1) {
+			throw new IllegalArgumentException("Need n >= 1 and 0 < theta < 1");
+		}
+		this.n = n;
+		this.theta = theta;
+		this.zetan = zeta(n, theta);
+		this.alpha = 1 / (1 - theta);
+		this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+	}
+
+	public int next(Random random) {
+		double u = random.nextDouble();
+		double uz = u * zetan;
+		if (uz < 1) return 0;
+		if (uz < 1 + Math.pow(0.5, theta)) return Math.min(1, n - 1);
+		return Math.min(n - 1, (int) (n * Math.pow(eta * u - eta + 1, alpha)));
+	}
+
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+		for (int i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,185 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.TreeDriver.IntTree;
+
+/**
+ * The baseline for BPlusTree: insert, delete, exactMatchSearch,
+ * greaterThanEqualToKeySearch, lessThanEqualToKeySearch and a cursor scan of
+ * SCAN_LENGTH keys for every combination of degree, tree size and key
+ * distribution. The tree holds the
+ * keys 0..size-1, and the distribution decides which keys are probed and the
+ * order they are inserted and deleted in:
+ *
+ * sequential - ascending order
+ *
+ * random - uniform probes, inserts and deletes in a random order
+ *
+ * zipfian - scrambled Zipfian probes (theta 0.99), so a few keys spread over
+ * the tree get most of the lookups; inserts and deletes take the keys in the
+ * order they are first drawn
+ *
+ * Lookups and range searches run on a tree built by bulkLoad, one probe per
+ * operation, and return what they find so it cannot be optimized away.
+ * Inserts fill an empty tree and deletes empty a loaded one, BATCH keys per
+ * invocation; the tree is replaced outside the timed section once all size
+ * keys have been used, so size must be a multiple of BATCH. The full matrix
+ * takes many hours, so narrow it with -p, e.g.
+ *
+ * java -jar target/benchmarks.jar OperationsBenchmark -p degree=2,64,512 -p
+ * size=1000,1000000 -p distribution=random,zipfian
+ *
+ * leafDegree and indexDegree, when set, replace degree for leaves or index
+ * nodes, to compare leaf and index capacities separately. The 64, 256 and
+ * 1024 byte nodes of the fanout benchmark in Benchmarks are:
+ *
+ * java -jar target/benchmarks.jar 'OperationsBenchmark.(exactMatchSearch|rangeScan)'
+ * -p degree=3 -p leafDegree=3,15,63 -p indexDegree=3,15,63 -p size=1000000
+ * -p distribution=random
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Thread)
+public class OperationsBenchmark {
+
+	static final int BATCH = 100;
+	static final int SCAN_LENGTH = 100;
+
+	@Param({ "2", "4", "8", "16", "32", "64", "128", "256", "512" })
+	int degree;
+
+	// 0 to use degree
+	@Param({ "0" })
+	int leafDegree;
+
+	@Param({ "0" })
+	int indexDegree;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "sequential", "random", "zipfian" })
+	String distribution;
+
+	private TreeDriver driver;
+	private Integer[] order;
+	private Integer[] probes;
+	private IntTree loaded;
+	private int nextProbe;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (size % BATCH != 0) {
+			throw new IllegalArgumentException("size must be a multiple of " + BATCH + ": " + size);
+		}
+		if (leafDegree == 0) {
+			leafDegree = degree;
+		}
+		if (indexDegree == 0) {
+			indexDegree = degree;
+		}
+		driver = TreeDriver.load();
+		Integer[][] orderAndProbes = driver.orderAndProbes(distribution, size, Math.max(size, 1 << 20));
+		order = orderAndProbes[0];
+		probes = orderAndProbes[1];
+		loaded = driver.loadedTree(leafDegree, indexDegree, size);
+	}
+
+	private Integer nextProbe() {
+		Integer key = probes[nextProbe];
+		nextProbe = nextProbe + 1 == probes.length ? 0 : nextProbe + 1;
+		return key;
+	}
+
+	/**
+	 * The tree being filled, replaced by an empty one once every key has
+	 * been inserted. Kept apart from the benchmark's own state so that only
+	 * inserts and deletes pay for setup before each invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Inserts {
+		IntTree tree;
+		int nextKey;
+
+		@Setup(Level.Invocation)
+		public void setUp(OperationsBenchmark benchmark) {
+			if (tree == null || nextKey == benchmark.size) {
+				tree = benchmark.driver.newTree(benchmark.leafDegree, benchmark.indexDegree);
+				nextKey = 0;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void insert(Inserts inserts) {
+		for (int end = inserts.nextKey + BATCH; inserts.nextKey < end; inserts.nextKey++) {
+			inserts.tree.insert(order[inserts.nextKey]);
+		}
+	}
+
+	@Benchmark
+	public Integer exactMatchSearch() {
+		return loaded.exactMatchSearch(nextProbe());
+	}
+
+	@Benchmark
+	public List<Integer> greaterThanEqualToKeySearch() {
+		return loaded.greaterThanEqualToKeySearch(nextProbe());
+	}
+
+	@Benchmark
+	public List<Integer> lessThanEqualToKeySearch() {
+		return loaded.lessThanEqualToKeySearch(nextProbe());
+	}
+
+	@Benchmark
+	public long rangeScan() {
+		return loaded.rangeScan(nextProbe(), SCAN_LENGTH);
+	}
+
+	/**
+	 * The tree being emptied, replaced by a loaded one once every key has
+	 * been deleted.
+	 */
+	@State(Scope.Thread)
+	public static class Deletes {
+		IntTree tree;
+		int nextKey;
+
+		@Setup(Level.Invocation)
+		public void setUp(OperationsBenchmark benchmark) {
+			if (tree == null || nextKey == benchmark.size) {
+				tree = benchmark.driver.loadedTree(benchmark.leafDegree, benchmark.indexDegree, benchmark.size);
+				nextKey = 0;
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void delete(Deletes deletes) {
+		for (int end = deletes.nextKey + BATCH; deletes.nextKey < end; deletes.nextKey++) {
+			deletes.tree.delete(order[deletes.nextKey]);
+		}
+	}
+}
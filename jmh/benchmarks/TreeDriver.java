@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.List;
+
+/**
+ * What the benchmarks need from the trees. The trees live in the default
+ * package, which code in a package cannot name, and JMH only accepts
+ * benchmarks in a package, so this is implemented by BPlusTreeDriver in the
+ * default package and looked up by name once, while setting up. Calls
+ * through it have a single implementation and are inlined by the JIT.
+ */
+public interface TreeDriver {
+
+	/**
+	 * A tree of Integer keys, each key its own value.
+	 */
+	interface IntTree {
+		void insert(Integer key);
+
+		Integer exactMatchSearch(Integer key);
+
+		List<Integer> greaterThanEqualToKeySearch(Integer key);
+
+		List<Integer> lessThanEqualToKeySearch(Integer key);
+
+		/**
+		 * Visit the keys from lo up to, but not including, lo + length with
+		 * a cursor.
+		 *
+		 * @return the sum of the values visited
+		 */
+		long rangeScan(Integer lo, int length);
+
+		void delete(Integer key);
+	}
+
+	static TreeDriver load() {
+		try {
+			return (TreeDriver) Class.forName("BPlusTreeDriver").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("BPlusTreeDriver is not on the class path", e);
+		}
+	}
+
+	IntTree newTree(int leafDegree, int indexDegree);
+
+	/**
+	 * @return a tree of the keys 0..size-1, built by bulkLoad
+	 */
+	IntTree loadedTree(int leafDegree, int indexDegree, int size);
+
+	/**
+	 * The keys 0..size-1 in the order the distribution inserts and deletes
+	 * them, then count keys to look up, drawn with a fixed seed.
+	 *
+	 * @param distribution
+	 *            - sequential, random or zipfian.
+	 * @return the order, then the probes
+	 */
+	Integer[][] orderAndProbes(String distribution, int size, int count);
+}
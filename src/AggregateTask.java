@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+/**
+ * Folds the values of a key range under one node of a BPlusTree into a
+ * Collector's result container, for BPlusTree.aggregate.
+ *
+ * A task over an index node forks one subtask per child overlapping the
+ * range and combines their containers in key order. A task over a subtree
+ * low enough to hold only a few thousand entries folds it on its own thread
+ * instead, by finding its first and last leaf in the range and walking the
+ * leaf chain between them. Only those two leaves are searched; every entry
+ * of the leaves in between is in the range without comparing keys.
+ */
+class AggregateTask<K extends Comparable<K>, T, A> extends RecursiveTask<A> {
+
+	private static final long serialVersionUID = 1L;
+
+	// Subtrees expected to hold fewer entries than this are not split
+	static final int SEQUENTIAL_ENTRIES = 1 << 13;
+
+	private final Node<K, T> node;
+	private final int height;
+	private final int sequentialHeight;
+	private final K lo;
+	private final boolean loInclusive;
+	private final K hi;
+	private final boolean hiInclusive;
+	private final Collector<? super T, A, ?> collector;
+
+	/**
+	 * @param node
+	 *            - The root of the subtree to fold.
+	 * @param height
+	 *            - The number of levels in the subtree, 1 for a leaf.
+	 * @param sequentialHeight
+	 *            - The height up to which subtrees are folded without
+	 *            forking.
+	 * @param lo
+	 *            - The lower end of the range, or null if the range starts
+	 *            before this subtree.
+	 * @param hi
+	 *            - The upper end of the range, or null if the range ends
+	 *            after this subtree.
+	 */
+	AggregateTask(Node<K, T> node, int height, int sequentialHeight, K lo, boolean loInclusive, K hi,
+			boolean hiInclusive, Collector<? super T, A, ?> collector) {
+		this.node = node;
+		this.height = height;
+		this.sequentialHeight = sequentialHeight;
+		this.lo = lo;
+		this.loInclusive = loInclusive;
+		this.hi = hi;
+		this.hiInclusive = hiInclusive;
+		this.collector = collector;
+	}
+
+	/**
+	 * @return the height up to which a tree of the given degrees is folded
+	 *         without forking: the greatest at which a subtree, its nodes
+	 *         holding degree + 1 entries on average, stays under
+	 *         SEQUENTIAL_ENTRIES. At least 1.
+	 */
+	static int sequentialHeight(int leafDegree, int indexDegree) {
+		int height = 1;
+		long entries = (long) (leafDegree + 1) * (indexDegree + 1);
+		for (; entries <= SEQUENTIAL_ENTRIES; entries *= indexDegree + 1) {
+			height++;
+		}
+		return height;
+	}
+
+	@Override
+	protected A compute() {
+		if (height <= sequentialHeight) {
+			return fold();
+		}
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		int first = lo == null ? 0 : childIndex(index, lo, !loInclusive);
+		int last = hi == null ? index.getNumChildren() - 1 : childIndex(index, hi, hiInclusive);
+		List<AggregateTask<K, T, A>> tasks = new ArrayList<AggregateTask<K, T, A>>(last - first + 1);
+		for (int i = first; i <= last; i++) {
+			tasks.add(new AggregateTask<K, T, A>(index.getChild(i), height - 1, sequentialHeight,
+					i == first ? lo : null, loInclusive, i == last ? hi : null, hiInclusive, collector));
+		}
+		invokeAll(tasks);
+		A result = tasks.get(0).join();
+		for (int i = 1; i < tasks.size(); i++) {
+			result = collector.combiner().apply(result, tasks.get(i).join());
+		}
+		return result;
+	}
+
+	/**
+	 * Fold the range within this subtree on the current thread.
+	 */
+	A fold() {
+		A container = collector.supplier().get();
+		BiConsumer<A, ? super T> accumulator = collector.accumulator();
+		LeafNode<K, T> leaf = lo == null ? edgeLeaf(node, true) : findLeaf(node, lo, !loInclusive);
+		LeafNode<K, T> end = hi == null ? edgeLeaf(node, false) : findLeaf(node, hi, hiInclusive);
+		int i = lo == null ? 0 : loInclusive ? leaf.lowerBound(lo) : leaf.upperBound(lo);
+		while (true) {
+			int to = leaf.getNumKeys();
+			if (leaf == end && hi != null) {
+				to = hiInclusive ? leaf.upperBound(hi) : leaf.lowerBound(hi);
+			}
+			for (; i < to; i++) {
+				accumulator.accept(container, leaf.getValue(i));
+			}
+			if (leaf == end) {
+				return container;
+			}
+			leaf = leaf.getNextLeaf();
+			i = 0;
+		}
+	}
+
+	// Upper routing finds the child holding the last copy of key, lower
+	// routing the child holding the first
+	private static <K extends Comparable<K>, T> int childIndex(IndexNode<K, T> index, K key, boolean upper) {
+		return upper ? index.findChildIndex(key) : index.findLowerChildIndex(key);
+	}
+
+	private static <K extends Comparable<K>, T> LeafNode<K, T> findLeaf(Node<K, T> node, K key, boolean upper) {
+		while (!node.isLeafNode) {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			node = index.getChild(childIndex(index, key, upper));
+		}
+		return (LeafNode<K, T>) node;
+	}
+
+	private static <K extends Comparable<K>, T> LeafNode<K, T> edgeLeaf(Node<K, T> node, boolean first) {
+		while (!node.isLeafNode) {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			node = index.getChild(first ? 0 : index.getNumChildren() - 1);
+		}
+		return (LeafNode<K, T>) node;
+	}
+}
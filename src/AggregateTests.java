@@ -0,0 +1,97 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class AggregateTests {
+
+	private static final ToLongFunction<Integer> AS_LONG = new ToLongFunction<Integer>() {
+		public long applyAsLong(Integer value) {
+			return value;
+		}
+	};
+
+	// The values between lo and hi, found by walking every entry
+	private static List<Integer> scan(BPlusTree<Integer, Integer> tree, Integer lo, boolean loInclusive, Integer hi,
+			boolean hiInclusive) {
+		List<Integer> values = new ArrayList<Integer>();
+		for (TreeCursor<Integer, Integer> cursor = tree.cursor(); cursor.hasNext();) {
+			cursor.next();
+			int key = cursor.getKey();
+			if ((lo == null || key > lo || loInclusive && key == lo)
+					&& (hi == null || key < hi || hiInclusive && key == hi)) {
+				values.add(cursor.getValue());
+			}
+		}
+		return values;
+	}
+
+	// Random ranges over a tree with many copies of each key, so that copies
+	// of a separator sit on both sides of it. The trees are tall enough for
+	// the root's subtrees to be forked
+	@Test
+	public void testRangesMatchScan() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int degree : new int[] { 1, 2, 8 }) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			Random random = new Random(degree);
+			for (int i = 0; i < 100000; i++) {
+				tree.insert(random.nextInt(500), i);
+			}
+			assertTrue(tree.getHeight() > AggregateTask.sequentialHeight(degree, degree));
+			for (int i = 0; i < 100; i++) {
+				Integer lo = random.nextInt(10) == 0 ? null : random.nextInt(520) - 10;
+				Integer hi = random.nextInt(10) == 0 ? null : random.nextInt(520) - 10;
+				boolean loInclusive = random.nextBoolean(), hiInclusive = random.nextBoolean();
+				assertEquals(scan(tree, lo, loInclusive, hi, hiInclusive),
+						tree.aggregate(lo, loInclusive, hi, hiInclusive, Collectors.<Integer> toList(), pool));
+			}
+		}
+		pool.shutdown();
+	}
+
+	@Test
+	public void testSummary() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(4);
+		Integer[] keys = new Integer[100000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		tree.bulkLoad(keys, keys);
+		LongSummaryStatistics stats = tree.aggregate(100, true, 90000, false, Collectors.summarizingLong(AS_LONG));
+		assertEquals(89900, stats.getCount());
+		assertEquals(100, stats.getMin());
+		assertEquals(89999, stats.getMax());
+		assertEquals((100L + 89999) * 89900 / 2, stats.getSum());
+		assertEquals(Long.valueOf(keys.length), tree.aggregate(null, true, null, true, Collectors.counting()));
+	}
+
+	@Test
+	public void testEmptyRanges() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		assertEquals(Long.valueOf(0), tree.aggregate(null, true, null, true, Collectors.counting()));
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		assertEquals(Long.valueOf(0), tree.aggregate(50, true, 40, true, Collectors.counting()));
+		assertEquals(Long.valueOf(0), tree.aggregate(50, true, 50, false, Collectors.counting()));
+		assertEquals(Long.valueOf(1), tree.aggregate(50, true, 50, true, Collectors.counting()));
+		assertEquals(Long.valueOf(0), tree.aggregate(200, true, null, true, Collectors.counting()));
+	}
+
+	@Test
+	public void testCountedAsRangeScan() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		TreeMetrics metrics = tree.enableMetrics();
+		tree.insert(1, 1);
+		tree.aggregate(0, true, 5, true, Collectors.counting());
+		assertEquals(1, metrics.getRangeScans().getCount());
+	}
+}
@@ -0,0 +1,60 @@
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+public class AllocationTests {
+
+	// Inserts into leaves that have room must not allocate anything
+	@Test
+	public void testNonSplittingInsertDoesNotAllocate() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		// Even keys are loaded half full, so each leaf has room for d more
+		int n = 64 * 1024;
+		int degree = 64;
+		Integer keys[] = new Integer[n];
+		Integer inserts[] = new Integer[n / 2];
+		for (int i = 0; i < n; i++) {
+			keys[i] = 2 * i;
+		}
+		for (int i = 0; i < inserts.length; i++) {
+			inserts[i] = 4 * i + 1;
+		}
+
+		// The first runs also pay for class loading and JIT transitions, so
+		// keep the smallest figure; an allocating insert would show in every run
+		long allocated = Long.MAX_VALUE;
+		for (int run = 0; run < 5; run++) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			tree.bulkLoad(keys, keys, 0.5);
+
+			long before = threads.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < inserts.length; i++) {
+				tree.insert(inserts[i], inserts[i]);
+			}
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+
+			for (int i = 0; i < inserts.length; i += 101) {
+				assertEquals(inserts[i], tree.exactMatchSearch(inserts[i]));
+			}
+		}
+		assertEquals(0, allocated);
+	}
+
+	@Test
+	public void testInsertIntoEmptiedRoot() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(2);
+		Integer one = 1;
+		tree.insert(one, "1");
+		tree.delete(one);
+		assertEquals("[]$%%", Utils.outputTree(tree));
+
+		tree.insert(2, "2");
+		tree.insert(1, "1");
+		assertEquals("[(1,1);(2,2);]$%%", Utils.outputTree(tree));
+	}
+}
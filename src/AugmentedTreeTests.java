@@ -0,0 +1,211 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AugmentedTreeTests {
+
+	// Concatenates values in order, so aggregates combined out of order
+	// show up
+	private static final Monoid<Integer, String> CONCAT = new Monoid<Integer, String>() {
+		public String identity() {
+			return "";
+		}
+
+		public String of(Integer value) {
+			return value + ",";
+		}
+
+		public String combine(String left, String right) {
+			return left + right;
+		}
+	};
+
+	// Check the counts and aggregates of every index node against its
+	// subtrees, returning the values under node concatenated
+	private static String check(Node<Integer, Integer> node, boolean aggregates) {
+		StringBuilder values = new StringBuilder();
+		if (node.isLeafNode) {
+			LeafNode<Integer, Integer> leaf = (LeafNode<Integer, Integer>) node;
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				values.append(leaf.getValue(i)).append(',');
+			}
+			return values.toString();
+		}
+		IndexNode<Integer, Integer> index = (IndexNode<Integer, Integer>) node;
+		assertTrue(index.isAugmented());
+		for (int i = 0; i < index.getNumChildren(); i++) {
+			String child = check(index.getChild(i), aggregates);
+			assertEquals(child.split(",", -1).length - 1, index.getCount(i));
+			if (aggregates) {
+				assertEquals(child, index.getAggregate(i));
+			}
+			values.append(child);
+		}
+		return values.toString();
+	}
+
+	// The keys and values of every entry, in order
+	private static List<int[]> entries(BPlusTree<Integer, Integer> tree) {
+		List<int[]> entries = new ArrayList<int[]>();
+		for (TreeCursor<Integer, Integer> cursor = tree.cursor(); cursor.hasNext();) {
+			cursor.next();
+			entries.add(new int[] { cursor.getKey(), cursor.getValue() });
+		}
+		return entries;
+	}
+
+	private static boolean inRange(int key, Integer lo, boolean loInclusive, Integer hi, boolean hiInclusive) {
+		return (lo == null || key > lo || loInclusive && key == lo)
+				&& (hi == null || key < hi || hiInclusive && key == hi);
+	}
+
+	// Every query against a scan of the entries, over random ranges
+	private static void checkQueries(BPlusTree<Integer, Integer> tree, Random random, int keys) {
+		List<int[]> entries = entries(tree);
+		for (int rank = 0; rank < entries.size(); rank += 1 + random.nextInt(5)) {
+			assertEquals(Integer.valueOf(entries.get(rank)[0]), tree.select(rank));
+		}
+		for (int q = 0; q < 200; q++) {
+			Integer lo = random.nextInt(8) == 0 ? null : random.nextInt(keys + 20) - 10;
+			Integer hi = random.nextInt(8) == 0 ? null : random.nextInt(keys + 20) - 10;
+			boolean loInclusive = random.nextBoolean(), hiInclusive = random.nextBoolean();
+			long count = 0;
+			StringBuilder values = new StringBuilder();
+			for (int[] entry : entries) {
+				if (inRange(entry[0], lo, loInclusive, hi, hiInclusive)) {
+					count++;
+					values.append(entry[1]).append(',');
+				}
+			}
+			assertEquals(count, tree.countRange(lo, loInclusive, hi, hiInclusive));
+			assertEquals(values.toString(), tree.aggregateRange(lo, loInclusive, hi, hiInclusive));
+			if (lo != null) {
+				long rank = 0;
+				while (rank < entries.size() && entries.get((int) rank)[0] < lo) {
+					rank++;
+				}
+				assertEquals(rank, tree.rank(lo));
+			}
+		}
+	}
+
+	// Inserts, batch inserts and deletes, so that every split, merge and
+	// redistribution happens. Deletes are only made with unique keys
+	@Test
+	public void testKeptUpToDate() {
+		for (int degree : new int[] { 1, 2, 5 }) {
+			Random random = new Random(degree);
+			int keys = 300;
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			tree.augment(CONCAT);
+			for (int round = 0; round < 6; round++) {
+				for (int i = 0; i < 300; i++) {
+					int key = random.nextInt(keys);
+					if (tree.exactMatchSearch(key) == null) {
+						tree.insert(key, random.nextInt(1000));
+					}
+				}
+				List<Integer> batch = new ArrayList<Integer>();
+				for (int key = round; key < keys; key += 7) {
+					if (tree.exactMatchSearch(key) == null) {
+						batch.add(key);
+					}
+				}
+				Integer[] batchKeys = batch.toArray(new Integer[batch.size()]);
+				tree.insertAll(batchKeys, batchKeys);
+				check(tree.getRoot(), true);
+				checkQueries(tree, random, keys);
+				for (int i = 0; i < 250; i++) {
+					tree.delete(random.nextInt(keys));
+				}
+				check(tree.getRoot(), true);
+				checkQueries(tree, random, keys);
+			}
+		}
+	}
+
+	// Many copies of each key, so that copies of a separator sit on both
+	// sides of it
+	@Test
+	public void testDuplicateKeys() {
+		for (int degree : new int[] { 1, 3 }) {
+			Random random = new Random(degree);
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			tree.augment(CONCAT);
+			for (int i = 0; i < 3000; i++) {
+				tree.insert(random.nextInt(100), i);
+			}
+			Integer[] batch = new Integer[500];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = random.nextInt(100);
+			}
+			tree.insertAll(batch, batch);
+			check(tree.getRoot(), true);
+			checkQueries(tree, random, 100);
+		}
+	}
+
+	// Augmenting a tree after it was built, and bulk loading an augmented
+	// tree
+	@Test
+	public void testAugmentLater() {
+		Integer[] keys = new Integer[10000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i / 3;
+		}
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(3);
+		tree.bulkLoad(keys, keys, 0.6);
+		assertFalse(tree.isAugmented());
+		tree.augment();
+		assertTrue(tree.isAugmented());
+		check(tree.getRoot(), false);
+		assertEquals(10000, tree.countRange(null, true, null, true));
+		assertEquals(3000, tree.countRange(1000, true, 2000, false));
+		assertEquals(3000, tree.rank(1000));
+		assertEquals(Integer.valueOf(1000), tree.select(3002));
+
+		tree.augment(Monoid.<Integer> longSum());
+		tree.bulkLoad(keys, keys);
+		assertEquals(Long.valueOf(3 * (1000L + 1999) * 1000 / 2), tree.aggregateRange(1000, true, 2000, false));
+		assertEquals(Long.valueOf(0), tree.aggregateRange(2000, false, 1000, true));
+	}
+
+	@Test
+	public void testSmallTrees() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		tree.augment(CONCAT);
+		assertEquals(0, tree.countRange(null, true, null, true));
+		assertEquals(0, tree.rank(5));
+		assertEquals("", tree.aggregateRange(null, true, null, true));
+		tree.insert(5, 50);
+		tree.insert(3, 30);
+		assertEquals(1, tree.rank(5));
+		assertEquals(Integer.valueOf(5), tree.select(1));
+		assertEquals("30,50,", tree.aggregateRange(null, true, 5, true));
+		assertEquals("50,", tree.aggregateRange(3, false, null, true));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testSelectOutOfRange() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		tree.augment();
+		tree.insert(1, 1);
+		tree.select(1);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNotAugmented() {
+		new BPlusTree<Integer, Integer>(2).countRange(null, true, null, true);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoMonoid() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		tree.augment();
+		tree.aggregateRange(null, true, null, true);
+	}
+}
@@ -1,8 +1,16 @@
 import java.util.AbstractMap;
-import java.util.ListIterator;
 import java.util.Map.Entry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *  Code originally came from Cornell University students for a databases course. 
@@ -12,18 +20,272 @@ import java.util.List;
 public class BPlusTree<K extends Comparable<K>, T> {
 
 	private Node<K, T> root;
-	private int degree = 2;
+	// The keys of a node are kept between degree and 2 * degree, with
+	// separate degrees for leaves and index nodes
+	private int leafDegree = 2;
+	private int indexDegree = 2;
+	// Null unless metrics are enabled
+	private TreeMetrics metrics;
+	// Whether index nodes keep per-child counts, and how they aggregate
+	// values, if they do
+	private boolean augmented;
+	private Monoid<? super T, Object> monoid;
+	// Null unless nodes emptied by merges are recycled
+	private NodePool<K, T> pool;
 
+	/**
+	 * @param degree
+	 *            - The degree of both leaves and index nodes, at least 1.
+	 */
 	public BPlusTree(int degree) {
-		this.degree = degree;
+		this(degree, degree);
+	}
+
+	/**
+	 * Create a tree whose leaves and index nodes have different degrees, so
+	 * that leaves can be sized for the values they hold and index nodes for
+	 * fan-out.
+	 * 
+	 * @param leafDegree
+	 *            - Leaves hold between leafDegree and 2 * leafDegree keys.
+	 * @param indexDegree
+	 *            - Index nodes hold between indexDegree and 2 * indexDegree
+	 *            keys.
+	 */
+	public BPlusTree(int leafDegree, int indexDegree) {
+		if (leafDegree < 1 || indexDegree < 1) {
+			throw new IllegalArgumentException("Degrees must be at least 1: " + leafDegree + ", " + indexDegree);
+		}
+		this.leafDegree = leafDegree;
+		this.indexDegree = indexDegree;
+	}
+
+	/**
+	 * The largest degree for which a full node, 2 * degree + 1 entries while
+	 * it is being split, fits in nodeBytes, to size nodes to a multiple of
+	 * the cache line or to a page. For this tree an entry is a key reference
+	 * and a value or child reference, 8 bytes with compressed references and
+	 * 16 without; the keys and values themselves are not counted.
+	 * 
+	 * @param nodeBytes
+	 *            - The room for the entries of one node.
+	 * @param entryBytes
+	 *            - The size of an entry.
+	 * @return the degree, at least 1
+	 */
+	public static int degreeForBytes(int nodeBytes, int entryBytes) {
+		if (entryBytes < 1) {
+			throw new IllegalArgumentException("entryBytes must be positive: " + entryBytes);
+		}
+		return Math.max(1, (nodeBytes / entryBytes - 1) / 2);
 	}
 
 	public Node<K, T> getRoot() {
 		return root;
 	}
 
+	// For Utils.restoreTree, which builds the nodes itself
+	void setRoot(Node<K, T> root) {
+		this.root = root;
+	}
+
+	/**
+	 * @return the leaf degree, which is also the index degree unless the
+	 *         tree was created with different ones
+	 * @deprecated Trees may have different leaf and index degrees; use
+	 *             getLeafDegree or getIndexDegree.
+	 */
+	@Deprecated
 	public int getDegree() {
-		return this.degree;
+		return this.leafDegree;
+	}
+
+	public int getLeafDegree() {
+		return this.leafDegree;
+	}
+
+	public int getIndexDegree() {
+		return this.indexDegree;
+	}
+
+	/**
+	 * Start recording metrics for this tree, if it is not already, timing
+	 * one operation in TreeMetrics.DEFAULT_SAMPLE_INTERVAL.
+	 * 
+	 * @return the metrics being recorded
+	 */
+	public TreeMetrics enableMetrics() {
+		return enableMetrics(TreeMetrics.DEFAULT_SAMPLE_INTERVAL);
+	}
+
+	/**
+	 * Start recording metrics for this tree, if it is not already.
+	 * 
+	 * @param sampleInterval
+	 *            - Time one operation in this many; 1 times them all.
+	 * @return the metrics being recorded
+	 */
+	public TreeMetrics enableMetrics(int sampleInterval) {
+		if (metrics == null) {
+			metrics = new TreeMetrics(sampleInterval);
+		}
+		return metrics;
+	}
+
+	/**
+	 * Stop recording metrics and drop the ones recorded so far.
+	 */
+	public void disableMetrics() {
+		metrics = null;
+	}
+
+	/**
+	 * @return the metrics being recorded, or null if they are disabled
+	 */
+	public TreeMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Start recycling nodes emptied by merges into new nodes for splits, if
+	 * the tree is not already, keeping up to NodePool.DEFAULT_CAPACITY of
+	 * each kind.
+	 * 
+	 * @return the pool, with its statistics
+	 */
+	public NodePool<K, T> enableNodePool() {
+		return enableNodePool(NodePool.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Start recycling nodes emptied by merges, if the tree is not already.
+	 * 
+	 * @param capacity
+	 *            - The most leaves, and index nodes, to keep for reuse.
+	 * @return the pool, with its statistics
+	 */
+	public NodePool<K, T> enableNodePool(int capacity) {
+		if (pool == null) {
+			pool = new NodePool<K, T>(capacity);
+		}
+		return pool;
+	}
+
+	/**
+	 * Stop recycling nodes and drop the ones kept.
+	 */
+	public void disableNodePool() {
+		pool = null;
+	}
+
+	/**
+	 * @return the node pool, or null if nodes are not recycled
+	 */
+	public NodePool<K, T> getNodePool() {
+		return pool;
+	}
+
+	/**
+	 * Make this an augmented tree: each index node keeps the number of
+	 * entries under each of its children, up to date through every insert
+	 * and delete, so that countRange, rank and select take O(log n). Costs
+	 * one pass over the index nodes, then a pass over the children of each
+	 * index node on the path of every update.
+	 */
+	public void augment() {
+		this.augment(null);
+	}
+
+	/**
+	 * Make this an augmented tree, as with augment(), that also keeps the
+	 * aggregate of the values under each child for aggregateRange. Each
+	 * update then combines the values of a leaf and the aggregates along its
+	 * path.
+	 * 
+	 * @param monoid
+	 *            - How to aggregate values, or null to keep counts only.
+	 */
+	@SuppressWarnings("unchecked")
+	public void augment(Monoid<? super T, ?> monoid) {
+		this.augmented = true;
+		this.monoid = (Monoid<? super T, Object>) monoid;
+		augmentSubtree(root);
+	}
+
+	// Augment the index nodes under node, children first
+	private void augmentSubtree(Node<K, T> node) {
+		if (node == null || node.isLeafNode) {
+			return;
+		}
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		for (int i = 0; i < index.getNumChildren(); i++) {
+			augmentSubtree(index.getChild(i));
+		}
+		index.augment(monoid);
+	}
+
+	public boolean isAugmented() {
+		return augmented;
+	}
+
+	/**
+	 * @return the number of levels in the tree, 0 if it is empty
+	 */
+	public int getHeight() {
+		if (root == null) {
+			return 0;
+		}
+		int height = 1;
+		Node<K, T> node = root;
+		while (!node.isLeafNode) {
+			node = ((IndexNode<K, T>) node).getChild(0);
+			height++;
+		}
+		return height;
+	}
+
+	/**
+	 * Computed by visiting every node, so it costs about as much as a full
+	 * scan.
+	 * 
+	 * @return the number of keys in the leaves over the number they could
+	 *         hold (2 * leaf degree each), 0 if the tree is empty
+	 */
+	public double getLeafFillFactor() {
+		long[] counts = new long[4];
+		countKeys(root, counts);
+		return counts[1] == 0 ? 0 : (double) counts[0] / (2 * this.leafDegree * counts[1]);
+	}
+
+	/**
+	 * Computed by visiting every node, like getLeafFillFactor.
+	 * 
+	 * @return the number of keys in the index nodes over the number they
+	 *         could hold (2 * index degree each), 0 if there are none
+	 */
+	public double getIndexFillFactor() {
+		long[] counts = new long[4];
+		countKeys(root, counts);
+		return counts[3] == 0 ? 0 : (double) counts[2] / (2 * this.indexDegree * counts[3]);
+	}
+
+	// Add up keys and nodes under node: leaf keys, leaves, index keys, index
+	// nodes
+	private void countKeys(Node<K, T> node, long[] counts) {
+		if (node == null) {
+			return;
+		}
+		if (node.isLeafNode) {
+			counts[0] += node.getNumKeys();
+			counts[1]++;
+			return;
+		}
+		counts[2] += node.getNumKeys();
+		counts[3]++;
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		for (int i = 0; i < index.getNumChildren(); i++) {
+			countKeys(index.getChild(i), counts);
+		}
 	}
 
 	/**
@@ -40,6 +302,16 @@ public class BPlusTree<K extends Comparable<K>, T> {
 	 * @return value - The value of the item found. If key not found, null.
 	 */
 	public T exactMatchSearch(K key) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		T value = findValue(key);
+		if (metrics != null) {
+			metrics.lookups.end(start);
+		}
+		return value;
+	}
+
+	private T findValue(K key) {
 		if (key == null) return null;
 		Node<K, T> node = this.findLeafNode(this.getRoot(), key);
 		LeafNode<K, T> leaf = (LeafNode<K, T>) node;
@@ -47,6 +319,65 @@ public class BPlusTree<K extends Comparable<K>, T> {
 		return leaf.findValue(key);
 	}
 
+	/**
+	 * Search the values for many keys at once. The keys are looked up in
+	 * ascending order: the tree is descended for the first one, and each later
+	 * key reuses the current leaf or steps to the next one in the chain,
+	 * descending from the root again only when it lies further ahead. A batch
+	 * of sorted or clustered keys costs about one descent plus a scan of the
+	 * leaves it touches.
+	 *
+	 * @param keys
+	 *            - The keys to search for, in any order.
+	 * @return The value for each key, at the same position as the key, or
+	 *         null where the key is not found.
+	 */
+	public List<T> multiGet(final K[] keys) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		List<T> values = findValues(keys);
+		if (metrics != null) {
+			metrics.lookups.end(start, keys.length);
+		}
+		return values;
+	}
+
+	private List<T> findValues(final K[] keys) {
+		ArrayList<T> values = new ArrayList<T>(Collections.<T> nCopies(keys.length, null));
+		// Visit the probes in key order, remembering where each one came from
+		int n = 0;
+		Integer[] positions = new Integer[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null) positions[n++] = i;
+		}
+		if (n < keys.length || !isSorted(keys)) {
+			Arrays.sort(positions, 0, n, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return keys[a].compareTo(keys[b]);
+				}
+			});
+		}
+
+		LeafNode<K, T> leaf = null;
+		for (int i = 0; i < n; i++) {
+			K key = keys[positions[i]];
+			if (leaf == null) {
+				leaf = (LeafNode<K, T>) this.findLeafNode(this.getRoot(), key);
+				if (leaf == null) break;
+			} else if (leaf.getNumKeys() > 0 && key.compareTo(leaf.getKey(leaf.getNumKeys() - 1)) > 0) {
+				// Past this leaf: step to the next one if the key can be there,
+				// otherwise start again from the root
+				LeafNode<K, T> next = leaf.getNextLeaf();
+				if (next != null) {
+					leaf = key.compareTo(next.getKey(next.getNumKeys() - 1)) <= 0 ? next
+							: (LeafNode<K, T>) this.findLeafNode(this.getRoot(), key);
+				}
+			}
+			values.set(positions[i], leaf.findValue(key));
+		}
+		return values;
+	}
+
 	/**
 	 * Finds the leaf node where the given key should exist. Do NOT find the
 	 * value itself here, just the leaf node where the value should exist. This
@@ -67,31 +398,11 @@ public class BPlusTree<K extends Comparable<K>, T> {
 		Node<K, T> node = startingNode;
 		while (node != null && !node.isLeafNode) {
 			IndexNode<K, T> indexNode = (IndexNode<K, T>) node;
-			int i = search(node, key);
-			node = indexNode.getChild(i);
+			node = indexNode.getChild(indexNode.findChildIndex(key));
 		}
 		return node;
 	}
 
-	private int search(Node<K, T> node, K key) {
-		if (node.getNumKeys() == 1) {
-			if (node.getKey(0).compareTo(key) > 0) return 0;
-			return 1;
-		}
-		for (int i = 0; i < node.getNumKeys(); i++) {
-			if (i == node.getNumKeys() - 1) {
-				if (node.getKey(i).compareTo(key) > 0) return i;
-				return i + 1;
-			}
-			int l = node.getKey(i).compareTo(key), r = node.getKey(i + 1).compareTo(key);
-			if (l > 0 && r > 0) return i;
-			if (l == 0 || l > 0 && r < 0) return i + 1;
-		}
-		return -1;
-	}
-
-
-
 	/**
 	 * Performs a greater than or equal to range search on the B+ tree.
 	 * 
@@ -105,23 +416,11 @@ public class BPlusTree<K extends Comparable<K>, T> {
 	 * @return The values of the items that had a key >= to what was given.
 	 */
 	public List<T> greaterThanEqualToKeySearch(K key) {
-		ArrayList<T> values = new ArrayList<>();
-		LeafNode<K, T> node = (LeafNode<K, T>) this.findLeafNode(this.getRoot(), key);
-		for (ListIterator<K> iterator = node.getKeyIterator(); iterator.hasNext();) {
-			K k = iterator.next();
-			if (k.compareTo(key) >= 0) values.add(node.findValue(k));
-		}
-		while (node.getNextLeaf() != null) {
-			node = node.getNextLeaf();
-			for (ListIterator<T> iterator = node.getValueIterator(); iterator.hasNext();) {
-				values.add(iterator.next());
-			}
-		}
-		return values;
+		return this.rangeSearch(key, true, null, true);
 	}
 
 	/**
-	 * Performs a greater than or equal to range search on the B+ tree.
+	 * Performs a less than or equal to range search on the B+ tree.
 	 * 
 	 * If the given key is found in the tree, it returns a list of values with
 	 * that key value or less. If the value is not found, it returns a list of
@@ -133,21 +432,313 @@ public class BPlusTree<K extends Comparable<K>, T> {
 	 * @return The values of the items that had a key <= to what was given.
 	 */
 	public List<T> lessThanEqualToKeySearch(K key) {
+		return this.rangeSearch(null, true, key, true);
+	}
+
+	/**
+	 * Performs a bounded range search on the B+ tree, the equivalent of
+	 * "key BETWEEN lo AND hi". It descends once to the leaf holding lo and
+	 * then walks the leaves until the first key past hi, so the cost is
+	 * proportional to the number of items returned.
+	 * 
+	 * @param lo
+	 *            - The lower end of the range, or null for no lower end.
+	 * @param loInclusive
+	 *            - Whether items with a key equal to lo are included.
+	 * @param hi
+	 *            - The upper end of the range, or null for no upper end.
+	 * @param hiInclusive
+	 *            - Whether items with a key equal to hi are included.
+	 * @return The values of the items in the range, in ascending order by key.
+	 */
+	public List<T> rangeSearch(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
 		ArrayList<T> values = new ArrayList<>();
-		LeafNode<K, T> node = (LeafNode<K, T>) this.findLeafNode(this.getRoot(), key);
-		for (ListIterator<K> iterator = node.getKeyIterator(); iterator.hasNext();) {
-			K k = iterator.next();
-			if (k.compareTo(key) <= 0) values.add(node.findValue(k));
-		}
-		while (node.getPreviousLeaf() != null) {
-			node = node.getPreviousLeaf();
-			for (ListIterator<T> iterator = node.getValueIterator(); iterator.hasNext();) {
-				values.add(iterator.next());
-			}
+		for (TreeCursor<K, T> cursor = this.openCursor(lo, loInclusive, hi, hiInclusive); cursor.hasNext();) {
+			values.add(cursor.next());
+		}
+		if (metrics != null) {
+			metrics.rangeScans.end(start);
 		}
 		return values;
 	}
 
+	/**
+	 * Fold the values between lo and hi with a Collector, such as
+	 * Collectors.summarizingLong for count, sum, min and max, without
+	 * materializing the range. See rangeSearch for the meaning of the
+	 * bounds.
+	 * 
+	 * Large ranges are split into subtrees at the index nodes and the leaves
+	 * of each subtree folded in parallel in the common ForkJoinPool. Partial
+	 * results are combined in key order, so the collector need not be
+	 * concurrent or unordered. The tree must not be changed meanwhile.
+	 * 
+	 * @param collector
+	 *            - How to fold the values.
+	 * @return the collector's result for the values in the range
+	 */
+	public <A, R> R aggregate(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+			Collector<? super T, A, R> collector) {
+		return this.aggregate(lo, loInclusive, hi, hiInclusive, collector, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Fold the values between lo and hi with a Collector, on the given pool.
+	 * See aggregate(lo, loInclusive, hi, hiInclusive, collector).
+	 * 
+	 * @param pool
+	 *            - Where to run the subtrees' folds.
+	 * @return the collector's result for the values in the range
+	 */
+	public <A, R> R aggregate(K lo, boolean loInclusive, K hi, boolean hiInclusive,
+			Collector<? super T, A, R> collector, ForkJoinPool pool) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		A result;
+		if (root == null || isEmptyRange(lo, loInclusive, hi, hiInclusive)) {
+			result = collector.supplier().get();
+		} else {
+			int height = this.getHeight();
+			int sequentialHeight = AggregateTask.sequentialHeight(this.leafDegree, this.indexDegree);
+			AggregateTask<K, T, A> task = new AggregateTask<K, T, A>(root, height, sequentialHeight, lo, loInclusive,
+					hi, hiInclusive, collector);
+			// Small trees are not worth handing to the pool
+			result = height <= sequentialHeight ? task.fold() : pool.invoke(task);
+		}
+		if (metrics != null) {
+			metrics.rangeScans.end(start);
+		}
+		return collector.finisher().apply(result);
+	}
+
+	// Whether no key can be both above lo and below hi
+	private static <K extends Comparable<K>> boolean isEmptyRange(K lo, boolean loInclusive, K hi,
+			boolean hiInclusive) {
+		int cmp = lo == null || hi == null ? -1 : lo.compareTo(hi);
+		return cmp > 0 || cmp == 0 && !(loInclusive && hiInclusive);
+	}
+
+	/**
+	 * Count the entries between lo and hi in O(log n) on an augmented tree,
+	 * by adding up the counts of the children left of each end of the range
+	 * on the way down to it. See rangeSearch for the meaning of the bounds.
+	 * 
+	 * @return the number of entries in the range
+	 * @throws IllegalStateException
+	 *             if the tree is not augmented
+	 */
+	public long countRange(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		checkAugmented();
+		if (isEmptyRange(lo, loInclusive, hi, hiInclusive)) {
+			return 0;
+		}
+		long below = lo == null ? 0 : countBelow(lo, !loInclusive);
+		return (hi == null ? countAll() : countBelow(hi, hiInclusive)) - below;
+	}
+
+	/**
+	 * Find the rank of a key in O(log n) on an augmented tree.
+	 * 
+	 * @param key
+	 * @return the number of entries with keys < key, which is the position
+	 *         of the first copy of key in key order if it is in the tree
+	 * @throws IllegalStateException
+	 *             if the tree is not augmented
+	 */
+	public long rank(K key) {
+		checkAugmented();
+		return countBelow(key, false);
+	}
+
+	/**
+	 * Find the key at a given rank in O(log n) on an augmented tree, by
+	 * skipping whole children on the way down.
+	 * 
+	 * @param rank
+	 *            - The position of the entry in key order, from 0.
+	 * @return the key of that entry
+	 * @throws IndexOutOfBoundsException
+	 *             if rank is negative or not less than the number of entries
+	 * @throws IllegalStateException
+	 *             if the tree is not augmented
+	 */
+	public K select(long rank) {
+		checkAugmented();
+		if (rank < 0 || rank >= countAll()) {
+			throw new IndexOutOfBoundsException("rank " + rank + " of " + countAll() + " entries");
+		}
+		Node<K, T> node = root;
+		while (!node.isLeafNode) {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			int i = 0;
+			while (rank >= index.getCount(i)) {
+				rank -= index.getCount(i++);
+			}
+			node = index.getChild(i);
+		}
+		return node.getKey((int) rank);
+	}
+
+	/**
+	 * Aggregate the values between lo and hi in O(log n) on a tree augmented
+	 * with a monoid. Children wholly inside the range contribute the
+	 * aggregate their parent keeps, so only the paths to the two ends of the
+	 * range are visited. See rangeSearch for the meaning of the bounds.
+	 * 
+	 * @return the monoid's aggregate of the values in the range, in key
+	 *         order
+	 * @throws IllegalStateException
+	 *             if the tree is not augmented with a monoid
+	 */
+	@SuppressWarnings("unchecked")
+	public <A> A aggregateRange(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		if (monoid == null) {
+			throw new IllegalStateException("the tree is not augmented with a monoid");
+		}
+		if (root == null || isEmptyRange(lo, loInclusive, hi, hiInclusive)) {
+			return (A) monoid.identity();
+		}
+		return (A) aggregateRange(root, lo, loInclusive, hi, hiInclusive);
+	}
+
+	// The aggregate of the range under node; a null bound means the range
+	// extends past that side of node
+	private Object aggregateRange(Node<K, T> node, K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		if (node.isLeafNode) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			int from = lo == null ? 0 : loInclusive ? leaf.lowerBound(lo) : leaf.upperBound(lo);
+			int to = hi == null ? leaf.getNumKeys() : hiInclusive ? leaf.upperBound(hi) : leaf.lowerBound(hi);
+			return IndexNode.aggregate(monoid, leaf, from, Math.max(from, to));
+		}
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		int first = lo == null ? 0 : loInclusive ? index.findLowerChildIndex(lo) : index.findChildIndex(lo);
+		int last = hi == null ? index.getNumChildren() - 1
+				: hiInclusive ? index.findChildIndex(hi) : index.findLowerChildIndex(hi);
+		// Children from..to-1 are wholly inside the range
+		int from = first, to = last + 1;
+		Object left = monoid.identity(), right = monoid.identity();
+		if (lo != null) {
+			left = aggregateRange(index.getChild(first), lo, loInclusive, first == last ? hi : null, hiInclusive);
+			from++;
+		}
+		if (hi != null && last >= from) {
+			right = aggregateRange(index.getChild(last), null, loInclusive, hi, hiInclusive);
+			to--;
+		}
+		return monoid.combine(monoid.combine(left, IndexNode.aggregate(monoid, index, from, to)), right);
+	}
+
+	// The number of entries with keys < key, or <= key if inclusive
+	private long countBelow(K key, boolean inclusive) {
+		long count = 0;
+		Node<K, T> node = root;
+		while (node != null && !node.isLeafNode) {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			int i = inclusive ? index.findChildIndex(key) : index.findLowerChildIndex(key);
+			for (int c = 0; c < i; c++) {
+				count += index.getCount(c);
+			}
+			node = index.getChild(i);
+		}
+		if (node != null) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			count += inclusive ? leaf.upperBound(key) : leaf.lowerBound(key);
+		}
+		return count;
+	}
+
+	private long countAll() {
+		return root == null ? 0 : IndexNode.count(root);
+	}
+
+	private void checkAugmented() {
+		if (!augmented) {
+			throw new IllegalStateException("the tree is not augmented");
+		}
+	}
+
+	/**
+	 * Returns a cursor over the entries between lo and hi, in ascending key
+	 * order. See rangeSearch for the meaning of the parameters.
+	 * 
+	 * @return a cursor positioned before the first key in the range
+	 */
+	public TreeCursor<K, T> rangeCursor(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		if (metrics != null) {
+			metrics.cursors.increment();
+		}
+		return openCursor(lo, loInclusive, hi, hiInclusive);
+	}
+
+	private TreeCursor<K, T> openCursor(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		if (lo == null) {
+			Node<K, T> node = this.getRoot();
+			while (node != null && !node.isLeafNode) {
+				node = ((IndexNode<K, T>) node).getChild(0);
+			}
+			return new TreeCursor<K, T>((LeafNode<K, T>) node, 0, true, hi, hiInclusive);
+		}
+		LeafNode<K, T> leaf = (LeafNode<K, T>) this.findLeafNode(this.getRoot(), lo);
+		int i = leaf == null ? 0 : loInclusive ? leaf.lowerBound(lo) : leaf.upperBound(lo);
+		return new TreeCursor<K, T>(leaf, i, true, hi, hiInclusive);
+	}
+
+	/**
+	 * Returns a cursor over every entry in the tree, in ascending key order.
+	 * Entries are read from the leaves only as the cursor advances.
+	 * 
+	 * @return a cursor positioned before the smallest key
+	 */
+	public TreeCursor<K, T> cursor() {
+		return this.rangeCursor(null, true, null, true);
+	}
+
+	/**
+	 * Returns a cursor over the entries with keys >= the given key, in
+	 * ascending key order. Entries are read from the leaves only as the cursor
+	 * advances, so stopping early costs nothing for the rest of the range.
+	 * 
+	 * @param key
+	 *            - The smallest key to return.
+	 * @return a cursor positioned before the first key >= key
+	 */
+	public TreeCursor<K, T> cursorFrom(K key) {
+		return this.rangeCursor(key, true, null, true);
+	}
+
+	/**
+	 * Returns a cursor over the entries with keys <= the given key, in
+	 * descending key order.
+	 * 
+	 * @param key
+	 *            - The largest key to return.
+	 * @return a cursor positioned before the last key <= key
+	 */
+	public TreeCursor<K, T> descendingCursorFrom(K key) {
+		if (metrics != null) {
+			metrics.cursors.increment();
+		}
+		LeafNode<K, T> leaf = (LeafNode<K, T>) this.findLeafNode(this.getRoot(), key);
+		int i = leaf == null ? 0 : leaf.upperBound(key);
+		return new TreeCursor<K, T>(leaf, i - 1, false);
+	}
+
+	/**
+	 * Returns a lazy, ordered stream of the values with keys >= the given key,
+	 * in ascending key order. Short-circuiting operations such as limit stop
+	 * reading leaves as soon as they are satisfied.
+	 * 
+	 * @param key
+	 *            - The smallest key to return.
+	 * @return a sequential stream of values
+	 */
+	public Stream<T> streamFrom(K key) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this.cursorFrom(key), Spliterator.ORDERED),
+				false);
+	}
+
 	/**
 	 * Insert a key/value pair into the BPlusTree
 	 * 
@@ -155,101 +746,381 @@ public class BPlusTree<K extends Comparable<K>, T> {
 	 * @param value
 	 */
 	public void insert(K key, T value) {
-		LeafNode<K, T> newLeaf = new LeafNode<K, T>(key, value, this.degree);
-		Entry<K, Node<K, T>> entry = new AbstractMap.SimpleEntry<K, Node<K, T>>(key, newLeaf);
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		insertEntry(key, value);
+		if (metrics != null) {
+			metrics.inserts.end(start);
+		}
+	}
+
+	// For SecondaryIndex: the leaf key belongs in, or null if the tree is
+	// empty, to look for key in before inserting with insertInto
+	LeafNode<K, T> leafFor(K key) {
+		return (LeafNode<K, T>) this.findLeafNode(root, key);
+	}
 
-		// Insert entry into subtree with root node pointer
-		if (root == null || root.getNumKeys() == 0) {
-			root = entry.getValue();
+	/**
+	 * Insert key/value into leaf, returned by leafFor for key with no change
+	 * to the tree since, without descending again. A leaf that would
+	 * overflow, or any leaf of an augmented tree, whose counts along the path
+	 * need updating, is inserted into from the root as usual.
+	 */
+	void insertInto(LeafNode<K, T> leaf, K key, T value) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		if (leaf != null && !augmented && leaf.getNumKeys() < 2 * this.leafDegree) {
+			leaf.insertSorted(key, value);
+		} else {
+			insertEntry(key, value);
 		}
+		if (metrics != null) {
+			metrics.inserts.end(start);
+		}
+	}
 
-		// newChildEntry null initially, and null on return unless child is
-		// split
-		Entry<K, Node<K, T>> newChildEntry = getChildEntry(root, entry, null);
+	private void insertEntry(K key, T value) {
+		if (root == null) {
+			root = new LeafNode<K, T>(key, value, this.leafDegree);
+			return;
+		}
+
+		// newChildEntry null on return unless the root is split
+		Entry<K, Node<K, T>> newChildEntry = getChildEntry(root, key, value);
 
+		if (newChildEntry != null) {
+			IndexNode<K, T> newRoot = this.newIndexNode(Collections.singletonList(newChildEntry.getKey()),
+					Collections.singletonList(root));
+			newRoot.addChild(newChildEntry.getValue());
+			root = newRoot;
+		}
+	}
+
+	/**
+	 * Insert key/value into the subtree under node. Nothing is allocated
+	 * unless a node has to be split.
+	 * 
+	 * @return the splitting key and new right node if node was split,
+	 *         otherwise null
+	 */
+	private Entry<K, Node<K, T>> getChildEntry(Node<K, T> node, K key, T value) {
+		if (node.isLeafNode) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			leaf.insertSorted(key, value);
+
+			// Usual case: leaf has space
+			if (!leaf.isOverflowed()) {
+				return null;
+			}
+			// Once in a while, the leaf is full
+			if (metrics != null) {
+				metrics.leafSplits.increment();
+			}
+			return leaf.splitNode(pool);
+		}
+
+		// Choose subtree, find i such that Ki <= key < K(i+1)
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		int i = index.findChildIndex(key);
+		Entry<K, Node<K, T>> newChildEntry = getChildEntry(index.getChild(i), key, value);
+		index.refresh(i);
+
+		// Usual case, didn't split child
 		if (newChildEntry == null) {
+			return null;
+		}
+
+		// Split child case, must insert newChildEntry in node
+		index.insertSorted(newChildEntry, index.findChildIndex(newChildEntry.getKey()));
+		if (!index.isOverflowed()) {
+			return null;
+		}
+		if (metrics != null) {
+			metrics.indexSplits.increment();
+		}
+		return index.splitNode(pool);
+	}
+
+	/**
+	 * Insert a batch of key/value pairs. The batch is sorted and split into
+	 * runs by the separators on the way down, so each node on the paths to
+	 * the touched leaves is visited once per batch rather than once per key.
+	 * Each leaf merges its run in one pass, and nodes that overflow are split
+	 * into as many nodes as needed on the way back up. An empty tree is
+	 * simply bulk loaded.
+	 * 
+	 * The input does not need to be sorted; if it is not, sorted copies of
+	 * the arrays are made and the originals are left untouched.
+	 * 
+	 * @param keys
+	 *            - The keys to insert.
+	 * @param values
+	 *            - The value for each key, at the same position.
+	 */
+	public void insertAll(K[] keys, T[] values) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("keys and values must have the same length");
+		}
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		insertEntries(keys, values);
+		if (metrics != null) {
+			metrics.inserts.end(start, keys.length);
+		}
+	}
+
+	private void insertEntries(K[] keys, T[] values) {
+		if (root == null) {
+			bulkLoad(keys, values);
 			return;
-		} else {
-			IndexNode<K, T> newRoot = new IndexNode<K, T>(newChildEntry.getKey(), root, newChildEntry.getValue(),
-					this.degree);
-			root = newRoot;
+		}
+		if (keys.length == 0) {
 			return;
 		}
-	}
+		if (!isSorted(keys)) {
+			keys = keys.clone();
+			values = values.clone();
+			sortByKey(keys, values, keys.clone(), values.clone(), 0, keys.length);
+		}
 
-	private Entry<K, Node<K, T>> getChildEntry(Node<K, T> node, Entry<K, Node<K, T>> entry,
-			Entry<K, Node<K, T>> newChildEntry) {
-		if (!node.isLeafNode) {
-			// Choose subtree, find i such that Ki <= entry's key value < J(i+1)
-			IndexNode<K, T> index = (IndexNode<K, T>) node;
-			int i = 0;
-			while (i < index.getNumKeys()) {
-				if (entry.getKey().compareTo(index.getKey(i)) < 0) {
-					break;
-				}
-				i++;
+		List<Entry<K, Node<K, T>>> newChildEntries = getChildEntries(root, keys, values, 0, keys.length);
+		// Grow the tree by a level until the new root fits in one node
+		while (newChildEntries != null) {
+			IndexNode<K, T> newRoot = this.newIndexNode(new ArrayList<K>(), Collections.singletonList(root));
+			for (Entry<K, Node<K, T>> entry : newChildEntries) {
+				newRoot.insertSorted(entry, newRoot.getNumKeys());
 			}
-			// Recursively, insert entry
-			newChildEntry = getChildEntry((Node<K, T>) index.getChild(i), entry, newChildEntry);
+			newChildEntries = newRoot.isOverflowed()
+					? countSplits(false, newRoot.splitNode(partition(newRoot.getNumChildren(), 2 * this.indexDegree + 1,
+							2 * this.indexDegree + 1), pool))
+					: null;
+			root = newRoot;
+		}
+	}
 
-			// Usual case, didn't split child
-			if (newChildEntry == null) {
+	/**
+	 * Insert the sorted run keys[from..to) into the subtree under node.
+	 * 
+	 * @return the splitting key and new node for each node split off from
+	 *         node, in order, or null if node was not split
+	 */
+	private List<Entry<K, Node<K, T>>> getChildEntries(Node<K, T> node, K[] keys, T[] values, int from, int to) {
+		if (node.isLeafNode) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			leaf.insertSorted(keys, values, from, to);
+			if (!leaf.isOverflowed()) {
 				return null;
 			}
-			// Split child case, must insert newChildEntry in node
-			else {
-				int j = 0;
-				while (j < index.getNumKeys()) {
-					if (newChildEntry.getKey().compareTo(index.getKey(j)) < 0) {
-						break;
-					}
-					j++;
-				}
+			return countSplits(true,
+					leaf.splitNode(partition(leaf.getNumKeys(), 2 * this.leafDegree, 2 * this.leafDegree), pool));
+		}
 
-				index.insertSorted(newChildEntry, j);
-
-				// Usual case, put newChildEntry on it, set newChildEntry to
-				// null, return
-				if (!index.isOverflowed()) {
-					return null;
-				} else {
-					newChildEntry = index.splitNode();
-
-					// Root was just split
-					if (index == root) {
-						// Create new node and make tree's root-node pointer
-						// point to newRoot
-						IndexNode<K, T> newRoot = new IndexNode<K, T>(newChildEntry.getKey(), root,
-								newChildEntry.getValue(), this.degree);
-						root = newRoot;
-						return null;
-					}
-					return newChildEntry;
+		// Child i takes the run of keys in [K(i-1), K(i)). Runs are handed out
+		// right to left so that new entries don't shift the children still
+		// to come
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		int end = to;
+		while (end > from) {
+			int i = index.findChildIndex(keys[end - 1]);
+			int start = i == 0 ? from : lowerBound(keys, from, end, index.getKey(i - 1));
+			List<Entry<K, Node<K, T>>> newChildEntries = getChildEntries(index.getChild(i), keys, values, start, end);
+			index.refresh(i);
+			if (newChildEntries != null) {
+				for (int e = newChildEntries.size() - 1; e >= 0; e--) {
+					index.insertSorted(newChildEntries.get(e), i);
 				}
 			}
+			end = start;
 		}
-		// Node pointer is a leaf node
-		else {
-			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
-			LeafNode<K, T> newLeaf = (LeafNode<K, T>) entry.getValue();
+		if (!index.isOverflowed()) {
+			return null;
+		}
+		int fanout = 2 * this.indexDegree + 1;
+		int[] sizes = partition(index.getNumChildren(), fanout, fanout);
+		return countSplits(false, index.splitNode(sizes, pool));
+	}
+
+	// A new index node, from the pool if there is one, augmented if the tree
+	// is. The children must be augmented already
+	private IndexNode<K, T> newIndexNode(List<K> keys, List<Node<K, T>> children) {
+		IndexNode<K, T> index;
+		if (pool == null) {
+			// Sized to its contents
+			index = new IndexNode<K, T>(keys, children, this.indexDegree);
+		} else {
+			index = pool.indexNode(this.indexDegree);
+			index.addAllKeys(keys);
+			for (int i = 0; i < children.size(); i++) {
+				index.addChild(children.get(i));
+			}
+		}
+		if (augmented) {
+			index.augment(monoid);
+		}
+		return index;
+	}
 
-			leaf.insertSorted(entry.getKey(), newLeaf.getValue(0));
+	private List<Entry<K, Node<K, T>>> countSplits(boolean leaves, List<Entry<K, Node<K, T>>> newChildEntries) {
+		if (metrics != null) {
+			(leaves ? metrics.leafSplits : metrics.indexSplits).add(newChildEntries.size());
+		}
+		return newChildEntries;
+	}
 
-			// Usual case: leaf has space, put entry and set newChildEntry to
-			// null and return
-			if (!leaf.isOverflowed()) {
-				return null;
+	// The first position in keys[from..to) holding a key >= key
+	private static <K extends Comparable<K>> int lowerBound(K[] keys, int from, int to, K key) {
+		while (from < to) {
+			int mid = (from + to) >>> 1;
+			if (keys[mid].compareTo(key) < 0) {
+				from = mid + 1;
+			} else {
+				to = mid;
 			}
-			// Once in a while, the leaf is full
-			else {
-				newChildEntry = leaf.splitNode();
-				if (leaf == root) {
-					IndexNode<K, T> newRoot = new IndexNode<K, T>(newChildEntry.getKey(), leaf,
-							newChildEntry.getValue(), this.degree);
-					root = newRoot;
-					return null;
-				}
-				return newChildEntry;
+		}
+		return from;
+	}
+
+	/**
+	 * Build the tree bottom-up from the given key/value pairs, replacing
+	 * anything already stored in it. Leaves are packed left to right and
+	 * linked together, then index levels are stacked on top until a single
+	 * root remains. This is much cheaper than calling insert once per key.
+	 * 
+	 * The input does not need to be sorted; if it is not, sorted copies of
+	 * the arrays are made and the originals are left untouched.
+	 * 
+	 * @param keys
+	 *            - The keys to load.
+	 * @param values
+	 *            - The value for each key, at the same position.
+	 */
+	public void bulkLoad(K[] keys, T[] values) {
+		bulkLoad(keys, values, 1.0);
+	}
+
+	/**
+	 * Build the tree bottom-up from the given key/value pairs, filling each
+	 * node to the given fraction of its capacity (2 * degree keys, with the
+	 * leaf or index degree). Nodes are never filled below degree keys, so a
+	 * low fill factor leaves room for later inserts without breaking the
+	 * tree's invariants.
+	 * 
+	 * @param keys
+	 *            - The keys to load.
+	 * @param values
+	 *            - The value for each key, at the same position.
+	 * @param fillFactor
+	 *            - How full to pack each node, greater than 0 and at most 1.
+	 */
+	public void bulkLoad(K[] keys, T[] values, double fillFactor) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("keys and values must have the same length");
+		}
+		if (!(fillFactor > 0 && fillFactor <= 1)) {
+			throw new IllegalArgumentException("fillFactor must be in (0, 1]");
+		}
+		root = null;
+		if (keys.length == 0) {
+			return;
+		}
+		if (!isSorted(keys)) {
+			keys = keys.clone();
+			values = values.clone();
+			sortByKey(keys, values, keys.clone(), values.clone(), 0, keys.length);
+		}
+
+		// Pack the leaves, remembering the lowest key under each node so it
+		// can become the separator in the level above
+		List<K> keyList = Arrays.asList(keys);
+		List<T> valueList = Arrays.asList(values);
+		int[] sizes = partition(keys.length, packTarget(fillFactor, this.leafDegree, 2 * this.leafDegree),
+				2 * this.leafDegree);
+		ArrayList<Node<K, T>> level = new ArrayList<Node<K, T>>(sizes.length);
+		ArrayList<K> lowKeys = new ArrayList<K>(sizes.length);
+		LeafNode<K, T> previous = null;
+		int from = 0;
+		for (int size : sizes) {
+			LeafNode<K, T> leaf = new LeafNode<K, T>(keyList.subList(from, from + size),
+					valueList.subList(from, from + size), this.leafDegree);
+			if (previous != null) {
+				previous.setNextLeaf(leaf);
+				leaf.setPreviousLeaf(previous);
+			}
+			level.add(leaf);
+			lowKeys.add(keys[from]);
+			previous = leaf;
+			from += size;
+		}
+
+		// Stack index levels until only the root is left
+		while (level.size() > 1) {
+			sizes = partition(level.size(), packTarget(fillFactor, this.indexDegree + 1, 2 * this.indexDegree + 1),
+					2 * this.indexDegree + 1);
+			ArrayList<Node<K, T>> parents = new ArrayList<Node<K, T>>(sizes.length);
+			ArrayList<K> parentLowKeys = new ArrayList<K>(sizes.length);
+			from = 0;
+			for (int size : sizes) {
+				List<K> separators = lowKeys.subList(from + 1, from + size);
+				parents.add(this.newIndexNode(separators, level.subList(from, from + size)));
+				parentLowKeys.add(lowKeys.get(from));
+				from += size;
+			}
+			level = parents;
+			lowKeys = parentLowKeys;
+		}
+		root = level.get(0);
+	}
+
+	/**
+	 * Number of entries (keys for leaves, children for index nodes) to put in
+	 * each node for the given fill factor, kept between min and max.
+	 */
+	private static int packTarget(double fillFactor, int min, int max) {
+		int target = (int) Math.round(max * fillFactor);
+		return Math.max(min, Math.min(max, target));
+	}
+
+	/**
+	 * Split count entries into nodes of about target entries each, never more
+	 * than max, spreading the remainder evenly so the last node is not left
+	 * underflowed.
+	 */
+	private static int[] partition(int count, int target, int max) {
+		int nodes = Math.max((count + max - 1) / max, count / target);
+		nodes = Math.max(nodes, 1);
+		int[] sizes = new int[nodes];
+		for (int i = 0; i < nodes; i++) {
+			sizes[i] = count / nodes + (i < count % nodes ? 1 : 0);
+		}
+		return sizes;
+	}
+
+	private static <K extends Comparable<K>> boolean isSorted(K[] keys) {
+		for (int i = 1; i < keys.length; i++) {
+			if (keys[i - 1].compareTo(keys[i]) > 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Stable merge sort of keys[from, to) carrying values along. keyBuf and
+	 * valueBuf must start out as copies of keys and values.
+	 */
+	private static <K extends Comparable<K>, T> void sortByKey(K[] keys, T[] values, K[] keyBuf, T[] valueBuf,
+			int from, int to) {
+		if (to - from < 2) return;
+		int mid = (from + to) >>> 1;
+		// Sort each half of the buffers, then merge them back into keys
+		sortByKey(keyBuf, valueBuf, keys, values, from, mid);
+		sortByKey(keyBuf, valueBuf, keys, values, mid, to);
+		int l = from, r = mid;
+		for (int i = from; i < to; i++) {
+			if (r >= to || l < mid && keyBuf[l].compareTo(keyBuf[r]) <= 0) {
+				keys[i] = keyBuf[l];
+				values[i] = valueBuf[l++];
+			} else {
+				keys[i] = keyBuf[r];
+				values[i] = valueBuf[r++];
 			}
 		}
 	}
@@ -260,6 +1131,15 @@ public class BPlusTree<K extends Comparable<K>, T> {
 	 * @param key
 	 */
 	public void delete(K key) {
+		TreeMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : metrics.start();
+		deleteEntry(key);
+		if (metrics != null) {
+			metrics.deletes.end(start);
+		}
+	}
+
+	private void deleteEntry(K key) {
 		if (key == null || root == null) {
 			return;
 		}
@@ -275,13 +1155,17 @@ public class BPlusTree<K extends Comparable<K>, T> {
 
 		// oldChildEntry null initially, and null upon return unless child
 		// deleted
-		Entry<K, Node<K, T>> oldChildEntry = root.deleteChildEntry(root, entry, null, root);
+		Entry<K, Node<K, T>> oldChildEntry = root.deleteChildEntry(root, entry, null, root, metrics, pool);
 
 		// Readjust the root, no child is deleted
 		if (oldChildEntry == null) {
 			if (root.getNumKeys() == 0) {
 				if (!root.isLeafNode) {
-					root = ((IndexNode<K, T>) root).getChild(0);
+					IndexNode<K, T> emptied = (IndexNode<K, T>) root;
+					root = emptied.getChild(0);
+					if (pool != null) {
+						pool.release(emptied);
+					}
 				}
 			}
 			return;
@@ -289,21 +1173,19 @@ public class BPlusTree<K extends Comparable<K>, T> {
 		// Child is deleted
 		else {
 			// Find empty node
-			int i = 0;
 			K oldKey = oldChildEntry.getKey();
-			while (i < root.getNumKeys()) {
-				if (oldKey.compareTo(root.getKey(i)) == 0) {
-					break;
-				}
-				i++;
-			}
+			int i = ((IndexNode<K, T>) root).findChildIndex(oldKey) - 1;
+
 			// Return if empty node already discarded
-			if (i == root.getNumKeys()) {
+			if (i < 0 || oldKey.compareTo(root.getKey(i)) != 0) {
 				return;
 			}
 			// Discard empty node
 			root.removeKey(i);
-			((IndexNode<K, T>) root).removeChild(i + 1);
+			Node<K, T> emptied = ((IndexNode<K, T>) root).removeChild(i + 1);
+			if (pool != null) {
+				pool.release(emptied);
+			}
 			return;
 		}
 	}
@@ -0,0 +1,1260 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Simple timing harness for comparing tree operations. Run it with the name
+ * of a benchmark, or with no arguments to run all of them, e.g.
+ *
+ * java Benchmarks bulkLoad
+ *
+ * Each measurement is repeated a few times and the best run is reported, so
+ * the JIT has a chance to warm up first. These are quick comparisons for one
+ * machine; the baseline matrix of operations, degrees, sizes and key
+ * distributions is measured with JMH instead, by OperationsBenchmark in jmh/
+ * (see pom.xml).
+ */
+public class Benchmarks {
+
+	private static final int RUNS = 5;
+
+	// Lookups in one measurement, so small trees are not timed too briefly
+	private static final int MIN_PROBES = 1000000;
+
+	public static void main(String[] args) {
+		List<String> names = Arrays.asList(args);
+		boolean all = names.isEmpty();
+		if (all || names.contains("bulkLoad")) {
+			bulkLoad(1000000, 64);
+		}
+		if (all || names.contains("longKeys")) {
+			longKeys(1000000, 64);
+		}
+		if (all || names.contains("stringKeys")) {
+			stringKeys(1000000, 64);
+		}
+		if (all || names.contains("secondaryIndex")) {
+			for (int distinct : new int[] { 10, 1000, 100000 }) {
+				secondaryIndex(1000000, distinct, 64);
+			}
+		}
+		if (all || names.contains("routing")) {
+			routing(1000000);
+		}
+		if (all || names.contains("fanout")) {
+			fanout(1000000);
+		}
+		if (all || names.contains("insertAll")) {
+			insertAll(1000000, 64);
+		}
+		if (all || names.contains("multiGet")) {
+			multiGet(1000000, 64, 256);
+		}
+		if (all || names.contains("concurrency")) {
+			concurrency(1000000, 64, 90);
+		}
+		if (all || names.contains("load")) {
+			load(2000000, 64);
+		}
+		if (all || names.contains("aggregate")) {
+			aggregate(4000000, 64);
+		}
+		if (all || names.contains("augmented")) {
+			augmented(1000000, 64);
+		}
+		if (all || names.contains("nodePool")) {
+			nodePool(4000000, 16);
+		}
+		if (all || names.contains("serialize")) {
+			serialize(1000000, 64);
+		}
+		if (all || names.contains("metrics")) {
+			metrics(1000000, 64);
+		}
+		if (all || names.contains("copyOnWrite")) {
+			copyOnWrite(1000000, 64);
+		}
+		if (all || names.contains("offHeap")) {
+			offHeap(5000000);
+		}
+		if (all || names.contains("paged")) {
+			paged(1000000);
+		}
+		if (all || names.contains("pageCache")) {
+			pageCache(1000000);
+		}
+		if (all || names.contains("wal")) {
+			wal(20000);
+		}
+	}
+
+	// Also used by BPlusTreeDriver, for the JMH benchmarks
+	static Integer[] shuffle(Integer[] keys, Random random) {
+		Integer[] shuffled = keys.clone();
+		for (int i = shuffled.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Integer swap = shuffled[i];
+			shuffled[i] = shuffled[j];
+			shuffled[j] = swap;
+		}
+		return shuffled;
+	}
+
+	/**
+	 * Compare loading n keys through Utils.bulkInsert (one insert per key)
+	 * against BPlusTree.bulkLoad, for both sorted and shuffled input.
+	 */
+	public static void bulkLoad(int n, int degree) {
+		System.out.println("bulkLoad: n=" + n + " degree=" + degree);
+		final Integer[] sorted = new Integer[n];
+		final String[] sortedValues = new String[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+			sortedValues[i] = "" + i;
+		}
+		ArrayList<Integer> order = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order);
+		final Integer[] shuffled = new Integer[n];
+		final String[] shuffledValues = new String[n];
+		for (int i = 0; i < n; i++) {
+			shuffled[i] = sorted[order.get(i)];
+			shuffledValues[i] = sortedValues[order.get(i)];
+		}
+
+		final int d = degree;
+		report("  bulkInsert sorted", n, time(new Runnable() {
+			public void run() {
+				Utils.bulkInsert(new BPlusTree<Integer, String>(d), sorted, sortedValues);
+			}
+		}));
+		report("  bulkLoad   sorted", n, time(new Runnable() {
+			public void run() {
+				new BPlusTree<Integer, String>(d).bulkLoad(sorted, sortedValues);
+			}
+		}));
+		report("  bulkInsert shuffled", n, time(new Runnable() {
+			public void run() {
+				Utils.bulkInsert(new BPlusTree<Integer, String>(d), shuffled, shuffledValues);
+			}
+		}));
+		report("  bulkLoad   shuffled", n, time(new Runnable() {
+			public void run() {
+				new BPlusTree<Integer, String>(d).bulkLoad(shuffled, shuffledValues);
+			}
+		}));
+	}
+
+	/**
+	 * Compare random lookups and heap footprint of BPlusTree with boxed Long
+	 * keys against LongBPlusTree.
+	 */
+	public static void longKeys(final int n, int degree) {
+		System.out.println("longKeys: n=" + n + " degree=" + degree);
+		final long[] probes = new long[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			probes[i] = random.nextInt(n) * 7L;
+		}
+
+		long before = usedMemory();
+		final BPlusTree<Long, String> boxed = new BPlusTree<Long, String>(degree);
+		for (long i = 0; i < n; i++) {
+			boxed.insert(i * 7, "");
+		}
+		long boxedBytes = usedMemory() - before;
+
+		before = usedMemory();
+		final LongBPlusTree<String> primitive = new LongBPlusTree<String>(degree);
+		for (long i = 0; i < n; i++) {
+			primitive.insert(i * 7, "");
+		}
+		long primitiveBytes = usedMemory() - before;
+
+		System.out.printf("  heap per key: BPlusTree %.1f bytes, LongBPlusTree %.1f bytes%n",
+				(double) boxedBytes / n, (double) primitiveBytes / n);
+		report("  BPlusTree<Long> lookup", n, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					boxed.exactMatchSearch(probes[i]);
+				}
+			}
+		}));
+		report("  LongBPlusTree lookup", n, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					primitive.exactMatchSearch(probes[i]);
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Heap per key and lookup latency for URL-like keys, which share long
+	 * prefixes, in a BPlusTree<String> against a StringBPlusTree.
+	 */
+	public static void stringKeys(final int n, int degree) {
+		System.out.println("stringKeys: n=" + n + " degree=" + degree);
+		final String[] probes = new String[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			probes[i] = urlKey(random.nextInt(n));
+		}
+
+		long before = usedMemory();
+		final BPlusTree<String, String> boxed = new BPlusTree<String, String>(degree);
+		for (int i = 0; i < n; i++) {
+			boxed.insert(urlKey(i), "");
+		}
+		long boxedBytes = usedMemory() - before;
+
+		before = usedMemory();
+		final StringBPlusTree<String> compressed = new StringBPlusTree<String>(degree);
+		for (int i = 0; i < n; i++) {
+			compressed.insert(urlKey(i), "");
+		}
+		long compressedBytes = usedMemory() - before;
+
+		System.out.printf("  heap per key: BPlusTree %.1f bytes, StringBPlusTree %.1f bytes%n",
+				(double) boxedBytes / n, (double) compressedBytes / n);
+		report("  BPlusTree<String> lookup", n, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					boxed.exactMatchSearch(probes[i]);
+				}
+			}
+		}));
+		report("  StringBPlusTree lookup", n, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < n; i++) {
+					compressed.exactMatchSearch(probes[i]);
+				}
+			}
+		}));
+	}
+
+	private static String urlKey(int i) {
+		return "https://api.example.com/v2/tenants/" + (i % 100) + "/documents/" + i;
+	}
+
+	/**
+	 * Heap per row for a column with few distinct values, stored as
+	 * duplicate keys in a BPlusTree against a SecondaryIndex, and the time
+	 * to fetch every row for a value from the index.
+	 */
+	public static void secondaryIndex(final int n, final int distinct, int degree) {
+		System.out.println("secondaryIndex: n=" + n + ", distinct=" + distinct + ", degree=" + degree);
+		Random random = new Random(42);
+		final int[] column = new int[n];
+		for (int i = 0; i < n; i++) {
+			column[i] = random.nextInt(distinct);
+		}
+
+		long before = usedMemory();
+		final SecondaryIndex<Integer> index = new SecondaryIndex<Integer>(degree);
+		for (int row = 0; row < n; row++) {
+			index.insert(column[row], row);
+		}
+		long indexBytes = usedMemory() - before;
+
+		before = usedMemory();
+		BPlusTree<Integer, Long> duplicates = new BPlusTree<Integer, Long>(degree);
+		for (int row = 0; row < n; row++) {
+			duplicates.insert(column[row], (long) row);
+		}
+		long duplicateBytes = usedMemory() - before;
+
+		System.out.printf("  heap per row: duplicate keys %.1f bytes, SecondaryIndex %.1f bytes%n",
+				(double) duplicateBytes / n, (double) indexBytes / n);
+		System.out.printf("  leaf entries: duplicate keys %d, SecondaryIndex %d%n", count(duplicates.cursor()),
+				count(index.getTree().cursor()));
+		final int lookups = Math.max(distinct, 1000);
+		report("  exactMatchSearch, all rows", lookups, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < lookups; i++) {
+					index.exactMatchSearch(column[i]);
+				}
+			}
+		}));
+	}
+
+	private static int count(Iterator<?> cursor) {
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Random lookup latency as the degree grows, using the binary search in
+	 * IndexNode.findChildIndex against a linear scan of the index keys.
+	 */
+	public static void routing(final int n) {
+		System.out.println("routing: n=" + n);
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		final Integer[] probes = new Integer[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			probes[i] = keys[random.nextInt(n)];
+		}
+		for (int degree : new int[] { 2, 4, 8, 16, 32, 64, 128, 256 }) {
+			final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			tree.bulkLoad(keys, keys);
+			report("  degree " + degree + " binary", n, time(new Runnable() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						tree.exactMatchSearch(probes[i]);
+					}
+				}
+			}));
+			report("  degree " + degree + " linear", n, time(new Runnable() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						linearSearch(tree, probes[i]);
+					}
+				}
+			}));
+		}
+	}
+
+	// Descent with a linear scan of each index node, for comparison
+	private static <K extends Comparable<K>, T> T linearSearch(BPlusTree<K, T> tree, K key) {
+		Node<K, T> node = tree.getRoot();
+		while (!node.isLeafNode) {
+			int i = 0;
+			while (i < node.getNumKeys() && node.getKey(i).compareTo(key) <= 0) {
+				i++;
+			}
+			node = ((IndexNode<K, T>) node).getChild(i);
+		}
+		return ((LeafNode<K, T>) node).findValue(key);
+	}
+
+	/**
+	 * Lookups and scans for leaves and index nodes sized apart, from one to
+	 * sixteen 64 byte cache lines of 8 byte entries each (a key and a value
+	 * or child reference). OperationsBenchmark runs the same combinations
+	 * under JMH with its leafDegree and indexDegree parameters.
+	 */
+	public static void fanout(final int n) {
+		System.out.println("fanout: n=" + n);
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		final Integer[] probes = new Integer[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			probes[i] = keys[random.nextInt(n)];
+		}
+		final int scans = n / 100;
+		for (int leafBytes : new int[] { 64, 256, 1024 }) {
+			for (int indexBytes : new int[] { 64, 256, 1024 }) {
+				int leafDegree = BPlusTree.degreeForBytes(leafBytes, 8);
+				int indexDegree = BPlusTree.degreeForBytes(indexBytes, 8);
+				final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(leafDegree, indexDegree);
+				tree.bulkLoad(keys, keys);
+				String name = "  leaf " + leafDegree + " index " + indexDegree;
+				System.out.println(name + ": height " + tree.getHeight());
+				report("    lookup", n, time(new Runnable() {
+					public void run() {
+						for (int i = 0; i < n; i++) {
+							tree.exactMatchSearch(probes[i]);
+						}
+					}
+				}));
+				report("    scan 100 keys", scans, time(new Runnable() {
+					public void run() {
+						for (int i = 0; i < scans; i++) {
+							Integer lo = probes[i];
+							TreeCursor<Integer, Integer> cursor = tree.rangeCursor(lo, true, lo + 100, false);
+							while (cursor.hasNext()) {
+								cursor.next();
+							}
+						}
+					}
+				}));
+				report("    full scan", n, time(new Runnable() {
+					public void run() {
+						for (TreeCursor<Integer, Integer> cursor = tree.cursor(); cursor.hasNext();) {
+							cursor.next();
+						}
+					}
+				}));
+			}
+		}
+	}
+
+	/**
+	 * Ingest of n keys into a tree already holding n keys, in batches through
+	 * insertAll against one insert per key. Random keys land all over the
+	 * tree, sequential ones are appended past the largest key, as ids or
+	 * timestamps are.
+	 */
+	public static void insertAll(final int n, final int degree) {
+		System.out.println("insertAll: n=" + n + ", degree=" + degree);
+		final Integer[] loaded = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			loaded[i] = 2 * i;
+		}
+		final List<BPlusTree<Integer, Integer>> trees = new ArrayList<BPlusTree<Integer, Integer>>();
+		Runnable load = new Runnable() {
+			public void run() {
+				trees.clear();
+				trees.add(new BPlusTree<Integer, Integer>(degree));
+				trees.get(0).bulkLoad(loaded, loaded, 0.75);
+			}
+		};
+		Random random = new Random(42);
+		for (String order : new String[] { "random", "sequential" }) {
+			final Integer[] keys = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = order.equals("random") ? 2 * random.nextInt(n) + 1 : 2 * n + i;
+			}
+			report("  " + order + " insert loop", n, time(load, new Runnable() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						trees.get(0).insert(keys[i], keys[i]);
+					}
+				}
+			}));
+			for (int batchSize : new int[] { 100, 1000, 10000 }) {
+				final Integer[][] batches = new Integer[n / batchSize][];
+				for (int b = 0; b < batches.length; b++) {
+					batches[b] = Arrays.copyOfRange(keys, b * batchSize, (b + 1) * batchSize);
+				}
+				report("  " + order + " insertAll batch " + batchSize, n, time(load, new Runnable() {
+					public void run() {
+						for (Integer[] batch : batches) {
+							trees.get(0).insertAll(batch, batch);
+						}
+					}
+				}));
+			}
+		}
+	}
+
+	/**
+	 * Batches of batchSize lookups through multiGet against one
+	 * exactMatchSearch per key. Sorted batches are runs of nearby keys,
+	 * clustered ones are the same runs shuffled, and random ones are spread
+	 * over the whole tree.
+	 */
+	public static void multiGet(final int n, int degree, final int batchSize) {
+		System.out.println("multiGet: n=" + n + ", degree=" + degree + ", batch=" + batchSize);
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = 2 * i;
+		}
+		final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+		tree.bulkLoad(keys, keys);
+		final int batches = MIN_PROBES / batchSize;
+		Random random = new Random(42);
+		for (String order : new String[] { "sorted", "clustered", "random" }) {
+			final Integer[][] probes = new Integer[batches][batchSize];
+			for (int b = 0; b < batches; b++) {
+				Integer[] batch = probes[b];
+				int start = random.nextInt(2 * n - 4 * batchSize);
+				for (int i = 0; i < batchSize; i++) {
+					// Every other probe misses
+					batch[i] = order.equals("random") ? random.nextInt(2 * n) : start + 2 * i + random.nextInt(2);
+				}
+				if (order.equals("clustered")) {
+					probes[b] = shuffle(batch, random);
+				}
+			}
+			report("  " + order + " loop", batches * batchSize, time(new Runnable() {
+				public void run() {
+					for (Integer[] batch : probes) {
+						for (Integer key : batch) {
+							tree.exactMatchSearch(key);
+						}
+					}
+				}
+			}));
+			report("  " + order + " multiGet", batches * batchSize, time(new Runnable() {
+				public void run() {
+					for (Integer[] batch : probes) {
+						tree.multiGet(batch);
+					}
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Throughput of a mixed workload (readPercent lookups, the rest split
+	 * between inserts and deletes) on ConcurrentBPlusTree against a BPlusTree
+	 * behind one global lock, for 1, 2, 4, ... threads up to the number of
+	 * cores.
+	 */
+	public static void concurrency(int n, int degree, final int readPercent) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.println("concurrency: n=" + n + " degree=" + degree + " reads=" + readPercent + "% cores=" + cores);
+		final Integer[] keys = new Integer[2 * n];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		final ConcurrentBPlusTree<Integer, Integer> concurrent = new ConcurrentBPlusTree<Integer, Integer>(degree);
+		final BPlusTree<Integer, Integer> locked = new BPlusTree<Integer, Integer>(degree);
+		for (int i = 0; i < keys.length; i += 2) {
+			concurrent.insert(keys[i], keys[i]);
+			locked.insert(keys[i], keys[i]);
+		}
+
+		final int opsPerThread = 1000000;
+		for (int threads = 1; threads <= Math.max(cores, 1); threads *= 2) {
+			long nanos = runThreads(threads, opsPerThread, new Workload() {
+				public void run(Random random) {
+					Integer key = keys[random.nextInt(keys.length)];
+					int op = random.nextInt(100);
+					if (op < readPercent) {
+						concurrent.exactMatchSearch(key);
+					} else if (op % 2 == 0) {
+						concurrent.insert(key, key);
+					} else {
+						concurrent.delete(key);
+					}
+				}
+			});
+			reportThroughput("  ConcurrentBPlusTree threads=" + threads, threads * opsPerThread, nanos);
+			nanos = runThreads(threads, opsPerThread, new Workload() {
+				public void run(Random random) {
+					Integer key = keys[random.nextInt(keys.length)];
+					int op = random.nextInt(100);
+					synchronized (locked) {
+						if (op < readPercent) {
+							locked.exactMatchSearch(key);
+						} else if (op % 2 == 0) {
+							locked.insert(key, key);
+						} else {
+							locked.delete(key);
+						}
+					}
+				}
+			});
+			reportThroughput("  global lock BPlusTree threads=" + threads, threads * opsPerThread, nanos);
+		}
+	}
+
+	/**
+	 * Loading a file of n random key/value lines in the largeCase1.txt format
+	 * with Scanner and insert, as SearchTests used to, against TreeLoader on
+	 * one thread and on every core.
+	 */
+	public static void load(final int n, final int degree) {
+		System.out.println("load: n=" + n + " degree=" + degree);
+		final File file;
+		try {
+			file = File.createTempFile("load", ".txt");
+			file.deleteOnExit();
+			Random random = new Random(20);
+			try (Writer out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+				for (int i = 0; i < n; i++) {
+					int key = random.nextInt(10 * n);
+					out.write(key + " " + key + "Data\n");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		System.out.println("    bytes: " + file.length());
+		report("  Scanner and insert", n, time(new Runnable() {
+			public void run() {
+				BPlusTree<Long, String> tree = new BPlusTree<Long, String>(degree);
+				try (Scanner s = new Scanner(file)) {
+					while (s.hasNextLong()) {
+						long key = s.nextLong();
+						if (s.hasNext()) {
+							tree.insert(key, s.next());
+						}
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}));
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (final int threads : cores > 1 ? new int[] { 1, cores } : new int[] { 1 }) {
+			report("  TreeLoader threads=" + threads, n, time(new Runnable() {
+				public void run() {
+					try {
+						TreeLoader.load(file, degree, threads);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Count, sum, min and max over most of a tree: folding the list from
+	 * rangeSearch, against aggregate on one thread and on the common pool.
+	 */
+	public static void aggregate(final int n, final int degree) {
+		System.out.println("aggregate: n=" + n + " degree=" + degree + " cores="
+				+ Runtime.getRuntime().availableProcessors());
+		Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+		tree.bulkLoad(keys, keys, 0.7);
+		final Integer lo = n / 20, hi = n - n / 20;
+		final ToLongFunction<Integer> asLong = new ToLongFunction<Integer>() {
+			public long applyAsLong(Integer value) {
+				return value;
+			}
+		};
+		final long[] sum = new long[1];
+		report("  rangeSearch and fold", n, time(new Runnable() {
+			public void run() {
+				LongSummaryStatistics stats = new LongSummaryStatistics();
+				for (Integer value : tree.rangeSearch(lo, true, hi, false)) {
+					stats.accept(value);
+				}
+				sum[0] = stats.getSum();
+			}
+		}));
+		final ForkJoinPool single = new ForkJoinPool(1);
+		for (final ForkJoinPool pool : new ForkJoinPool[] { single, ForkJoinPool.commonPool() }) {
+			report("  aggregate threads=" + Math.max(pool.getParallelism(), 1), n, time(new Runnable() {
+				public void run() {
+					if (tree.aggregate(lo, true, hi, false, Collectors.summarizingLong(asLong), pool).getSum() != sum[0]) {
+						throw new AssertionError();
+					}
+				}
+			}));
+		}
+		single.shutdown();
+	}
+
+	/**
+	 * Random inserts into a plain tree, one augmented with counts and one
+	 * also keeping sums, then range counts, sums and selects on the augmented
+	 * trees against scanning the range with aggregate.
+	 */
+	public static void augmented(final int n, final int degree) {
+		System.out.println("augmented: n=" + n + " degree=" + degree);
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		final Integer[] keys = shuffle(sorted, new Random(22));
+		final String[] modes = { "plain", "counts", "sums" };
+		final List<BPlusTree<Integer, Integer>> trees = new ArrayList<BPlusTree<Integer, Integer>>();
+		for (int m = 0; m < modes.length; m++) {
+			final String mode = modes[m];
+			final int index = m;
+			report("  insert " + mode, n, time(new Runnable() {
+				public void run() {
+					BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+					if (mode.equals("counts")) {
+						tree.augment();
+					} else if (mode.equals("sums")) {
+						tree.augment(Monoid.<Integer> longSum());
+					}
+					for (Integer key : keys) {
+						tree.insert(key, key);
+					}
+					if (trees.size() == index) {
+						trees.add(tree);
+					}
+				}
+			}));
+		}
+		final BPlusTree<Integer, Integer> tree = trees.get(0);
+		final BPlusTree<Integer, Integer> sums = trees.get(2);
+		final Random random = new Random(22);
+		final int queries = 100000;
+		final Integer[] los = new Integer[queries];
+		for (int i = 0; i < queries; i++) {
+			los[i] = random.nextInt(n / 2);
+		}
+		final long[] total = new long[1];
+		report("  aggregate count, n/2 wide", 100, time(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 100; i++) {
+					total[0] += tree.aggregate(los[i], true, los[i] + n / 2, false, Collectors.counting());
+				}
+			}
+		}));
+		report("  countRange, n/2 wide", queries, time(new Runnable() {
+			public void run() {
+				for (Integer lo : los) {
+					total[0] += sums.countRange(lo, true, lo + n / 2, false);
+				}
+			}
+		}));
+		report("  aggregateRange sum, n/2 wide", queries, time(new Runnable() {
+			public void run() {
+				for (Integer lo : los) {
+					total[0] += sums.<Long> aggregateRange(lo, true, lo + n / 2, false);
+				}
+			}
+		}));
+		report("  select", queries, time(new Runnable() {
+			public void run() {
+				for (Integer lo : los) {
+					total[0] += sums.select(lo);
+				}
+			}
+		}));
+		System.out.println("    (checksum " + total[0] + ")");
+	}
+
+	/**
+	 * Churn of short-lived keys, each inserted and deleted again 100000 keys
+	 * later, with and without a NodePool: time and bytes allocated per
+	 * operation. The keys are boxed up front so only the tree allocates.
+	 */
+	public static void nodePool(final int n, final int degree) {
+		System.out.println("nodePool: n=" + n + " degree=" + degree);
+		final int window = 100000;
+		final Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		for (final boolean pooled : new boolean[] { false, true }) {
+			final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			if (pooled) {
+				tree.enableNodePool();
+			}
+			for (int i = 0; i < window; i++) {
+				tree.insert(keys[i], keys[i]);
+			}
+			final long[] bytes = new long[1];
+			final int[] next = { window };
+			long nanos = time(new Runnable() {
+				public void run() {
+					int from = next[0], to = Math.min(from + (n - window) / RUNS, n);
+					long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+					for (int i = from; i < to; i++) {
+						tree.insert(keys[i], keys[i]);
+						tree.delete(keys[i - window]);
+					}
+					bytes[0] = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+					next[0] = to;
+				}
+			});
+			int operations = 2 * ((n - window) / RUNS);
+			report("  churn " + (pooled ? "pooled" : "unpooled"), operations, nanos);
+			System.out.printf("    %.1f bytes/op%s%n", (double) bytes[0] / operations,
+					pooled ? ", " + tree.getNodePool() : "");
+		}
+	}
+
+	/**
+	 * Writing the text layout of a tree with Utils.outputTree, and a binary
+	 * dump and restore of it, against rebuilding it with bulkLoad.
+	 */
+	public static void serialize(final int n, final int degree) {
+		System.out.println("serialize: n=" + n + " degree=" + degree);
+		final Integer[] keys = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+		tree.bulkLoad(keys, keys, 0.7);
+		final int[] length = new int[1];
+		report("  outputTree", n, time(new Runnable() {
+			public void run() {
+				length[0] = Utils.outputTree(tree).length();
+			}
+		}));
+		System.out.println("    chars: " + length[0]);
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		report("  dumpTree", n, time(new Runnable() {
+			public void run() {
+				bytes.reset();
+				try {
+					Utils.dumpTree(tree, bytes, Codec.INTEGER, Codec.INTEGER);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}));
+		System.out.println("    bytes: " + bytes.size());
+		report("  restoreTree", n, time(new Runnable() {
+			public void run() {
+				try {
+					Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()), Codec.INTEGER, Codec.INTEGER);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}));
+		report("  bulkLoad", n, time(new Runnable() {
+			public void run() {
+				new BPlusTree<Integer, Integer>(degree).bulkLoad(keys, keys, 0.7);
+			}
+		}));
+	}
+
+	/**
+	 * Overhead of TreeMetrics: random inserts and lookups with metrics
+	 * disabled and enabled, then the metrics recorded.
+	 */
+	public static void metrics(final int n, final int degree) {
+		System.out.println("metrics: n=" + n + " degree=" + degree);
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		final Integer[] keys = shuffle(sorted, new Random(18));
+		for (final boolean enabled : new boolean[] { false, true }) {
+			final List<BPlusTree<Integer, Integer>> trees = new ArrayList<BPlusTree<Integer, Integer>>();
+			String suffix = enabled ? " enabled" : " disabled";
+			report("  insert metrics" + suffix, n, time(new Runnable() {
+				public void run() {
+					trees.clear();
+					BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+					if (enabled) {
+						tree.enableMetrics();
+					}
+					for (Integer key : keys) {
+						tree.insert(key, key);
+					}
+					trees.add(tree);
+				}
+			}));
+			final BPlusTree<Integer, Integer> tree = trees.get(0);
+			report("  lookup metrics" + suffix, n, time(new Runnable() {
+				public void run() {
+					for (Integer key : keys) {
+						tree.exactMatchSearch(key);
+					}
+				}
+			}));
+			if (enabled) {
+				System.out.println(tree.getMetrics());
+				System.out.printf("height=%d leaf fill=%.2f index fill=%.2f%n", tree.getHeight(),
+						tree.getLeafFillFactor(), tree.getIndexFillFactor());
+			}
+		}
+	}
+
+	/**
+	 * Cost of path copying: random inserts and lookups on CopyOnWriteBPlusTree
+	 * against BPlusTree, then writer throughput while another thread keeps
+	 * scanning the whole tree, on a snapshot for CopyOnWriteBPlusTree and
+	 * under the global lock for BPlusTree.
+	 */
+	public static void copyOnWrite(final int n, final int degree) {
+		System.out.println("copyOnWrite: n=" + n + " degree=" + degree);
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = i;
+		}
+		final Integer[] keys = shuffle(sorted, new Random(17));
+		final List<BPlusTree<Integer, Integer>> trees = new ArrayList<BPlusTree<Integer, Integer>>();
+		final List<CopyOnWriteBPlusTree<Integer, Integer>> copyOnWriteTrees = new ArrayList<CopyOnWriteBPlusTree<Integer, Integer>>();
+		report("  insert BPlusTree", n, time(new Runnable() {
+			public void run() {
+				trees.clear();
+				BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+				for (Integer key : keys) {
+					tree.insert(key, key);
+				}
+				trees.add(tree);
+			}
+		}));
+		report("  insert CopyOnWriteBPlusTree", n, time(new Runnable() {
+			public void run() {
+				copyOnWriteTrees.clear();
+				CopyOnWriteBPlusTree<Integer, Integer> tree = new CopyOnWriteBPlusTree<Integer, Integer>(degree);
+				for (Integer key : keys) {
+					tree.insert(key, key);
+				}
+				copyOnWriteTrees.add(tree);
+			}
+		}));
+		final BPlusTree<Integer, Integer> tree = trees.get(0);
+		final CopyOnWriteBPlusTree<Integer, Integer> copyOnWrite = copyOnWriteTrees.get(0);
+		report("  lookup BPlusTree", n, time(new Runnable() {
+			public void run() {
+				for (Integer key : keys) {
+					tree.exactMatchSearch(key);
+				}
+			}
+		}));
+		report("  lookup CopyOnWriteBPlusTree", n, time(new Runnable() {
+			public void run() {
+				for (Integer key : keys) {
+					copyOnWrite.exactMatchSearch(key);
+				}
+			}
+		}));
+
+		final int writes = 200000;
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicLong scans = new AtomicLong();
+		Thread scanner = new Thread() {
+			public void run() {
+				while (!done.get()) {
+					count(copyOnWrite.snapshot().cursor());
+					scans.incrementAndGet();
+				}
+			}
+		};
+		scanner.start();
+		long nanos = writeLoop(writes, new Workload() {
+			public void run(Random random) {
+				Integer key = keys[random.nextInt(n)];
+				copyOnWrite.delete(key);
+				copyOnWrite.insert(key, key);
+			}
+		});
+		done.set(true);
+		join(scanner);
+		reportThroughput("  writes during scans, snapshot", 2 * writes, nanos);
+		System.out.println("    full scans completed: " + scans.get());
+
+		done.set(false);
+		scans.set(0);
+		scanner = new Thread() {
+			public void run() {
+				while (!done.get()) {
+					synchronized (tree) {
+						count(tree.cursor());
+					}
+					scans.incrementAndGet();
+				}
+			}
+		};
+		scanner.start();
+		nanos = writeLoop(writes, new Workload() {
+			public void run(Random random) {
+				Integer key = keys[random.nextInt(n)];
+				synchronized (tree) {
+					tree.delete(key);
+					tree.insert(key, key);
+				}
+			}
+		});
+		done.set(true);
+		join(scanner);
+		reportThroughput("  writes during scans, global lock", 2 * writes, nanos);
+		System.out.println("    full scans completed: " + scans.get());
+	}
+
+	private static long writeLoop(int operations, Workload workload) {
+		Random random = new Random(5);
+		long start = System.nanoTime();
+		for (int i = 0; i < operations; i++) {
+			workload.run(random);
+		}
+		return System.nanoTime() - start;
+	}
+
+	private static void join(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Time to reopen a PagedBPlusTree file holding n keys, and random lookup
+	 * latency on it against the heap BPlusTree.
+	 */
+	public static void paged(final int n) {
+		System.out.println("paged: n=" + n);
+		final Long[] keys = new Long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = (long) i;
+		}
+		final Long[] probes = new Long[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			probes[i] = keys[random.nextInt(n)];
+		}
+		try {
+			final File file = File.createTempFile("paged", ".db");
+			file.deleteOnExit();
+			file.delete();
+			PageFile pages = new PageFile(file);
+			PagedBPlusTree<Long, Long> tree = new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+			for (int i = 0; i < n; i++) {
+				tree.insert(keys[i], keys[i]);
+			}
+			pages.close();
+
+			long start = System.nanoTime();
+			pages = new PageFile(file);
+			final PagedBPlusTree<Long, Long> reopened = new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+			System.out.printf("  reopen %d pages: %.3f ms%n", pages.getPageCount(), (System.nanoTime() - start) / 1e6);
+
+			final BPlusTree<Long, Long> heap = new BPlusTree<Long, Long>(64);
+			heap.bulkLoad(keys, keys);
+			report("  PagedBPlusTree lookup", n, time(new Runnable() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						reopened.exactMatchSearch(probes[i]);
+					}
+				}
+			}));
+			report("  BPlusTree lookup", n, time(new Runnable() {
+				public void run() {
+					for (int i = 0; i < n; i++) {
+						heap.exactMatchSearch(probes[i]);
+					}
+				}
+			}));
+			pages.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Heap retained, full GC time and lookups for n long keys and values in a
+	 * BPlusTree against a PagedBPlusTree on an OffHeapPageStore.
+	 */
+	public static void offHeap(final int n) {
+		System.out.println("offHeap: n=" + n);
+		final Long[] probes = new Long[1000000];
+		Random random = new Random(23);
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = (long) random.nextInt(n);
+		}
+
+		long before = usedMemory();
+		Long[] keys = new Long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = (long) i;
+		}
+		final BPlusTree<Long, Long> heap = new BPlusTree<Long, Long>(64);
+		heap.bulkLoad(keys, keys);
+		keys = null;
+		System.out.printf("  BPlusTree heap: %d MB, full GC %.1f ms%n", (usedMemory() - before) >> 20, fullGcMillis());
+		report("  BPlusTree lookup", probes.length, time(new Runnable() {
+			public void run() {
+				for (Long probe : probes) {
+					heap.exactMatchSearch(probe);
+				}
+			}
+		}));
+		heap.bulkLoad(new Long[0], new Long[0]);
+
+		before = usedMemory();
+		OffHeapPageStore pages = new OffHeapPageStore();
+		final PagedBPlusTree<Long, Long> offHeap = new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+		long start = System.nanoTime();
+		for (long i = 0; i < n; i++) {
+			offHeap.insert(i, i);
+		}
+		report("  PagedBPlusTree off-heap insert", n, System.nanoTime() - start);
+		System.out.printf("  PagedBPlusTree heap: %d MB, direct: %d MB, full GC %.1f ms%n",
+				(usedMemory() - before) >> 20, pages.getCapacity() >> 20, fullGcMillis());
+		report("  PagedBPlusTree off-heap lookup", probes.length, time(new Runnable() {
+			public void run() {
+				for (Long probe : probes) {
+					offHeap.exactMatchSearch(probe);
+				}
+			}
+		}));
+		pages.close();
+	}
+
+	private static double fullGcMillis() {
+		long start = System.nanoTime();
+		System.gc();
+		return (System.nanoTime() - start) / 1e6;
+	}
+
+	/**
+	 * Hit rate and lookup latency of a PagedBPlusTree behind a PageCache, for
+	 * several memory budgets and eviction policies. Lookups are skewed
+	 * towards small keys, so a small cache can hold the hot part of the tree.
+	 */
+	public static void pageCache(final int n) {
+		System.out.println("pageCache: n=" + n);
+		final Long[] probes = new Long[n];
+		Random random = new Random(42);
+		for (int i = 0; i < n; i++) {
+			double r = random.nextDouble();
+			probes[i] = (long) (r * r * r * n);
+		}
+		try {
+			File file = File.createTempFile("paged", ".db");
+			file.deleteOnExit();
+			file.delete();
+			PageFile pages = new PageFile(file);
+			PagedBPlusTree<Long, Long> tree = new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+			for (long i = 0; i < n; i++) {
+				tree.insert(i, i);
+			}
+			int pageCount = pages.getPageCount();
+			pages.close();
+
+			for (int percent : new int[] { 1, 5, 25 }) {
+				for (EvictionPolicy policy : new EvictionPolicy[] { new LruEviction(), new ClockEviction(),
+						new TwoQueueEviction() }) {
+					pages = new PageFile(file);
+					long budget = (long) pageCount * pages.getPageSize() * percent / 100;
+					final PageCache cache = new PageCache(pages, budget, policy);
+					final PagedBPlusTree<Long, Long> cached = new PagedBPlusTree<Long, Long>(cache, Codec.LONG,
+							Codec.LONG);
+					String name = "  " + percent + "% " + policy.getClass().getSimpleName();
+					report(name, n, time(new Runnable() {
+						public void run() {
+							cache.resetStats();
+							for (int i = 0; i < n; i++) {
+								cached.exactMatchSearch(probes[i]);
+							}
+						}
+					}));
+					System.out.printf("    hit rate %.1f%%, %d evictions%n",
+							100.0 * cache.getHits() / (cache.getHits() + cache.getMisses()), cache.getEvictions());
+					cache.close();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Throughput of durable inserts into a DurableBPlusTree as writers are
+	 * added, and how many inserts share each fsync thanks to group commit.
+	 */
+	public static void wal(final int opsPerThread) {
+		System.out.println("wal: opsPerThread=" + opsPerThread);
+		for (int threads = 1; threads <= 16; threads *= 2) {
+			try {
+				File file = File.createTempFile("wal", ".log");
+				file.deleteOnExit();
+				file.delete();
+				final DurableBPlusTree<Long, Long> tree = new DurableBPlusTree<Long, Long>(file, 64, Codec.LONG,
+						Codec.LONG);
+				long nanos = runThreads(threads, opsPerThread, new Workload() {
+					public void run(Random random) {
+						long key = random.nextLong();
+						try {
+							tree.insert(key, key);
+						} catch (IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+				reportThroughput("  DurableBPlusTree threads=" + threads, (long) threads * opsPerThread, nanos);
+				System.out.printf("    %.1f inserts per fsync%n",
+						(double) threads * opsPerThread / tree.getLog().getSyncCount());
+				tree.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	interface Workload {
+		void run(Random random);
+	}
+
+	/**
+	 * Run the workload opsPerThread times on each of the given number of
+	 * threads, started together, and return the wall clock time taken.
+	 */
+	static long runThreads(int threads, final int opsPerThread, final Workload workload) {
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final long seed = t;
+			workers[t] = new Thread() {
+				public void run() {
+					Random random = new Random(seed);
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < opsPerThread; i++) {
+						workload.run(random);
+					}
+				}
+			};
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return System.nanoTime() - begin;
+	}
+
+	static void reportThroughput(String name, long operations, long nanos) {
+		System.out.printf("%-40s %10.2f Mops/s%n", name, operations * 1e3 / nanos);
+	}
+
+	static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Run the task RUNS times and return the fastest time in nanoseconds.
+	 */
+	static long time(Runnable task) {
+		return time(null, task);
+	}
+
+	/**
+	 * Like time(task), but runs setup untimed before each run of task.
+	 */
+	static long time(Runnable setup, Runnable task) {
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			if (setup != null) {
+				setup.run();
+			}
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	static void report(String name, int operations, long nanos) {
+		System.out.printf("%-32s %10.2f ms %10.1f ns/op%n", name, nanos / 1e6, (double) nanos / operations);
+	}
+}
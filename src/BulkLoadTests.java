@@ -0,0 +1,200 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class BulkLoadTests {
+
+	@Test
+	public void testPackedLoad() {
+		Integer numbers[] = new Integer[] { 2, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+		String numberStrings[] = new String[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			numberStrings[i] = (numbers[i]).toString();
+		}
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(2);
+		tree.bulkLoad(numbers, numberStrings);
+
+		String test = Utils.outputTree(tree);
+		String correct = "@8/11/14/@%%[(2,2);(4,4);(5,5);(7,7);]#[(8,8);(9,9);(10,10);]#[(11,11);(12,12);(13,13);]#[(14,14);(15,15);(16,16);]$%%";
+		assertEquals(correct, test);
+
+		for (int i = 0; i < numbers.length; i++) {
+			assertEquals("" + numbers[i], tree.exactMatchSearch(numbers[i]));
+		}
+		assertEquals(null, tree.exactMatchSearch(3));
+	}
+
+	@Test
+	public void testUnsortedInput() {
+		Integer numbers[] = new Integer[] { 9, 2, 7, 4, 8, 5 };
+		String numberStrings[] = new String[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			numberStrings[i] = (numbers[i]).toString();
+		}
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(2);
+		tree.bulkLoad(numbers, numberStrings);
+
+		String test = Utils.outputTree(tree);
+		String correct = "@7/@%%[(2,2);(4,4);(5,5);]#[(7,7);(8,8);(9,9);]$%%";
+		assertEquals(correct, test);
+
+		// The caller's arrays are left alone
+		assertEquals(Integer.valueOf(9), numbers[0]);
+		assertEquals("9", numberStrings[0]);
+	}
+
+	@Test
+	public void testEmptyAndSingleLeaf() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(2);
+		tree.bulkLoad(new Integer[0], new String[0]);
+		assertEquals(null, tree.getRoot());
+		assertEquals(null, tree.exactMatchSearch(1));
+
+		tree.bulkLoad(new Integer[] { 1, 2 }, new String[] { "1", "2" });
+		assertEquals("[(1,1);(2,2);]$%%", Utils.outputTree(tree));
+
+		tree.insert(3, "3");
+		tree.insert(4, "4");
+		tree.insert(5, "5");
+		assertEquals("@3/@%%[(1,1);(2,2);]#[(3,3);(4,4);(5,5);]$%%", Utils.outputTree(tree));
+	}
+
+	// Loaded trees must keep the node invariants and stay usable for inserts
+	@Test
+	public void testLargeLoadThenInsert() {
+		int n = 100000;
+		Integer keys[] = new Integer[n];
+		Integer values[] = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = 2 * i;
+			values[i] = 2 * i;
+		}
+		for (double fillFactor : new double[] { 0.5, 0.75, 1.0 }) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(3);
+			tree.bulkLoad(keys, values, fillFactor);
+			testTreeInvariants(tree);
+			for (int i = 0; i < n; i += 97) {
+				assertEquals(keys[i], tree.exactMatchSearch(keys[i]));
+				assertEquals(null, tree.exactMatchSearch(keys[i] + 1));
+			}
+
+			ArrayList<Integer> numbers = new ArrayList<Integer>(n);
+			for (int i = 0; i < n; i++) {
+				numbers.add(2 * i + 1);
+			}
+			Collections.shuffle(numbers);
+			for (int i = 0; i < n; i++) {
+				tree.insert(numbers.get(i), numbers.get(i));
+			}
+			testTreeInvariants(tree);
+			for (int i = 0; i < 2 * n; i += 89) {
+				assertEquals(Integer.valueOf(i), tree.exactMatchSearch(i));
+			}
+		}
+	}
+
+	@Test
+	public void testLeavesAreLinked() {
+		int n = 1000;
+		Integer keys[] = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = i;
+		}
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		tree.bulkLoad(keys, keys);
+
+		Node<Integer, Integer> node = tree.getRoot();
+		while (!node.isLeafNode) {
+			node = ((IndexNode<Integer, Integer>) node).getChild(0);
+		}
+		LeafNode<Integer, Integer> leaf = (LeafNode<Integer, Integer>) node;
+		assertEquals(null, leaf.getPreviousLeaf());
+		int expected = 0;
+		while (leaf != null) {
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				assertEquals(Integer.valueOf(expected++), leaf.getKey(i));
+			}
+			if (leaf.getNextLeaf() != null) {
+				assertEquals(leaf, leaf.getNextLeaf().getPreviousLeaf());
+			}
+			leaf = leaf.getNextLeaf();
+		}
+		assertEquals(n, expected);
+	}
+
+	@Test
+	public void testInsertAllSplitsLeafSeveralWays() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(2);
+		tree.insertAll(new Integer[] { 8, 2, 6, 4 }, new String[] { "8", "2", "6", "4" });
+		assertEquals("[(2,2);(4,4);(6,6);(8,8);]$%%", Utils.outputTree(tree));
+
+		tree.insertAll(new Integer[] { 9, 7, 5, 3, 1 }, new String[] { "9", "7", "5", "3", "1" });
+		String correct = "@4/7/@%%[(1,1);(2,2);(3,3);]#[(4,4);(5,5);(6,6);]#[(7,7);(8,8);(9,9);]$%%";
+		assertEquals(correct, Utils.outputTree(tree));
+	}
+
+	// Batches of every size must leave the same contents as one insert per key
+	@Test
+	public void testInsertAllMatchesInsert() {
+		Random random = new Random(3);
+		for (int degree : new int[] { 2, 3, 16 }) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			for (int i = 0; i < 100; i++) {
+				int key = random.nextInt(1000000);
+				if (expected.containsKey(key)) continue;
+				tree.insert(key, key);
+				expected.put(key, key);
+			}
+			int next = 1000000;
+			for (int batchSize : new int[] { 1, 2, 7, 50, 1000, 20000, 5 }) {
+				for (boolean append : new boolean[] { false, true }) {
+					Integer[] keys = new Integer[batchSize];
+					for (int i = 0; i < batchSize; i++) {
+						int key;
+						do {
+							key = append ? next++ : random.nextInt(1000000);
+						} while (expected.containsKey(key));
+						keys[i] = key;
+						expected.put(key, -key);
+					}
+					Integer[] values = new Integer[batchSize];
+					for (int i = 0; i < batchSize; i++) {
+						values[i] = -keys[i];
+					}
+					tree.insertAll(keys, values);
+					testTreeInvariants(tree);
+				}
+			}
+			assertEquals(new ArrayList<Integer>(expected.values()), tree.greaterThanEqualToKeySearch(0));
+			TreeCursor<Integer, Integer> cursor = tree.descendingCursorFrom(Integer.MAX_VALUE);
+			for (Integer value : expected.descendingMap().values()) {
+				assertEquals(value, cursor.next());
+			}
+			assertFalse(cursor.hasNext());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMismatchedArrays() {
+		new BPlusTree<Integer, String>(2).bulkLoad(new Integer[] { 1, 2 }, new String[] { "1" });
+	}
+
+	public <K extends Comparable<K>, T> void testTreeInvariants(BPlusTree<K, T> tree) {
+		for (Node<K, T> child : ((IndexNode<K, T>) (tree.getRoot())).getChildren())
+			testNodeInvariants(child);
+	}
+
+	public <K extends Comparable<K>, T> void testNodeInvariants(Node<K, T> node) {
+		assertFalse(node.getNumKeys() > 2 * node.degree);
+		assertFalse(node.getNumKeys() < node.degree);
+		if (!(node.isLeafNode))
+			for (Node<K, T> child : ((IndexNode<K, T>) node).getChildren())
+				testNodeInvariants(child);
+	}
+}
@@ -0,0 +1,50 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Approximates LRU with one reference bit per frame. The clock hand sweeps
+ * the frames, clearing set bits, and evicts the first frame whose bit is
+ * already clear. Hits only set a bit, so they are cheaper than with
+ * LruEviction.
+ */
+public class ClockEviction implements EvictionPolicy {
+	private boolean[] present = new boolean[0];
+	private boolean[] referenced = new boolean[0];
+	private int hand;
+
+	public void reset(int frames) {
+		present = new boolean[frames];
+		referenced = new boolean[frames];
+		hand = 0;
+	}
+
+	public void loaded(int frame, int page) {
+		present[frame] = true;
+		referenced[frame] = true;
+	}
+
+	public void accessed(int frame) {
+		referenced[frame] = true;
+	}
+
+	public void removed(int frame) {
+		present[frame] = false;
+	}
+
+	public int victim(IntPredicate evictable) {
+		// Two sweeps clear every reference bit, so a third finds nothing new
+		for (int step = 0; step < 2 * present.length + 1; step++) {
+			int frame = hand;
+			hand = (hand + 1) % present.length;
+			if (!present[frame] || !evictable.test(frame)) {
+				continue;
+			}
+			if (referenced[frame]) {
+				referenced[frame] = false;
+			} else {
+				present[frame] = false;
+				return frame;
+			}
+		}
+		return -1;
+	}
+}
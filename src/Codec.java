@@ -0,0 +1,100 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size binary encoding of keys or values, used to store them in the
+ * pages of a PageFile. Every value takes exactly size() bytes.
+ */
+public interface Codec<E> {
+
+	/**
+	 * @return the number of bytes taken by each encoded value
+	 */
+	int size();
+
+	/**
+	 * Encode value into buffer, starting at the given absolute offset.
+	 */
+	void write(ByteBuffer buffer, int offset, E value);
+
+	/**
+	 * Decode the value stored in buffer at the given absolute offset.
+	 */
+	E read(ByteBuffer buffer, int offset);
+
+	Codec<Long> LONG = new Codec<Long>() {
+		public int size() {
+			return 8;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Long value) {
+			buffer.putLong(offset, value);
+		}
+
+		public Long read(ByteBuffer buffer, int offset) {
+			return buffer.getLong(offset);
+		}
+	};
+
+	Codec<Integer> INTEGER = new Codec<Integer>() {
+		public int size() {
+			return 4;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Integer value) {
+			buffer.putInt(offset, value);
+		}
+
+		public Integer read(ByteBuffer buffer, int offset) {
+			return buffer.getInt(offset);
+		}
+	};
+
+	Codec<Double> DOUBLE = new Codec<Double>() {
+		public int size() {
+			return 8;
+		}
+
+		public void write(ByteBuffer buffer, int offset, Double value) {
+			buffer.putDouble(offset, value);
+		}
+
+		public Double read(ByteBuffer buffer, int offset) {
+			return buffer.getDouble(offset);
+		}
+	};
+
+	/**
+	 * Strings of up to maxBytes bytes of UTF-8, stored after a two byte
+	 * length and padded to a fixed size.
+	 */
+	static Codec<String> string(final int maxBytes) {
+		if (maxBytes < 1 || maxBytes > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("maxBytes must be in 1.." + Short.MAX_VALUE);
+		}
+		return new Codec<String>() {
+			public int size() {
+				return 2 + maxBytes;
+			}
+
+			public void write(ByteBuffer buffer, int offset, String value) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > maxBytes) {
+					throw new IllegalArgumentException("String longer than " + maxBytes + " bytes: " + value);
+				}
+				buffer.putShort(offset, (short) bytes.length);
+				for (int i = 0; i < bytes.length; i++) {
+					buffer.put(offset + 2 + i, bytes[i]);
+				}
+			}
+
+			public String read(ByteBuffer buffer, int offset) {
+				byte[] bytes = new byte[buffer.getShort(offset)];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = buffer.get(offset + 2 + i);
+				}
+				return new String(bytes, StandardCharsets.UTF_8);
+			}
+		};
+	}
+}
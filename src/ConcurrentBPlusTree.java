@@ -0,0 +1,250 @@
+/**
+ * A thread-safe B+ tree using optimistic lock coupling. Lookups never block
+ * or write shared memory: they descend with optimistic stamps on each node
+ * and validate them after reading, restarting from the root if a writer got
+ * in the way. Writers descend the same way and only take write locks on the
+ * nodes they actually change: a leaf for a plain insert or delete, and a
+ * node, its parent and one sibling for splits, merges and redistributions.
+ * 
+ * To keep every structural change local to one parent, full nodes are split
+ * on the way down by inserts and underflowed nodes are refilled on the way
+ * down by deletes, so a change never has to propagate back up. Because of
+ * that, non-root nodes hold between degree - 1 keys and 2 * degree keys for
+ * leaves, or 2 * degree + 1 keys for index nodes. Splits leave both halves
+ * with at least degree keys and merges leave a node that is not full, so
+ * concurrent inserts and deletes do not keep undoing each other's work.
+ */
+public class ConcurrentBPlusTree<K extends Comparable<K>, T> {
+
+	private volatile ConcurrentNode<K, T> root;
+	private final int degree;
+
+	public ConcurrentBPlusTree(int degree) {
+		this.degree = degree;
+		this.root = new ConcurrentLeafNode<K, T>(degree);
+	}
+
+	public ConcurrentNode<K, T> getRoot() {
+		return root;
+	}
+
+	public int getDegree() {
+		return this.degree;
+	}
+
+	/**
+	 * Search the value for a specific key. Safe to call from any number of
+	 * threads alongside inserts and deletes.
+	 * 
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(K key) {
+		if (key == null) return null;
+		while (true) {
+			ConcurrentNode<K, T> node = root;
+			long stamp = node.lock.tryOptimisticRead();
+			if (stamp == 0 || node != root) {
+				Thread.yield();
+				continue;
+			}
+			boolean restart = false;
+			while (!node.isLeafNode) {
+				ConcurrentIndexNode<K, T> index = (ConcurrentIndexNode<K, T>) node;
+				ConcurrentNode<K, T> child = index.getChild(index.findChildIndex(key));
+				long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+				if (childStamp == 0 || !node.lock.validate(stamp)) {
+					restart = true;
+					break;
+				}
+				node = child;
+				stamp = childStamp;
+			}
+			if (restart) {
+				Thread.yield();
+				continue;
+			}
+			T value = ((ConcurrentLeafNode<K, T>) node).findValue(key);
+			if (node.lock.validate(stamp)) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Insert a key/value pair into the tree. Safe to call from any number of
+	 * threads.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void insert(K key, T value) {
+		while (!tryInsert(key, value)) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * One optimistic attempt at an insert.
+	 * 
+	 * @return false if the attempt conflicted with another writer, or split a
+	 *         node on the way down, and has to be restarted from the root
+	 */
+	private boolean tryInsert(K key, T value) {
+		ConcurrentNode<K, T> node = root;
+		long stamp = node.lock.tryOptimisticRead();
+		if (stamp == 0 || node != root) return false;
+		ConcurrentIndexNode<K, T> parent = null;
+		long parentStamp = 0;
+		int slot = 0;
+
+		while (true) {
+			if (node.isFull()) {
+				split(parent, parentStamp, slot, node, stamp);
+				return false;
+			}
+			if (node.isLeafNode) {
+				long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+				if (writeStamp == 0) return false;
+				((ConcurrentLeafNode<K, T>) node).insertSorted(key, value);
+				node.lock.unlockWrite(writeStamp);
+				return true;
+			}
+			ConcurrentIndexNode<K, T> index = (ConcurrentIndexNode<K, T>) node;
+			int i = index.findChildIndex(key);
+			ConcurrentNode<K, T> child = index.getChild(i);
+			long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+			if (childStamp == 0 || !node.lock.validate(stamp)) return false;
+			parent = index;
+			parentStamp = stamp;
+			slot = i;
+			node = child;
+			stamp = childStamp;
+		}
+	}
+
+	/**
+	 * Split a full node under write locks on it and its parent, which must
+	 * both still be unchanged since their stamps were taken. A full root is
+	 * replaced by a new root above the two halves.
+	 */
+	private void split(ConcurrentIndexNode<K, T> parent, long parentStamp, int slot, ConcurrentNode<K, T> node,
+			long stamp) {
+		long parentWrite = 0;
+		if (parent != null) {
+			parentWrite = parent.lock.tryConvertToWriteLock(parentStamp);
+			if (parentWrite == 0) return;
+		}
+		long nodeWrite = node.lock.tryConvertToWriteLock(stamp);
+		if (nodeWrite == 0) {
+			if (parent != null) parent.lock.unlockWrite(parentWrite);
+			return;
+		}
+		if (parent != null || node == root) {
+			K splitKey;
+			ConcurrentNode<K, T> rightNode;
+			if (node.isLeafNode) {
+				rightNode = ((ConcurrentLeafNode<K, T>) node).splitNode();
+				splitKey = rightNode.getKey(0);
+			} else {
+				ConcurrentIndexNode<K, T> rightIndex = new ConcurrentIndexNode<K, T>(degree);
+				splitKey = ((ConcurrentIndexNode<K, T>) node).splitNode(rightIndex);
+				rightNode = rightIndex;
+			}
+			if (parent == null) {
+				// Root was just split
+				root = new ConcurrentIndexNode<K, T>(splitKey, node, rightNode, degree);
+			} else {
+				parent.insertChild(slot, splitKey, rightNode);
+			}
+		}
+		node.lock.unlockWrite(nodeWrite);
+		if (parent != null) parent.lock.unlockWrite(parentWrite);
+	}
+
+	/**
+	 * Delete a key/value pair from this tree. Safe to call from any number of
+	 * threads.
+	 * 
+	 * @param key
+	 */
+	public void delete(K key) {
+		if (key == null) return;
+		while (!tryDelete(key)) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * One optimistic attempt at a delete.
+	 * 
+	 * @return false if the attempt conflicted with another writer, or fixed
+	 *         an underflowing node on the way down, and has to be restarted
+	 *         from the root
+	 */
+	private boolean tryDelete(K key) {
+		ConcurrentNode<K, T> node = root;
+		long stamp = node.lock.tryOptimisticRead();
+		if (stamp == 0 || node != root) return false;
+
+		while (!node.isLeafNode) {
+			ConcurrentIndexNode<K, T> index = (ConcurrentIndexNode<K, T>) node;
+			int i = index.findChildIndex(key);
+			ConcurrentNode<K, T> child = index.getChild(i);
+			long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+			if (childStamp == 0 || !node.lock.validate(stamp)) return false;
+			if (child.isUnderflowed()) {
+				handleUnderflow(index, stamp, i, child, childStamp);
+				return false;
+			}
+			node = child;
+			stamp = childStamp;
+		}
+		long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+		if (writeStamp == 0) return false;
+		((ConcurrentLeafNode<K, T>) node).delete(key);
+		node.lock.unlockWrite(writeStamp);
+		return true;
+	}
+
+	/**
+	 * Refill a child at its minimum size before a delete descends into it,
+	 * by borrowing from or merging with a sibling under the same parent. The
+	 * parent, child and sibling are write locked while they change.
+	 */
+	private void handleUnderflow(ConcurrentIndexNode<K, T> parent, long parentStamp, int i,
+			ConcurrentNode<K, T> child, long childStamp) {
+		long parentWrite = parent.lock.tryConvertToWriteLock(parentStamp);
+		if (parentWrite == 0) return;
+		long childWrite = child.lock.tryConvertToWriteLock(childStamp);
+		if (childWrite == 0) {
+			parent.lock.unlockWrite(parentWrite);
+			return;
+		}
+		// The parent is write locked, so its children can be read directly
+		int s = i > 0 ? i - 1 : i + 1;
+		ConcurrentNode<K, T> sibling = parent.getChild(s);
+		long siblingWrite = sibling.lock.tryWriteLock();
+		if (siblingWrite != 0) {
+			int splitKeyPos = Math.min(i, s);
+			ConcurrentNode<K, T> left = i < s ? child : sibling;
+			ConcurrentNode<K, T> right = i < s ? sibling : child;
+			boolean merged;
+			if (child.isLeafNode) {
+				merged = ConcurrentLeafNode.handleLeafNodeUnderflow((ConcurrentLeafNode<K, T>) left,
+						(ConcurrentLeafNode<K, T>) right, parent, splitKeyPos);
+			} else {
+				merged = ConcurrentIndexNode.handleIndexNodeUnderflow((ConcurrentIndexNode<K, T>) left,
+						(ConcurrentIndexNode<K, T>) right, parent, splitKeyPos);
+			}
+			// Readjust the root once its last key is gone
+			if (merged && parent == root && parent.getNumKeys() == 0) {
+				root = left;
+			}
+			sibling.lock.unlockWrite(siblingWrite);
+		}
+		child.lock.unlockWrite(childWrite);
+		parent.lock.unlockWrite(parentWrite);
+	}
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ConcurrentBPlusTreeTests {
+
+	// Random inserts and deletes on one thread checked against a TreeMap
+	@Test
+	public void testSingleThreadAgainstTreeMap() {
+		Random random = new Random(333);
+		for (int degree : new int[] { 1, 2, 3, 16 }) {
+			ConcurrentBPlusTree<Integer, Integer> tree = new ConcurrentBPlusTree<Integer, Integer>(degree);
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			for (int i = 0; i < 50000; i++) {
+				int key = random.nextInt(5000);
+				if (random.nextInt(2) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, key);
+					expected.put(key, key);
+				}
+			}
+			testNodeInvariants(tree.getRoot(), true, null, null);
+			for (int key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			for (Integer key : expected.keySet()) {
+				tree.delete(key);
+			}
+			testNodeInvariants(tree.getRoot(), true, null, null);
+			for (Integer key : expected.keySet()) {
+				assertEquals(null, tree.exactMatchSearch(key));
+			}
+		}
+	}
+
+	@Test
+	public void testSearchEmptyTree() {
+		ConcurrentBPlusTree<Integer, String> tree = new ConcurrentBPlusTree<Integer, String>(2);
+		assertEquals(null, tree.exactMatchSearch(2));
+		assertEquals(null, tree.exactMatchSearch(null));
+		tree.delete(2);
+	}
+
+	// Writers churn their own keys while readers look up keys that are
+	// never deleted; no reader may ever miss one
+	@Test
+	public void testConcurrentReadersAndWriters() throws InterruptedException {
+		final ConcurrentBPlusTree<Integer, Integer> tree = new ConcurrentBPlusTree<Integer, Integer>(3);
+		final int stable = 20000;
+		for (int i = 0; i < stable; i++) {
+			tree.insert(2 * i, 2 * i);
+		}
+		final int writers = 4;
+		final AtomicInteger misses = new AtomicInteger();
+		final List<TreeMap<Integer, Integer>> models = new ArrayList<TreeMap<Integer, Integer>>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int w = 0; w < writers; w++) {
+			final int id = w;
+			final TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+			models.add(model);
+			threads.add(new Thread() {
+				public void run() {
+					Random random = new Random(id);
+					for (int i = 0; i < 100000; i++) {
+						// Odd keys owned by this writer
+						int key = 2 * (random.nextInt(stable / writers) * writers + id) + 1;
+						if (random.nextInt(2) == 0) {
+							tree.delete(key);
+							model.remove(key);
+						} else if (!model.containsKey(key)) {
+							tree.insert(key, key);
+							model.put(key, key);
+						}
+					}
+				}
+			});
+		}
+		for (int r = 0; r < 2; r++) {
+			final int id = r;
+			threads.add(new Thread() {
+				public void run() {
+					Random random = new Random(100 + id);
+					for (int i = 0; i < 200000; i++) {
+						int key = 2 * random.nextInt(stable);
+						if (!Integer.valueOf(key).equals(tree.exactMatchSearch(key))) {
+							misses.incrementAndGet();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, misses.get());
+		testNodeInvariants(tree.getRoot(), true, null, null);
+		for (int i = 0; i < stable; i++) {
+			assertEquals(Integer.valueOf(2 * i), tree.exactMatchSearch(2 * i));
+			int odd = 2 * i + 1;
+			assertEquals(models.get(i % writers).get(odd), tree.exactMatchSearch(odd));
+		}
+	}
+
+	public <K extends Comparable<K>, T> void testNodeInvariants(ConcurrentNode<K, T> node, boolean isRoot, K low,
+			K high) {
+		int min = node.degree - 1;
+		int max = node.isLeafNode ? 2 * node.degree : 2 * node.degree + 1;
+		assertFalse(node.getNumKeys() > max);
+		assertFalse(!isRoot && node.getNumKeys() < min);
+		for (int i = 0; i < node.getNumKeys(); i++) {
+			K key = node.getKey(i);
+			assertTrue(low == null || key.compareTo(low) >= 0);
+			assertTrue(high == null || key.compareTo(high) < 0);
+			assertTrue(i == 0 || node.getKey(i - 1).compareTo(key) <= 0);
+		}
+		if (!node.isLeafNode) {
+			ConcurrentIndexNode<K, T> index = (ConcurrentIndexNode<K, T>) node;
+			for (int i = 0; i <= index.getNumKeys(); i++) {
+				testNodeInvariants(index.getChild(i), false, i == 0 ? low : index.getKey(i - 1),
+						i == index.getNumKeys() ? high : index.getKey(i));
+			}
+		}
+	}
+}
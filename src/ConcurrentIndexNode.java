@@ -0,0 +1,141 @@
+public class ConcurrentIndexNode<K extends Comparable<K>, T> extends ConcurrentNode<K, T> {
+
+	// Up to 2D+1 keys and 2D+2 children
+	private final ConcurrentNode<K, T>[] children;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentIndexNode(int degree) {
+		super(degree, false, 2 * degree + 1);
+		children = new ConcurrentNode[2 * degree + 2];
+	}
+
+	public ConcurrentIndexNode(K key, ConcurrentNode<K, T> child0, ConcurrentNode<K, T> child1, int degree) {
+		this(degree);
+		keys[0] = key;
+		children[0] = child0;
+		children[1] = child1;
+		numKeys = 1;
+	}
+
+	public boolean isFull() {
+		return numKeys > 2 * degree;
+	}
+
+	/**
+	 * Child at position i, or null if i is out of range. Safe to call without
+	 * the lock as long as the caller validates its stamp.
+	 */
+	ConcurrentNode<K, T> getChild(int i) {
+		if (i < 0 || i >= children.length) return null;
+		return children[i];
+	}
+
+	/**
+	 * Position of the child whose subtree should hold the given key, the
+	 * child i such that K(i-1) <= key < K(i), or -1 if a concurrent change
+	 * was observed.
+	 */
+	int findChildIndex(K key) {
+		return search(key, true);
+	}
+
+	/**
+	 * insert key at position i and child to the right of it, at i + 1
+	 */
+	void insertChild(int i, K key, ConcurrentNode<K, T> child) {
+		System.arraycopy(keys, i, keys, i + 1, numKeys - i);
+		System.arraycopy(children, i + 1, children, i + 2, numKeys - i);
+		keys[i] = key;
+		children[i + 1] = child;
+		numKeys++;
+	}
+
+	/**
+	 * remove key i and the child to the right of it, at i + 1
+	 */
+	void removeAt(int i) {
+		numKeys--;
+		System.arraycopy(keys, i + 1, keys, i, numKeys - i);
+		System.arraycopy(children, i + 2, children, i + 1, numKeys - i);
+		keys[numKeys] = null;
+		children[numKeys + 1] = null;
+	}
+
+	/**
+	 * Split a full index node: the first D keys and D+1 children stay, the
+	 * key after them moves up and everything else moves to rightNode, which
+	 * must be new and empty. This node is write locked by the caller.
+	 * 
+	 * @return the splitting key to insert in the parent
+	 */
+	K splitNode(ConcurrentIndexNode<K, T> rightNode) {
+		K splitKey = getKey(degree);
+		int moved = numKeys - degree - 1;
+		System.arraycopy(keys, degree + 1, rightNode.keys, 0, moved);
+		System.arraycopy(children, degree + 1, rightNode.children, 0, moved + 1);
+		rightNode.numKeys = moved;
+		for (int i = degree; i < numKeys; i++) {
+			keys[i] = null;
+			children[i + 1] = null;
+		}
+		numKeys = degree;
+		return splitKey;
+	}
+
+	/**
+	 * Handle IndexNode Underflow before a delete descends into one of the two
+	 * nodes, by merging them if the result has room to spare or else by
+	 * rotating children through the parent until they are even. All three
+	 * nodes are write locked by the caller.
+	 * 
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : position of the splitting key between them in parent
+	 * @return true if right was merged into left and the splitting key
+	 *         removed from parent
+	 */
+	static <K extends Comparable<K>, T> boolean handleIndexNodeUnderflow(ConcurrentIndexNode<K, T> left,
+			ConcurrentIndexNode<K, T> right, ConcurrentIndexNode<K, T> parent, int i) {
+		int total = left.numKeys + right.numKeys;
+		// Merge only if the result is not full, so the next insert does not
+		// split it straight back
+		if (total + 1 <= 2 * left.degree) {
+			left.keys[left.numKeys] = parent.keys[i];
+			System.arraycopy(right.keys, 0, left.keys, left.numKeys + 1, right.numKeys);
+			System.arraycopy(right.children, 0, left.children, left.numKeys + 1, right.numKeys + 1);
+			left.numKeys = total + 1;
+			parent.removeAt(i);
+			return true;
+		}
+		// Rotate the last child of left through the parent into right
+		while (left.numKeys > total / 2) {
+			System.arraycopy(right.keys, 0, right.keys, 1, right.numKeys);
+			System.arraycopy(right.children, 0, right.children, 1, right.numKeys + 1);
+			right.keys[0] = parent.keys[i];
+			right.children[0] = left.children[left.numKeys];
+			right.numKeys++;
+			left.numKeys--;
+			parent.keys[i] = left.keys[left.numKeys];
+			left.keys[left.numKeys] = null;
+			left.children[left.numKeys + 1] = null;
+		}
+		// Rotate the first child of right through the parent into left
+		while (left.numKeys < total / 2) {
+			left.keys[left.numKeys] = parent.keys[i];
+			left.children[left.numKeys + 1] = right.children[0];
+			left.numKeys++;
+			parent.keys[i] = right.keys[0];
+			right.numKeys--;
+			System.arraycopy(right.keys, 1, right.keys, 0, right.numKeys);
+			System.arraycopy(right.children, 1, right.children, 0, right.numKeys + 1);
+			right.keys[right.numKeys] = null;
+			right.children[right.numKeys + 1] = null;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,136 @@
+public class ConcurrentLeafNode<K extends Comparable<K>, T> extends ConcurrentNode<K, T> {
+	private final Object[] values;
+
+	public ConcurrentLeafNode(int degree) {
+		super(degree, true, 2 * degree);
+		values = new Object[2 * degree];
+	}
+
+	public boolean isFull() {
+		return numKeys >= 2 * degree;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int i) {
+		return (T) values[i];
+	}
+
+	/**
+	 * Value stored under the given key, or null if there is none. Safe to
+	 * call without the lock as long as the caller validates its stamp.
+	 */
+	@SuppressWarnings("unchecked")
+	T findValue(K key) {
+		int i = search(key, false);
+		if (i < 0 || i >= Math.min(numKeys, keys.length)) return null;
+		Object k = keys[i];
+		if (k == null || ((K) k).compareTo(key) != 0) return null;
+		return (T) values[i];
+	}
+
+	/**
+	 * insert key/value into this node so that it still remains sorted. The
+	 * caller holds the write lock and has made sure the node is not full.
+	 */
+	void insertSorted(K key, T value) {
+		int i = search(key, true);
+		System.arraycopy(keys, i, keys, i + 1, numKeys - i);
+		System.arraycopy(values, i, values, i + 1, numKeys - i);
+		keys[i] = key;
+		values[i] = value;
+		numKeys++;
+	}
+
+	/**
+	 * Remove the entry with the given key, if there is one. The caller holds
+	 * the write lock.
+	 */
+	void delete(K key) {
+		int i = search(key, false);
+		if (i < numKeys && getKey(i).compareTo(key) == 0) {
+			removeAt(i);
+		}
+	}
+
+	private void removeAt(int i) {
+		numKeys--;
+		System.arraycopy(keys, i + 1, keys, i, numKeys - i);
+		System.arraycopy(values, i + 1, values, i, numKeys - i);
+		keys[numKeys] = null;
+		values[numKeys] = null;
+	}
+
+	/**
+	 * Split a full leaf: the first D entries stay, the last D move to the
+	 * returned right node, whose first key is the splitting key. Both nodes
+	 * are write locked by the caller.
+	 */
+	ConcurrentLeafNode<K, T> splitNode() {
+		ConcurrentLeafNode<K, T> rightNode = new ConcurrentLeafNode<K, T>(degree);
+		int moved = numKeys - degree;
+		System.arraycopy(keys, degree, rightNode.keys, 0, moved);
+		System.arraycopy(values, degree, rightNode.values, 0, moved);
+		rightNode.numKeys = moved;
+		for (int i = degree; i < numKeys; i++) {
+			keys[i] = null;
+			values[i] = null;
+		}
+		numKeys = degree;
+		return rightNode;
+	}
+
+	/**
+	 * Handle LeafNode Underflow before a delete descends into one of the two
+	 * nodes, by merging them if the result has room to spare or else by
+	 * spreading their entries evenly. All three nodes are write locked by the
+	 * caller.
+	 * 
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : position of the splitting key between them in parent
+	 * @return true if right was merged into left and the splitting key
+	 *         removed from parent
+	 */
+	static <K extends Comparable<K>, T> boolean handleLeafNodeUnderflow(ConcurrentLeafNode<K, T> left,
+			ConcurrentLeafNode<K, T> right, ConcurrentIndexNode<K, T> parent, int i) {
+		int total = left.numKeys + right.numKeys;
+		// Merge only if the result is not full, so the next insert does not
+		// split it straight back
+		if (total < 2 * left.degree) {
+			System.arraycopy(right.keys, 0, left.keys, left.numKeys, right.numKeys);
+			System.arraycopy(right.values, 0, left.values, left.numKeys, right.numKeys);
+			left.numKeys = total;
+			parent.removeAt(i);
+			return true;
+		}
+		// Redistribute evenly between right and left nodes
+		int moved = total / 2 - left.numKeys;
+		if (moved > 0) {
+			System.arraycopy(right.keys, 0, left.keys, left.numKeys, moved);
+			System.arraycopy(right.values, 0, left.values, left.numKeys, moved);
+			left.numKeys += moved;
+			for (int j = 0; j < moved; j++) {
+				right.removeAt(0);
+			}
+		} else if (moved < 0) {
+			moved = -moved;
+			System.arraycopy(right.keys, 0, right.keys, moved, right.numKeys);
+			System.arraycopy(right.values, 0, right.values, moved, right.numKeys);
+			System.arraycopy(left.keys, left.numKeys - moved, right.keys, 0, moved);
+			System.arraycopy(left.values, left.numKeys - moved, right.values, 0, moved);
+			right.numKeys += moved;
+			for (int j = left.numKeys - moved; j < left.numKeys; j++) {
+				left.keys[j] = null;
+				left.values[j] = null;
+			}
+			left.numKeys -= moved;
+		}
+		parent.keys[i] = right.keys[0];
+		return false;
+	}
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Base class for the nodes of a ConcurrentBPlusTree. Every node carries a
+ * StampedLock used as a version lock: readers take an optimistic stamp, read
+ * the node without blocking and validate the stamp afterwards, while writers
+ * convert their stamp into the write lock only for the nodes they change.
+ * 
+ * Because readers may run concurrently with a writer, the search methods
+ * here are written to survive reading a half-updated node: they never index
+ * past the arrays and report -1 if they see a missing key, and the caller
+ * throws the result away unless its stamp still validates.
+ */
+public abstract class ConcurrentNode<K extends Comparable<K>, T> {
+	final StampedLock lock = new StampedLock();
+	protected final boolean isLeafNode;
+	protected final Object[] keys;
+	protected int numKeys;
+	protected final int degree;
+
+	public ConcurrentNode(int degree, boolean isLeafNode, int keyCapacity) {
+		this.degree = degree;
+		this.isLeafNode = isLeafNode;
+		this.keys = new Object[keyCapacity];
+	}
+
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	@SuppressWarnings("unchecked")
+	public K getKey(int i) {
+		return (K) keys[i];
+	}
+
+	/**
+	 * Whether the node must be split before anything is inserted below it.
+	 */
+	public abstract boolean isFull();
+
+	/**
+	 * Whether the node must be refilled from a sibling before anything is
+	 * deleted below it.
+	 */
+	public boolean isUnderflowed() {
+		return numKeys < degree;
+	}
+
+	/**
+	 * Index of the first key greater than the given key (or greater than or
+	 * equal to it when inclusive is false), or -1 if a concurrent change was
+	 * observed.
+	 */
+	@SuppressWarnings("unchecked")
+	int search(K key, boolean inclusive) {
+		int low = 0;
+		int high = Math.min(numKeys, keys.length);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			K k = (K) keys[mid];
+			if (k == null) return -1;
+			int diff = k.compareTo(key);
+			if (diff < 0 || diff == 0 && inclusive) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,155 @@
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+
+/**
+ * A B+ tree that is updated by path copying. Nodes are never changed in
+ * place: insert and delete build new versions of the nodes from the root
+ * down to the leaf they touch, plus any siblings a split, merge or
+ * redistribution changes, and then publish the new root with a single
+ * volatile write. Everything else is shared with the previous version.
+ *
+ * snapshot() therefore gives an immutable, consistent view of the whole tree
+ * in O(1), and a reader holding one is never blocked by writers and never
+ * blocks them, however long its scan takes. Writers are serialized with each
+ * other. The price is a few allocations per write, proportional to the
+ * height of the tree times the degree.
+ */
+public class CopyOnWriteBPlusTree<K extends Comparable<K>, T> {
+
+	private volatile TreeSnapshot<K, T> current;
+	private final int degree;
+
+	public CopyOnWriteBPlusTree(int degree) {
+		this.degree = degree;
+		this.current = new TreeSnapshot<K, T>(CopyOnWriteNode.<K, T> emptyLeaf(), 0);
+	}
+
+	public CopyOnWriteNode<K, T> getRoot() {
+		return current.getRoot();
+	}
+
+	public int getDegree() {
+		return this.degree;
+	}
+
+	/**
+	 * @return the number of entries in the tree
+	 */
+	public int size() {
+		return current.size();
+	}
+
+	/**
+	 * Returns the current version of the tree. It never changes, whatever is
+	 * written to the tree afterwards.
+	 *
+	 * @return an immutable view of the tree as it is now
+	 */
+	public TreeSnapshot<K, T> snapshot() {
+		return current;
+	}
+
+	/**
+	 * Search the value for a specific key in the current version of the tree.
+	 * Never blocks.
+	 *
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(K key) {
+		return current.exactMatchSearch(key);
+	}
+
+	/**
+	 * Insert a key/value pair into the tree, publishing a new version. Safe
+	 * to call from any number of threads.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void insert(K key, T value) {
+		TreeSnapshot<K, T> current = this.current;
+		CopyOnWriteNode<K, T> root = insert(current.getRoot(), key, value);
+		if (root.getNumKeys() > 2 * degree) {
+			Entry<K, CopyOnWriteNode<K, T>> right = rightHalf(root, degree);
+			root = CopyOnWriteNode.newRoot(root.slice(0, degree), right.getKey(), right.getValue());
+		}
+		this.current = new TreeSnapshot<K, T>(root, current.size() + 1);
+	}
+
+	// Returns the new version of node with key inserted below it. It may hold
+	// one key too many, for the caller to split.
+	private CopyOnWriteNode<K, T> insert(CopyOnWriteNode<K, T> node, K key, T value) {
+		int i = node.upperBound(key);
+		if (node.isLeafNode) {
+			return node.insert(i, key, value);
+		}
+		CopyOnWriteNode<K, T> child = insert(node.getChild(i), key, value);
+		if (child.getNumKeys() <= 2 * degree) {
+			return node.replaceChild(i, child);
+		}
+		Entry<K, CopyOnWriteNode<K, T>> right = rightHalf(child, degree);
+		return node.splitChild(i, child.slice(0, degree), right.getKey(), right.getValue());
+	}
+
+	/**
+	 * Delete a key and its value from the tree, publishing a new version if
+	 * it was there. Safe to call from any number of threads.
+	 *
+	 * @param key
+	 */
+	public synchronized void delete(K key) {
+		if (key == null) return;
+		TreeSnapshot<K, T> current = this.current;
+		CopyOnWriteNode<K, T> root = delete(current.getRoot(), key);
+		if (root == current.getRoot()) {
+			return;
+		}
+		if (!root.isLeafNode && root.getNumKeys() == 0) {
+			root = root.getChild(0);
+		}
+		this.current = new TreeSnapshot<K, T>(root, current.size() - 1);
+	}
+
+	// Returns the new version of node with key deleted below it, or node
+	// itself if key was not found. It may have too few keys, for the caller
+	// to fix.
+	private CopyOnWriteNode<K, T> delete(CopyOnWriteNode<K, T> node, K key) {
+		if (node.isLeafNode) {
+			int i = node.lowerBound(key);
+			if (i == node.getNumKeys() || node.getKey(i).compareTo(key) != 0) {
+				return node;
+			}
+			return node.remove(i);
+		}
+		int i = node.upperBound(key);
+		CopyOnWriteNode<K, T> child = node.getChild(i);
+		CopyOnWriteNode<K, T> newChild = delete(child, key);
+		if (newChild == child) {
+			return node;
+		}
+		if (newChild.getNumKeys() >= degree) {
+			return node.replaceChild(i, newChild);
+		}
+		// Merge the child with a sibling, or take entries from it
+		int j = i > 0 ? i - 1 : i;
+		CopyOnWriteNode<K, T> left = j == i ? newChild : node.getChild(j);
+		CopyOnWriteNode<K, T> right = j == i ? node.getChild(i + 1) : newChild;
+		CopyOnWriteNode<K, T> both = CopyOnWriteNode.concat(left, node.getKey(j), right);
+		if (left.getNumKeys() + right.getNumKeys() < 2 * degree) {
+			return node.mergeChildren(j, both);
+		}
+		int half = both.getNumKeys() / 2;
+		Entry<K, CopyOnWriteNode<K, T>> newRight = rightHalf(both, half);
+		return node.replaceChildren(j, both.slice(0, half), newRight.getKey(), newRight.getValue());
+	}
+
+	// The part of node from key i on, and the key separating it from the rest.
+	// For an index node that key moves up and is left out of both parts.
+	private static <K extends Comparable<K>, T> Entry<K, CopyOnWriteNode<K, T>> rightHalf(
+			CopyOnWriteNode<K, T> node, int i) {
+		CopyOnWriteNode<K, T> right = node.slice(node.isLeafNode ? i : i + 1, node.getNumKeys());
+		return new SimpleEntry<K, CopyOnWriteNode<K, T>>(node.getKey(i), right);
+	}
+}
@@ -0,0 +1,190 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CopyOnWriteBPlusTreeTests {
+
+	// Random inserts and deletes checked against a TreeMap
+	@Test
+	public void testRandomAgainstTreeMap() {
+		Random random = new Random(17);
+		for (int degree : new int[] { 1, 2, 3, 16 }) {
+			CopyOnWriteBPlusTree<Integer, Integer> tree = new CopyOnWriteBPlusTree<Integer, Integer>(degree);
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			for (int i = 0; i < 50000; i++) {
+				int key = random.nextInt(5000);
+				if (random.nextInt(2) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, key);
+					expected.put(key, key);
+				}
+			}
+			testNodeInvariants(tree.getRoot(), degree, true, null, null);
+			assertEquals(expected.size(), tree.size());
+			for (int key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			TreeSnapshot<Integer, Integer> snapshot = tree.snapshot();
+			assertEquals(new ArrayList<Integer>(expected.values()), snapshot.greaterThanEqualToKeySearch(0));
+			assertEquals(new ArrayList<Integer>(expected.subMap(1000, false, 4000, true).values()),
+					snapshot.rangeSearch(1000, false, 4000, true));
+			assertEquals(new ArrayList<Integer>(expected.headMap(2500, false).values()),
+					snapshot.rangeSearch(null, true, 2500, false));
+
+			for (Integer key : expected.keySet()) {
+				tree.delete(key);
+			}
+			assertEquals(0, tree.size());
+			assertTrue(tree.getRoot().isLeafNode);
+			assertEquals(0, tree.getRoot().getNumKeys());
+			assertEquals(expected.size(), snapshot.size());
+			assertEquals(new ArrayList<Integer>(expected.values()), snapshot.greaterThanEqualToKeySearch(0));
+		}
+	}
+
+	@Test
+	public void testSearchEmptyTree() {
+		CopyOnWriteBPlusTree<Integer, String> tree = new CopyOnWriteBPlusTree<Integer, String>(2);
+		assertEquals(null, tree.exactMatchSearch(2));
+		assertEquals(null, tree.exactMatchSearch(null));
+		assertFalse(tree.snapshot().cursor().hasNext());
+		assertEquals(0, tree.snapshot().lessThanEqualToKeySearch(2).size());
+		tree.delete(2);
+		assertEquals(0, tree.size());
+	}
+
+	// A snapshot keeps seeing the tree as it was, and shares every node the
+	// later writes did not touch
+	@Test
+	public void testSnapshotIsolation() {
+		CopyOnWriteBPlusTree<Integer, String> tree = new CopyOnWriteBPlusTree<Integer, String>(2);
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(i, "v" + i);
+		}
+		TreeSnapshot<Integer, String> before = tree.snapshot();
+		assertSame(before, tree.snapshot());
+		tree.insert(1000, "v1000");
+		tree.delete(0);
+		tree.delete(5000);
+
+		assertEquals(1000, before.size());
+		assertEquals("v0", before.exactMatchSearch(0));
+		assertEquals(null, before.exactMatchSearch(1000));
+		assertEquals(1000, before.greaterThanEqualToKeySearch(0).size());
+		assertEquals(null, tree.exactMatchSearch(0));
+		assertEquals("v1000", tree.exactMatchSearch(1000));
+		assertEquals(1000, tree.size());
+
+		// An insert copies only the nodes on its path
+		TreeSnapshot<Integer, String> after = tree.snapshot();
+		tree.insert(-1, "v-1");
+		CopyOnWriteNode<Integer, String> oldRoot = after.getRoot(), newRoot = tree.getRoot();
+		assertNotSame(oldRoot, newRoot);
+		assertTrue(oldRoot.getNumChildren() > 2);
+		assertNotSame(oldRoot.getChild(0), newRoot.getChild(0));
+		for (int i = 1; i < oldRoot.getNumChildren(); i++) {
+			assertSame(oldRoot.getChild(i), newRoot.getChild(i));
+		}
+	}
+
+	@Test
+	public void testCursor() {
+		CopyOnWriteBPlusTree<Integer, Integer> tree = new CopyOnWriteBPlusTree<Integer, Integer>(1);
+		for (int i = 0; i < 100; i += 2) {
+			tree.insert(i, i * 10);
+		}
+		TreeSnapshot.Cursor<Integer, Integer> cursor = tree.snapshot().rangeCursor(11, true, 17, true);
+		assertEquals(Integer.valueOf(120), cursor.next());
+		assertEquals(Integer.valueOf(12), cursor.getKey());
+		assertEquals(Integer.valueOf(140), cursor.next());
+		assertEquals(Integer.valueOf(160), cursor.next());
+		assertFalse(cursor.hasNext());
+		cursor = tree.snapshot().rangeCursor(12, false, 16, false);
+		assertEquals(Integer.valueOf(140), cursor.next());
+		assertFalse(cursor.hasNext());
+		assertFalse(tree.snapshot().rangeCursor(98, false, null, true).hasNext());
+	}
+
+	// Readers scan snapshots end to end while a writer keeps inserting and
+	// deleting; every scan sees exactly the entries of its own version
+	@Test
+	public void testConsistentScansDuringWrites() throws InterruptedException {
+		final CopyOnWriteBPlusTree<Integer, Integer> tree = new CopyOnWriteBPlusTree<Integer, Integer>(3);
+		for (int i = 0; i < 20000; i++) {
+			tree.insert(i, i);
+		}
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicInteger scans = new AtomicInteger();
+		final AtomicBoolean stop = new AtomicBoolean();
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int t = 0; t < 3; t++) {
+			Thread reader = new Thread() {
+				public void run() {
+					while (!stop.get()) {
+						TreeSnapshot<Integer, Integer> snapshot = tree.snapshot();
+						int count = 0;
+						Integer previous = null;
+						for (TreeSnapshot.Cursor<Integer, Integer> cursor = snapshot.cursor(); cursor.hasNext();) {
+							Integer key = cursor.next();
+							if (previous != null && key <= previous) {
+								failures.incrementAndGet();
+							}
+							previous = key;
+							count++;
+						}
+						if (count != snapshot.size()) {
+							failures.incrementAndGet();
+						}
+						scans.incrementAndGet();
+					}
+				}
+			};
+			readers.add(reader);
+			reader.start();
+		}
+		Random random = new Random(3);
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(40000);
+			if (random.nextBoolean()) {
+				tree.delete(key);
+			} else if (tree.exactMatchSearch(key) == null) {
+				tree.insert(key, key);
+			}
+		}
+		stop.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(0, failures.get());
+		assertTrue(scans.get() > 0);
+		testNodeInvariants(tree.getRoot(), 3, true, null, null);
+	}
+
+	public <K extends Comparable<K>, T> void testNodeInvariants(CopyOnWriteNode<K, T> node, int degree,
+			boolean isRoot, K lo, K hi) {
+		assertFalse(node.getNumKeys() > 2 * degree);
+		assertFalse(!isRoot && node.getNumKeys() < degree);
+		for (int i = 0; i < node.getNumKeys(); i++) {
+			K key = node.getKey(i);
+			assertTrue(i == 0 || node.getKey(i - 1).compareTo(key) < 0);
+			assertTrue(lo == null || lo.compareTo(key) <= 0);
+			assertTrue(hi == null || key.compareTo(hi) < 0);
+		}
+		if (!node.isLeafNode) {
+			assertEquals(node.getNumKeys() + 1, node.getNumChildren());
+			for (int i = 0; i < node.getNumChildren(); i++) {
+				testNodeInvariants(node.getChild(i), degree, false, i == 0 ? lo : node.getKey(i - 1),
+						i == node.getNumKeys() ? hi : node.getKey(i));
+			}
+		}
+	}
+}
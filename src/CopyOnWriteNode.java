@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * An immutable node of a CopyOnWriteBPlusTree. Nothing changes a node once
+ * it is built: every change returns a new node, so any number of tree
+ * versions can share the nodes they have in common and a reader never sees
+ * a node change under it.
+ *
+ * A leaf holds one value per key. An index node holds one more child than it
+ * has keys, with child i covering the keys k with getKey(i - 1) <= k <
+ * getKey(i), as in IndexNode. Leaves are not linked to their neighbours:
+ * with path copying a new version of a leaf would need new versions of every
+ * leaf before it, so scans go back up through the index nodes instead.
+ */
+public class CopyOnWriteNode<K extends Comparable<K>, T> {
+	private static final Object[] EMPTY = new Object[0];
+
+	protected final boolean isLeafNode;
+	private final Object[] keys;
+	// The values of a leaf, or the children of an index node
+	private final Object[] entries;
+
+	CopyOnWriteNode(boolean isLeafNode, Object[] keys, Object[] entries) {
+		this.isLeafNode = isLeafNode;
+		this.keys = keys;
+		this.entries = entries;
+	}
+
+	/**
+	 * @return a leaf with no keys
+	 */
+	static <K extends Comparable<K>, T> CopyOnWriteNode<K, T> emptyLeaf() {
+		return new CopyOnWriteNode<K, T>(true, EMPTY, EMPTY);
+	}
+
+	/**
+	 * @return an index node with the two given children, split at key
+	 */
+	static <K extends Comparable<K>, T> CopyOnWriteNode<K, T> newRoot(CopyOnWriteNode<K, T> left, K key,
+			CopyOnWriteNode<K, T> right) {
+		return new CopyOnWriteNode<K, T>(false, new Object[] { key }, new Object[] { left, right });
+	}
+
+	public int getNumKeys() {
+		return keys.length;
+	}
+
+	public int getNumChildren() {
+		return isLeafNode ? 0 : entries.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	public K getKey(int i) {
+		return (K) keys[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int i) {
+		return (T) entries[i];
+	}
+
+	@SuppressWarnings("unchecked")
+	public CopyOnWriteNode<K, T> getChild(int i) {
+		return (CopyOnWriteNode<K, T>) entries[i];
+	}
+
+	/**
+	 * Index of the first key that is strictly greater than the given key, or
+	 * getNumKeys() if there is none. For an index node this is the child
+	 * that covers key.
+	 */
+	public int upperBound(K key) {
+		int low = 0, high = keys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getKey(mid).compareTo(key) <= 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Index of the first key that is greater than or equal to the given key,
+	 * or getNumKeys() if there is none.
+	 */
+	public int lowerBound(K key) {
+		int low = 0, high = keys.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getKey(mid).compareTo(key) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * @return a copy of this leaf with key and value inserted at position i
+	 */
+	CopyOnWriteNode<K, T> insert(int i, K key, T value) {
+		return new CopyOnWriteNode<K, T>(true, insert(keys, i, key), insert(entries, i, value));
+	}
+
+	/**
+	 * @return a copy of this leaf without the entry at position i
+	 */
+	CopyOnWriteNode<K, T> remove(int i) {
+		return new CopyOnWriteNode<K, T>(true, remove(keys, i), remove(entries, i));
+	}
+
+	/**
+	 * @return a copy of this index node with child i replaced by child
+	 */
+	CopyOnWriteNode<K, T> replaceChild(int i, CopyOnWriteNode<K, T> child) {
+		Object[] children = entries.clone();
+		children[i] = child;
+		return new CopyOnWriteNode<K, T>(false, keys, children);
+	}
+
+	/**
+	 * @return a copy of this index node with child i replaced by the two
+	 *         halves it was split into
+	 */
+	CopyOnWriteNode<K, T> splitChild(int i, CopyOnWriteNode<K, T> left, K key, CopyOnWriteNode<K, T> right) {
+		Object[] children = insert(entries, i + 1, right);
+		children[i] = left;
+		return new CopyOnWriteNode<K, T>(false, insert(keys, i, key), children);
+	}
+
+	/**
+	 * @return a copy of this index node with children i and i + 1 replaced by
+	 *         left and right, split at key
+	 */
+	CopyOnWriteNode<K, T> replaceChildren(int i, CopyOnWriteNode<K, T> left, K key, CopyOnWriteNode<K, T> right) {
+		Object[] newKeys = keys.clone();
+		newKeys[i] = key;
+		Object[] children = entries.clone();
+		children[i] = left;
+		children[i + 1] = right;
+		return new CopyOnWriteNode<K, T>(false, newKeys, children);
+	}
+
+	/**
+	 * @return a copy of this index node with children i and i + 1 replaced by
+	 *         the single node they were merged into
+	 */
+	CopyOnWriteNode<K, T> mergeChildren(int i, CopyOnWriteNode<K, T> merged) {
+		Object[] children = remove(entries, i + 1);
+		children[i] = merged;
+		return new CopyOnWriteNode<K, T>(false, remove(keys, i), children);
+	}
+
+	/**
+	 * The keys [from, to) of this node as a new node: with their values for a
+	 * leaf, or with the children between them for an index node.
+	 */
+	CopyOnWriteNode<K, T> slice(int from, int to) {
+		return new CopyOnWriteNode<K, T>(isLeafNode, Arrays.copyOfRange(keys, from, to),
+				Arrays.copyOfRange(entries, from, isLeafNode ? to : to + 1));
+	}
+
+	/**
+	 * @return one node holding everything in the neighbours left and right,
+	 *         with key between them if they are index nodes
+	 */
+	static <K extends Comparable<K>, T> CopyOnWriteNode<K, T> concat(CopyOnWriteNode<K, T> left, K key,
+			CopyOnWriteNode<K, T> right) {
+		int n = left.keys.length;
+		Object[] keys;
+		if (left.isLeafNode) {
+			keys = Arrays.copyOf(left.keys, n + right.keys.length);
+			System.arraycopy(right.keys, 0, keys, n, right.keys.length);
+		} else {
+			keys = Arrays.copyOf(left.keys, n + 1 + right.keys.length);
+			keys[n] = key;
+			System.arraycopy(right.keys, 0, keys, n + 1, right.keys.length);
+		}
+		Object[] entries = Arrays.copyOf(left.entries, left.entries.length + right.entries.length);
+		System.arraycopy(right.entries, 0, entries, left.entries.length, right.entries.length);
+		return new CopyOnWriteNode<K, T>(left.isLeafNode, keys, entries);
+	}
+
+	private static Object[] insert(Object[] array, int i, Object element) {
+		Object[] larger = new Object[array.length + 1];
+		System.arraycopy(array, 0, larger, 0, i);
+		larger[i] = element;
+		System.arraycopy(array, i, larger, i + 1, array.length - i);
+		return larger;
+	}
+
+	private static Object[] remove(Object[] array, int i) {
+		Object[] smaller = new Object[array.length - 1];
+		System.arraycopy(array, 0, smaller, 0, i);
+		System.arraycopy(array, i + 1, smaller, i, array.length - i - 1);
+		return smaller;
+	}
+}
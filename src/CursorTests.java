@@ -0,0 +1,144 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CursorTests {
+
+	private BPlusTree<Integer, String> tree;
+
+	// Even keys 0..998 inserted in random order, so leaves split in every
+	// position of the chain
+	@Before
+	public void buildTree() {
+		tree = new BPlusTree<Integer, String>(2);
+		ArrayList<Integer> numbers = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i += 2) {
+			numbers.add(i);
+		}
+		Collections.shuffle(numbers);
+		for (Integer number : numbers) {
+			tree.insert(number, "" + number);
+		}
+	}
+
+	@Test
+	public void testAscendingFromKey() {
+		TreeCursor<Integer, String> cursor = tree.cursorFrom(101);
+		for (int expected = 102; expected < 1000; expected += 2) {
+			assertTrue(cursor.hasNext());
+			assertEquals("" + expected, cursor.next());
+			assertEquals(Integer.valueOf(expected), cursor.getKey());
+			assertEquals("" + expected, cursor.getValue());
+		}
+		assertFalse(cursor.hasNext());
+	}
+
+	@Test
+	public void testDescendingFromKey() {
+		TreeCursor<Integer, String> cursor = tree.descendingCursorFrom(500);
+		for (int expected = 500; expected >= 0; expected -= 2) {
+			assertTrue(cursor.hasNext());
+			assertEquals("" + expected, cursor.next());
+			assertEquals(Integer.valueOf(expected), cursor.getKey());
+		}
+		assertFalse(cursor.hasNext());
+	}
+
+	@Test
+	public void testOutOfRangeStart() {
+		assertFalse(tree.cursorFrom(999).hasNext());
+		assertFalse(tree.descendingCursorFrom(-1).hasNext());
+		assertEquals("0", tree.cursorFrom(-1).next());
+		assertEquals("998", tree.descendingCursorFrom(5000).next());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testEmptyTree() {
+		BPlusTree<Integer, String> emptyTree = new BPlusTree<Integer, String>(2);
+		assertFalse(emptyTree.cursor().hasNext());
+		assertFalse(emptyTree.descendingCursorFrom(3).hasNext());
+		assertEquals(0, emptyTree.greaterThanEqualToKeySearch(3).size());
+		emptyTree.cursorFrom(3).next();
+	}
+
+	@Test
+	public void testStreamStopsEarly() {
+		List<String> page = tree.streamFrom(200).limit(3).collect(Collectors.toList());
+		assertEquals(3, page.size());
+		assertEquals("200", page.get(0));
+		assertEquals("204", page.get(2));
+		assertEquals(400, tree.streamFrom(200).count());
+	}
+
+	@Test
+	public void testRangeSearchesSpanLeaves() {
+		List<String> less = tree.lessThanEqualToKeySearch(21);
+		assertEquals(11, less.size());
+		for (int i = 0; i < less.size(); i++) {
+			assertEquals("" + (2 * i), less.get(i));
+		}
+		List<String> greater = tree.greaterThanEqualToKeySearch(978);
+		assertEquals(11, greater.size());
+		assertEquals("978", greater.get(0));
+		assertEquals("998", greater.get(10));
+	}
+
+	@Test
+	public void testRangeSearchBounds() {
+		assertArrayEquals(new String[] { "100", "102", "104" },
+				tree.rangeSearch(100, true, 104, true).toArray(new String[0]));
+		assertArrayEquals(new String[] { "102" }, tree.rangeSearch(100, false, 104, false).toArray(new String[0]));
+		assertArrayEquals(new String[] { "102", "104" }, tree.rangeSearch(101, true, 105, false).toArray(new String[0]));
+		assertEquals(0, tree.rangeSearch(101, true, 101, true).size());
+		assertEquals(0, tree.rangeSearch(104, true, 100, true).size());
+		assertEquals(0, tree.rangeSearch(100, false, 100, true).size());
+		assertEquals(1, tree.rangeSearch(100, true, 100, true).size());
+		assertEquals(500, tree.rangeSearch(null, true, null, true).size());
+		assertEquals(3, tree.rangeSearch(null, true, 4, true).size());
+		assertEquals(2, tree.rangeSearch(995, false, null, false).size());
+
+		TreeCursor<Integer, String> cursor = tree.rangeCursor(300, true, 700, false);
+		int count = 0;
+		while (cursor.hasNext()) {
+			cursor.next();
+			assertTrue(cursor.getKey() >= 300 && cursor.getKey() < 700);
+			count++;
+		}
+		assertEquals(200, count);
+	}
+
+	// Deletes merge leaves, which must keep the chain intact both ways
+	@Test
+	public void testChainAfterDeletes() {
+		ArrayList<Integer> deleted = new ArrayList<Integer>();
+		for (TreeCursor<Integer, String> cursor = tree.cursor(); cursor.hasNext();) {
+			cursor.next();
+			if (cursor.getKey() % 6 == 0) {
+				deleted.add(cursor.getKey());
+			}
+		}
+		for (Integer key : deleted) {
+			tree.delete(key);
+		}
+		ArrayList<Integer> forward = new ArrayList<Integer>();
+		for (TreeCursor<Integer, String> cursor = tree.cursor(); cursor.hasNext();) {
+			cursor.next();
+			forward.add(cursor.getKey());
+		}
+		ArrayList<Integer> backward = new ArrayList<Integer>();
+		for (TreeCursor<Integer, String> cursor = tree.descendingCursorFrom(1000); cursor.hasNext();) {
+			cursor.next();
+			backward.add(cursor.getKey());
+		}
+		Collections.reverse(backward);
+		assertEquals(forward, backward);
+		assertEquals(333, forward.size());
+	}
+}
@@ -0,0 +1,88 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class DegreeTests {
+
+	// Every node below the root holds between its tree's degree for its kind
+	// and twice that, and carries that degree
+	private static <K extends Comparable<K>, T> void checkNode(BPlusTree<K, T> tree, Node<K, T> node,
+			boolean isRoot) {
+		int degree = node.isLeafNode ? tree.getLeafDegree() : tree.getIndexDegree();
+		assertEquals(degree, node.degree);
+		assertTrue(node.getNumKeys() <= 2 * degree);
+		assertTrue(isRoot || node.getNumKeys() >= degree);
+		if (!node.isLeafNode) {
+			for (Node<K, T> child : ((IndexNode<K, T>) node).getChildren()) {
+				checkNode(tree, child, false);
+			}
+		}
+	}
+
+	@Test
+	public void testSeparateDegrees() {
+		int[][] degrees = { { 1, 8 }, { 16, 1 }, { 3, 5 }, { 32, 2 } };
+		for (int[] d : degrees) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(d[0], d[1]);
+			assertEquals(d[0], tree.getLeafDegree());
+			assertEquals(d[1], tree.getIndexDegree());
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			Random random = new Random(d[0] * 31 + d[1]);
+			for (int i = 0; i < 30000; i++) {
+				int key = random.nextInt(5000);
+				if (random.nextInt(3) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, -key);
+					expected.put(key, -key);
+				}
+			}
+			Integer[] batch = new Integer[1000];
+			for (int i = 0; i < batch.length; i++) {
+				batch[i] = 10000 + 3 * i;
+				expected.put(batch[i], batch[i]);
+			}
+			tree.insertAll(batch, batch);
+			checkNode(tree, tree.getRoot(), true);
+			for (int key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			assertEquals(new ArrayList<Integer>(expected.values()), tree.greaterThanEqualToKeySearch(-1));
+		}
+	}
+
+	@Test
+	public void testBulkLoad() {
+		Integer[] keys = new Integer[20000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(32, 4);
+		tree.bulkLoad(keys, keys, 0.75);
+		checkNode(tree, tree.getRoot(), true);
+		assertEquals(0.75, tree.getLeafFillFactor(), 0.01);
+		assertEquals(0.75, tree.getIndexFillFactor(), 0.15);
+		tree.augment();
+		assertEquals(5000, tree.countRange(5000, true, 10000, false));
+		assertEquals(Integer.valueOf(12345), tree.select(12345));
+	}
+
+	@Test
+	public void testDegreeForBytes() {
+		// A 64 byte cache line of 8 byte entries: 2 * 3 + 1 = 7 fit
+		assertEquals(3, BPlusTree.degreeForBytes(64, 8));
+		assertEquals(31, BPlusTree.degreeForBytes(512, 8));
+		assertEquals(255, BPlusTree.degreeForBytes(4096, 8));
+		assertEquals(1, BPlusTree.degreeForBytes(8, 8));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoDegree() {
+		new BPlusTree<Integer, Integer>(4, 0);
+	}
+}
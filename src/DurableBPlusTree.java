@@ -0,0 +1,91 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A BPlusTree whose inserts and deletes are recorded in a WriteAheadLog, so
+ * they survive a crash. Opening the tree replays the log into a fresh
+ * BPlusTree; a crash in the middle of a split or merge therefore loses at
+ * most the changes whose insert or delete had not yet returned.
+ *
+ * The tree may be shared between threads. Changes are applied under a lock,
+ * in the same order as they are logged, but waiting for the log to reach the
+ * disk happens outside it, so concurrent writers share fsyncs.
+ */
+public class DurableBPlusTree<K extends Comparable<K>, T> implements Closeable {
+
+	private final BPlusTree<K, T> tree;
+	private final WriteAheadLog<K, T> log;
+
+	/**
+	 * Open the tree logged in file, creating the file if needed.
+	 */
+	public DurableBPlusTree(File file, int degree, Codec<K> keyCodec, Codec<T> valueCodec) throws IOException {
+		this.tree = new BPlusTree<K, T>(degree);
+		this.log = new WriteAheadLog<K, T>(file, keyCodec, valueCodec);
+		try {
+			log.replay(tree);
+		} catch (IOException e) {
+			log.close();
+			throw e;
+		}
+	}
+
+	public WriteAheadLog<K, T> getLog() {
+		return log;
+	}
+
+	/**
+	 * Insert a key/value pair, returning once it is on disk.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void insert(K key, T value) throws IOException {
+		long lsn;
+		synchronized (this) {
+			lsn = log.logInsert(key, value);
+			tree.insert(key, value);
+		}
+		log.sync(lsn);
+	}
+
+	/**
+	 * Delete a key/value pair, returning once the delete is on disk.
+	 *
+	 * @param key
+	 */
+	public void delete(K key) throws IOException {
+		long lsn;
+		synchronized (this) {
+			lsn = log.logDelete(key);
+			tree.delete(key);
+		}
+		log.sync(lsn);
+	}
+
+	public synchronized T exactMatchSearch(K key) {
+		return tree.exactMatchSearch(key);
+	}
+
+	public synchronized List<T> greaterThanEqualToKeySearch(K key) {
+		return tree.greaterThanEqualToKeySearch(key);
+	}
+
+	public synchronized List<T> lessThanEqualToKeySearch(K key) {
+		return tree.lessThanEqualToKeySearch(key);
+	}
+
+	/**
+	 * Rewrite the log to hold just the current contents of the tree, so it
+	 * no longer grows without bound and reopening replays less.
+	 */
+	public synchronized void checkpoint() throws IOException {
+		log.rewrite(tree.cursor());
+	}
+
+	public void close() throws IOException {
+		log.close();
+	}
+}
@@ -0,0 +1,39 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Decides which frame of a PageCache to reuse when a page has to be loaded
+ * and every frame is taken. Frames are numbered from 0 to the number of
+ * frames given to reset. A policy keeps state for one cache, so each cache
+ * needs its own instance.
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * Forget all frames, and prepare for the given number of frames.
+	 */
+	void reset(int frames);
+
+	/**
+	 * The given page was just loaded into frame, after a miss.
+	 */
+	void loaded(int frame, int page);
+
+	/**
+	 * The page in frame was pinned again, a hit.
+	 */
+	void accessed(int frame);
+
+	/**
+	 * The page in frame was dropped without being evicted, because it was
+	 * freed.
+	 */
+	void removed(int frame);
+
+	/**
+	 * Choose a frame to evict, among the frames accepted by evictable, and
+	 * forget it.
+	 *
+	 * @return the frame to reuse, or -1 if no frame can be evicted
+	 */
+	int victim(IntPredicate evictable);
+}
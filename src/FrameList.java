@@ -0,0 +1,80 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A doubly linked list of frame numbers kept in int arrays, so moving a frame
+ * around does not allocate. The head is the most recently added frame. Used
+ * by the list-based eviction policies.
+ */
+class FrameList {
+	private int[] previous;
+	private int[] next;
+	private boolean[] contains;
+	private int head;
+	private int tail;
+	private int size;
+
+	FrameList(int frames) {
+		previous = new int[frames];
+		next = new int[frames];
+		contains = new boolean[frames];
+		clear();
+	}
+
+	void clear() {
+		Arrays.fill(contains, false);
+		head = -1;
+		tail = -1;
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int frame) {
+		return contains[frame];
+	}
+
+	void addFirst(int frame) {
+		previous[frame] = -1;
+		next[frame] = head;
+		if (head != -1) {
+			previous[head] = frame;
+		} else {
+			tail = frame;
+		}
+		head = frame;
+		contains[frame] = true;
+		size++;
+	}
+
+	void remove(int frame) {
+		if (previous[frame] != -1) {
+			next[previous[frame]] = next[frame];
+		} else {
+			head = next[frame];
+		}
+		if (next[frame] != -1) {
+			previous[next[frame]] = previous[frame];
+		} else {
+			tail = previous[frame];
+		}
+		contains[frame] = false;
+		size--;
+	}
+
+	/**
+	 * Remove and return the frame nearest the tail that is accepted by
+	 * evictable, or -1 if there is none.
+	 */
+	int removeLast(IntPredicate evictable) {
+		for (int frame = tail; frame != -1; frame = previous[frame]) {
+			if (evictable.test(frame)) {
+				remove(frame);
+				return frame;
+			}
+		}
+		return -1;
+	}
+}
@@ -1,5 +1,6 @@
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -8,21 +9,36 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 	// m nodes
 	private ArrayList<Node<K, T>> children; // m+1 children
 
+	// Only in augmented trees: the number of entries and, with a monoid, the
+	// aggregate of the values under each child
+	private boolean augmented;
+	private Monoid<? super T, Object> monoid;
+	private long[] counts;
+	private Object[] aggregates;
+
 	public IndexNode(K key, Node<K, T> child0, Node<K, T> child1, int degree) {
-		super(degree);
+		super(degree, 1);
 		isLeafNode = false;
 		addKey(key);
-		children = new ArrayList<Node<K, T>>();
+		children = new ArrayList<Node<K, T>>(2);
 		children.add(child0);
 		children.add(child1);
 	}
 
-	public IndexNode(List<K> newKeys, List<Node<K, T>> newChildren, int degree) {
+	// An empty index node with room for a full one, for splits and NodePool
+	IndexNode(int degree) {
 		super(degree);
 		isLeafNode = false;
+		children = new ArrayList<Node<K, T>>(2 * degree + 2);
+	}
+
+	public IndexNode(List<K> newKeys, List<Node<K, T>> newChildren, int degree) {
+		super(degree, newKeys.size());
+		isLeafNode = false;
 
 		addAllKeys(newKeys);
-		children = new ArrayList<Node<K, T>>(newChildren);
+		children = new ArrayList<Node<K, T>>(newChildren.size());
+		children.addAll(newChildren);
 
 	}
 
@@ -39,15 +55,207 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 	}
 
 	public Node<K, T> removeChild(int i) {
+		if (augmented) {
+			int n = children.size();
+			System.arraycopy(counts, i + 1, counts, i, n - i - 1);
+			if (aggregates != null) {
+				System.arraycopy(aggregates, i + 1, aggregates, i, n - i - 1);
+				aggregates[n - 1] = null;
+			}
+		}
 		return this.children.remove(i);
 	}
 
 	public void addChild(int i, Node<K, T> child) {
 		this.children.add(i, child);
+		if (augmented) {
+			int n = children.size();
+			if (n > counts.length) {
+				// Grow like the lists, but no further than a full node
+				int capacity = Math.max(n, Math.min(2 * n, 2 * degree + 2));
+				counts = Arrays.copyOf(counts, capacity);
+				if (aggregates != null) {
+					aggregates = Arrays.copyOf(aggregates, capacity);
+				}
+			}
+			System.arraycopy(counts, i, counts, i + 1, n - i - 1);
+			if (aggregates != null) {
+				System.arraycopy(aggregates, i, aggregates, i + 1, n - i - 1);
+			}
+			refresh(i);
+		}
 	}
 
 	public void addChild(Node<K, T> child) {
-		this.children.add(child);
+		this.addChild(children.size(), child);
+	}
+
+	/**
+	 * Start keeping the number of entries, and with a monoid their
+	 * aggregate, under each child. The children must already be augmented.
+	 * 
+	 * @param monoid
+	 *            - How to aggregate values, or null to keep counts only.
+	 */
+	void augment(Monoid<? super T, Object> monoid) {
+		this.augmented = true;
+		this.monoid = monoid;
+		// A recycled node may still have arrays big enough
+		int capacity = children.size();
+		if (counts == null || counts.length < capacity) {
+			counts = new long[capacity];
+		}
+		if (monoid == null) {
+			aggregates = null;
+		} else if (aggregates == null || aggregates.length < capacity) {
+			aggregates = new Object[capacity];
+		}
+		for (int i = 0; i < children.size(); i++) {
+			refresh(i);
+		}
+	}
+
+	boolean isAugmented() {
+		return augmented;
+	}
+
+	// Empty an unlinked index node for reuse, keeping its arrays
+	void clear() {
+		this.clearKeys();
+		this.children.clear();
+		this.augmented = false;
+		if (aggregates != null) {
+			Arrays.fill(aggregates, null);
+		}
+	}
+
+	/**
+	 * Recompute what is kept for child i after its subtree has changed. Does
+	 * nothing unless the node is augmented.
+	 */
+	void refresh(int i) {
+		if (!augmented) {
+			return;
+		}
+		Node<K, T> child = children.get(i);
+		counts[i] = count(child);
+		if (aggregates != null) {
+			aggregates[i] = aggregate(monoid, child, 0,
+					child.isLeafNode ? child.getNumKeys() : ((IndexNode<K, T>) child).getNumChildren());
+		}
+	}
+
+	/**
+	 * Refresh children from..to, inclusive, skipping any past either end.
+	 */
+	void refresh(int from, int to) {
+		for (int i = Math.max(from, 0); i <= to && i < children.size(); i++) {
+			refresh(i);
+		}
+	}
+
+	/**
+	 * @return the number of entries under child i of an augmented node
+	 */
+	long getCount(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * @return the aggregate of the values under child i of a node augmented
+	 *         with a monoid
+	 */
+	Object getAggregate(int i) {
+		return aggregates[i];
+	}
+
+	Monoid<? super T, Object> getMonoid() {
+		return monoid;
+	}
+
+	// The number of entries under an augmented node
+	static <K extends Comparable<K>, T> long count(Node<K, T> node) {
+		if (node.isLeafNode) {
+			return node.getNumKeys();
+		}
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		long count = 0;
+		for (int i = 0; i < index.children.size(); i++) {
+			count += index.counts[i];
+		}
+		return count;
+	}
+
+	/**
+	 * @return the aggregate of the values of entries from..to-1 of a leaf,
+	 *         or of the values under children from..to-1 of an augmented
+	 *         index node
+	 */
+	static <K extends Comparable<K>, T> Object aggregate(Monoid<? super T, Object> monoid, Node<K, T> node, int from,
+			int to) {
+		Object aggregate = monoid.identity();
+		if (node.isLeafNode) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			for (int i = from; i < to; i++) {
+				aggregate = monoid.combine(aggregate, monoid.of(leaf.getValue(i)));
+			}
+		} else {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			for (int i = from; i < to; i++) {
+				aggregate = monoid.combine(aggregate, index.aggregates[i]);
+			}
+		}
+		return aggregate;
+	}
+
+	/**
+	 * Find the child whose subtree should hold the given key, that is the
+	 * child i such that K(i-1) <= key < K(i). This is an iterative binary
+	 * search over the keys, shared by lookups, inserts and deletes.
+	 * 
+	 * @param key
+	 * @return the index of the child to descend into
+	 */
+	public int findChildIndex(K key) {
+		int low = 0;
+		int high = this.getNumKeys();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.getKey(mid).compareTo(key) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Find the first child that may hold a key >= the given key, that is the
+	 * child i such that K(i-1) < key <= K(i). Copies of a separator key can
+	 * sit on both sides of it, so this can be left of findChildIndex.
+	 *
+	 * @param key
+	 * @return the index of the child holding the first key >= key, if any
+	 */
+	public int findLowerChildIndex(K key) {
+		int low = 0;
+		int high = this.getNumKeys();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.getKey(mid).compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	protected void reserve() {
+		super.reserve();
+		children.ensureCapacity(2 * degree + 2);
 	}
 
 	/**
@@ -58,14 +266,15 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 * @param index
 	 */
 	public void insertSorted(Entry<K, Node<K, T>> e, int index) {
+		reserve();
 		K key = e.getKey();
 		Node<K, T> child = e.getValue();
 		if (index >= getNumKeys()) {
 			addKey(key);
-			children.add(child);
+			addChild(child);
 		} else {
 			addKey(index, key);
-			children.add(index + 1, child);
+			addChild(index + 1, child);
 		}
 	}
 
@@ -78,90 +287,141 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 * @return new key/node pair as an Entry
 	 */
 	public Entry<K, Node<K, T>> splitNode() {
-		ArrayList<K> newKeys = new ArrayList<K>();
-		ArrayList<Node<K, T>> newChildren = new ArrayList<Node<K, T>>();
+		return this.splitNode((NodePool<K, T>) null);
+	}
+
+	/**
+	 * Split an indexNode as splitNode() does, taking the new right node from
+	 * pool.
+	 * 
+	 * @param pool
+	 *            - Where to get the new node, or null to allocate it.
+	 * @return new key/node pair as an Entry
+	 */
+	public Entry<K, Node<K, T>> splitNode(NodePool<K, T> pool) {
+		IndexNode<K, T> rightNode = pool == null ? new IndexNode<K, T>(this.degree) : pool.indexNode(this.degree);
 
 		// Note difference with splitting leaf page, 2D+1 key values and 2D+2
 		// node pointers
 		K splitKey = this.getKey(this.degree);
-		this.removeKey(this.degree);
 
 		// First D key values and D+1 node pointers stay
 		// Last D keys and D+1 pointers move to new node
-		newChildren.add(this.removeChild(this.degree + 1));
-
+		for (int i = this.degree + 1; i < this.getNumKeys(); i++) {
+			rightNode.addKey(this.getKey(i));
+		}
+		for (int i = this.degree + 1; i < children.size(); i++) {
+			rightNode.children.add(children.get(i));
+		}
 		while (this.getNumKeys() > this.degree) {
-			newKeys.add(this.getKey(this.degree));
-			this.removeKey(this.degree);
-			newChildren.add(this.removeChild(this.degree + 1));
+			this.removeKey(this.getNumKeys() - 1);
+		}
+		while (children.size() > this.degree + 1) {
+			this.removeChild(children.size() - 1);
 		}
 
-		IndexNode<K, T> rightNode = new IndexNode<K, T>(newKeys, newChildren, this.degree);
+		if (augmented) {
+			rightNode.augment(monoid);
+		}
 		Entry<K, Node<K, T>> newChildEntry = new AbstractMap.SimpleEntry<K, Node<K, T>>(splitKey, rightNode);
 
 		return newChildEntry;
 	}
 
-	
-	public Entry<K, Node<K, T>> deleteChildEntry(Node<K, T> parentNode, Entry<K, Node<K, T>> entry,
-			Entry<K, Node<K, T>> oldChildEntry, Node<K, T> root) {
-		// Choose subtree, find i such that Ki <= entry's key value < K(i+1)
+	/**
+	 * Split an overflowed index node into sizes.length nodes, keeping the
+	 * first sizes[0] children here. The key between two groups of children
+	 * moves up to the parent.
+	 * 
+	 * @param sizes
+	 *            - The number of children for each node, in order.
+	 * @return the splitting key and new node for each new right node
+	 */
+	public List<Entry<K, Node<K, T>>> splitNode(int[] sizes) {
+		return this.splitNode(sizes, null);
+	}
 
-		int i = 0;
-		K entryKey = entry.getKey();
-		while (i < this.getNumKeys()) {
-			if (entryKey.compareTo(this.getKey(i)) < 0) {
-				break;
+	/**
+	 * Split an overflowed index node as splitNode(sizes) does, taking the
+	 * new nodes from pool.
+	 * 
+	 * @param pool
+	 *            - Where to get the new nodes, or null to allocate them.
+	 */
+	public List<Entry<K, Node<K, T>>> splitNode(int[] sizes, NodePool<K, T> pool) {
+		List<Entry<K, Node<K, T>>> entries = new ArrayList<Entry<K, Node<K, T>>>(sizes.length - 1);
+		int from = sizes[0];
+		for (int i = 1; i < sizes.length; i++) {
+			int to = from + sizes[i];
+			IndexNode<K, T> right = pool == null ? new IndexNode<K, T>(this.degree) : pool.indexNode(this.degree);
+			for (int j = from; j < to; j++) {
+				if (j > from) {
+					right.addKey(this.getKey(j - 1));
+				}
+				right.children.add(children.get(j));
 			}
-			i++;
+			if (augmented) {
+				right.augment(monoid);
+			}
+			entries.add(new AbstractMap.SimpleEntry<K, Node<K, T>>(this.getKey(from - 1), right));
+			from = to;
+		}
+		this.getKeys(sizes[0] - 1, this.getNumKeys()).clear();
+		if (aggregates != null) {
+			Arrays.fill(aggregates, sizes[0], children.size(), null);
 		}
+		children.subList(sizes[0], children.size()).clear();
+		return entries;
+	}
+
+	public Entry<K, Node<K, T>> deleteChildEntry(Node<K, T> parentNode, Entry<K, Node<K, T>> entry,
+			Entry<K, Node<K, T>> oldChildEntry, Node<K, T> root, TreeMetrics metrics, NodePool<K, T> pool) {
+		// Choose subtree, find i such that Ki <= entry's key value < K(i+1)
+		int i = this.findChildIndex(entry.getKey());
+
 		// Recursive delete
-		oldChildEntry = this.getChild(i).deleteChildEntry(this, entry, oldChildEntry, root);
+		oldChildEntry = this.getChild(i).deleteChildEntry(this, entry, oldChildEntry, root, metrics, pool);
 
 		// Usual case: child not deleted
 		if (oldChildEntry == null) {
+			// The child may have borrowed from a sibling on either side
+			this.refresh(i - 1, i + 1);
 			return null;
 		}
 		// Discarded child node case
 		else {
-			int j = 0;
-			K oldKey = oldChildEntry.getKey();
-			while (j < this.getNumKeys()) {
-				if (oldKey.compareTo(this.getKey(j)) == 0) {
-					break;
-				}
-				j++;
-			}
+			int j = this.findChildIndex(oldChildEntry.getKey()) - 1;
+
 			// Remove oldChildEntry from node
 			this.removeKey(j);
-			this.removeChild(j + 1);
+			Node<K, T> merged = this.removeChild(j + 1);
+			if (pool != null) {
+				pool.release(merged);
+			}
+			// The merged child is on one side of the removed one
+			this.refresh(j, j);
 
-			// Check for underflow, return null if empty
-			if (!this.isUnderflowed() || this.getNumKeys() == 0) {
+			// Check for underflow. The root is allowed to underflow, and
+			// the tree replaces it by its only child once it is empty
+			if (!this.isUnderflowed() || this == root) {
 				// Node has entries to spare, delete doesn't go further
 				return null;
 			} else {
-				// Return if root
-				if (this == root) {
-					return oldChildEntry;
-				}
-				// Get sibling S using parent pointer
-				int s = 0;
-				K firstKey = this.getKey(0);
-				while (s < parentNode.getNumKeys()) {
-					if (firstKey.compareTo(parentNode.getKey(s)) < 0) {
-						break;
-					}
-					s++;
-				}
-				// Handle index underflow
-				int splitKeyPos;
+				// Get sibling S using parent pointer. The deleted key routes
+				// to this node, so it also gives our position in the parent
 				IndexNode<K, T> parent = (IndexNode<K, T>) parentNode;
+				int s = parent.findChildIndex(entry.getKey());
 
-				if (s > 0 && parent.getChild(s - 1) != null) {
-					splitKeyPos = handleIndexNodeUnderflow((IndexNode<K, T>) parent.getChild(s - 1), this, parent);
+				// Handle index underflow
+				int splitKeyPos;
+				if (s > 0) {
+					splitKeyPos = handleIndexNodeUnderflow((IndexNode<K, T>) parent.getChild(s - 1), this, parent, s);
 				} else {
-					splitKeyPos = handleIndexNodeUnderflow(this, (IndexNode<K, T>) parent.getChild(s + 1), parent);
+					splitKeyPos = handleIndexNodeUnderflow(this, (IndexNode<K, T>) parent.getChild(s + 1), parent,
+							s + 1);
+				}
+				if (metrics != null) {
+					(splitKeyPos == -1 ? metrics.indexRedistributions : metrics.indexMerges).increment();
 				}
 				// S has extra entries, set oldChildentry to null, return
 				if (splitKeyPos == -1) {
@@ -186,19 +446,13 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 *            : the bigger node
 	 * @param parent
 	 *            : their parent index node
+	 * @param i
+	 *            : the position of the right node among parent's children
 	 * @return the splitkey position in parent if merged so that parent can
 	 *         delete the splitkey later on. -1 otherwise
 	 */
-	public int handleIndexNodeUnderflow(IndexNode<K, T> leftIndex, IndexNode<K, T> rightIndex, IndexNode<K, T> parent) {
-		// Find entry in parent for node on right
-		int i = 0;
-		K rKey = rightIndex.getKey(0);
-		while (i < parent.getNumKeys()) {
-			if (rKey.compareTo(parent.getKey(i)) < 0) {
-				break;
-			}
-			i++;
-		}
+	public int handleIndexNodeUnderflow(IndexNode<K, T> leftIndex, IndexNode<K, T> rightIndex, IndexNode<K, T> parent,
+			int i) {
 		// Redistribute evenly between node and S through parent
 		// If S has extra entries
 		if (leftIndex.getNumKeys() + rightIndex.getNumKeys() >= 2 * this.degree) {
@@ -206,7 +460,7 @@ public class IndexNode<K extends Comparable<K>, T> extends Node<K, T> {
 			if (leftIndex.getNumKeys() > rightIndex.getNumKeys()) {
 				while (leftIndex.getNumKeys() > this.degree) {
 					rightIndex.addKey(0, parent.getKey(i - 1));
-					rightIndex.addChild(leftIndex.removeChild(leftIndex.getNumChildren() - 1));
+					rightIndex.addChild(0, leftIndex.removeChild(leftIndex.getNumChildren() - 1));
 					parent.replaceKey(i - 1, leftIndex.removeKey(leftIndex.getNumKeys() - 1));
 				}
 			}
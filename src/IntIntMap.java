@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/**
+ * A map from non-negative int keys, such as page ids, to int values, kept in
+ * two int arrays with open addressing and linear probing, so lookups and
+ * updates neither box nor allocate. Sized for a given number of entries at
+ * half load, and doubled if it ever holds more. Used by PageCache and the
+ * eviction policies.
+ */
+class IntIntMap {
+	// Marks an empty slot, and is returned by get and remove for missing keys
+	static final int NONE = -1;
+
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	// 32 minus the number of bits in a slot index
+	private int shift;
+	private int size;
+
+	/**
+	 * @param expected
+	 *            - The number of entries the map should hold without growing.
+	 */
+	IntIntMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(2, 2 * expected - 1)) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		shift = Integer.numberOfLeadingZeros(capacity) + 1;
+		Arrays.fill(keys, NONE);
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(keys, NONE);
+		size = 0;
+	}
+
+	/**
+	 * @return the value for key, or NONE if there is none
+	 */
+	int get(int key) {
+		for (int slot = slot(key);; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			if (keys[slot] == NONE) {
+				return NONE;
+			}
+		}
+	}
+
+	void put(int key, int value) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Keys must not be negative: " + key);
+		}
+		int slot = slot(key);
+		while (keys[slot] != NONE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		if (keys[slot] == NONE) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+				put(key, value);
+				return;
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * @return the value key had, or NONE if it had none
+	 */
+	int remove(int key) {
+		int slot = slot(key);
+		while (keys[slot] != key) {
+			if (keys[slot] == NONE) {
+				return NONE;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int value = values[slot];
+		// Shift back the entries after it in the run that would no longer be
+		// found past the hole, instead of leaving a tombstone
+		for (int next = (slot + 1) & mask; keys[next] != NONE; next = (next + 1) & mask) {
+			int home = slot(keys[next]);
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+		}
+		keys[slot] = NONE;
+		size--;
+		return value;
+	}
+
+	private int slot(int key) {
+		// Fibonacci hashing, which spreads sequential ids over the table
+		return (key * 0x9E3779B9) >>> shift;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[2 * oldKeys.length];
+		values = new int[2 * oldKeys.length];
+		mask = keys.length - 1;
+		shift--;
+		Arrays.fill(keys, NONE);
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != NONE) {
+				put(oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntIntMapTests {
+
+	// Random puts and removes against a HashMap, over few enough keys that
+	// runs of colliding keys form and are shifted back by removes
+	@Test
+	public void testAgainstHashMap() {
+		for (int keys : new int[] { 10, 1000, 100000 }) {
+			IntIntMap map = new IntIntMap(keys / 4);
+			HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+			Random random = new Random(keys);
+			for (int i = 0; i < 200000; i++) {
+				int key = random.nextInt(keys);
+				if (random.nextInt(3) == 0) {
+					Integer value = expected.remove(key);
+					assertEquals(value == null ? IntIntMap.NONE : value, map.remove(key));
+				} else {
+					expected.put(key, i);
+					map.put(key, i);
+				}
+				assertEquals(expected.size(), map.size());
+			}
+			for (int key = 0; key < keys; key++) {
+				Integer value = expected.get(key);
+				assertEquals(value == null ? IntIntMap.NONE : value, map.get(key));
+			}
+			for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+				assertEquals((int) entry.getValue(), map.remove(entry.getKey()));
+			}
+			assertEquals(0, map.size());
+			map.put(7, 1);
+			map.clear();
+			assertEquals(IntIntMap.NONE, map.get(7));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeKey() {
+		new IntIntMap(4).put(-1, 0);
+	}
+}
@@ -12,17 +12,25 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 	public LeafNode(K firstKey, T firstValue, int degree) {
 		super(degree);
 		isLeafNode = true;
-		values = new ArrayList<T>();
+		values = new ArrayList<T>(2 * degree + 1);
 		this.addKey(firstKey);
 		values.add(firstValue);
 
 	}
 
+	// An empty leaf, for splits and NodePool
+	LeafNode(int degree) {
+		super(degree);
+		isLeafNode = true;
+		values = new ArrayList<T>(2 * degree + 1);
+	}
+
 	public LeafNode(List<K> newKeys, List<T> newValues, int degree) {
 		super(degree);
 		isLeafNode = true;
 		addAllKeys(newKeys);
-		values = new ArrayList<T>(newValues);
+		values = new ArrayList<T>(2 * degree + 1);
+		values.addAll(newValues);
 
 	}
 
@@ -33,24 +41,78 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 * @param value
 	 */
 	public void insertSorted(K key, T value) {
-		if (key.compareTo(getKey(0)) < 0) {
-			addKey(0, key);
-			values.add(0, value);
-		} else if (key.compareTo(getKey(getNumKeys() - 1)) > 0) {
-			addKey(key);
-			values.add(value);
-		} else {
-			ListIterator<K> iterator = getKeyIterator();
-			while (iterator.hasNext()) {
-				if (iterator.next().compareTo(key) > 0) {
-					int position = iterator.previousIndex();
-					addKey(position, key);
-					values.add(position, value);
-					break;
-				}
+		int position = this.upperBound(key);
+		addKey(position, key);
+		values.add(position, value);
+	}
+
+	/**
+	 * Insert the sorted run keys[from..to) into this node. Each key is placed
+	 * by a binary search that starts after the previous one, so the whole run
+	 * costs one pass over the node. Keys equal to one already here go after
+	 * it, as with insertSorted. The node may be left holding more than 2 *
+	 * degree keys.
+	 * 
+	 * @param newKeys
+	 * @param newValues
+	 * @param from
+	 * @param to
+	 */
+	public void insertSorted(K[] newKeys, T[] newValues, int from, int to) {
+		int position = 0;
+		for (int j = from; j < to; j++) {
+			position = this.upperBound(newKeys[j], position);
+			this.addKey(position, newKeys[j]);
+			values.add(position++, newValues[j]);
+		}
+	}
+
+	/**
+	 * Find where key belongs in this node with an iterative binary search.
+	 * 
+	 * @param key
+	 * @return the first position holding a key >= key, or the number of
+	 *         keys if there is none
+	 */
+	public int lowerBound(K key) {
+		int low = 0;
+		int high = this.getNumKeys();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.getKey(mid).compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
 			}
+		}
+		return low;
+	}
 
+	/**
+	 * Find the position just past every copy of key in this node with an
+	 * iterative binary search. New entries are inserted here, after any equal
+	 * keys.
+	 * 
+	 * @param key
+	 * @return the first position holding a key > key, or the number of keys
+	 *         if there is none
+	 */
+	public int upperBound(K key) {
+		return this.upperBound(key, 0);
+	}
+
+	// The first position at or after low holding a key > key
+	private int upperBound(K key, int low) {
+		int high = this.getNumKeys();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.getKey(mid).compareTo(key) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
 		}
+		return low;
 	}
 
 	public T findValue(K key) {
@@ -58,19 +120,16 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 		if (index == -1) return null;
 		return this.getValue(index);
 	}
-	
-	public int findValueIndex(K key) {
-		if (this.getNumKeys() == 0) return -1;
-		return this.binarySearch(key, 0, this.getNumKeys() - 1);
-	}
 
-	public int binarySearch(K key, int left, int right) {
-		if (left > right) return -1;
-		int mid = (left + right) / 2;
-		int diff = this.getKey(mid).compareTo(key);
-		if (diff == 0) return mid;
-		else if (diff < 0) return binarySearch(key, mid + 1, right);
-		return binarySearch(key, left, mid - 1);
+	/**
+	 * @param key
+	 * @return the position of the first copy of key in this node, or -1 if it
+	 *         is not here
+	 */
+	public int findValueIndex(K key) {
+		int index = this.lowerBound(key);
+		if (index == this.getNumKeys() || this.getKey(index).compareTo(key) != 0) return -1;
+		return index;
 	}
 
 	public int getNumValues() {
@@ -122,6 +181,14 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 		this.nextLeaf = node;
 	}
 
+	// Empty an unlinked leaf for reuse
+	void clear() {
+		this.clearKeys();
+		this.values.clear();
+		this.nextLeaf = null;
+		this.previousLeaf = null;
+	}
+
 	/**
 	 * Split a leaf node and return the new right node and the splitting key as
 	 * an Entry<slitingKey, RightNode>
@@ -131,13 +198,24 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 * @return the key/node pair as an Entry
 	 */
 	public Entry<K, Node<K, T>> splitNode() {
-		ArrayList<K> newKeys = new ArrayList<K>();
-		ArrayList<T> newValues = new ArrayList<T>();
+		return this.splitNode((NodePool<K, T>) null);
+	}
 
-		// The rest D entries move to brand new node
+	/**
+	 * Split a leaf node as splitNode() does, taking the new right node from
+	 * pool.
+	 * 
+	 * @param pool
+	 *            - Where to get the new node, or null to allocate it.
+	 * @return the key/node pair as an Entry
+	 */
+	public Entry<K, Node<K, T>> splitNode(NodePool<K, T> pool) {
+		LeafNode<K, T> rightNode = pool == null ? new LeafNode<K, T>(this.degree) : pool.leaf(this.degree);
+
+		// The rest D entries move to the new node
 		for (int i = this.degree; i <= 2 * this.degree; i++) {
-			newKeys.add(this.getKey(i));
-			newValues.add(this.getValue(i));
+			rightNode.addKey(this.getKey(i));
+			rightNode.addValue(this.getValue(i));
 		}
 
 		// First D entries stay
@@ -146,31 +224,75 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 			this.removeValue(this.getNumValues() - 1);
 		}
 
-		K splitKey = newKeys.get(0);
-		LeafNode<K, T> rightNode = new LeafNode<K, T>(newKeys, newValues, this.degree);
+		K splitKey = rightNode.getKey(0);
 
 		// Set sibling pointers
 		LeafNode<K, T> tmp = this.getNextLeaf();
 		this.setNextLeaf(rightNode);
-		this.getNextLeaf().setPreviousLeaf(rightNode);
 		rightNode.setPreviousLeaf(this);
 		rightNode.setNextLeaf(tmp);
+		if (tmp != null) {
+			tmp.setPreviousLeaf(rightNode);
+		}
 
 		Entry<K, Node<K, T>> newChildEntry = new AbstractMap.SimpleEntry<K, Node<K, T>>(splitKey, rightNode);
 
 		return newChildEntry;
 	}
 
+	/**
+	 * Split an overflowed leaf into sizes.length nodes, keeping the first
+	 * sizes[0] entries here, and link the new nodes into the leaf chain.
+	 * 
+	 * @param sizes
+	 *            - The number of entries for each node, in order.
+	 * @return the splitting key and new node for each new right node
+	 */
+	public List<Entry<K, Node<K, T>>> splitNode(int[] sizes) {
+		return this.splitNode(sizes, null);
+	}
+
+	/**
+	 * Split an overflowed leaf as splitNode(sizes) does, taking the new nodes
+	 * from pool.
+	 * 
+	 * @param pool
+	 *            - Where to get the new nodes, or null to allocate them.
+	 */
+	public List<Entry<K, Node<K, T>>> splitNode(int[] sizes, NodePool<K, T> pool) {
+		List<Entry<K, Node<K, T>>> entries = new ArrayList<Entry<K, Node<K, T>>>(sizes.length - 1);
+		LeafNode<K, T> left = this;
+		int from = sizes[0];
+		for (int i = 1; i < sizes.length; i++) {
+			int to = from + sizes[i];
+			LeafNode<K, T> right = pool == null ? new LeafNode<K, T>(this.degree) : pool.leaf(this.degree);
+			for (int j = from; j < to; j++) {
+				right.addKey(this.getKey(j));
+				right.addValue(values.get(j));
+			}
+			right.setPreviousLeaf(left);
+			right.setNextLeaf(left.getNextLeaf());
+			if (left.getNextLeaf() != null) {
+				left.getNextLeaf().setPreviousLeaf(right);
+			}
+			left.setNextLeaf(right);
+			entries.add(new AbstractMap.SimpleEntry<K, Node<K, T>>(right.getKey(0), right));
+			left = right;
+			from = to;
+		}
+		this.getKeys(sizes[0], this.getNumKeys()).clear();
+		values.subList(sizes[0], values.size()).clear();
+		return entries;
+	}
+
 	@Override
 	public Entry<K, Node<K, T>> deleteChildEntry(Node<K, T> parentNode, Entry<K, Node<K, T>> entry,
-			Entry<K, Node<K, T>> oldChildEntry, Node<K, T> root) {
+			Entry<K, Node<K, T>> oldChildEntry, Node<K, T> root, TreeMetrics metrics, NodePool<K, T> pool) {
 		// Look for value to delete
-		for (int i = 0; i < this.getNumKeys(); i++) {
-			if (this.getKey(i) == entry.getKey()) {
-				this.removeKey(i);
-				this.removeValue(i);
-				break;
-			}
+		int i = this.findValueIndex(entry.getKey());
+		if (i != -1) {
+			this.removeKey(i);
+			this.removeValue(i);
 		}
 		// Usual case: no underflow
 		if (!this.isUnderflowed()) {
@@ -179,18 +301,22 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 		// Once in a while, the leaf becomes underflow
 		else {
 			// Return if root
-			if (this == root || this.getNumKeys() == 0) {
+			if (this == root) {
 				return oldChildEntry;
 			}
-			// Handle leaf underflow
+			// Handle leaf underflow with a sibling under the same parent. The
+			// deleted key routes to this leaf, so it gives our position
 			int splitKeyPos;
-			K firstKey = this.getKey(0);
-			K parentKey = parentNode.getKey(0);
+			IndexNode<K, T> parent = (IndexNode<K, T>) parentNode;
+			int s = parent.findChildIndex(entry.getKey());
 
-			if (this.getPreviousLeaf() != null && firstKey.compareTo(parentKey) >= 0) {
-				splitKeyPos = handleLeafNodeUnderflow(this.getPreviousLeaf(), this, (IndexNode<K, T>) parentNode);
+			if (s > 0) {
+				splitKeyPos = handleLeafNodeUnderflow((LeafNode<K, T>) parent.getChild(s - 1), this, parent, s);
 			} else {
-				splitKeyPos = handleLeafNodeUnderflow(this, this.getNextLeaf(), (IndexNode<K, T>) parentNode);
+				splitKeyPos = handleLeafNodeUnderflow(this, (LeafNode<K, T>) parent.getChild(s + 1), parent, s + 1);
+			}
+			if (metrics != null) {
+				(splitKeyPos == -1 ? metrics.leafRedistributions : metrics.leafMerges).increment();
 			}
 			// S has extra entries, set oldChildEntry to null, return
 			if (splitKeyPos == -1) {
@@ -198,7 +324,7 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 			}
 			// Merge leaf and S
 			else {
-				parentKey = parentNode.getKey(splitKeyPos);
+				K parentKey = parentNode.getKey(splitKeyPos);
 				oldChildEntry = new AbstractMap.SimpleEntry<K, Node<K, T>>(parentKey, parentNode);
 				return oldChildEntry;
 			}
@@ -214,19 +340,12 @@ public class LeafNode<K extends Comparable<K>, T> extends Node<K, T> {
 	 *            : the bigger node
 	 * @param parent
 	 *            : their parent index node
+	 * @param i
+	 *            : the position of the right node among parent's children
 	 * @return the splitkey position in parent if merged so that parent can
 	 *         delete the splitkey later on. -1 otherwise
 	 */
-	private int handleLeafNodeUnderflow(LeafNode<K, T> left, LeafNode<K, T> right, IndexNode<K, T> parent) {
-		// Find entry in parent for node on right
-		int i = 0;
-		K rKey = right.getKey(0);
-		while (i < parent.getNumKeys()) {
-			if (rKey.compareTo(parent.getKey(i)) < 0) {
-				break;
-			}
-			i++;
-		}
+	private int handleLeafNodeUnderflow(LeafNode<K, T> left, LeafNode<K, T> right, IndexNode<K, T> parent, int i) {
 		// Redistribute evenly between right and left nodes
 		// If S has extra entries
 		if (left.getNumKeys() + right.getNumKeys() >= 2 * this.degree) {
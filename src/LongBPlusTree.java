@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A B+ tree specialized for primitive long keys. It has the same operations
+ * and node layout rules as BPlusTree, but keys are stored in long[] arrays
+ * and children and values in plain arrays, so there is no boxing and no
+ * Comparable call on the lookup path.
+ */
+public class LongBPlusTree<T> {
+
+	private LongNode<T> root;
+	private int degree = 2;
+
+	// Index nodes and child positions along the last root-to-leaf descent
+	private LongIndexNode<T>[] path;
+	private int[] slots;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LongBPlusTree(int degree) {
+		this.degree = degree;
+		this.path = new LongIndexNode[8];
+		this.slots = new int[8];
+	}
+
+	public LongNode<T> getRoot() {
+		return root;
+	}
+
+	public int getDegree() {
+		return this.degree;
+	}
+
+	/**
+	 * Search the value for a specific key, and return the data at that key.
+	 * 
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(long key) {
+		LongLeafNode<T> leaf = findLeafNode(key);
+		if (leaf == null) return null;
+		return leaf.findValue(key);
+	}
+
+	private LongLeafNode<T> findLeafNode(long key) {
+		LongNode<T> node = root;
+		while (node != null && !node.isLeafNode) {
+			LongIndexNode<T> indexNode = (LongIndexNode<T>) node;
+			node = indexNode.getChild(indexNode.findChildIndex(key));
+		}
+		return (LongLeafNode<T>) node;
+	}
+
+	/**
+	 * Like findLeafNode, but records the index nodes and child positions on
+	 * the way down in path and slots.
+	 * 
+	 * @return the depth of the leaf, which is the number of entries in path
+	 */
+	private int descend(long key) {
+		LongNode<T> node = root;
+		int depth = 0;
+		while (!node.isLeafNode) {
+			LongIndexNode<T> indexNode = (LongIndexNode<T>) node;
+			int i = indexNode.findChildIndex(key);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+				slots = Arrays.copyOf(slots, 2 * depth);
+			}
+			path[depth] = indexNode;
+			slots[depth] = i;
+			depth++;
+			node = indexNode.getChild(i);
+		}
+		return depth;
+	}
+
+	private LongLeafNode<T> leafAt(int depth) {
+		if (depth == 0) return (LongLeafNode<T>) root;
+		return (LongLeafNode<T>) path[depth - 1].getChild(slots[depth - 1]);
+	}
+
+	/**
+	 * Performs a greater than or equal to range search on the tree.
+	 * 
+	 * @param key
+	 *            - The value to perform a >= search against.
+	 * @return The values of the items that had a key >= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> greaterThanEqualToKeySearch(long key) {
+		ArrayList<T> values = new ArrayList<T>();
+		LongLeafNode<T> leaf = findLeafNode(key);
+		if (leaf == null) return values;
+		for (int i = leaf.lowerBound(key); i < leaf.getNumKeys(); i++) {
+			values.add(leaf.getValue(i));
+		}
+		for (leaf = leaf.getNextLeaf(); leaf != null; leaf = leaf.getNextLeaf()) {
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				values.add(leaf.getValue(i));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Performs a less than or equal to range search on the tree.
+	 * 
+	 * @param key
+	 *            - The value to perform a <= search against.
+	 * @return The values of the items that had a key <= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> lessThanEqualToKeySearch(long key) {
+		ArrayList<T> values = new ArrayList<T>();
+		LongNode<T> node = root;
+		while (node != null && !node.isLeafNode) {
+			node = ((LongIndexNode<T>) node).getChild(0);
+		}
+		for (LongLeafNode<T> leaf = (LongLeafNode<T>) node; leaf != null; leaf = leaf.getNextLeaf()) {
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				if (leaf.getKey(i) > key) return values;
+				values.add(leaf.getValue(i));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Insert a key/value pair into the tree
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void insert(long key, T value) {
+		if (root == null) {
+			root = new LongLeafNode<T>(this.degree);
+		}
+		int depth = descend(key);
+		LongLeafNode<T> leaf = leafAt(depth);
+		leaf.insertSorted(key, value);
+
+		// Usual case: leaf has space
+		if (!leaf.isOverflowed()) {
+			return;
+		}
+		// Split the leaf, then push the new child up until a parent has room
+		LongNode<T> newChild = leaf.splitNode();
+		long splitKey = newChild.getKey(0);
+		while (depth > 0) {
+			depth--;
+			LongIndexNode<T> parent = path[depth];
+			parent.insertSorted(slots[depth], splitKey, newChild);
+			path[depth] = null;
+			if (!parent.isOverflowed()) {
+				clearPath(depth);
+				return;
+			}
+			splitKey = parent.getKey(parent.degree);
+			newChild = parent.splitNode();
+		}
+		// Root was just split
+		root = new LongIndexNode<T>(splitKey, root, newChild, this.degree);
+	}
+
+	/**
+	 * Delete a key/value pair from this tree
+	 * 
+	 * @param key
+	 */
+	public void delete(long key) {
+		if (root == null) {
+			return;
+		}
+		int depth = descend(key);
+		LongLeafNode<T> leaf = leafAt(depth);
+		int i = leaf.findValueIndex(key);
+		if (i == -1) {
+			clearPath(depth);
+			return;
+		}
+		leaf.remove(i);
+
+		// Walk back up while the node below is underflowed, merging with or
+		// borrowing from a sibling under the same parent
+		LongNode<T> node = leaf;
+		while (depth > 0 && node.isUnderflowed()) {
+			depth--;
+			LongIndexNode<T> parent = path[depth];
+			path[depth] = null;
+			int s = slots[depth] > 0 ? slots[depth] - 1 : 0;
+			boolean merged;
+			if (node.isLeafNode) {
+				merged = LongLeafNode.handleLeafNodeUnderflow((LongLeafNode<T>) parent.getChild(s),
+						(LongLeafNode<T>) parent.getChild(s + 1), parent, s);
+			} else {
+				merged = LongIndexNode.handleIndexNodeUnderflow((LongIndexNode<T>) parent.getChild(s),
+						(LongIndexNode<T>) parent.getChild(s + 1), parent, s);
+			}
+			if (merged) {
+				parent.remove(s);
+			}
+			node = parent;
+		}
+		clearPath(depth);
+
+		// Readjust the root
+		if (!root.isLeafNode && root.getNumKeys() == 0) {
+			root = ((LongIndexNode<T>) root).getChild(0);
+		}
+	}
+
+	// Drop references kept in path so removed nodes can be collected
+	private void clearPath(int depth) {
+		for (int i = 0; i < depth; i++) {
+			path[i] = null;
+		}
+	}
+}
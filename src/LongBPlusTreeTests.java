@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class LongBPlusTreeTests {
+
+	@Test
+	public void testSplitsLikeBPlusTree() {
+		long numbers[] = new long[] { 2, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(2);
+		for (long number : numbers) {
+			tree.insert(number, "" + number);
+		}
+		LongIndexNode<String> root = (LongIndexNode<String>) tree.getRoot();
+		assertEquals(1, root.getNumKeys());
+		assertEquals(10, root.getKey(0));
+
+		for (long number : numbers) {
+			assertEquals("" + number, tree.exactMatchSearch(number));
+		}
+		assertEquals(null, tree.exactMatchSearch(3));
+		assertEquals(null, tree.exactMatchSearch(99));
+	}
+
+	@Test
+	public void testSearchEmptyTree() {
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(2);
+		assertEquals(null, tree.exactMatchSearch(2));
+		assertEquals(0, tree.greaterThanEqualToKeySearch(2).size());
+		assertEquals(0, tree.lessThanEqualToKeySearch(2).size());
+		tree.delete(2);
+	}
+
+	@Test
+	public void testRangeSearch() {
+		LongBPlusTree<Long> tree = new LongBPlusTree<Long>(2);
+		for (long i = 0; i < 100; i += 2) {
+			tree.insert(i, i);
+		}
+		List<Long> greater = tree.greaterThanEqualToKeySearch(91);
+		assertArrayEquals(new Long[] { 92L, 94L, 96L, 98L }, greater.toArray(new Long[0]));
+		List<Long> less = tree.lessThanEqualToKeySearch(8);
+		assertArrayEquals(new Long[] { 0L, 2L, 4L, 6L, 8L }, less.toArray(new Long[0]));
+		assertEquals(50, tree.greaterThanEqualToKeySearch(-1).size());
+		assertEquals(0, tree.lessThanEqualToKeySearch(-1).size());
+	}
+
+	// Random inserts and deletes checked against a TreeMap
+	@Test
+	public void testRandomAgainstTreeMap() {
+		Random random = new Random(333);
+		for (int degree : new int[] { 1, 2, 3, 16 }) {
+			LongBPlusTree<Long> tree = new LongBPlusTree<Long>(degree);
+			TreeMap<Long, Long> expected = new TreeMap<Long, Long>();
+			for (int i = 0; i < 20000; i++) {
+				long key = random.nextInt(5000);
+				if (random.nextInt(3) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, key * 10);
+					expected.put(key, key * 10);
+				}
+			}
+			testNodeInvariants(tree.getRoot(), true);
+			for (long key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			assertEquals(new ArrayList<Long>(expected.tailMap(2500L).values()), tree.greaterThanEqualToKeySearch(2500));
+			assertEquals(new ArrayList<Long>(expected.headMap(2500L, true).values()),
+					tree.lessThanEqualToKeySearch(2500));
+
+			// Delete everything that is left
+			ArrayList<Long> keys = new ArrayList<Long>(expected.keySet());
+			Collections.shuffle(keys, random);
+			for (long key : keys) {
+				tree.delete(key);
+			}
+			assertEquals(0, tree.getRoot().getNumKeys());
+			assertTrue(tree.getRoot().isLeafNode);
+		}
+	}
+
+	@Test
+	public void testLargeCase() throws FileNotFoundException {
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(8);
+		Map<Long, String> expected = new TreeMap<Long, String>();
+		Scanner s = new Scanner(new File(System.getProperty("user.dir") + "/bin/largeCase1.txt"));
+		try {
+			while (s.hasNextLong()) {
+				long key = s.nextLong();
+				String value = s.next();
+				tree.insert(key, value);
+				expected.put(key, value);
+			}
+		} finally {
+			s.close();
+		}
+		for (Map.Entry<Long, String> entry : expected.entrySet()) {
+			assertEquals(entry.getValue(), tree.exactMatchSearch(entry.getKey()));
+		}
+		String[] expecteds = { "930204Data", "939488Data", "942874Data", "953121Data", "995513Data" };
+		assertArrayEquals(expecteds, tree.greaterThanEqualToKeySearch(930203).toArray(new String[0]));
+	}
+
+	public <T> void testNodeInvariants(LongNode<T> node, boolean isRoot) {
+		assertFalse(node.getNumKeys() > 2 * node.degree);
+		assertFalse(!isRoot && node.getNumKeys() < node.degree);
+		for (int i = 1; i < node.getNumKeys(); i++) {
+			assertTrue(node.getKey(i - 1) < node.getKey(i));
+		}
+		if (!(node.isLeafNode)) {
+			LongIndexNode<T> index = (LongIndexNode<T>) node;
+			for (int i = 0; i < index.getNumChildren(); i++)
+				testNodeInvariants(index.getChild(i), false);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+public class LongIndexNode<T> extends LongNode<T> {
+
+	// m keys, m+1 children
+	private LongNode<T>[] children;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LongIndexNode(int degree) {
+		super(degree);
+		isLeafNode = false;
+		children = new LongNode[2 * degree + 2];
+	}
+
+	public LongIndexNode(long key, LongNode<T> child0, LongNode<T> child1, int degree) {
+		this(degree);
+		keys[0] = key;
+		children[0] = child0;
+		children[1] = child1;
+		numKeys = 1;
+	}
+
+	public LongNode<T> getChild(int i) {
+		return children[i];
+	}
+
+	public int getNumChildren() {
+		return numKeys + 1;
+	}
+
+	public void replaceKey(int i, long key) {
+		keys[i] = key;
+	}
+
+	/**
+	 * Index of the child whose subtree should hold the given key: the child i
+	 * such that K(i-1) <= key < K(i).
+	 */
+	public int findChildIndex(long key) {
+		return upperBound(key);
+	}
+
+	/**
+	 * insert key at position i and child to the right of it, at i + 1
+	 */
+	public void insertSorted(int i, long key, LongNode<T> child) {
+		System.arraycopy(keys, i, keys, i + 1, numKeys - i);
+		System.arraycopy(children, i + 1, children, i + 2, numKeys - i);
+		keys[i] = key;
+		children[i + 1] = child;
+		numKeys++;
+	}
+
+	/**
+	 * remove key i and the child to the right of it, at i + 1
+	 */
+	public void remove(int i) {
+		numKeys--;
+		System.arraycopy(keys, i + 1, keys, i, numKeys - i);
+		System.arraycopy(children, i + 2, children, i + 1, numKeys - i);
+		children[numKeys + 1] = null;
+	}
+
+	/**
+	 * Split an overflowed index node. The first D keys and D+1 children stay,
+	 * the last D keys and D+1 children move to the returned right node, and
+	 * the key in between is dropped from both: callers read it with
+	 * getKey(degree) before splitting and push it up to the parent.
+	 * 
+	 * @return the new right node
+	 */
+	public LongIndexNode<T> splitNode() {
+		LongIndexNode<T> rightNode = new LongIndexNode<T>(this.degree);
+		int moved = numKeys - this.degree - 1;
+		System.arraycopy(keys, this.degree + 1, rightNode.keys, 0, moved);
+		System.arraycopy(children, this.degree + 1, rightNode.children, 0, moved + 1);
+		rightNode.numKeys = moved;
+		for (int i = this.degree + 1; i <= numKeys; i++) {
+			children[i] = null;
+		}
+		numKeys = this.degree;
+		return rightNode;
+	}
+
+	/**
+	 * Handle IndexNode Underflow (merge or redistribution)
+	 * 
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	public static <T> boolean handleIndexNodeUnderflow(LongIndexNode<T> left, LongIndexNode<T> right,
+			LongIndexNode<T> parent, int i) {
+		int degree = left.degree;
+		if (left.numKeys + right.numKeys >= 2 * degree) {
+			// Left node has more entries, rotate through the parent
+			while (left.numKeys > degree) {
+				right.insertFirst(parent.keys[i], left.children[left.numKeys]);
+				parent.keys[i] = left.keys[left.numKeys - 1];
+				left.children[left.numKeys] = null;
+				left.numKeys--;
+			}
+			// Right node has more entries
+			while (left.numKeys < degree) {
+				left.keys[left.numKeys] = parent.keys[i];
+				left.children[left.numKeys + 1] = right.children[0];
+				left.numKeys++;
+				parent.keys[i] = right.keys[0];
+				right.removeFirst();
+			}
+			return false;
+		}
+		// Pull the splitting key down and move everything from right to left
+		left.keys[left.numKeys] = parent.keys[i];
+		System.arraycopy(right.keys, 0, left.keys, left.numKeys + 1, right.numKeys);
+		System.arraycopy(right.children, 0, left.children, left.numKeys + 1, right.numKeys + 1);
+		left.numKeys += right.numKeys + 1;
+		right.numKeys = 0;
+		return true;
+	}
+
+	private void insertFirst(long key, LongNode<T> child) {
+		System.arraycopy(keys, 0, keys, 1, numKeys);
+		System.arraycopy(children, 0, children, 1, numKeys + 1);
+		keys[0] = key;
+		children[0] = child;
+		numKeys++;
+	}
+
+	private void removeFirst() {
+		numKeys--;
+		System.arraycopy(keys, 1, keys, 0, numKeys);
+		System.arraycopy(children, 1, children, 0, numKeys + 1);
+		children[numKeys + 1] = null;
+	}
+}
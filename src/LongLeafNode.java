@@ -0,0 +1,160 @@
+public class LongLeafNode<T> extends LongNode<T> {
+	private Object[] values;
+	private LongLeafNode<T> nextLeaf;
+	private LongLeafNode<T> previousLeaf;
+
+	public LongLeafNode(int degree) {
+		super(degree);
+		isLeafNode = true;
+		values = new Object[2 * degree + 1];
+	}
+
+	/**
+	 * insert key/value into this node so that it still remains sorted
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void insertSorted(long key, T value) {
+		insert(upperBound(key), key, value);
+	}
+
+	/**
+	 * Index of the given key in this node, or -1 if it is not here.
+	 */
+	public int findValueIndex(long key) {
+		int i = lowerBound(key);
+		if (i < numKeys && keys[i] == key) return i;
+		return -1;
+	}
+
+	public T findValue(long key) {
+		int i = findValueIndex(key);
+		if (i == -1) return null;
+		return getValue(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int i) {
+		return (T) values[i];
+	}
+
+	public void insert(int i, long key, T value) {
+		System.arraycopy(keys, i, keys, i + 1, numKeys - i);
+		System.arraycopy(values, i, values, i + 1, numKeys - i);
+		keys[i] = key;
+		values[i] = value;
+		numKeys++;
+	}
+
+	public void remove(int i) {
+		numKeys--;
+		System.arraycopy(keys, i + 1, keys, i, numKeys - i);
+		System.arraycopy(values, i + 1, values, i, numKeys - i);
+		values[numKeys] = null;
+	}
+
+	public LongLeafNode<T> getNextLeaf() {
+		return this.nextLeaf;
+	}
+
+	public LongLeafNode<T> getPreviousLeaf() {
+		return this.previousLeaf;
+	}
+
+	public void setNextLeaf(LongLeafNode<T> node) {
+		this.nextLeaf = node;
+	}
+
+	public void setPreviousLeaf(LongLeafNode<T> node) {
+		this.previousLeaf = node;
+	}
+
+	/**
+	 * Split an overflowed leaf node. The first D entries stay, the rest move
+	 * to the returned right node, whose first key is the splitting key.
+	 * 
+	 * @return the new right node
+	 */
+	public LongLeafNode<T> splitNode() {
+		LongLeafNode<T> rightNode = new LongLeafNode<T>(this.degree);
+		int moved = numKeys - this.degree;
+		System.arraycopy(keys, this.degree, rightNode.keys, 0, moved);
+		System.arraycopy(values, this.degree, rightNode.values, 0, moved);
+		rightNode.numKeys = moved;
+		for (int i = this.degree; i < numKeys; i++) {
+			values[i] = null;
+		}
+		numKeys = this.degree;
+
+		// Set sibling pointers
+		rightNode.nextLeaf = this.nextLeaf;
+		if (this.nextLeaf != null) {
+			this.nextLeaf.previousLeaf = rightNode;
+		}
+		rightNode.previousLeaf = this;
+		this.nextLeaf = rightNode;
+		return rightNode;
+	}
+
+	/**
+	 * Handle LeafNode Underflow (merge or redistribution)
+	 * 
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	public static <T> boolean handleLeafNodeUnderflow(LongLeafNode<T> left, LongLeafNode<T> right,
+			LongIndexNode<T> parent, int i) {
+		int degree = left.degree;
+		// Redistribute evenly between right and left nodes
+		if (left.numKeys + right.numKeys >= 2 * degree) {
+			if (left.numKeys > right.numKeys) {
+				int moved = left.numKeys - degree;
+				System.arraycopy(right.keys, 0, right.keys, moved, right.numKeys);
+				System.arraycopy(right.values, 0, right.values, moved, right.numKeys);
+				System.arraycopy(left.keys, degree, right.keys, 0, moved);
+				System.arraycopy(left.values, degree, right.values, 0, moved);
+				for (int j = degree; j < left.numKeys; j++) {
+					left.values[j] = null;
+				}
+				right.numKeys += moved;
+				left.numKeys = degree;
+			} else {
+				int moved = degree - left.numKeys;
+				System.arraycopy(right.keys, 0, left.keys, left.numKeys, moved);
+				System.arraycopy(right.values, 0, left.values, left.numKeys, moved);
+				left.numKeys += moved;
+				right.numKeys -= moved;
+				System.arraycopy(right.keys, moved, right.keys, 0, right.numKeys);
+				System.arraycopy(right.values, moved, right.values, 0, right.numKeys);
+				for (int j = right.numKeys; j < right.numKeys + moved; j++) {
+					right.values[j] = null;
+				}
+			}
+			// Replace key value in parent entry by low-key in right node
+			parent.replaceKey(i, right.keys[0]);
+			return false;
+		}
+		// Move all entries from right to left node
+		System.arraycopy(right.keys, 0, left.keys, left.numKeys, right.numKeys);
+		System.arraycopy(right.values, 0, left.values, left.numKeys, right.numKeys);
+		left.numKeys += right.numKeys;
+		right.numKeys = 0;
+
+		// Adjust sibling pointers
+		if (right.nextLeaf != null) {
+			right.nextLeaf.previousLeaf = left;
+		}
+		left.nextLeaf = right.nextLeaf;
+		return true;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Base class for the nodes of a LongBPlusTree. Keys are kept in a primitive
+ * array sized for one entry more than a full node, so a node can hold the
+ * overflowing entry until it is split.
+ */
+public abstract class LongNode<T> {
+	protected boolean isLeafNode;
+	protected long[] keys;
+	protected int numKeys;
+	protected int degree;
+
+	public LongNode(int degree) {
+		this.degree = degree;
+		this.keys = new long[2 * degree + 1];
+	}
+
+	public boolean isOverflowed() {
+		return numKeys > 2 * degree;
+	}
+
+	public boolean isUnderflowed() {
+		return numKeys < degree;
+	}
+
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	public long getKey(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * Index of the first key that is strictly greater than the given key, or
+	 * getNumKeys() if there is none.
+	 */
+	public int upperBound(long key) {
+		int low = 0, high = numKeys;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] <= key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Index of the first key that is greater than or equal to the given key,
+	 * or getNumKeys() if there is none.
+	 */
+	public int lowerBound(long key) {
+		int low = 0, high = numKeys;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (keys[mid] < key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,29 @@
+import java.util.function.IntPredicate;
+
+/**
+ * Evicts the least recently used page.
+ */
+public class LruEviction implements EvictionPolicy {
+	private FrameList recent = new FrameList(0);
+
+	public void reset(int frames) {
+		recent = new FrameList(frames);
+	}
+
+	public void loaded(int frame, int page) {
+		recent.addFirst(frame);
+	}
+
+	public void accessed(int frame) {
+		recent.remove(frame);
+		recent.addFirst(frame);
+	}
+
+	public void removed(int frame) {
+		recent.remove(frame);
+	}
+
+	public int victim(IntPredicate evictable) {
+		return recent.removeLast(evictable);
+	}
+}
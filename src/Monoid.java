@@ -0,0 +1,45 @@
+/**
+ * An associative way of combining values, with an identity, such as a sum,
+ * minimum or maximum. An augmented BPlusTree keeps the combined values
+ * under each child of its index nodes, so that aggregateRange can combine a
+ * range from O(log n) of them.
+ *
+ * combine must be associative, but need not be commutative: values are
+ * always combined in key order.
+ */
+public interface Monoid<T, A> {
+
+	/**
+	 * @return the aggregate of no values
+	 */
+	A identity();
+
+	/**
+	 * @return the aggregate of a single value
+	 */
+	A of(T value);
+
+	/**
+	 * @return the aggregate of the values of left followed by those of right
+	 */
+	A combine(A left, A right);
+
+	/**
+	 * @return the sum of the values as a long
+	 */
+	static <T extends Number> Monoid<T, Long> longSum() {
+		return new Monoid<T, Long>() {
+			public Long identity() {
+				return 0L;
+			}
+
+			public Long of(T value) {
+				return value.longValue();
+			}
+
+			public Long combine(Long left, Long right) {
+				return left + right;
+			}
+		};
+	}
+}
@@ -9,8 +9,20 @@ public abstract class Node<K extends Comparable<K>, T> {
 	protected int degree;
 
 	public Node(int degree) {
+		// Room for the extra key held just before a split
+		this(degree, 2 * degree + 1);
+	}
+
+	/**
+	 * @param capacity
+	 *            - The number of keys to make room for. Leaves are always
+	 *            presized for a full node, so that inserts which do not split
+	 *            them allocate nothing; index nodes, which only change when a
+	 *            child splits or merges, start out sized to their contents.
+	 */
+	Node(int degree, int capacity) {
 		this.degree = degree;
-		keys = new ArrayList<K>();
+		keys = new ArrayList<K>(capacity);
 	}
 
 	public boolean isOverflowed() {
@@ -33,6 +45,15 @@ public abstract class Node<K extends Comparable<K>, T> {
 		return this.keys.remove(i);
 	}
 	
+	/**
+	 * Make room for a full node, 2 * degree + 1 keys while it is being split,
+	 * in one step. Called before an index node takes a new key, so one sized
+	 * to its contents grows once rather than a little at a time.
+	 */
+	protected void reserve() {
+		keys.ensureCapacity(2 * degree + 1);
+	}
+
 	public void addKey(int i, K key) {
 		this.keys.add(i, key);
 	}
@@ -45,6 +66,10 @@ public abstract class Node<K extends Comparable<K>, T> {
 		this.keys.addAll(keys);
 	}
 
+	public List<K> getKeys(int from, int to) {
+		return this.keys.subList(from, to);
+	}
+
 	public ListIterator<K> getKeyIterator() {
 		return this.keys.listIterator();
 	}
@@ -52,9 +77,20 @@ public abstract class Node<K extends Comparable<K>, T> {
 	public void replaceKey(int i, K key) {
 		this.keys.set(i, key);
 	}
+
+	// Drop every key, keeping the room for them
+	void clearKeys() {
+		this.keys.clear();
+	}
 	
 	
+	/**
+	 * @param metrics
+	 *            - Where to count merges and redistributions, or null.
+	 * @param pool
+	 *            - Where to put nodes emptied by merges, or null.
+	 */
 	public abstract Entry<K, Node<K,T>> deleteChildEntry(Node<K,T> parentNode, Entry<K, Node<K,T>> entry, 
-			Entry<K, Node<K,T>> oldChildEntry, Node<K,T> root);
+			Entry<K, Node<K,T>> oldChildEntry, Node<K,T> root, TreeMetrics metrics, NodePool<K, T> pool);
 
 }
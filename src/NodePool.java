@@ -0,0 +1,154 @@
+import java.util.ArrayDeque;
+
+/**
+ * Nodes emptied by merges, kept by a BPlusTree to be reused by later splits
+ * instead of being left to the garbage collector. A recycled node keeps the
+ * arrays behind its key, value and child lists, which are sized for a full
+ * node, so under steady churn a split allocates little more than the entry
+ * it returns.
+ *
+ * At most capacity nodes of each kind are kept; any more emptied nodes are
+ * dropped as before. Like the tree, a pool is not thread-safe.
+ */
+public class NodePool<K extends Comparable<K>, T> {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final int capacity;
+	private final ArrayDeque<LeafNode<K, T>> leaves;
+	private final ArrayDeque<IndexNode<K, T>> indexNodes;
+
+	private long reused;
+	private long allocated;
+	private long recycled;
+	private long dropped;
+
+	/**
+	 * @param capacity
+	 *            - The most leaves, and index nodes, to keep.
+	 */
+	public NodePool(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative");
+		}
+		this.capacity = capacity;
+		this.leaves = new ArrayDeque<LeafNode<K, T>>(Math.min(capacity, 1024));
+		this.indexNodes = new ArrayDeque<IndexNode<K, T>>(Math.min(capacity, 1024));
+	}
+
+	/**
+	 * @param degree
+	 *            - The degree of the tree's leaves, which every leaf kept
+	 *            has too.
+	 * @return an empty leaf, recycled if one is kept
+	 */
+	LeafNode<K, T> leaf(int degree) {
+		LeafNode<K, T> leaf = leaves.pollLast();
+		if (leaf == null) {
+			allocated++;
+			return new LeafNode<K, T>(degree);
+		}
+		checkDegree(leaf, degree);
+		reused++;
+		return leaf;
+	}
+
+	/**
+	 * @param degree
+	 *            - The degree of the tree's index nodes, which every index
+	 *            node kept has too.
+	 * @return an empty index node, recycled if one is kept
+	 */
+	IndexNode<K, T> indexNode(int degree) {
+		IndexNode<K, T> index = indexNodes.pollLast();
+		if (index == null) {
+			allocated++;
+			return new IndexNode<K, T>(degree);
+		}
+		checkDegree(index, degree);
+		reused++;
+		return index;
+	}
+
+	// A pool serves one tree, whose leaf and index degrees never change, so
+	// a recycled node of another degree means the pool was shared
+	private static void checkDegree(Node<?, ?> node, int degree) {
+		if (node.degree != degree) {
+			throw new IllegalArgumentException("Pooled node has degree " + node.degree + ", not " + degree);
+		}
+	}
+
+	/**
+	 * Keep a node that has been emptied and unlinked from the tree, if there
+	 * is room for it.
+	 */
+	void release(Node<K, T> node) {
+		ArrayDeque<? extends Node<K, T>> kept = node.isLeafNode ? leaves : indexNodes;
+		if (kept.size() == capacity) {
+			dropped++;
+			return;
+		}
+		recycled++;
+		if (node.isLeafNode) {
+			LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+			leaf.clear();
+			leaves.addLast(leaf);
+		} else {
+			IndexNode<K, T> index = (IndexNode<K, T>) node;
+			index.clear();
+			indexNodes.addLast(index);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of leaves kept for reuse
+	 */
+	public int getLeafCount() {
+		return leaves.size();
+	}
+
+	/**
+	 * @return the number of index nodes kept for reuse
+	 */
+	public int getIndexNodeCount() {
+		return indexNodes.size();
+	}
+
+	/**
+	 * @return the number of nodes handed out that had been recycled
+	 */
+	public long getReused() {
+		return reused;
+	}
+
+	/**
+	 * @return the number of nodes handed out that had to be allocated
+	 */
+	public long getAllocated() {
+		return allocated;
+	}
+
+	/**
+	 * @return the number of emptied nodes kept for reuse
+	 */
+	public long getRecycled() {
+		return recycled;
+	}
+
+	/**
+	 * @return the number of emptied nodes dropped because the pool was full
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	@Override
+	public String toString() {
+		return "leaves=" + leaves.size() + " indexNodes=" + indexNodes.size() + " reused=" + reused + " allocated="
+				+ allocated + " recycled=" + recycled + " dropped=" + dropped;
+	}
+}
@@ -0,0 +1,120 @@
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NodePoolTests {
+
+	// Churn of short-lived keys: a sliding window of live keys, inserted at
+	// the front and deleted at the back
+	private static void churn(BPlusTree<Integer, Integer> tree, int from, int to, int window) {
+		for (int key = from; key < to; key++) {
+			tree.insert(key, key);
+			if (key - window >= 0) {
+				tree.delete(key - window);
+			}
+		}
+	}
+
+	// Recycled nodes must give exactly the tree fresh nodes would
+	@Test
+	public void testSameTreeAsWithoutPool() {
+		for (int degree : new int[] { 1, 2, 7 }) {
+			BPlusTree<Integer, Integer> plain = new BPlusTree<Integer, Integer>(degree);
+			BPlusTree<Integer, Integer> pooled = new BPlusTree<Integer, Integer>(degree);
+			NodePool<Integer, Integer> pool = pooled.enableNodePool();
+			Random random = new Random(degree);
+			for (int i = 0; i < 20000; i++) {
+				int key = random.nextInt(2000);
+				if (random.nextInt(2) == 0 && plain.exactMatchSearch(key) == null) {
+					plain.insert(key, i);
+					pooled.insert(key, i);
+				} else {
+					plain.delete(key);
+					pooled.delete(key);
+				}
+				if (i % 5000 == 0) {
+					Integer[] batch = new Integer[50];
+					for (int j = 0; j < batch.length; j++) {
+						batch[j] = 10000 + i + j;
+					}
+					plain.insertAll(batch, batch);
+					pooled.insertAll(batch, batch);
+				}
+			}
+			assertEquals(Utils.outputTree(plain), Utils.outputTree(pooled));
+			assertEquals(plain.greaterThanEqualToKeySearch(0), pooled.greaterThanEqualToKeySearch(0));
+			assertEquals(plain.lessThanEqualToKeySearch(100000), pooled.lessThanEqualToKeySearch(100000));
+			assertTrue(pool.getReused() > 0);
+		}
+	}
+
+	@Test
+	public void testSteadyChurnReusesNodes() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(4);
+		NodePool<Integer, Integer> pool = tree.enableNodePool(64);
+		churn(tree, 0, 10000, 1000);
+		long allocated = pool.getAllocated();
+		churn(tree, 10000, 50000, 1000);
+		// Once the window has been through the tree, splits find nodes
+		// freed by merges
+		assertTrue(pool.getAllocated() - allocated < 10);
+		assertTrue(pool.getReused() > 1000);
+		assertTrue(pool.getLeafCount() <= 64 && pool.getIndexNodeCount() <= 64);
+		assertEquals(pool.getRecycled(), pool.getReused() + pool.getLeafCount() + pool.getIndexNodeCount());
+		assertEquals(0, pool.getDropped());
+		assertSame(pool, tree.getNodePool());
+		tree.disableNodePool();
+		assertNull(tree.getNodePool());
+	}
+
+	@Test
+	public void testFullPoolDropsNodes() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		NodePool<Integer, Integer> pool = tree.enableNodePool(0);
+		churn(tree, 0, 500, 200);
+		for (int key = 300; key < 500; key++) {
+			tree.delete(key);
+		}
+		assertEquals(0, pool.getReused());
+		assertEquals(0, pool.getRecycled());
+		assertTrue(pool.getDropped() > 0);
+		assertTrue(tree.getRoot().isLeafNode);
+	}
+
+	// Recycled index nodes are augmented afresh
+	@Test
+	public void testAugmentedTree() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		tree.enableNodePool();
+		tree.augment(Monoid.<Integer> longSum());
+		churn(tree, 0, 20000, 500);
+		assertEquals(500, tree.countRange(null, true, null, true));
+		assertEquals(Integer.valueOf(19600), tree.select(100));
+		long sum = 0;
+		for (int key = 19500; key < 20000; key++) {
+			sum += key;
+		}
+		assertEquals(Long.valueOf(sum), tree.aggregateRange(null, true, null, true));
+	}
+
+	// Leaves and index nodes of different degrees are each recycled as
+	// their own kind
+	@Test
+	public void testSeparateDegrees() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(8, 2);
+		NodePool<Integer, Integer> pool = tree.enableNodePool();
+		churn(tree, 0, 20000, 500);
+		assertTrue(pool.getReused() > 0);
+		assertEquals(Integer.valueOf(19999), tree.exactMatchSearch(19999));
+		assertEquals(500, tree.greaterThanEqualToKeySearch(0).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDegreeMismatch() {
+		NodePool<Integer, Integer> pool = new NodePool<Integer, Integer>(4);
+		pool.release(new LeafNode<Integer, Integer>(3));
+		pool.leaf(5);
+	}
+}
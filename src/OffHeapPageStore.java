@@ -0,0 +1,147 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * A PageStore held in direct memory, outside the Java heap. A
+ * PagedBPlusTree on top of it keeps its keys, values and child pointers
+ * off-heap, and its nodes are page ids rather than objects, so the garbage
+ * collector has nothing to trace however large the tree grows: the heap holds
+ * one ByteBuffer per slab and nothing per node.
+ *
+ * Pages are carved out of slabs of slabPages pages each, allocated with
+ * ByteBuffer.allocateDirect as the store grows. Freed pages are chained
+ * through their first four bytes, like in a PageFile, and handed out again
+ * before a new slab is allocated. Nothing is persisted: flush does nothing
+ * and close drops the slabs, which returns their memory once they are
+ * collected. The total size is limited by -XX:MaxDirectMemorySize.
+ */
+public class OffHeapPageStore implements PageStore {
+
+	// Pages per slab by default, 4MB of default-sized pages
+	public static final int DEFAULT_SLAB_PAGES = 1024;
+
+	private final int pageSize;
+	private final int slabPages;
+	private final ArrayList<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+	private int pageCount;
+	// The first free page, 0 if there is none
+	private int freeList;
+
+	/**
+	 * Create an empty store of default-sized pages.
+	 */
+	public OffHeapPageStore() {
+		this(PageFile.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Create an empty store of pages of the given size.
+	 */
+	public OffHeapPageStore(int pageSize) {
+		this(pageSize, DEFAULT_SLAB_PAGES);
+	}
+
+	/**
+	 * Create an empty store of pages of the given size, allocated slabPages
+	 * at a time.
+	 *
+	 * @param pageSize
+	 *            - The size of a page, a multiple of 8, at least 32.
+	 * @param slabPages
+	 *            - The number of pages in each slab of direct memory.
+	 */
+	public OffHeapPageStore(int pageSize, int slabPages) {
+		if (pageSize < 2 * PageFile.HEADER_SIZE || pageSize % 8 != 0) {
+			throw new IllegalArgumentException("Page size must be a multiple of 8, at least 32: " + pageSize);
+		}
+		if (slabPages < 1 || (long) slabPages * pageSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A slab must hold between 1 page and 2GB: " + slabPages);
+		}
+		this.pageSize = pageSize;
+		this.slabPages = slabPages;
+		// The header page
+		slabs.add(ByteBuffer.allocateDirect(slabPages * pageSize));
+		pageCount = 1;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return the number of bytes of direct memory taken by the slabs
+	 */
+	public long getCapacity() {
+		return (long) slabs.size() * slabPages * pageSize;
+	}
+
+	/**
+	 * Returns the slab holding the given page, which starts at offset(id), so
+	 * that pinning allocates nothing. Pages live in memory only, so they do
+	 * not need to be unpinned.
+	 *
+	 * @param id
+	 *            - The page to read.
+	 */
+	public ByteBuffer pin(int id) {
+		if (id < 0 || id >= pageCount) {
+			throw new IllegalArgumentException("No such page: " + id);
+		}
+		return slabs.get(id / slabPages);
+	}
+
+	public int offset(int id) {
+		return (id % slabPages) * pageSize;
+	}
+
+	public void unpin(int id, boolean dirty) {
+	}
+
+	public int allocate() {
+		int id = freeList;
+		if (id != 0) {
+			ByteBuffer slab = pin(id);
+			int offset = offset(id);
+			freeList = slab.getInt(offset);
+			for (int i = 0; i < pageSize; i += 8) {
+				slab.putLong(offset + i, 0);
+			}
+			return id;
+		}
+		if (pageCount == Integer.MAX_VALUE) {
+			throw new IllegalStateException("The store is full");
+		}
+		id = pageCount;
+		// Direct buffers start out zeroed
+		if (id == (long) slabs.size() * slabPages) {
+			slabs.add(ByteBuffer.allocateDirect(slabPages * pageSize));
+		}
+		pageCount++;
+		return id;
+	}
+
+	public void free(int id) {
+		if (id == 0) {
+			throw new IllegalArgumentException("Cannot free the header page");
+		}
+		pin(id).putInt(offset(id), freeList);
+		freeList = id;
+	}
+
+	public void flush() {
+	}
+
+	/**
+	 * Drop the slabs. Their memory is returned once the buffers are
+	 * collected, and the store cannot be used any more.
+	 */
+	public void close() {
+		slabs.clear();
+		pageCount = 0;
+		freeList = 0;
+	}
+}
@@ -0,0 +1,110 @@
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class OffHeapPageStoreTests {
+
+	@Test
+	public void testPagesAcrossSlabs() {
+		OffHeapPageStore pages = new OffHeapPageStore(64, 4);
+		assertEquals(1, pages.getPageCount());
+		for (int i = 1; i < 10; i++) {
+			assertEquals(i, pages.allocate());
+			pages.pin(i).putInt(pages.offset(i) + 60, i);
+		}
+		assertEquals(10, pages.getPageCount());
+		assertEquals(3 * 4 * 64, pages.getCapacity());
+		for (int i = 1; i < 10; i++) {
+			ByteBuffer slab = pages.pin(i);
+			assertEquals(4 * 64, slab.capacity());
+			assertEquals(i % 4 * 64, pages.offset(i));
+			assertEquals(i, slab.getInt(pages.offset(i) + 60));
+		}
+		// Pages in the same slab share its buffer
+		assertSame(pages.pin(4), pages.pin(7));
+		pages.close();
+	}
+
+	@Test
+	public void testFreedPagesAreReusedZeroed() {
+		OffHeapPageStore pages = new OffHeapPageStore(64, 4);
+		for (int i = 1; i < 6; i++) {
+			pages.allocate();
+			pages.pin(i).putLong(pages.offset(i) + 8, -1);
+		}
+		pages.free(2);
+		pages.free(5);
+		assertEquals(5, pages.allocate());
+		assertEquals(2, pages.allocate());
+		assertEquals(0, pages.pin(2).getLong(pages.offset(2)));
+		assertEquals(0, pages.pin(2).getLong(pages.offset(2) + 8));
+		assertEquals(6, pages.allocate());
+		assertEquals(7, pages.getPageCount());
+	}
+
+	// Pins are on the path of every tree operation
+	@Test
+	public void testPinsDoNotAllocate() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		OffHeapPageStore pages = new OffHeapPageStore(64, 16);
+		for (int i = 1; i < 100; i++) {
+			pages.allocate();
+		}
+		long allocated = Long.MAX_VALUE;
+		long sum = 0;
+		for (int run = 0; run < 5; run++) {
+			long before = threads.getThreadAllocatedBytes(thread);
+			for (int id = 1; id < 100; id++) {
+				sum += pages.pin(id).getInt(pages.offset(id));
+				pages.unpin(id, false);
+			}
+			allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+		}
+		assertEquals(0, allocated);
+		assertEquals(0, sum);
+		pages.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoSuchPage() {
+		new OffHeapPageStore().pin(1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFreeHeader() {
+		new OffHeapPageStore().free(0);
+	}
+
+	// A PagedBPlusTree kept entirely in direct memory
+	@Test
+	public void testPagedTree() {
+		OffHeapPageStore pages = new OffHeapPageStore(256, 16);
+		PagedBPlusTree<Integer, Long> tree = new PagedBPlusTree<Integer, Long>(pages, Codec.INTEGER, Codec.LONG);
+		TreeMap<Integer, Long> expected = new TreeMap<Integer, Long>();
+		Random random = new Random(23);
+		for (int i = 0; i < 50000; i++) {
+			int key = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				tree.delete(key);
+				expected.remove(key);
+			} else if (!expected.containsKey(key)) {
+				tree.insert(key, -(long) key);
+				expected.put(key, -(long) key);
+			}
+		}
+		assertEquals(expected.size(), tree.size());
+		for (int key = 0; key < 5000; key++) {
+			assertEquals(expected.get(key), tree.exactMatchSearch(key));
+		}
+		assertEquals(new ArrayList<Long>(expected.values()), tree.greaterThanEqualToKeySearch(-1));
+		pages.close();
+	}
+}
@@ -0,0 +1,233 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.IntPredicate;
+
+/**
+ * A buffer pool in front of another PageStore, usually a PageFile. At most
+ * memoryBudget / pageSize pages are resident, each in its own frame. A page is
+ * copied into a frame when it is first pinned, and copied back to the store
+ * when it is evicted or flushed, but only if it was unpinned dirty. Pinned
+ * pages are never evicted, so the budget has to cover every page that one
+ * tree operation pins at once, a few per level of the tree.
+ *
+ * Which page to evict is left to an EvictionPolicy, for example LruEviction,
+ * ClockEviction or TwoQueueEviction. The hit, miss and eviction counters show
+ * how well the budget fits the working set.
+ *
+ * The header page is shared with the store's own bookkeeping, so it is passed
+ * straight through to the store instead of being copied into a frame.
+ */
+public class PageCache implements PageStore {
+
+	private final PageStore store;
+	private final EvictionPolicy policy;
+	private final ByteBuffer[] frames;
+	private final int[] pageOf;
+	private final int[] pins;
+	private final boolean[] dirty;
+	// Page id to frame, without boxing on the pin path
+	private final IntIntMap table;
+	private final int[] freeFrames;
+	private int numFreeFrames;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long writes;
+
+	private final IntPredicate unpinned = new IntPredicate() {
+		public boolean test(int frame) {
+			return pins[frame] == 0;
+		}
+	};
+
+	/**
+	 * @param store
+	 *            - The store to cache pages of.
+	 * @param memoryBudget
+	 *            - The number of bytes of page frames to keep.
+	 * @param policy
+	 *            - A new eviction policy, not shared with another cache.
+	 */
+	public PageCache(PageStore store, long memoryBudget, EvictionPolicy policy) {
+		long capacity = memoryBudget / store.getPageSize();
+		if (capacity < 1 || capacity > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Memory budget must hold between 1 and 2^31 - 1 pages");
+		}
+		int n = (int) capacity;
+		this.store = store;
+		this.policy = policy;
+		this.frames = new ByteBuffer[n];
+		this.pageOf = new int[n];
+		this.pins = new int[n];
+		this.dirty = new boolean[n];
+		this.table = new IntIntMap(n);
+		this.freeFrames = new int[n];
+		for (int i = 0; i < n; i++) {
+			frames[i] = ByteBuffer.allocate(store.getPageSize());
+			freeFrames[numFreeFrames++] = n - 1 - i;
+		}
+		policy.reset(n);
+	}
+
+	public int getPageSize() {
+		return store.getPageSize();
+	}
+
+	public int getPageCount() {
+		return store.getPageCount();
+	}
+
+	/**
+	 * @return the number of frames, the most pages that can be resident
+	 */
+	public int getCapacity() {
+		return frames.length;
+	}
+
+	/**
+	 * @return the number of pages currently resident
+	 */
+	public int getResident() {
+		return table.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of dirty pages written back to the store
+	 */
+	public long getWrites() {
+		return writes;
+	}
+
+	public void resetStats() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		writes = 0;
+	}
+
+	public ByteBuffer pin(int id) {
+		if (id == 0) {
+			return store.pin(0);
+		}
+		int frame = table.get(id);
+		if (frame != IntIntMap.NONE) {
+			hits++;
+			policy.accessed(frame);
+			pins[frame]++;
+			return frames[frame];
+		}
+		misses++;
+		int f = takeFrame();
+		ByteBuffer from = store.pin(id).duplicate();
+		page(from, store.offset(id));
+		frames[f].clear();
+		frames[f].put(from);
+		frames[f].clear();
+		store.unpin(id, false);
+
+		table.put(id, f);
+		pageOf[f] = id;
+		pins[f] = 1;
+		policy.loaded(f, id);
+		return frames[f];
+	}
+
+	public int offset(int id) {
+		// Frames hold one page each
+		return id == 0 ? store.offset(0) : 0;
+	}
+
+	public void unpin(int id, boolean dirty) {
+		if (id == 0) {
+			store.unpin(0, dirty);
+			return;
+		}
+		int frame = table.get(id);
+		if (frame == IntIntMap.NONE || pins[frame] == 0) {
+			throw new IllegalArgumentException("Page is not pinned: " + id);
+		}
+		pins[frame]--;
+		this.dirty[frame] |= dirty;
+	}
+
+	public int allocate() throws IOException {
+		return store.allocate();
+	}
+
+	public void free(int id) {
+		int frame = table.get(id);
+		if (frame != IntIntMap.NONE) {
+			if (pins[frame] > 0) {
+				throw new IllegalStateException("Cannot free pinned page " + id);
+			}
+			// Its contents are garbage now, so drop it without writing it back
+			table.remove(id);
+			dirty[frame] = false;
+			policy.removed(frame);
+			freeFrames[numFreeFrames++] = frame;
+		}
+		store.free(id);
+	}
+
+	public void flush() throws IOException {
+		// Free frames are never dirty
+		for (int frame = 0; frame < frames.length; frame++) {
+			writeBack(frame);
+		}
+		store.flush();
+	}
+
+	public void close() throws IOException {
+		flush();
+		store.close();
+	}
+
+	// Find a frame for a new page, evicting one if none is free
+	private int takeFrame() {
+		if (numFreeFrames > 0) {
+			return freeFrames[--numFreeFrames];
+		}
+		int frame = policy.victim(unpinned);
+		if (frame == -1) {
+			throw new IllegalStateException("All " + frames.length + " pages in the cache are pinned");
+		}
+		evictions++;
+		writeBack(frame);
+		table.remove(pageOf[frame]);
+		return frame;
+	}
+
+	// Narrow a duplicate of a store's buffer to the page starting at offset
+	private void page(ByteBuffer buffer, int offset) {
+		buffer.clear();
+		buffer.position(offset);
+		buffer.limit(offset + store.getPageSize());
+	}
+
+	private void writeBack(int frame) {
+		if (!dirty[frame]) {
+			return;
+		}
+		ByteBuffer from = frames[frame].duplicate();
+		from.clear();
+		ByteBuffer to = store.pin(pageOf[frame]).duplicate();
+		page(to, store.offset(pageOf[frame]));
+		to.put(from);
+		store.unpin(pageOf[frame], true);
+		dirty[frame] = false;
+		writes++;
+	}
+}
@@ -0,0 +1,197 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PageCacheTests {
+
+	private PageFile newPageFile(int pageSize, int pages) throws IOException {
+		File file = File.createTempFile("cache", ".db");
+		file.delete();
+		file.deleteOnExit();
+		PageFile pageFile = new PageFile(file, pageSize);
+		for (int i = 0; i < pages; i++) {
+			pageFile.allocate();
+		}
+		return pageFile;
+	}
+
+	private void touch(PageCache cache, int id) {
+		cache.pin(id);
+		cache.unpin(id, false);
+	}
+
+	@Test
+	public void testLruEvictsLeastRecentlyUsed() throws IOException {
+		PageCache cache = new PageCache(newPageFile(64, 10), 3 * 64, new LruEviction());
+		touch(cache, 1);
+		touch(cache, 2);
+		touch(cache, 3);
+		touch(cache, 1);
+		touch(cache, 4);
+		assertEquals(1, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+
+		// 2 was evicted, 1 was not
+		touch(cache, 1);
+		assertEquals(2, cache.getHits());
+		touch(cache, 2);
+		assertEquals(5, cache.getMisses());
+		assertEquals(3, cache.getResident());
+		cache.close();
+	}
+
+	@Test
+	public void testClockGivesSecondChance() throws IOException {
+		PageCache cache = new PageCache(newPageFile(64, 10), 3 * 64, new ClockEviction());
+		touch(cache, 1);
+		touch(cache, 2);
+		touch(cache, 3);
+		// Every reference bit is set, so one sweep clears them and 1 goes
+		touch(cache, 4);
+		touch(cache, 3);
+		// 2 has not been used since the sweep, 3 has
+		touch(cache, 1);
+		assertEquals(1, cache.getHits());
+		touch(cache, 3);
+		assertEquals(2, cache.getHits());
+		touch(cache, 2);
+		assertEquals(6, cache.getMisses());
+		cache.close();
+	}
+
+	// A scan as large as the cache flushes out the hot pages with LRU and
+	// CLOCK, but not with 2Q
+	@Test
+	public void testTwoQueueResistsScans() throws IOException {
+		assertEquals(0, hotHitsAfterScans(new LruEviction()));
+		assertEquals(0, hotHitsAfterScans(new ClockEviction()));
+		assertEquals(4, hotHitsAfterScans(new TwoQueueEviction()));
+	}
+
+	private long hotHitsAfterScans(EvictionPolicy policy) throws IOException {
+		PageCache cache = new PageCache(newPageFile(64, 200), 16 * 64, policy);
+		int cold = 100;
+		long hits = 0;
+		for (int round = 0; round < 6; round++) {
+			long before = cache.getHits();
+			for (int id = 1; id <= 4; id++) {
+				touch(cache, id);
+			}
+			hits = cache.getHits() - before;
+			for (int i = 0; i < 16; i++) {
+				touch(cache, cold++);
+			}
+		}
+		cache.close();
+		return hits;
+	}
+
+	// Hits are on the path of every tree operation, so they must not box
+	// page ids or otherwise allocate
+	@Test
+	public void testHitsDoNotAllocate() throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		for (EvictionPolicy policy : new EvictionPolicy[] { new LruEviction(), new ClockEviction(),
+				new TwoQueueEviction() }) {
+			PageCache cache = new PageCache(newPageFile(64, 1000), 1000 * 64, policy);
+			long allocated = Long.MAX_VALUE;
+			for (int run = 0; run < 5; run++) {
+				long before = threads.getThreadAllocatedBytes(thread);
+				for (int id = 200; id < 1000; id++) {
+					touch(cache, id);
+				}
+				allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+			}
+			assertEquals(0, allocated);
+			assertEquals(4 * 800, cache.getHits());
+		}
+	}
+
+	@Test
+	public void testDirtyPagesAreWrittenBack() throws IOException {
+		File file = File.createTempFile("cache", ".db");
+		file.delete();
+		file.deleteOnExit();
+		PageFile pageFile = new PageFile(file, 64);
+		for (int i = 0; i < 10; i++) {
+			pageFile.allocate();
+		}
+		PageCache cache = new PageCache(pageFile, 2 * 64, new LruEviction());
+		for (int id = 1; id <= 10; id++) {
+			ByteBuffer page = cache.pin(id);
+			page.putInt(8, id * 100);
+			cache.unpin(id, id % 2 == 0);
+		}
+		// Only the even pages were dirty, and two are still in the cache
+		assertEquals(8, cache.getEvictions());
+		assertEquals(4, cache.getWrites());
+		for (int id = 1; id <= 10; id++) {
+			assertEquals(id % 2 == 0 ? id * 100 : 0, cache.pin(id).getInt(8));
+			cache.unpin(id, false);
+		}
+		cache.close();
+
+		pageFile = new PageFile(file);
+		for (int id = 1; id <= 10; id++) {
+			assertEquals(id % 2 == 0 ? id * 100 : 0, pageFile.pin(id).getInt(8));
+		}
+		pageFile.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPinnedPagesAreNotEvicted() throws IOException {
+		PageCache cache = new PageCache(newPageFile(64, 10), 2 * 64, new ClockEviction());
+		cache.pin(1);
+		cache.pin(2);
+		cache.pin(3);
+	}
+
+	@Test
+	public void testTreeOverSmallCache() throws IOException {
+		for (EvictionPolicy policy : new EvictionPolicy[] { new LruEviction(), new ClockEviction(),
+				new TwoQueueEviction() }) {
+			File file = File.createTempFile("cache", ".db");
+			file.delete();
+			file.deleteOnExit();
+			PageCache cache = new PageCache(new PageFile(file, 256), 32 * 256, policy);
+			PagedBPlusTree<Integer, Integer> tree = new PagedBPlusTree<Integer, Integer>(cache, Codec.INTEGER,
+					Codec.INTEGER, 3);
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			Random random = new Random(5);
+			for (int i = 0; i < 20000; i++) {
+				int key = random.nextInt(5000);
+				if (random.nextInt(3) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, -key);
+					expected.put(key, -key);
+				}
+			}
+			assertTrue(cache.getEvictions() > 0);
+			assertEquals(32, cache.getResident());
+			for (int key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			assertEquals(new ArrayList<Integer>(expected.values()), tree.greaterThanEqualToKeySearch(0));
+			cache.close();
+
+			PageFile pageFile = new PageFile(file);
+			tree = new PagedBPlusTree<Integer, Integer>(pageFile, Codec.INTEGER, Codec.INTEGER);
+			assertEquals(expected.size(), tree.size());
+			assertEquals(new ArrayList<Integer>(expected.values()), tree.greaterThanEqualToKeySearch(0));
+			pageFile.close();
+		}
+	}
+}
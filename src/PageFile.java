@@ -0,0 +1,164 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A file of fixed-size pages, accessed through memory mapped segments. The
+ * file is mapped lazily by the operating system, so opening it costs the same
+ * whatever its size, and reading a page only faults in that page.
+ *
+ * Page 0 is the header. Its first HEADER_SIZE bytes hold the file layout:
+ *
+ * 0 magic number, 4 page size, 8 number of pages, 12 first free page
+ *
+ * and the rest of it is free for the owner of the file to use. Freed pages
+ * are chained through their first four bytes. Page id 0 is never handed out
+ * by allocate, so owners can use it to mean "no page".
+ */
+public class PageFile implements PageStore {
+
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+	public static final int HEADER_SIZE = 16;
+
+	private static final int MAGIC = 0x42505446;
+	private static final int PAGE_SIZE = 4;
+	private static final int PAGE_COUNT = 8;
+	private static final int FREE_LIST = 12;
+
+	// Pages per mapped segment
+	private static final int SEGMENT_PAGES = 1024;
+
+	private final FileChannel channel;
+	private final int pageSize;
+	private final ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private final ByteBuffer header;
+
+	/**
+	 * Open the page file, creating it with the default page size if it does
+	 * not exist.
+	 */
+	public PageFile(File file) throws IOException {
+		this(file, DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Open the page file, creating it with the given page size if it does not
+	 * exist. The page size of an existing file is read from its header.
+	 */
+	public PageFile(File file, int pageSize) throws IOException {
+		if (pageSize < 2 * HEADER_SIZE || pageSize % 8 != 0) {
+			throw new IllegalArgumentException("Page size must be a multiple of 8, at least 32: " + pageSize);
+		}
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		try {
+			if (channel.size() == 0) {
+				this.pageSize = pageSize;
+				mapSegment();
+				header = pin(0);
+				header.putInt(0, MAGIC);
+				header.putInt(PAGE_SIZE, pageSize);
+				header.putInt(PAGE_COUNT, 1);
+				header.putInt(FREE_LIST, 0);
+			} else {
+				ByteBuffer start = ByteBuffer.allocate(HEADER_SIZE);
+				channel.read(start, 0);
+				if (start.getInt(0) != MAGIC) {
+					throw new IOException("Not a page file: " + file);
+				}
+				this.pageSize = start.getInt(PAGE_SIZE);
+				int pageCount = start.getInt(PAGE_COUNT);
+				while (segments.size() * SEGMENT_PAGES < pageCount) {
+					mapSegment();
+				}
+				header = pin(0);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	private void mapSegment() throws IOException {
+		long position = (long) segments.size() * SEGMENT_PAGES * pageSize;
+		segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) SEGMENT_PAGES * pageSize));
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @return the number of pages in the file, including the header and
+	 *         free pages
+	 */
+	public int getPageCount() {
+		return header.getInt(PAGE_COUNT);
+	}
+
+	/**
+	 * Returns a view of the given page. Writes go straight to the mapped
+	 * file, so pages do not need to be unpinned.
+	 *
+	 * @param id
+	 *            - The page to read.
+	 */
+	public ByteBuffer pin(int id) {
+		if (id < 0 || id >= segments.size() * SEGMENT_PAGES) {
+			throw new IllegalArgumentException("No such page: " + id);
+		}
+		ByteBuffer page = segments.get(id / SEGMENT_PAGES).duplicate();
+		int offset = (id % SEGMENT_PAGES) * pageSize;
+		page.position(offset);
+		page.limit(offset + pageSize);
+		return page.slice();
+	}
+
+	public int offset(int id) {
+		return 0;
+	}
+
+	public void unpin(int id, boolean dirty) {
+	}
+
+	public int allocate() throws IOException {
+		int id = header.getInt(FREE_LIST);
+		if (id != 0) {
+			ByteBuffer page = pin(id);
+			header.putInt(FREE_LIST, page.getInt(0));
+			for (int i = 0; i < pageSize; i += 4) {
+				page.putInt(i, 0);
+			}
+			return id;
+		}
+		id = header.getInt(PAGE_COUNT);
+		if (id == segments.size() * SEGMENT_PAGES) {
+			mapSegment();
+		}
+		header.putInt(PAGE_COUNT, id + 1);
+		return id;
+	}
+
+	public void free(int id) {
+		if (id == 0) {
+			throw new IllegalArgumentException("Cannot free the header page");
+		}
+		pin(id).putInt(0, header.getInt(FREE_LIST));
+		header.putInt(FREE_LIST, id);
+	}
+
+	public void flush() throws IOException {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+}
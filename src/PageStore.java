@@ -0,0 +1,68 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for the fixed-size pages of a PagedBPlusTree. A page has to be
+ * pinned before it is read or written, and unpinned when the caller is done
+ * with it; the returned buffer must not be used after that. The page starts
+ * at offset(id) in the pinned buffer, which a store may share between pages
+ * so that pinning allocates nothing: callers read and write it at absolute
+ * positions from there, and must not rely on its position or limit.
+ *
+ * Page 0 is the header. Its first PageFile.HEADER_SIZE bytes belong to the
+ * store; the rest is free for the tree. Writes to page 0 go straight through,
+ * so it may be kept pinned for as long as the store is open. Page id 0 is
+ * never handed out by allocate, so it can be used to mean "no page".
+ */
+public interface PageStore extends Closeable {
+
+	int getPageSize();
+
+	/**
+	 * @return the number of pages in the store, including the header and
+	 *         free pages
+	 */
+	int getPageCount();
+
+	/**
+	 * Pin the given page and return a view of it.
+	 *
+	 * @param id
+	 *            - The page to pin.
+	 */
+	ByteBuffer pin(int id);
+
+	/**
+	 * @return where the given page starts in the buffer pin returns for it,
+	 *         0 if that buffer is a view of the page alone
+	 */
+	int offset(int id);
+
+	/**
+	 * Release a page pinned with pin.
+	 *
+	 * @param id
+	 *            - The page to release.
+	 * @param dirty
+	 *            - true if the page was changed while it was pinned.
+	 */
+	void unpin(int id, boolean dirty);
+
+	/**
+	 * Allocate a zero-filled page, reusing a freed page if there is one.
+	 *
+	 * @return the id of the new page
+	 */
+	int allocate() throws IOException;
+
+	/**
+	 * Return an unpinned page, to be handed out again by allocate.
+	 */
+	void free(int id);
+
+	/**
+	 * Write all changed pages back to permanent storage.
+	 */
+	void flush() throws IOException;
+}
@@ -0,0 +1,734 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A B+ tree whose nodes are stored in the pages of a PageStore rather than on
+ * the heap, so it survives restarts and can be larger than memory. Nodes
+ * follow the same rules as BPlusTree; child and sibling pointers are page
+ * ids, and keys and values are written with fixed-size Codecs. Opening an
+ * existing file only reads its header, and a lookup reads just the pages on
+ * its root-to-leaf path. Put a PageCache in front of a PageFile to bound how
+ * many of those pages stay in memory.
+ *
+ * The tree keeps its own header in page 0, after the store's header:
+ *
+ * key size, value size, leaf degree, index degree, root page, number of keys
+ *
+ * Each node takes one page, laid out as:
+ *
+ * 0 type, 4 number of keys, 8 next leaf, 12 previous leaf, 16 keys, then the
+ * values (leaves) or child page ids (index nodes)
+ *
+ * Nodes have room for one key more than a full node, to hold the overflowing
+ * entry until it is split.
+ */
+public class PagedBPlusTree<K extends Comparable<K>, T> {
+
+	private static final byte LEAF = 1;
+	private static final byte INDEX = 2;
+
+	// Node page layout
+	private static final int TYPE = 0;
+	private static final int NUM_KEYS = 4;
+	private static final int NEXT = 8;
+	private static final int PREVIOUS = 12;
+	private static final int KEYS = 16;
+
+	// Tree header layout, in page 0
+	private static final int KEY_SIZE = PageFile.HEADER_SIZE;
+	private static final int VALUE_SIZE = KEY_SIZE + 4;
+	private static final int LEAF_DEGREE = VALUE_SIZE + 4;
+	private static final int INDEX_DEGREE = LEAF_DEGREE + 4;
+	private static final int ROOT = INDEX_DEGREE + 4;
+	private static final int SIZE = ROOT + 4;
+
+	private final PageStore pages;
+	private final Page header;
+	private final Codec<K> keyCodec;
+	private final Codec<T> valueCodec;
+	private final int keySize;
+	private final int valueSize;
+	private final int leafDegree;
+	private final int indexDegree;
+	private final int values;
+	private final int children;
+
+	// Page ids and child positions along the last root-to-leaf descent
+	private int[] path = new int[8];
+	private int[] slots = new int[8];
+
+	// Staging area for moving bytes within and between pages
+	private final byte[] scratch;
+
+	// Pages pinned by the current operation, unpinned when it ends, and the
+	// Page each was returned in, kept for the next operation's pins
+	private int[] pinned = new int[16];
+	private boolean[] pinnedDirty = new boolean[16];
+	private Page[] pinnedPages = new Page[16];
+	private int numPinned;
+
+	// Pages emptied by the current operation, freed once they are unpinned
+	private int[] freed = new int[4];
+	private int numFreed;
+
+	/**
+	 * Open the tree stored in pages, or start a new one that fits as many
+	 * entries in each page as possible.
+	 */
+	public PagedBPlusTree(PageStore pages, Codec<K> keyCodec, Codec<T> valueCodec) {
+		this(pages, keyCodec, valueCodec, 0);
+	}
+
+	/**
+	 * Open the tree stored in pages, or start a new one with the given degree
+	 * for both leaves and index nodes.
+	 *
+	 * @param degree
+	 *            - The degree of a new tree, or 0 to fill each page. Ignored
+	 *            if pages already holds a tree.
+	 */
+	public PagedBPlusTree(PageStore pages, Codec<K> keyCodec, Codec<T> valueCodec, int degree) {
+		this.pages = pages;
+		this.header = new Page();
+		header.buffer = pages.pin(0);
+		header.base = pages.offset(0);
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.keySize = keyCodec.size();
+		this.valueSize = valueCodec.size();
+
+		int pageSize = pages.getPageSize();
+		if (header.getInt(KEY_SIZE) == 0) {
+			int leaf = ((pageSize - KEYS) / (keySize + valueSize) - 1) / 2;
+			int index = ((pageSize - KEYS - 4) / (keySize + 4) - 1) / 2;
+			if (degree > 0) {
+				if (degree > Math.min(leaf, index)) {
+					throw new IllegalArgumentException("Degree " + degree + " does not fit in a page");
+				}
+				leaf = index = degree;
+			}
+			if (leaf < 1 || index < 1) {
+				throw new IllegalArgumentException("Page size too small for the keys and values");
+			}
+			header.putInt(KEY_SIZE, keySize);
+			header.putInt(VALUE_SIZE, valueSize);
+			header.putInt(LEAF_DEGREE, leaf);
+			header.putInt(INDEX_DEGREE, index);
+			header.putInt(ROOT, 0);
+			header.putLong(SIZE, 0);
+		} else if (header.getInt(KEY_SIZE) != keySize || header.getInt(VALUE_SIZE) != valueSize) {
+			throw new IllegalArgumentException("Codecs do not match the sizes stored in the file");
+		}
+		this.leafDegree = header.getInt(LEAF_DEGREE);
+		this.indexDegree = header.getInt(INDEX_DEGREE);
+		this.values = KEYS + (2 * leafDegree + 1) * keySize;
+		this.children = KEYS + (2 * indexDegree + 1) * keySize;
+		this.scratch = new byte[pageSize];
+	}
+
+	public int getLeafDegree() {
+		return leafDegree;
+	}
+
+	public int getIndexDegree() {
+		return indexDegree;
+	}
+
+	/**
+	 * @return the number of keys in the tree
+	 */
+	public long size() {
+		return header.getLong(SIZE);
+	}
+
+	/**
+	 * @return the number of levels in the tree, 0 if it is empty
+	 */
+	public int getHeight() {
+		if (root() == 0) return 0;
+		int height = 1;
+		try {
+			for (Page page = read(root()); page.get(TYPE) == INDEX; page = read(child(page, 0))) {
+				height++;
+			}
+		} finally {
+			release();
+		}
+		return height;
+	}
+
+	/**
+	 * Write all changes back to the file.
+	 */
+	public void flush() throws IOException {
+		pages.flush();
+	}
+
+	/**
+	 * Search the value for a specific key, and return the data at that key.
+	 *
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(K key) {
+		try {
+			Page leaf = findLeafPage(key);
+			if (leaf == null) return null;
+			int i = lowerBound(leaf, key);
+			if (i < numKeys(leaf) && key(leaf, i).compareTo(key) == 0) {
+				return value(leaf, i);
+			}
+			return null;
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * Performs a greater than or equal to range search on the tree.
+	 *
+	 * @param key
+	 *            - The value to perform a >= search against.
+	 * @return The values of the items that had a key >= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> greaterThanEqualToKeySearch(K key) {
+		ArrayList<T> result = new ArrayList<T>();
+		try {
+			Page leaf = findLeafPage(key);
+			if (leaf == null) return result;
+			int i = lowerBound(leaf, key);
+			while (true) {
+				for (; i < numKeys(leaf); i++) {
+					result.add(value(leaf, i));
+				}
+				int next = leaf.getInt(NEXT);
+				if (next == 0) return result;
+				// Only keep one leaf pinned while scanning
+				release();
+				leaf = read(next);
+				i = 0;
+			}
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * Performs a less than or equal to range search on the tree.
+	 *
+	 * @param key
+	 *            - The value to perform a <= search against.
+	 * @return The values of the items that had a key <= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> lessThanEqualToKeySearch(K key) {
+		ArrayList<T> result = new ArrayList<T>();
+		if (root() == 0) return result;
+		try {
+			Page leaf = read(root());
+			while (leaf.get(TYPE) == INDEX) {
+				leaf = read(child(leaf, 0));
+			}
+			while (true) {
+				for (int i = 0; i < numKeys(leaf); i++) {
+					if (key(leaf, i).compareTo(key) > 0) return result;
+					result.add(value(leaf, i));
+				}
+				int next = leaf.getInt(NEXT);
+				if (next == 0) return result;
+				release();
+				leaf = read(next);
+			}
+		} finally {
+			release();
+		}
+	}
+
+	private Page findLeafPage(K key) {
+		if (root() == 0) return null;
+		Page page = read(root());
+		while (page.get(TYPE) == INDEX) {
+			page = read(child(page, upperBound(page, key)));
+		}
+		return page;
+	}
+
+	/**
+	 * Like findLeafPage, but records the page ids and child positions on the
+	 * way down in path and slots. path[depth] is the leaf.
+	 *
+	 * @return the depth of the leaf
+	 */
+	private int descend(K key) {
+		int id = root();
+		int depth = 0;
+		Page page = read(id);
+		while (true) {
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+				slots = Arrays.copyOf(slots, 2 * depth);
+			}
+			path[depth] = id;
+			if (page.get(TYPE) == LEAF) return depth;
+			int i = upperBound(page, key);
+			slots[depth] = i;
+			depth++;
+			id = child(page, i);
+			page = read(id);
+		}
+	}
+
+	/**
+	 * Insert a key/value pair into the tree
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void insert(K key, T value) {
+		try {
+			insertKey(key, value);
+		} finally {
+			release();
+		}
+	}
+
+	private void insertKey(K key, T value) {
+		if (root() == 0) {
+			setRoot(allocate(LEAF));
+		}
+		int depth = descend(key);
+		Page leaf = write(path[depth]);
+		insertEntry(leaf, upperBound(leaf, key), key, value);
+		header.putLong(SIZE, size() + 1);
+
+		// Usual case: leaf has space
+		if (numKeys(leaf) <= 2 * leafDegree) {
+			return;
+		}
+		// Split the leaf, then push the new child up until a parent has room
+		int newChild = splitLeaf(path[depth], leaf);
+		int splitKey = KEYS;
+		Page splitFrom = read(newChild);
+		while (depth > 0) {
+			depth--;
+			Page parent = write(path[depth]);
+			insertChild(parent, slots[depth], splitFrom, splitKey, newChild);
+			if (numKeys(parent) <= 2 * indexDegree) {
+				return;
+			}
+			newChild = splitIndex(parent);
+			splitKey = keyOffset(indexDegree);
+			splitFrom = parent;
+		}
+		// Root was just split
+		int newRoot = allocate(INDEX);
+		Page page = write(newRoot);
+		copy(splitFrom, splitKey, page, keyOffset(0), keySize);
+		setChild(page, 0, root());
+		setChild(page, 1, newChild);
+		page.putInt(NUM_KEYS, 1);
+		setRoot(newRoot);
+	}
+
+	/**
+	 * Delete a key/value pair from this tree
+	 *
+	 * @param key
+	 */
+	public void delete(K key) {
+		try {
+			deleteKey(key);
+		} finally {
+			release();
+		}
+	}
+
+	private void deleteKey(K key) {
+		if (root() == 0) {
+			return;
+		}
+		int depth = descend(key);
+		Page node = write(path[depth]);
+		int i = lowerBound(node, key);
+		if (i == numKeys(node) || key(node, i).compareTo(key) != 0) {
+			return;
+		}
+		removeEntry(node, i);
+		header.putLong(SIZE, size() - 1);
+
+		// Walk back up while the node below is underflowed, merging with or
+		// borrowing from a sibling under the same parent
+		boolean leaf = true;
+		while (depth > 0 && numKeys(node) < (leaf ? leafDegree : indexDegree)) {
+			depth--;
+			Page parent = write(path[depth]);
+			int s = slots[depth] > 0 ? slots[depth] - 1 : 0;
+			int left = child(parent, s);
+			int right = child(parent, s + 1);
+			boolean merged;
+			if (leaf) {
+				merged = handleLeafNodeUnderflow(left, right, parent, s);
+			} else {
+				merged = handleIndexNodeUnderflow(write(left), write(right), parent, s);
+			}
+			if (merged) {
+				removeChild(parent, s);
+				free(right);
+			}
+			node = parent;
+			leaf = false;
+		}
+
+		// Readjust the root
+		Page root = read(root());
+		if (numKeys(root) == 0) {
+			int oldRoot = root();
+			setRoot(root.get(TYPE) == INDEX ? child(root, 0) : 0);
+			free(oldRoot);
+		}
+	}
+
+	private int splitLeaf(int id, Page leaf) {
+		int rightId = allocate(LEAF);
+		Page right = write(rightId);
+		int moved = numKeys(leaf) - leafDegree;
+		copy(leaf, keyOffset(leafDegree), right, keyOffset(0), moved * keySize);
+		copy(leaf, valueOffset(leafDegree), right, valueOffset(0), moved * valueSize);
+		right.putInt(NUM_KEYS, moved);
+		leaf.putInt(NUM_KEYS, leafDegree);
+
+		// Set sibling pointers
+		int next = leaf.getInt(NEXT);
+		right.putInt(NEXT, next);
+		if (next != 0) {
+			write(next).putInt(PREVIOUS, rightId);
+		}
+		right.putInt(PREVIOUS, id);
+		leaf.putInt(NEXT, rightId);
+		return rightId;
+	}
+
+	/**
+	 * Split an overflowed index node. The first D keys and D+1 children stay,
+	 * the last D keys and D+1 children move to the new right node. The key in
+	 * between is left in place past the end of the node, for the caller to
+	 * push up to the parent.
+	 */
+	private int splitIndex(Page node) {
+		int rightId = allocate(INDEX);
+		Page right = write(rightId);
+		int moved = numKeys(node) - indexDegree - 1;
+		copy(node, keyOffset(indexDegree + 1), right, keyOffset(0), moved * keySize);
+		copy(node, childOffset(indexDegree + 1), right, childOffset(0), (moved + 1) * 4);
+		right.putInt(NUM_KEYS, moved);
+		node.putInt(NUM_KEYS, indexDegree);
+		return rightId;
+	}
+
+	/**
+	 * Handle leaf underflow (merge or redistribution)
+	 *
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	private boolean handleLeafNodeUnderflow(int leftId, int rightId, Page parent, int i) {
+		Page left = write(leftId);
+		Page right = write(rightId);
+		int leftKeys = numKeys(left);
+		int rightKeys = numKeys(right);
+
+		// Redistribute evenly between right and left nodes
+		if (leftKeys + rightKeys >= 2 * leafDegree) {
+			if (leftKeys > rightKeys) {
+				int moved = leftKeys - leafDegree;
+				copy(right, keyOffset(0), right, keyOffset(moved), rightKeys * keySize);
+				copy(right, valueOffset(0), right, valueOffset(moved), rightKeys * valueSize);
+				copy(left, keyOffset(leafDegree), right, keyOffset(0), moved * keySize);
+				copy(left, valueOffset(leafDegree), right, valueOffset(0), moved * valueSize);
+				right.putInt(NUM_KEYS, rightKeys + moved);
+				left.putInt(NUM_KEYS, leafDegree);
+			} else {
+				int moved = leafDegree - leftKeys;
+				copy(right, keyOffset(0), left, keyOffset(leftKeys), moved * keySize);
+				copy(right, valueOffset(0), left, valueOffset(leftKeys), moved * valueSize);
+				copy(right, keyOffset(moved), right, keyOffset(0), (rightKeys - moved) * keySize);
+				copy(right, valueOffset(moved), right, valueOffset(0), (rightKeys - moved) * valueSize);
+				left.putInt(NUM_KEYS, leafDegree);
+				right.putInt(NUM_KEYS, rightKeys - moved);
+			}
+			// Replace key value in parent entry by low-key in right node
+			copy(right, keyOffset(0), parent, keyOffset(i), keySize);
+			return false;
+		}
+		// Move all entries from right to left node
+		copy(right, keyOffset(0), left, keyOffset(leftKeys), rightKeys * keySize);
+		copy(right, valueOffset(0), left, valueOffset(leftKeys), rightKeys * valueSize);
+		left.putInt(NUM_KEYS, leftKeys + rightKeys);
+
+		// Adjust sibling pointers
+		int next = right.getInt(NEXT);
+		if (next != 0) {
+			write(next).putInt(PREVIOUS, leftId);
+		}
+		left.putInt(NEXT, next);
+		return true;
+	}
+
+	/**
+	 * Handle index node underflow (merge or redistribution)
+	 *
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	private boolean handleIndexNodeUnderflow(Page left, Page right, Page parent, int i) {
+		int leftKeys = numKeys(left);
+		int rightKeys = numKeys(right);
+		if (leftKeys + rightKeys >= 2 * indexDegree) {
+			// Left node has more entries, rotate through the parent
+			while (leftKeys > indexDegree) {
+				copy(right, keyOffset(0), right, keyOffset(1), rightKeys * keySize);
+				copy(right, childOffset(0), right, childOffset(1), (rightKeys + 1) * 4);
+				copy(parent, keyOffset(i), right, keyOffset(0), keySize);
+				setChild(right, 0, child(left, leftKeys));
+				rightKeys++;
+				copy(left, keyOffset(leftKeys - 1), parent, keyOffset(i), keySize);
+				leftKeys--;
+			}
+			// Right node has more entries
+			while (leftKeys < indexDegree) {
+				copy(parent, keyOffset(i), left, keyOffset(leftKeys), keySize);
+				setChild(left, leftKeys + 1, child(right, 0));
+				leftKeys++;
+				copy(right, keyOffset(0), parent, keyOffset(i), keySize);
+				rightKeys--;
+				copy(right, keyOffset(1), right, keyOffset(0), rightKeys * keySize);
+				copy(right, childOffset(1), right, childOffset(0), (rightKeys + 1) * 4);
+			}
+			left.putInt(NUM_KEYS, leftKeys);
+			right.putInt(NUM_KEYS, rightKeys);
+			return false;
+		}
+		// Pull the splitting key down and move everything from right to left
+		copy(parent, keyOffset(i), left, keyOffset(leftKeys), keySize);
+		copy(right, keyOffset(0), left, keyOffset(leftKeys + 1), rightKeys * keySize);
+		copy(right, childOffset(0), left, childOffset(leftKeys + 1), (rightKeys + 1) * 4);
+		left.putInt(NUM_KEYS, leftKeys + rightKeys + 1);
+		return true;
+	}
+
+	// Insert key/value at position i of a leaf
+	private void insertEntry(Page leaf, int i, K key, T value) {
+		int n = numKeys(leaf);
+		copy(leaf, keyOffset(i), leaf, keyOffset(i + 1), (n - i) * keySize);
+		copy(leaf, valueOffset(i), leaf, valueOffset(i + 1), (n - i) * valueSize);
+		keyCodec.write(leaf.buffer, leaf.base + keyOffset(i), key);
+		valueCodec.write(leaf.buffer, leaf.base + valueOffset(i), value);
+		leaf.putInt(NUM_KEYS, n + 1);
+	}
+
+	// Remove the entry at position i of a leaf
+	private void removeEntry(Page leaf, int i) {
+		int n = numKeys(leaf) - 1;
+		copy(leaf, keyOffset(i + 1), leaf, keyOffset(i), (n - i) * keySize);
+		copy(leaf, valueOffset(i + 1), leaf, valueOffset(i), (n - i) * valueSize);
+		leaf.putInt(NUM_KEYS, n);
+	}
+
+	// Insert the key found at keyFrom in page from at position i of an index
+	// node, and child to the right of it, at i + 1
+	private void insertChild(Page node, int i, Page from, int keyFrom, int child) {
+		int n = numKeys(node);
+		copy(node, keyOffset(i), node, keyOffset(i + 1), (n - i) * keySize);
+		copy(node, childOffset(i + 1), node, childOffset(i + 2), (n - i) * 4);
+		copy(from, keyFrom, node, keyOffset(i), keySize);
+		setChild(node, i + 1, child);
+		node.putInt(NUM_KEYS, n + 1);
+	}
+
+	// Remove key i of an index node and the child to the right of it, at i + 1
+	private void removeChild(Page node, int i) {
+		int n = numKeys(node) - 1;
+		copy(node, keyOffset(i + 1), node, keyOffset(i), (n - i) * keySize);
+		copy(node, childOffset(i + 2), node, childOffset(i + 1), (n - i) * 4);
+		node.putInt(NUM_KEYS, n);
+	}
+
+	/**
+	 * Index of the first key in the node that is strictly greater than the
+	 * given key, or the number of keys if there is none.
+	 */
+	private int upperBound(Page node, K key) {
+		int low = 0, high = numKeys(node);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (key(node, mid).compareTo(key) <= 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Index of the first key in the node that is greater than or equal to the
+	 * given key, or the number of keys if there is none.
+	 */
+	private int lowerBound(Page node, K key) {
+		int low = 0, high = numKeys(node);
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (key(node, mid).compareTo(key) < 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private int allocate(byte type) {
+		int id;
+		try {
+			id = pages.allocate();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		write(id).put(TYPE, type);
+		return id;
+	}
+
+	private Page read(int id) {
+		return pin(id, false);
+	}
+
+	// Pin a page that is going to be changed
+	private Page write(int id) {
+		return pin(id, true);
+	}
+
+	private Page pin(int id, boolean dirty) {
+		if (numPinned == pinned.length) {
+			pinned = Arrays.copyOf(pinned, 2 * numPinned);
+			pinnedDirty = Arrays.copyOf(pinnedDirty, 2 * numPinned);
+			pinnedPages = Arrays.copyOf(pinnedPages, 2 * numPinned);
+		}
+		Page page = pinnedPages[numPinned];
+		if (page == null) {
+			page = pinnedPages[numPinned] = new Page();
+		}
+		page.buffer = pages.pin(id);
+		page.base = pages.offset(id);
+		pinned[numPinned] = id;
+		pinnedDirty[numPinned] = dirty;
+		numPinned++;
+		return page;
+	}
+
+	private void free(int id) {
+		if (numFreed == freed.length) {
+			freed = Arrays.copyOf(freed, 2 * numFreed);
+		}
+		freed[numFreed++] = id;
+	}
+
+	// Unpin everything the current operation pinned, then free emptied pages
+	private void release() {
+		for (int i = 0; i < numPinned; i++) {
+			pages.unpin(pinned[i], pinnedDirty[i]);
+		}
+		numPinned = 0;
+		for (int i = 0; i < numFreed; i++) {
+			pages.free(freed[i]);
+		}
+		numFreed = 0;
+	}
+
+	private void copy(Page from, int fromOffset, Page to, int toOffset, int length) {
+		if (length == 0) return;
+		from.buffer.position(from.base + fromOffset);
+		from.buffer.get(scratch, 0, length);
+		to.buffer.position(to.base + toOffset);
+		to.buffer.put(scratch, 0, length);
+	}
+
+	private int root() {
+		return header.getInt(ROOT);
+	}
+
+	private void setRoot(int id) {
+		header.putInt(ROOT, id);
+	}
+
+	private static int numKeys(Page node) {
+		return node.getInt(NUM_KEYS);
+	}
+
+	private int keyOffset(int i) {
+		return KEYS + i * keySize;
+	}
+
+	private int valueOffset(int i) {
+		return values + i * valueSize;
+	}
+
+	private int childOffset(int i) {
+		return children + 4 * i;
+	}
+
+	private K key(Page node, int i) {
+		return keyCodec.read(node.buffer, node.base + keyOffset(i));
+	}
+
+	private T value(Page leaf, int i) {
+		return valueCodec.read(leaf.buffer, leaf.base + valueOffset(i));
+	}
+
+	private int child(Page node, int i) {
+		return node.getInt(childOffset(i));
+	}
+
+	private void setChild(Page node, int i, int id) {
+		node.putInt(childOffset(i), id);
+	}
+
+	/**
+	 * A pinned page: the buffer the store returned for it and where the page
+	 * starts in that buffer. Offsets passed to its methods are relative to
+	 * the page.
+	 */
+	private static final class Page {
+		ByteBuffer buffer;
+		int base;
+
+		byte get(int offset) {
+			return buffer.get(base + offset);
+		}
+
+		void put(int offset, byte b) {
+			buffer.put(base + offset, b);
+		}
+
+		int getInt(int offset) {
+			return buffer.getInt(base + offset);
+		}
+
+		void putInt(int offset, int value) {
+			buffer.putInt(base + offset, value);
+		}
+
+		long getLong(int offset) {
+			return buffer.getLong(base + offset);
+		}
+
+		void putLong(int offset, long value) {
+			buffer.putLong(base + offset, value);
+		}
+	}
+}
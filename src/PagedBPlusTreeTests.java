@@ -0,0 +1,130 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PagedBPlusTreeTests {
+
+	private File newFile() throws IOException {
+		File file = File.createTempFile("paged", ".db");
+		file.delete();
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testInsertSearchAndReopen() throws IOException {
+		File file = newFile();
+		PageFile pages = new PageFile(file, 256);
+		PagedBPlusTree<Long, String> tree = new PagedBPlusTree<Long, String>(pages, Codec.LONG, Codec.string(8), 2);
+		TreeMap<Long, String> expected = new TreeMap<Long, String>();
+		Random random = new Random(7);
+		for (int i = 0; i < 2000; i++) {
+			long key = random.nextInt(10000);
+			if (!expected.containsKey(key)) {
+				tree.insert(key, "" + key);
+				expected.put(key, "" + key);
+			}
+		}
+		assertEquals(expected.size(), tree.size());
+		int height = tree.getHeight();
+		assertTrue(height > 3);
+		pages.close();
+
+		pages = new PageFile(file);
+		assertEquals(256, pages.getPageSize());
+		tree = new PagedBPlusTree<Long, String>(pages, Codec.LONG, Codec.string(8));
+		assertEquals(2, tree.getLeafDegree());
+		assertEquals(expected.size(), tree.size());
+		assertEquals(height, tree.getHeight());
+		for (long key = 0; key < 10000; key++) {
+			assertEquals(expected.get(key), tree.exactMatchSearch(key));
+		}
+		assertEquals(new ArrayList<String>(expected.tailMap(5000L).values()), tree.greaterThanEqualToKeySearch(5000L));
+		assertEquals(new ArrayList<String>(expected.headMap(5000L, true).values()),
+				tree.lessThanEqualToKeySearch(5000L));
+		pages.close();
+	}
+
+	@Test
+	public void testRandomInsertDelete() throws IOException {
+		Random random = new Random(333);
+		for (int degree : new int[] { 1, 2, 3, 8 }) {
+			PageFile pages = new PageFile(newFile(), 512);
+			PagedBPlusTree<Integer, Long> tree = new PagedBPlusTree<Integer, Long>(pages, Codec.INTEGER, Codec.LONG,
+					degree);
+			TreeMap<Integer, Long> expected = new TreeMap<Integer, Long>();
+			for (int i = 0; i < 50000; i++) {
+				int key = random.nextInt(5000);
+				if (random.nextInt(2) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, (long) key);
+					expected.put(key, (long) key);
+				}
+			}
+			assertEquals(expected.size(), tree.size());
+			for (int key = 0; key < 5000; key++) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			assertEquals(new ArrayList<Long>(expected.values()), tree.greaterThanEqualToKeySearch(-1));
+			assertEquals(new ArrayList<Long>(expected.values()), tree.lessThanEqualToKeySearch(5000));
+
+			// Emptied pages are reused, so the file does not keep growing
+			int pageCount = 0;
+			for (int round = 0; round < 2; round++) {
+				for (Integer key : expected.keySet()) {
+					tree.delete(key);
+				}
+				assertEquals(0, tree.size());
+				assertEquals(0, tree.getHeight());
+				for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+					tree.insert(entry.getKey(), entry.getValue());
+				}
+				if (round == 0) {
+					pageCount = pages.getPageCount();
+				}
+			}
+			assertEquals(pageCount, pages.getPageCount());
+			assertEquals(new ArrayList<Long>(expected.values()), tree.greaterThanEqualToKeySearch(-1));
+			pages.close();
+		}
+	}
+
+	@Test
+	public void testDegreeFillsPage() throws IOException {
+		PageFile pages = new PageFile(newFile());
+		PagedBPlusTree<Long, Long> tree = new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+		// (4096 - 16) / 16 = 255 entries per leaf, 339 keys per index node
+		assertEquals(127, tree.getLeafDegree());
+		assertEquals(169, tree.getIndexDegree());
+		for (long i = 0; i < 100000; i++) {
+			tree.insert(i, -i);
+		}
+		assertEquals(3, tree.getHeight());
+		assertEquals(Long.valueOf(-4321), tree.exactMatchSearch(4321L));
+		pages.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCodecMismatch() throws IOException {
+		File file = newFile();
+		PageFile pages = new PageFile(file);
+		new PagedBPlusTree<Long, Long>(pages, Codec.LONG, Codec.LONG);
+		pages.close();
+
+		pages = new PageFile(file);
+		try {
+			new PagedBPlusTree<Integer, Long>(pages, Codec.INTEGER, Codec.LONG);
+		} finally {
+			pages.close();
+		}
+	}
+}
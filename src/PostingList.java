@@ -0,0 +1,470 @@
+import java.util.Arrays;
+
+/**
+ * The sorted, distinct row ids stored under one key of a SecondaryIndex. The
+ * representation grows with the list: a single id is held inline, up to
+ * ARRAY_LIMIT ids in a sorted long[], and longer lists as the gaps between
+ * consecutive ids, 7 bits to a byte, so runs of nearby ids take about a byte
+ * each.
+ *
+ * The gaps are cut into blocks of at most BLOCK_SIZE ids, laid out one after
+ * another in one byte array. Each block has a skip entry with its first id,
+ * where its gaps start and how many ids it holds, so contains, add and remove
+ * binary search the skip entries and then decode a single block. Adding or
+ * removing an id rewrites the one or two gaps around it in place, shifting
+ * the bytes after them; a block that grows past BLOCK_SIZE is split in two,
+ * and one that shrinks to a quarter of it is merged into a neighbour if they
+ * fit in one block. Ids are usually added in increasing order, which only
+ * appends to the last block.
+ *
+ * Row ids must not be negative.
+ */
+public class PostingList {
+
+	static final int ARRAY_LIMIT = 32;
+	static final int BLOCK_SIZE = 256;
+
+	private int size;
+	// The only id while size == 1, otherwise the largest
+	private long last;
+	// Sorted ids while 1 < size <= ARRAY_LIMIT
+	private long[] ids;
+	// Once size > ARRAY_LIMIT: the gaps between consecutive ids of each
+	// block, block after block
+	private byte[] gaps;
+	private int length;
+	// The skip entries: block b starts with the id firsts[b], followed by
+	// counts[b] - 1 gaps from offsets[b] up to the next block's offset
+	private long[] firsts;
+	private int[] offsets;
+	private int[] counts;
+	private int blocks;
+
+	public PostingList(long id) {
+		checkId(id);
+		this.size = 1;
+		this.last = id;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes used to hold the ids, skip entries
+	 *         included, not counting the object headers
+	 */
+	public int getEncodedBytes() {
+		if (gaps != null) return length + 16 * blocks;
+		if (ids != null) return 8 * ids.length;
+		return 0;
+	}
+
+	public boolean contains(long id) {
+		if (gaps != null) {
+			int b = block(id);
+			if (b < 0 || id > last) {
+				return false;
+			}
+			long current = firsts[b];
+			for (int p = offsets[b], end = end(b); current < id && p < end;) {
+				long gap = readGap(p);
+				p += sizeOf(gap);
+				current += gap;
+			}
+			return current == id;
+		}
+		if (ids != null) {
+			return Arrays.binarySearch(ids, 0, size, id) >= 0;
+		}
+		return size == 1 && last == id;
+	}
+
+	/**
+	 * Add id to the list.
+	 *
+	 * @return false if it was already there
+	 */
+	public boolean add(long id) {
+		checkId(id);
+		if (size == 0) {
+			last = id;
+			size = 1;
+			return true;
+		}
+		if (gaps != null) {
+			return addGap(id);
+		}
+		if (size < ARRAY_LIMIT) {
+			// Stays in array form, so insert in place
+			if (ids == null) {
+				if (id == last) return false;
+				ids = new long[4];
+				ids[0] = last;
+			}
+			int i = Arrays.binarySearch(ids, 0, size, id);
+			if (i >= 0) return false;
+			i = -i - 1;
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, Math.min(ARRAY_LIMIT, 2 * size));
+			}
+			System.arraycopy(ids, i, ids, i + 1, size - i);
+			ids[i] = id;
+			size++;
+			last = ids[size - 1];
+			return true;
+		}
+		// A full array, moving to the compressed form
+		int i = Arrays.binarySearch(ids, 0, size, id);
+		if (i >= 0) return false;
+		i = -i - 1;
+		long[] larger = new long[size + 1];
+		System.arraycopy(ids, 0, larger, 0, i);
+		larger[i] = id;
+		System.arraycopy(ids, i, larger, i + 1, size - i);
+		set(larger);
+		return true;
+	}
+
+	/**
+	 * Remove id from the list, moving back to a smaller form if it fits.
+	 *
+	 * @return false if it was not there
+	 */
+	public boolean remove(long id) {
+		if (gaps != null) {
+			if (!removeGap(id)) {
+				return false;
+			}
+			if (size <= ARRAY_LIMIT) {
+				set(toArray());
+			}
+			return true;
+		}
+		long[] all = toArray();
+		int i = Arrays.binarySearch(all, id);
+		if (i < 0) return false;
+		long[] smaller = new long[size - 1];
+		System.arraycopy(all, 0, smaller, 0, i);
+		System.arraycopy(all, i + 1, smaller, i, size - i - 1);
+		set(smaller);
+		return true;
+	}
+
+	/**
+	 * @return the ids in ascending order
+	 */
+	public long[] toArray() {
+		if (gaps != null) {
+			long[] all = new long[size];
+			int n = 0;
+			for (int b = 0; b < blocks; b++) {
+				long id = firsts[b];
+				all[n++] = id;
+				for (int p = offsets[b], end = end(b); p < end;) {
+					long gap = readGap(p);
+					p += sizeOf(gap);
+					id += gap;
+					all[n++] = id;
+				}
+			}
+			return all;
+		}
+		if (ids != null) {
+			return Arrays.copyOf(ids, size);
+		}
+		return size == 0 ? new long[0] : new long[] { last };
+	}
+
+	// Add id to the compressed form
+	private boolean addGap(long id) {
+		if (id > last) {
+			int b = blocks - 1;
+			if (counts[b] == BLOCK_SIZE) {
+				insertBlock(blocks, id, length, 1);
+			} else {
+				writeGap(splice(b, length, 0, id - last, -1), id - last);
+				counts[b]++;
+			}
+			last = id;
+			size++;
+			return true;
+		}
+		int b = block(id);
+		if (b < 0) {
+			// Before every id, so it becomes the first of block 0
+			b = 0;
+			writeGap(splice(0, offsets[0], 0, firsts[0] - id, -1), firsts[0] - id);
+			firsts[0] = id;
+		} else {
+			long previous = firsts[b];
+			if (previous == id) {
+				return false;
+			}
+			int p = offsets[b];
+			int end = end(b);
+			while (p < end) {
+				long gap = readGap(p);
+				long next = previous + gap;
+				if (next == id) {
+					return false;
+				}
+				if (next > id) {
+					break;
+				}
+				previous = next;
+				p += sizeOf(gap);
+			}
+			if (p < end) {
+				// Between previous and the next id, whose gap is split in two
+				long next = previous + readGap(p);
+				int q = splice(b, p, sizeOf(next - previous), id - previous, next - id);
+				writeGap(writeGap(q, id - previous), next - id);
+			} else {
+				// After the last id of the block
+				writeGap(splice(b, end, 0, id - previous, -1), id - previous);
+			}
+		}
+		counts[b]++;
+		size++;
+		if (counts[b] > BLOCK_SIZE) {
+			splitBlock(b);
+		}
+		return true;
+	}
+
+	// Remove id from the compressed form
+	private boolean removeGap(long id) {
+		int b = block(id);
+		if (b < 0 || id > last) {
+			return false;
+		}
+		long current = firsts[b];
+		int p = offsets[b];
+		int end = end(b);
+		if (current == id) {
+			if (counts[b] == 1) {
+				removeBlock(b);
+				b = -1;
+			} else {
+				// The next id becomes the first of the block
+				long gap = readGap(p);
+				splice(b, p, sizeOf(gap), -1, -1);
+				firsts[b] = id + gap;
+				counts[b]--;
+			}
+		} else {
+			while (true) {
+				if (p == end) {
+					return false;
+				}
+				long gap = readGap(p);
+				current += gap;
+				if (current == id) {
+					break;
+				}
+				if (current > id) {
+					return false;
+				}
+				p += sizeOf(gap);
+			}
+			long gap = readGap(p);
+			int n = sizeOf(gap);
+			if (p + n < end) {
+				// The gaps before and after id become one
+				long merged = gap + readGap(p + n);
+				writeGap(splice(b, p, n + sizeOf(merged - gap), merged, -1), merged);
+			} else {
+				splice(b, p, n, -1, -1);
+			}
+			counts[b]--;
+		}
+		size--;
+		if (id == last) {
+			last = lastOf(blocks - 1);
+		}
+		if (b >= 0 && counts[b] <= BLOCK_SIZE / 4) {
+			if (b + 1 < blocks && counts[b] + counts[b + 1] <= BLOCK_SIZE) {
+				mergeBlocks(b);
+			} else if (b > 0 && counts[b - 1] + counts[b] <= BLOCK_SIZE) {
+				mergeBlocks(b - 1);
+			}
+		}
+		return true;
+	}
+
+	// The last block whose first id is at most id, or -1 if there is none
+	private int block(long id) {
+		int low = 0;
+		int high = blocks - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (firsts[mid] <= id) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return high;
+	}
+
+	// Where the gaps of block b end
+	private int end(int b) {
+		return b + 1 < blocks ? offsets[b + 1] : length;
+	}
+
+	private long lastOf(int b) {
+		long id = firsts[b];
+		for (int p = offsets[b], end = end(b); p < end;) {
+			long gap = readGap(p);
+			p += sizeOf(gap);
+			id += gap;
+		}
+		return id;
+	}
+
+	// Cut block b in two at its middle id, which moves from the gaps into a
+	// new skip entry
+	private void splitBlock(int b) {
+		int half = counts[b] / 2;
+		long id = firsts[b];
+		int p = offsets[b];
+		for (int i = 1; i < half; i++) {
+			long gap = readGap(p);
+			p += sizeOf(gap);
+			id += gap;
+		}
+		long gap = readGap(p);
+		splice(b, p, sizeOf(gap), -1, -1);
+		insertBlock(b + 1, id + gap, p, counts[b] - half);
+		counts[b] = half;
+	}
+
+	// Join blocks b and b + 1, the first id of b + 1 becoming a gap
+	private void mergeBlocks(int b) {
+		long gap = firsts[b + 1] - lastOf(b);
+		writeGap(splice(b, offsets[b + 1], 0, gap, -1), gap);
+		counts[b] += counts[b + 1];
+		removeBlock(b + 1);
+	}
+
+	private void insertBlock(int b, long first, int offset, int count) {
+		if (blocks == firsts.length) {
+			int capacity = 2 * blocks;
+			firsts = Arrays.copyOf(firsts, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+		}
+		System.arraycopy(firsts, b, firsts, b + 1, blocks - b);
+		System.arraycopy(offsets, b, offsets, b + 1, blocks - b);
+		System.arraycopy(counts, b, counts, b + 1, blocks - b);
+		firsts[b] = first;
+		offsets[b] = offset;
+		counts[b] = count;
+		blocks++;
+	}
+
+	// Drop the skip entry of block b; its gaps, if any, now end block b - 1
+	private void removeBlock(int b) {
+		blocks--;
+		System.arraycopy(firsts, b + 1, firsts, b, blocks - b);
+		System.arraycopy(offsets, b + 1, offsets, b, blocks - b);
+		System.arraycopy(counts, b + 1, counts, b, blocks - b);
+	}
+
+	/**
+	 * Replace the removed bytes at position, in block b, with room for the
+	 * given gaps (-1 for none), shifting the bytes after them and the offsets
+	 * of later blocks.
+	 *
+	 * @return position, where the gaps are to be written
+	 */
+	private int splice(int b, int position, int removed, long gap1, long gap2) {
+		int added = (gap1 < 0 ? 0 : sizeOf(gap1)) + (gap2 < 0 ? 0 : sizeOf(gap2));
+		int delta = added - removed;
+		if (length + delta > gaps.length) {
+			gaps = Arrays.copyOf(gaps, Math.max(length + delta, gaps.length + gaps.length / 2));
+		}
+		System.arraycopy(gaps, position + removed, gaps, position + added, length - position - removed);
+		length += delta;
+		for (int i = b + 1; i < blocks; i++) {
+			offsets[i] += delta;
+		}
+		return position;
+	}
+
+	// Store the sorted ids in all in the smallest form that holds them
+	private void set(long[] all) {
+		size = all.length;
+		ids = null;
+		gaps = null;
+		firsts = null;
+		offsets = null;
+		counts = null;
+		length = 0;
+		blocks = 0;
+		if (size == 0) {
+			return;
+		}
+		last = all[size - 1];
+		if (size == 1) {
+			return;
+		}
+		if (size <= ARRAY_LIMIT) {
+			ids = all;
+			return;
+		}
+		int bytes = 0;
+		for (int i = 1; i < size; i++) {
+			bytes += sizeOf(all[i] - all[i - 1]);
+		}
+		gaps = new byte[Math.max(16, bytes + bytes / 2)];
+		int capacity = Math.max(4, 2 * ((size + BLOCK_SIZE - 1) / BLOCK_SIZE));
+		firsts = new long[capacity];
+		offsets = new int[capacity];
+		counts = new int[capacity];
+		for (int i = 0; i < size; i++) {
+			if (i % BLOCK_SIZE == 0) {
+				firsts[blocks] = all[i];
+				offsets[blocks] = length;
+				counts[blocks] = Math.min(BLOCK_SIZE, size - i);
+				blocks++;
+			} else {
+				length = writeGap(length, all[i] - all[i - 1]);
+			}
+		}
+	}
+
+	private long readGap(int position) {
+		long gap = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = gaps[position++];
+			gap |= (long) (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		return gap;
+	}
+
+	// The number of bytes gap takes
+	private static int sizeOf(long gap) {
+		return gap == 0 ? 1 : (70 - Long.numberOfLeadingZeros(gap)) / 7;
+	}
+
+	// Write gap at position, which must have room for it
+	private int writeGap(int position, long gap) {
+		while ((gap & ~0x7fL) != 0) {
+			gaps[position++] = (byte) (gap | 0x80);
+			gap >>>= 7;
+		}
+		gaps[position++] = (byte) gap;
+		return position;
+	}
+
+	private static void checkId(long id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Row ids must not be negative: " + id);
+		}
+	}
+}
@@ -1,10 +1,9 @@
 import static org.junit.Assert.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,25 +15,11 @@ public class SearchTests {
 	
 	@Before
 	public void loadData() {
-		tree = new BPlusTree<Long, String>(degree);
-		Scanner s=null;
 		try {
-			s = new Scanner(new File(System.getProperty("user.dir") + "/bin/largeCase1.txt"));
-			while (s.hasNextLong()) {
-				long key = s.nextLong();
-				if (s.hasNext()) {
-					String value = s.next();
-					tree.insert(key, value);
-				}
-			}
-			
-		} catch (FileNotFoundException e) {
+			tree = TreeLoader.load(new File(System.getProperty("user.dir") + "/bin/largeCase1.txt"), degree);
+		} catch (IOException e) {
 			e.printStackTrace();
-		}
-		finally {
-			if (s!=null) {
-				s.close();
-			}
+			tree = new BPlusTree<Long, String>(degree);
 		}
 	}
 	
@@ -102,4 +87,39 @@ public class SearchTests {
 		actuals.toArray(actualsArray);
 		assertArrayEquals(expecteds, actualsArray);
 	}
+
+	@Test 
+	public void findRangeBetweenKeys() {
+		String[] expecteds = {"930204Data", "939488Data", "942874Data"};
+		List<String> actuals = tree.rangeSearch(930204L, true, 953121L, false);
+		String[] actualsArray = new String[actuals.size()];
+		actuals.toArray(actualsArray);
+		assertArrayEquals(expecteds, actualsArray);
+	}
+
+	@Test
+	public void multiGetMatchesExactMatchSearch() {
+		Long[] keys = {995513L, 19105L, 930205L, 763485L, 19105L, null, 930204L, 0L, 2000000L, 21543L};
+		List<String> actuals = tree.multiGet(keys);
+		assertEquals(keys.length, actuals.size());
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(tree.exactMatchSearch(keys[i]), actuals.get(i));
+		}
+		assertEquals("995513Data", actuals.get(0));
+		assertEquals(null, actuals.get(2));
+		assertEquals("19105Data", actuals.get(4));
+	}
+
+	@Test
+	public void multiGetOverEveryKey() {
+		List<Long> sorted = new ArrayList<Long>();
+		for (int i = 0; i <= 1000000; i += 7) {
+			sorted.add((long) i);
+		}
+		List<String> actuals = tree.multiGet(sorted.toArray(new Long[0]));
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(tree.exactMatchSearch(sorted.get(i)), actuals.get(i));
+		}
+		assertTrue(new BPlusTree<Long, String>(degree).multiGet(new Long[] { 1L }).get(0) == null);
+	}
 }
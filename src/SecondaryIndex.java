@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * A secondary index over a BPlusTree: many rows can share a key, and each
+ * key is stored once with a PostingList of the ids of the rows that have it.
+ * A low-cardinality column therefore takes one leaf entry per distinct value
+ * rather than one per row, and exactMatchSearch returns every match at once.
+ */
+public class SecondaryIndex<K extends Comparable<K>> {
+
+	private static final long[] NONE = new long[0];
+
+	private final BPlusTree<K, PostingList> tree;
+	private long size;
+
+	public SecondaryIndex(int degree) {
+		this.tree = new BPlusTree<K, PostingList>(degree);
+	}
+
+	/**
+	 * @return the tree holding one posting list per distinct key
+	 */
+	public BPlusTree<K, PostingList> getTree() {
+		return tree;
+	}
+
+	/**
+	 * @return the number of key/row id pairs in the index
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Add a row with the given key.
+	 *
+	 * @param key
+	 * @param rowId
+	 *            - The id of the row, not negative.
+	 * @return false if the pair was already in the index
+	 */
+	public boolean insert(K key, long rowId) {
+		// One descent finds the key's posting list or where the key goes
+		LeafNode<K, PostingList> leaf = tree.leafFor(key);
+		int i = leaf == null ? -1 : leaf.findValueIndex(key);
+		if (i < 0) {
+			tree.insertInto(leaf, key, new PostingList(rowId));
+		} else if (!leaf.getValue(i).add(rowId)) {
+			return false;
+		}
+		size++;
+		return true;
+	}
+
+	/**
+	 * Remove a row with the given key. The key itself is deleted from the
+	 * tree along with its last row.
+	 *
+	 * @param key
+	 * @param rowId
+	 * @return false if the pair was not in the index
+	 */
+	public boolean delete(K key, long rowId) {
+		PostingList postings = tree.exactMatchSearch(key);
+		if (postings == null || !postings.remove(rowId)) {
+			return false;
+		}
+		if (postings.size() == 0) {
+			tree.delete(key);
+		}
+		size--;
+		return true;
+	}
+
+	/**
+	 * Search for every row with the given key.
+	 *
+	 * @param key
+	 *            - The key to search for.
+	 * @return the ids of the matching rows in ascending order, empty if there
+	 *         are none.
+	 */
+	public long[] exactMatchSearch(K key) {
+		PostingList postings = tree.exactMatchSearch(key);
+		return postings == null ? NONE : postings.toArray();
+	}
+
+	/**
+	 * @param key
+	 * @return the number of rows with the given key
+	 */
+	public int count(K key) {
+		PostingList postings = tree.exactMatchSearch(key);
+		return postings == null ? 0 : postings.size();
+	}
+
+	/**
+	 * Search for every row with a key between lo and hi. See
+	 * BPlusTree.rangeSearch for the meaning of the parameters.
+	 *
+	 * @return the ids of the matching rows, in ascending order by key and by
+	 *         id within each key.
+	 */
+	public long[] rangeSearch(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		long[] ids = NONE;
+		int n = 0;
+		for (TreeCursor<K, PostingList> cursor = tree.rangeCursor(lo, loInclusive, hi, hiInclusive); cursor
+				.hasNext();) {
+			long[] postings = cursor.next().toArray();
+			if (n + postings.length > ids.length) {
+				ids = Arrays.copyOf(ids, Math.max(n + postings.length, 2 * ids.length));
+			}
+			System.arraycopy(postings, 0, ids, n, postings.length);
+			n += postings.length;
+		}
+		return n == ids.length ? ids : Arrays.copyOf(ids, n);
+	}
+}
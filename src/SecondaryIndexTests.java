@@ -0,0 +1,207 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class SecondaryIndexTests {
+
+	private static long[] toArray(TreeSet<Long> ids) {
+		long[] array = new long[ids.size()];
+		int i = 0;
+		for (long id : ids) {
+			array[i++] = id;
+		}
+		return array;
+	}
+
+	@Test
+	public void testPostingListGrowsAndShrinks() {
+		PostingList postings = new PostingList(5);
+		assertEquals(0, postings.getEncodedBytes());
+		assertFalse(postings.add(5));
+		assertTrue(postings.add(3));
+		assertArrayEquals(new long[] { 3, 5 }, postings.toArray());
+		assertTrue(postings.getEncodedBytes() > 0);
+
+		// Past the array limit ids are stored as gaps, one byte each here
+		for (long id = 6; id < 1000; id++) {
+			assertTrue(postings.add(id));
+		}
+		assertEquals(996, postings.size());
+		assertTrue(postings.getEncodedBytes() < 1100);
+		assertTrue(postings.contains(999));
+		assertFalse(postings.contains(4));
+
+		// Out of order and large ids still work
+		assertTrue(postings.add(4));
+		assertTrue(postings.add(1L << 40));
+		assertFalse(postings.add(4));
+		assertEquals(998, postings.size());
+		long[] ids = postings.toArray();
+		assertEquals(3, ids[0]);
+		assertEquals(4, ids[1]);
+		assertEquals(1L << 40, ids[997]);
+
+		for (long id = 4; id < 1000; id++) {
+			assertTrue(postings.remove(id));
+		}
+		assertFalse(postings.remove(4));
+		assertArrayEquals(new long[] { 3, 1L << 40 }, postings.toArray());
+		assertTrue(postings.remove(3));
+		assertTrue(postings.remove(1L << 40));
+		assertEquals(0, postings.size());
+		assertArrayEquals(new long[0], postings.toArray());
+	}
+
+	// Random adds and removes over many blocks, so that blocks are split
+	// and merged, with gaps of one to several bytes
+	@Test
+	public void testPostingListBlocks() {
+		Random random = new Random(16);
+		PostingList postings = new PostingList(0);
+		TreeSet<Long> expected = new TreeSet<Long>();
+		expected.add(0L);
+		for (int round = 0; round < 6; round++) {
+			int range = round % 2 == 0 ? 20000 : 1 << 30;
+			for (int i = 0; i < 20000; i++) {
+				long id = random.nextInt(range);
+				if (random.nextInt(round < 3 ? 4 : 2) == 0) {
+					assertEquals(expected.remove(id), postings.remove(id));
+				} else {
+					assertEquals(expected.add(id), postings.add(id));
+				}
+				assertEquals(expected.size(), postings.size());
+			}
+			assertArrayEquals(toArray(expected), postings.toArray());
+			for (int i = 0; i < 2000; i++) {
+				long id = random.nextInt(range);
+				assertEquals(expected.contains(id), postings.contains(id));
+			}
+			for (long id : expected) {
+				assertTrue(postings.contains(id));
+			}
+		}
+		// Emptied in order, down through the smaller forms
+		for (long id : toArray(expected)) {
+			assertTrue(postings.remove(id));
+		}
+		assertEquals(0, postings.size());
+		assertEquals(0, postings.getEncodedBytes());
+	}
+
+	// A new key goes straight into the leaf found for it if that has room;
+	// an empty tree, a full leaf and an augmented tree take the usual
+	// insert path
+	@Test
+	public void testInsertNewKeys() {
+		SecondaryIndex<Integer> index = new SecondaryIndex<Integer>(2);
+		BPlusTree<Integer, PostingList> tree = index.getTree();
+		assertTrue(index.insert(10, 10));
+		assertEquals(1, tree.getHeight());
+		for (int key = 20; key <= 40; key += 10) {
+			assertTrue(index.insert(key, key));
+		}
+		assertEquals(1, tree.getHeight());
+		assertEquals(4, tree.getRoot().getNumKeys());
+		assertTrue(index.insert(25, 25));
+		assertEquals(2, tree.getHeight());
+		assertArrayEquals(new long[] { 10, 20, 25, 30, 40 }, index.rangeSearch(0, true, 100, true));
+
+		// Every key from 1 to 100, inserted into the augmented tree
+		tree.augment();
+		for (int key = 100; key > 0; key--) {
+			assertEquals(key != 25 && (key % 10 != 0 || key > 40), index.insert(key, key));
+		}
+		assertFalse(index.insert(25, 25));
+		assertEquals(100, tree.countRange(null, true, null, true));
+		assertEquals(50, tree.countRange(1, true, 50, true));
+		assertEquals(Integer.valueOf(64), tree.select(63));
+		assertEquals(100, index.size());
+		for (int key = 1; key <= 100; key++) {
+			assertArrayEquals(new long[] { key }, index.exactMatchSearch(key));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeRowId() {
+		new PostingList(1).add(-1);
+	}
+
+	// A column with a handful of values keeps one tree entry per value
+	@Test
+	public void testLowCardinalityColumn() {
+		SecondaryIndex<String> index = new SecondaryIndex<String>(2);
+		String[] colors = { "red", "green", "blue" };
+		for (long row = 0; row < 30000; row++) {
+			assertTrue(index.insert(colors[(int) (row % 3)], row));
+		}
+		assertFalse(index.insert("red", 0));
+		assertEquals(30000, index.size());
+		assertTrue(index.getTree().getRoot().isLeafNode);
+		assertEquals(3, index.getTree().getRoot().getNumKeys());
+
+		long[] green = index.exactMatchSearch("green");
+		assertEquals(10000, green.length);
+		assertEquals(1, green[0]);
+		assertEquals(29998, green[9999]);
+		assertEquals(10000, index.count("blue"));
+		assertEquals(0, index.exactMatchSearch("purple").length);
+		assertEquals(0, index.count("purple"));
+
+		for (long row = 1; row < 30000; row += 3) {
+			assertTrue(index.delete("green", row));
+		}
+		assertFalse(index.delete("green", 1));
+		assertFalse(index.delete("purple", 1));
+		assertEquals(2, index.getTree().getRoot().getNumKeys());
+		assertEquals(20000, index.rangeSearch("blue", true, "red", true).length);
+	}
+
+	@Test
+	public void testRandomAgainstTreeMap() {
+		Random random = new Random(16);
+		SecondaryIndex<Integer> index = new SecondaryIndex<Integer>(3);
+		TreeMap<Integer, TreeSet<Long>> expected = new TreeMap<Integer, TreeSet<Long>>();
+		for (int i = 0; i < 50000; i++) {
+			int key = random.nextInt(200);
+			long row = random.nextInt(random.nextBoolean() ? 100 : 100000);
+			TreeSet<Long> rows = expected.get(key);
+			if (random.nextInt(3) == 0) {
+				boolean removed = rows != null && rows.remove(row);
+				assertEquals(removed, index.delete(key, row));
+				if (rows != null && rows.isEmpty()) {
+					expected.remove(key);
+				}
+			} else {
+				if (rows == null) {
+					rows = new TreeSet<Long>();
+					expected.put(key, rows);
+				}
+				assertEquals(rows.add(row), index.insert(key, row));
+			}
+		}
+		long size = 0;
+		for (int key = 0; key < 200; key++) {
+			TreeSet<Long> rows = expected.get(key);
+			assertArrayEquals(rows == null ? new long[0] : toArray(rows), index.exactMatchSearch(key));
+			size += rows == null ? 0 : rows.size();
+		}
+		assertEquals(size, index.size());
+		assertEquals(expected.size(), index.getTree().greaterThanEqualToKeySearch(0).size());
+
+		ArrayList<Long> range = new ArrayList<Long>();
+		for (Map.Entry<Integer, TreeSet<Long>> entry : expected.subMap(50, false, 150, true).entrySet()) {
+			range.addAll(entry.getValue());
+		}
+		long[] actual = index.rangeSearch(50, false, 150, true);
+		assertEquals(range.size(), actual.length);
+		for (int i = 0; i < actual.length; i++) {
+			assertEquals((long) range.get(i), actual[i]);
+		}
+	}
+}
@@ -0,0 +1,147 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SerializationTests {
+
+	private static BPlusTree<Integer, Integer> randomTree(int n, int degree, long seed) {
+		Random random = new Random(seed);
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+		for (int i = 0; i < n; i++) {
+			int key = random.nextInt(4 * n);
+			if (random.nextInt(4) == 0) {
+				tree.delete(key);
+			} else {
+				tree.insert(key, -key);
+			}
+		}
+		return tree;
+	}
+
+	@Test
+	public void testWriteTreeFormat() throws IOException {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(1);
+		for (int i = 1; i <= 7; i++) {
+			tree.insert(i, i * 10);
+		}
+		String expected = "@3/5/@%%@2/@@4/@@6/@%%[(1,10);]#[(2,20);]$[(3,30);]#[(4,40);]$[(5,50);]#[(6,60);(7,70);]$%%";
+		assertEquals(expected, Utils.outputTree(tree));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utils.writeTree(tree, bytes);
+		assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals("", Utils.outputTree(new BPlusTree<Integer, Integer>(2)));
+	}
+
+	// A tree comes back from a dump node for node, leaves linked as before
+	@Test
+	public void testDumpAndRestore() throws IOException {
+		for (int degree : new int[] { 1, 2, 16 }) {
+			BPlusTree<Integer, Integer> tree = randomTree(20000, degree, degree);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Utils.dumpTree(tree, bytes, Codec.INTEGER, Codec.INTEGER);
+			BPlusTree<Integer, Integer> restored = Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()),
+					Codec.INTEGER, Codec.INTEGER);
+			assertEquals(degree, restored.getLeafDegree());
+			assertEquals(degree, restored.getIndexDegree());
+			assertEquals(Utils.outputTree(tree), Utils.outputTree(restored));
+			assertEquals(tree.greaterThanEqualToKeySearch(0), restored.greaterThanEqualToKeySearch(0));
+			assertEquals(tree.lessThanEqualToKeySearch(40000), restored.lessThanEqualToKeySearch(40000));
+
+			// The restored tree is fully usable
+			for (int i = 0; i < 1000; i++) {
+				restored.insert(100000 + i, i);
+				restored.delete(2 * i);
+			}
+			assertEquals(Integer.valueOf(999), restored.exactMatchSearch(100999));
+		}
+	}
+
+	@Test
+	public void testDumpSeparateDegrees() throws IOException {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(8, 2);
+		for (int i = 0; i < 5000; i++) {
+			tree.insert(i * 7 % 5000, i);
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utils.dumpTree(tree, bytes, Codec.INTEGER, Codec.INTEGER);
+		BPlusTree<Integer, Integer> restored = Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()),
+				Codec.INTEGER, Codec.INTEGER);
+		assertEquals(8, restored.getLeafDegree());
+		assertEquals(2, restored.getIndexDegree());
+		assertEquals(Utils.outputTree(tree), Utils.outputTree(restored));
+		for (int i = 5000; i < 6000; i++) {
+			restored.insert(i, i);
+		}
+		assertEquals(Integer.valueOf(5999), restored.exactMatchSearch(5999));
+	}
+
+	// Restoring leaves the stream at the end of the dump, so whatever
+	// follows it can still be read
+	@Test
+	public void testRestoreConsecutiveDumps() throws IOException {
+		BPlusTree<Integer, Integer> first = randomTree(3000, 4, 5);
+		BPlusTree<Integer, Integer> second = randomTree(500, 2, 6);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utils.dumpTree(first, bytes, Codec.INTEGER, Codec.INTEGER);
+		Utils.dumpTree(second, bytes, Codec.INTEGER, Codec.INTEGER);
+		bytes.write(42);
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+		assertEquals(Utils.outputTree(first), Utils.outputTree(Utils.restoreTree(in, Codec.INTEGER, Codec.INTEGER)));
+		assertEquals(Utils.outputTree(second), Utils.outputTree(Utils.restoreTree(in, Codec.INTEGER, Codec.INTEGER)));
+		assertEquals(42, in.read());
+	}
+
+	@Test
+	public void testDumpEmptyTree() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utils.dumpTree(new BPlusTree<Long, Double>(3), bytes, Codec.LONG, Codec.DOUBLE);
+		BPlusTree<Long, Double> restored = Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()),
+				Codec.LONG, Codec.DOUBLE);
+		assertNull(restored.getRoot());
+		assertEquals(3, restored.getLeafDegree());
+		assertEquals(3, restored.getIndexDegree());
+	}
+
+	// Dumps from before leaves and index nodes had their own degrees
+	@Test
+	public void testRestoreSingleDegreeDump() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(0x42505431);
+		data.writeInt(5);
+		data.writeInt(4);
+		data.writeInt(4);
+		data.writeInt(0);
+		BPlusTree<Integer, Integer> restored = Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()),
+				Codec.INTEGER, Codec.INTEGER);
+		assertEquals(5, restored.getLeafDegree());
+		assertEquals(5, restored.getIndexDegree());
+	}
+
+	@Test(expected = IOException.class)
+	public void testRestoreWithOtherCodecs() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utils.dumpTree(randomTree(100, 2, 1), bytes, Codec.INTEGER, Codec.INTEGER);
+		Utils.restoreTree(new ByteArrayInputStream(bytes.toByteArray()), Codec.LONG, Codec.INTEGER);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRestoreGarbage() throws IOException {
+		Utils.restoreTree(new ByteArrayInputStream(new byte[64]), Codec.INTEGER, Codec.INTEGER);
+	}
+
+	// Quadratic string building took minutes at this size
+	@Test(timeout = 10000)
+	public void testOutputLargeTree() {
+		BPlusTree<Integer, Integer> tree = randomTree(300000, 8, 3);
+		String layout = Utils.outputTree(tree);
+		assertTrue(layout.endsWith("]$%%"));
+	}
+}
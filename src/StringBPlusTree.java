@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A B+ tree specialized for String keys, for indexes on long keys that share
+ * prefixes, such as URLs or tenant-prefixed ids. It has the same operations
+ * and node layout rules as BPlusTree, but each node stores its keys prefix
+ * compressed in one char array (see StringNode) instead of as String
+ * objects, and index nodes hold the shortest separator between two leaves
+ * rather than a copy of the first key of the right one. Nodes take much less
+ * memory, most of all in the index levels.
+ */
+public class StringBPlusTree<T> {
+
+	private StringNode<T> root;
+	private int degree = 2;
+
+	// Index nodes and child positions along the last root-to-leaf descent
+	private StringIndexNode<T>[] path;
+	private int[] slots;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public StringBPlusTree(int degree) {
+		this.degree = degree;
+		this.path = new StringIndexNode[8];
+		this.slots = new int[8];
+	}
+
+	public StringNode<T> getRoot() {
+		return root;
+	}
+
+	public int getDegree() {
+		return this.degree;
+	}
+
+	/**
+	 * Search the value for a specific key, and return the data at that key.
+	 * 
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(String key) {
+		if (key == null) return null;
+		StringLeafNode<T> leaf = findLeafNode(key);
+		if (leaf == null) return null;
+		return leaf.findValue(key);
+	}
+
+	private StringLeafNode<T> findLeafNode(String key) {
+		StringNode<T> node = root;
+		while (node != null && !node.isLeafNode) {
+			StringIndexNode<T> indexNode = (StringIndexNode<T>) node;
+			node = indexNode.getChild(indexNode.findChildIndex(key));
+		}
+		return (StringLeafNode<T>) node;
+	}
+
+	/**
+	 * Like findLeafNode, but records the index nodes and child positions on
+	 * the way down in path and slots.
+	 * 
+	 * @return the depth of the leaf, which is the number of entries in path
+	 */
+	private int descend(String key) {
+		StringNode<T> node = root;
+		int depth = 0;
+		while (!node.isLeafNode) {
+			StringIndexNode<T> indexNode = (StringIndexNode<T>) node;
+			int i = indexNode.findChildIndex(key);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+				slots = Arrays.copyOf(slots, 2 * depth);
+			}
+			path[depth] = indexNode;
+			slots[depth] = i;
+			depth++;
+			node = indexNode.getChild(i);
+		}
+		return depth;
+	}
+
+	private StringLeafNode<T> leafAt(int depth) {
+		if (depth == 0) return (StringLeafNode<T>) root;
+		return (StringLeafNode<T>) path[depth - 1].getChild(slots[depth - 1]);
+	}
+
+	/**
+	 * Performs a greater than or equal to range search on the tree.
+	 * 
+	 * @param key
+	 *            - The value to perform a >= search against.
+	 * @return The values of the items that had a key >= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> greaterThanEqualToKeySearch(String key) {
+		ArrayList<T> values = new ArrayList<T>();
+		StringLeafNode<T> leaf = findLeafNode(key);
+		if (leaf == null) return values;
+		for (int i = leaf.lowerBound(key); i < leaf.getNumKeys(); i++) {
+			values.add(leaf.getValue(i));
+		}
+		for (leaf = leaf.getNextLeaf(); leaf != null; leaf = leaf.getNextLeaf()) {
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				values.add(leaf.getValue(i));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Performs a less than or equal to range search on the tree.
+	 * 
+	 * @param key
+	 *            - The value to perform a <= search against.
+	 * @return The values of the items that had a key <= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> lessThanEqualToKeySearch(String key) {
+		ArrayList<T> values = new ArrayList<T>();
+		StringNode<T> node = root;
+		while (node != null && !node.isLeafNode) {
+			node = ((StringIndexNode<T>) node).getChild(0);
+		}
+		for (StringLeafNode<T> leaf = (StringLeafNode<T>) node; leaf != null; leaf = leaf.getNextLeaf()) {
+			for (int i = 0; i < leaf.getNumKeys(); i++) {
+				if (leaf.compareKey(i, key) > 0) return values;
+				values.add(leaf.getValue(i));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Insert a key/value pair into the tree
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void insert(String key, T value) {
+		if (root == null) {
+			root = new StringLeafNode<T>(this.degree);
+		}
+		int depth = descend(key);
+		StringLeafNode<T> leaf = leafAt(depth);
+		leaf.insertSorted(key, value);
+
+		// Usual case: leaf has space
+		if (!leaf.isOverflowed()) {
+			return;
+		}
+		// Split the leaf, then push the new child up until a parent has room
+		StringNode<T> newChild = leaf.splitNode();
+		String splitKey = StringNode.shortestSeparator(leaf.getKey(leaf.getNumKeys() - 1), newChild.getKey(0));
+		while (depth > 0) {
+			depth--;
+			StringIndexNode<T> parent = path[depth];
+			parent.insertSorted(slots[depth], splitKey, newChild);
+			path[depth] = null;
+			if (!parent.isOverflowed()) {
+				clearPath(depth);
+				return;
+			}
+			splitKey = parent.getKey(parent.degree);
+			newChild = parent.splitNode();
+		}
+		// Root was just split
+		root = new StringIndexNode<T>(splitKey, root, newChild, this.degree);
+	}
+
+	/**
+	 * Delete a key/value pair from this tree
+	 * 
+	 * @param key
+	 */
+	public void delete(String key) {
+		if (root == null) {
+			return;
+		}
+		int depth = descend(key);
+		StringLeafNode<T> leaf = leafAt(depth);
+		int i = leaf.findValueIndex(key);
+		if (i == -1) {
+			clearPath(depth);
+			return;
+		}
+		leaf.remove(i);
+
+		// Walk back up while the node below is underflowed, merging with or
+		// borrowing from a sibling under the same parent
+		StringNode<T> node = leaf;
+		while (depth > 0 && node.isUnderflowed()) {
+			depth--;
+			StringIndexNode<T> parent = path[depth];
+			path[depth] = null;
+			int s = slots[depth] > 0 ? slots[depth] - 1 : 0;
+			boolean merged;
+			if (node.isLeafNode) {
+				merged = StringLeafNode.handleLeafNodeUnderflow((StringLeafNode<T>) parent.getChild(s),
+						(StringLeafNode<T>) parent.getChild(s + 1), parent, s);
+			} else {
+				merged = StringIndexNode.handleIndexNodeUnderflow((StringIndexNode<T>) parent.getChild(s),
+						(StringIndexNode<T>) parent.getChild(s + 1), parent, s);
+			}
+			if (merged) {
+				parent.remove(s);
+			}
+			node = parent;
+		}
+		clearPath(depth);
+
+		// Readjust the root
+		if (!root.isLeafNode && root.getNumKeys() == 0) {
+			root = ((StringIndexNode<T>) root).getChild(0);
+		}
+	}
+
+	// Drop references kept in path so removed nodes can be collected
+	private void clearPath(int depth) {
+		for (int i = 0; i < depth; i++) {
+			path[i] = null;
+		}
+	}
+}
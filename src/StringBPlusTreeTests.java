@@ -0,0 +1,155 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class StringBPlusTreeTests {
+
+	private static String url(int tenant, int item) {
+		return "https://example.com/tenants/" + tenant + "/items/" + item;
+	}
+
+	@Test
+	public void testShortestSeparator() {
+		assertEquals("b", StringNode.shortestSeparator("apple", "banana"));
+		assertEquals("abd", StringNode.shortestSeparator("abc", "abdef"));
+		assertEquals("abcd", StringNode.shortestSeparator("abc", "abcdef"));
+		assertEquals("", StringNode.shortestSeparator("", ""));
+		assertEquals("a", StringNode.shortestSeparator("", "abc"));
+	}
+
+	@Test
+	public void testLeavesArePrefixCompressed() {
+		StringBPlusTree<Integer> tree = new StringBPlusTree<Integer>(2);
+		for (int i = 10; i < 15; i++) {
+			tree.insert(url(7, i), i);
+		}
+		// Split into [10, 11] and [12, 13, 14], separated by "...items/12"
+		StringIndexNode<Integer> root = (StringIndexNode<Integer>) tree.getRoot();
+		assertEquals(url(7, 12), root.getKey(0));
+		StringNode<Integer> right = root.getChild(1);
+		assertEquals(url(7, 1).length(), right.getPrefixLength());
+		assertEquals(url(7, 1).length() + 3, right.getStoredChars());
+		assertEquals(url(7, 13), right.getKey(1));
+
+		// A key outside the prefix shortens it
+		tree.insert("https://example.com/z", 0);
+		assertEquals("https://example.com/".length(), right.getPrefixLength());
+		assertEquals(url(7, 13), right.getKey(1));
+		assertEquals("https://example.com/z", right.getKey(3));
+		for (int i = 10; i < 15; i++) {
+			assertEquals(Integer.valueOf(i), tree.exactMatchSearch(url(7, i)));
+		}
+		assertEquals(null, tree.exactMatchSearch(url(7, 1)));
+		assertEquals(null, tree.exactMatchSearch("https://example.com/"));
+		assertEquals(null, tree.exactMatchSearch("a"));
+		assertEquals(null, tree.exactMatchSearch("z"));
+	}
+
+	@Test
+	public void testSeparatorsAreTruncated() {
+		StringBPlusTree<Integer> tree = new StringBPlusTree<Integer>(2);
+		tree.insert("alpha", 1);
+		tree.insert("beta", 2);
+		tree.insert("gamma", 3);
+		tree.insert("gammas", 4);
+		tree.insert("zeta", 5);
+		StringIndexNode<Integer> root = (StringIndexNode<Integer>) tree.getRoot();
+		assertEquals("g", root.getKey(0));
+		assertEquals(Integer.valueOf(2), tree.exactMatchSearch("beta"));
+		assertEquals(Integer.valueOf(3), tree.exactMatchSearch("gamma"));
+		assertEquals(null, tree.exactMatchSearch("g"));
+	}
+
+	@Test
+	public void testSearchEmptyTree() {
+		StringBPlusTree<String> tree = new StringBPlusTree<String>(2);
+		assertEquals(null, tree.exactMatchSearch("a"));
+		assertEquals(null, tree.exactMatchSearch(null));
+		assertEquals(0, tree.greaterThanEqualToKeySearch("a").size());
+		assertEquals(0, tree.lessThanEqualToKeySearch("a").size());
+		tree.delete("a");
+	}
+
+	@Test
+	public void testRangeSearch() {
+		StringBPlusTree<Integer> tree = new StringBPlusTree<Integer>(2);
+		for (int i = 0; i < 100; i += 2) {
+			tree.insert(url(1, 100 + i), i);
+		}
+		List<Integer> greater = tree.greaterThanEqualToKeySearch(url(1, 191));
+		assertArrayEquals(new Integer[] { 92, 94, 96, 98 }, greater.toArray(new Integer[0]));
+		List<Integer> less = tree.lessThanEqualToKeySearch(url(1, 108));
+		assertArrayEquals(new Integer[] { 0, 2, 4, 6, 8 }, less.toArray(new Integer[0]));
+		assertEquals(50, tree.greaterThanEqualToKeySearch("").size());
+		assertEquals(0, tree.lessThanEqualToKeySearch(url(1, 1)).size());
+	}
+
+	// Random inserts and deletes checked against a TreeMap, with keys that
+	// share prefixes of every length, including keys that are prefixes of
+	// other keys
+	@Test
+	public void testRandomAgainstTreeMap() {
+		Random random = new Random(333);
+		for (int degree : new int[] { 1, 2, 3, 16 }) {
+			StringBPlusTree<String> tree = new StringBPlusTree<String>(degree);
+			TreeMap<String, String> expected = new TreeMap<String, String>();
+			for (int i = 0; i < 20000; i++) {
+				String key = randomKey(random);
+				if (random.nextInt(3) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, key + "!");
+					expected.put(key, key + "!");
+				}
+			}
+			testNodeInvariants(tree.getRoot(), true);
+			for (int i = 0; i < 5000; i++) {
+				String key = randomKey(random);
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			for (String key : expected.keySet()) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			String middle = url(5, 5);
+			assertEquals(new ArrayList<String>(expected.tailMap(middle).values()),
+					tree.greaterThanEqualToKeySearch(middle));
+			assertEquals(new ArrayList<String>(expected.headMap(middle, true).values()),
+					tree.lessThanEqualToKeySearch(middle));
+
+			// Delete everything that is left
+			ArrayList<String> keys = new ArrayList<String>(expected.keySet());
+			Collections.shuffle(keys, random);
+			for (String key : keys) {
+				tree.delete(key);
+			}
+			assertEquals(0, tree.getRoot().getNumKeys());
+			assertTrue(tree.getRoot().isLeafNode);
+		}
+	}
+
+	private static String randomKey(Random random) {
+		String key = url(random.nextInt(10), random.nextInt(500));
+		return key.substring(0, key.length() - random.nextInt(3) * random.nextInt(15));
+	}
+
+	public <T> void testNodeInvariants(StringNode<T> node, boolean isRoot) {
+		assertFalse(node.getNumKeys() > 2 * node.degree);
+		assertFalse(!isRoot && node.getNumKeys() < node.degree);
+		for (int i = 1; i < node.getNumKeys(); i++) {
+			assertTrue(node.getKey(i - 1).compareTo(node.getKey(i)) < 0);
+			assertTrue(node.getKey(i).startsWith(node.getKey(0).substring(0, node.getPrefixLength())));
+		}
+		if (!(node.isLeafNode)) {
+			StringIndexNode<T> index = (StringIndexNode<T>) node;
+			for (int i = 0; i < index.getNumChildren(); i++)
+				testNodeInvariants(index.getChild(i), false);
+		}
+	}
+}
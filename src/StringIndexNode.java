@@ -0,0 +1,124 @@
+public class StringIndexNode<T> extends StringNode<T> {
+
+	// m keys, m+1 children
+	private StringNode<T>[] children;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public StringIndexNode(int degree) {
+		super(degree);
+		isLeafNode = false;
+		children = new StringNode[2 * degree + 2];
+	}
+
+	public StringIndexNode(String key, StringNode<T> child0, StringNode<T> child1, int degree) {
+		this(degree);
+		insertKey(0, key);
+		children[0] = child0;
+		children[1] = child1;
+	}
+
+	public StringNode<T> getChild(int i) {
+		return children[i];
+	}
+
+	public int getNumChildren() {
+		return numKeys + 1;
+	}
+
+	/**
+	 * Index of the child whose subtree should hold the given key: the child i
+	 * such that K(i-1) <= key < K(i).
+	 */
+	public int findChildIndex(String key) {
+		return upperBound(key);
+	}
+
+	/**
+	 * insert key at position i and child to the right of it, at i + 1
+	 */
+	public void insertSorted(int i, String key, StringNode<T> child) {
+		insertKey(i, key);
+		System.arraycopy(children, i + 1, children, i + 2, numKeys - 1 - i);
+		children[i + 1] = child;
+	}
+
+	/**
+	 * remove key i and the child to the right of it, at i + 1
+	 */
+	public void remove(int i) {
+		removeKey(i);
+		System.arraycopy(children, i + 2, children, i + 1, numKeys - i);
+		children[numKeys + 1] = null;
+	}
+
+	/**
+	 * Split an overflowed index node. The first D keys and D+1 children stay,
+	 * the last D keys and D+1 children move to the returned right node, and
+	 * the key in between is dropped from both: callers read it with
+	 * getKey(degree) before splitting and push it up to the parent.
+	 *
+	 * @return the new right node
+	 */
+	public StringIndexNode<T> splitNode() {
+		StringIndexNode<T> rightNode = new StringIndexNode<T>(this.degree);
+		String[] keys = getKeys();
+		int moved = numKeys - this.degree - 1;
+		rightNode.setKeys(keys, this.degree + 1, keys.length);
+		System.arraycopy(children, this.degree + 1, rightNode.children, 0, moved + 1);
+		for (int i = this.degree + 1; i <= keys.length; i++) {
+			children[i] = null;
+		}
+		setKeys(keys, 0, this.degree);
+		return rightNode;
+	}
+
+	/**
+	 * Handle IndexNode Underflow (merge or redistribution)
+	 *
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	public static <T> boolean handleIndexNodeUnderflow(StringIndexNode<T> left, StringIndexNode<T> right,
+			StringIndexNode<T> parent, int i) {
+		int degree = left.degree;
+		// Every key and child of both nodes, with the splitting key between
+		int total = left.numKeys + 1 + right.numKeys;
+		String[] keys = new String[total];
+		System.arraycopy(left.getKeys(), 0, keys, 0, left.numKeys);
+		keys[left.numKeys] = parent.getKey(i);
+		System.arraycopy(right.getKeys(), 0, keys, left.numKeys + 1, right.numKeys);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		StringNode<T>[] children = new StringNode[total + 1];
+		System.arraycopy(left.children, 0, children, 0, left.numKeys + 1);
+		System.arraycopy(right.children, 0, children, left.numKeys + 1, right.numKeys + 1);
+		if (total > 2 * degree) {
+			// Rotate through the parent so that left has exactly D keys
+			left.setKeys(keys, 0, degree);
+			parent.replaceKey(i, keys[degree]);
+			right.setKeys(keys, degree + 1, total);
+			System.arraycopy(children, 0, left.children, 0, degree + 1);
+			System.arraycopy(children, degree + 1, right.children, 0, total - degree);
+			for (int j = degree + 1; j < left.children.length; j++) {
+				left.children[j] = null;
+			}
+			for (int j = total - degree; j < right.children.length; j++) {
+				right.children[j] = null;
+			}
+			return false;
+		}
+		// Pull the splitting key down and move everything from right to left
+		left.setKeys(keys, 0, total);
+		System.arraycopy(children, 0, left.children, 0, total + 1);
+		right.setKeys(keys, 0, 0);
+		return true;
+	}
+}
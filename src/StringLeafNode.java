@@ -0,0 +1,152 @@
+public class StringLeafNode<T> extends StringNode<T> {
+	private Object[] values;
+	private StringLeafNode<T> nextLeaf;
+	private StringLeafNode<T> previousLeaf;
+
+	public StringLeafNode(int degree) {
+		super(degree);
+		isLeafNode = true;
+		values = new Object[2 * degree + 1];
+	}
+
+	/**
+	 * insert key/value into this node so that it still remains sorted
+	 *
+	 * @param key
+	 * @param value
+	 */
+	public void insertSorted(String key, T value) {
+		insert(upperBound(key), key, value);
+	}
+
+	/**
+	 * Index of the given key in this node, or -1 if it is not here.
+	 */
+	public int findValueIndex(String key) {
+		int i = lowerBound(key);
+		if (i < numKeys && compareKey(i, key) == 0) return i;
+		return -1;
+	}
+
+	public T findValue(String key) {
+		int i = findValueIndex(key);
+		if (i == -1) return null;
+		return getValue(i);
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int i) {
+		return (T) values[i];
+	}
+
+	public void insert(int i, String key, T value) {
+		insertKey(i, key);
+		System.arraycopy(values, i, values, i + 1, numKeys - 1 - i);
+		values[i] = value;
+	}
+
+	public void remove(int i) {
+		removeKey(i);
+		System.arraycopy(values, i + 1, values, i, numKeys - i);
+		values[numKeys] = null;
+	}
+
+	public StringLeafNode<T> getNextLeaf() {
+		return this.nextLeaf;
+	}
+
+	public StringLeafNode<T> getPreviousLeaf() {
+		return this.previousLeaf;
+	}
+
+	public void setNextLeaf(StringLeafNode<T> node) {
+		this.nextLeaf = node;
+	}
+
+	public void setPreviousLeaf(StringLeafNode<T> node) {
+		this.previousLeaf = node;
+	}
+
+	/**
+	 * Split an overflowed leaf node. The first D entries stay, the rest move
+	 * to the returned right node. Both halves get the longest prefix their
+	 * keys share, which is usually longer than the one they had together.
+	 *
+	 * @return the new right node
+	 */
+	public StringLeafNode<T> splitNode() {
+		StringLeafNode<T> rightNode = new StringLeafNode<T>(this.degree);
+		String[] keys = getKeys();
+		int moved = numKeys - this.degree;
+		rightNode.setKeys(keys, this.degree, keys.length);
+		System.arraycopy(values, this.degree, rightNode.values, 0, moved);
+		setKeys(keys, 0, this.degree);
+		for (int i = this.degree; i < keys.length; i++) {
+			values[i] = null;
+		}
+
+		// Set sibling pointers
+		rightNode.nextLeaf = this.nextLeaf;
+		if (this.nextLeaf != null) {
+			this.nextLeaf.previousLeaf = rightNode;
+		}
+		rightNode.previousLeaf = this;
+		this.nextLeaf = rightNode;
+		return rightNode;
+	}
+
+	/**
+	 * Handle LeafNode Underflow (merge or redistribution)
+	 *
+	 * @param left
+	 *            : the smaller node
+	 * @param right
+	 *            : the bigger node
+	 * @param parent
+	 *            : their parent index node
+	 * @param i
+	 *            : the position of the splitting key between left and right
+	 *            in parent
+	 * @return true if right was merged into left, so that parent can delete
+	 *         the splitting key. false if entries were redistributed
+	 */
+	public static <T> boolean handleLeafNodeUnderflow(StringLeafNode<T> left, StringLeafNode<T> right,
+			StringIndexNode<T> parent, int i) {
+		int degree = left.degree;
+		int total = left.numKeys + right.numKeys;
+		String[] keys = new String[total];
+		System.arraycopy(left.getKeys(), 0, keys, 0, left.numKeys);
+		System.arraycopy(right.getKeys(), 0, keys, left.numKeys, right.numKeys);
+		Object[] values = new Object[total];
+		System.arraycopy(left.values, 0, values, 0, left.numKeys);
+		System.arraycopy(right.values, 0, values, left.numKeys, right.numKeys);
+		// Redistribute so that left has exactly D entries
+		if (total >= 2 * degree) {
+			left.setKeys(keys, 0, degree);
+			right.setKeys(keys, degree, total);
+			System.arraycopy(values, 0, left.values, 0, degree);
+			System.arraycopy(values, degree, right.values, 0, total - degree);
+			for (int j = degree; j < left.values.length; j++) {
+				left.values[j] = null;
+			}
+			for (int j = total - degree; j < right.values.length; j++) {
+				right.values[j] = null;
+			}
+			// Replace key value in parent entry by a separator for the new
+			// boundary
+			parent.replaceKey(i, shortestSeparator(keys[degree - 1], keys[degree]));
+			return false;
+		}
+		// Move all entries from right to left node
+		left.setKeys(keys, 0, total);
+		System.arraycopy(values, 0, left.values, 0, total);
+		right.setKeys(keys, 0, 0);
+
+		// Adjust sibling pointers
+		if (right.nextLeaf != null) {
+			right.nextLeaf.previousLeaf = left;
+		}
+		left.nextLeaf = right.nextLeaf;
+		return true;
+	}
+}
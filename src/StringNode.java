@@ -0,0 +1,260 @@
+import java.util.Arrays;
+
+/**
+ * Base class for the nodes of a StringBPlusTree. Keys are stored prefix
+ * compressed: the prefix shared by every key in the node is kept once, and
+ * the rest of each key is packed back to back into a single char array, so
+ * a node holds no String objects at all. A search compares the key with the
+ * prefix once and then only with the packed suffixes.
+ *
+ * The prefix is recomputed whenever a node is rebuilt by a split, merge or
+ * redistribution, and shortened when a key that does not share it is
+ * inserted. It is always common to every key, if not always the longest.
+ */
+public abstract class StringNode<T> {
+	private static final char[] EMPTY = new char[0];
+
+	protected boolean isLeafNode;
+	protected int numKeys;
+	protected int degree;
+
+	private char[] prefix = EMPTY;
+	// Key i without the prefix is chars[ends[i - 1] .. ends[i]), from 0 for i = 0
+	private char[] chars = EMPTY;
+	private int[] ends;
+
+	public StringNode(int degree) {
+		this.degree = degree;
+		this.ends = new int[2 * degree + 1];
+	}
+
+	public boolean isOverflowed() {
+		return numKeys > 2 * degree;
+	}
+
+	public boolean isUnderflowed() {
+		return numKeys < degree;
+	}
+
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	public String getKey(int i) {
+		int start = start(i);
+		char[] key = Arrays.copyOf(prefix, prefix.length + ends[i] - start);
+		System.arraycopy(chars, start, key, prefix.length, ends[i] - start);
+		return new String(key);
+	}
+
+	public int getPrefixLength() {
+		return prefix.length;
+	}
+
+	/**
+	 * @return the number of chars stored for the keys of this node, counting
+	 *         the shared prefix once
+	 */
+	public int getStoredChars() {
+		return prefix.length + end();
+	}
+
+	/**
+	 * Compare key i with the given key, as getKey(i).compareTo(key) would,
+	 * without building key i.
+	 */
+	public int compareKey(int i, String key) {
+		int diff = comparePrefix(key);
+		if (diff != 0) return -diff;
+		return compareSuffix(i, key);
+	}
+
+	/**
+	 * Index of the first key that is strictly greater than the given key, or
+	 * getNumKeys() if there is none.
+	 */
+	public int upperBound(String key) {
+		return search(key, true);
+	}
+
+	/**
+	 * Index of the first key that is greater than or equal to the given key,
+	 * or getNumKeys() if there is none.
+	 */
+	public int lowerBound(String key) {
+		return search(key, false);
+	}
+
+	private int search(String key, boolean upper) {
+		int diff = comparePrefix(key);
+		if (diff != 0) return diff < 0 ? 0 : numKeys;
+		int low = 0, high = numKeys;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			diff = compareSuffix(mid, key);
+			if (diff < 0 || upper && diff == 0) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	// 0 if key starts with the prefix, otherwise negative if key sorts before
+	// every key with the prefix and positive if after
+	private int comparePrefix(String key) {
+		int n = Math.min(prefix.length, key.length());
+		for (int j = 0; j < n; j++) {
+			int diff = key.charAt(j) - prefix[j];
+			if (diff != 0) return diff;
+		}
+		return key.length() < prefix.length ? -1 : 0;
+	}
+
+	// Compare key i with a key known to start with the prefix
+	private int compareSuffix(int i, String key) {
+		int start = start(i);
+		int length = ends[i] - start;
+		int keyLength = key.length() - prefix.length;
+		int n = Math.min(length, keyLength);
+		for (int j = 0; j < n; j++) {
+			int diff = chars[start + j] - key.charAt(prefix.length + j);
+			if (diff != 0) return diff;
+		}
+		return length - keyLength;
+	}
+
+	/**
+	 * insert key at position i, shortening the prefix if key does not share
+	 * it
+	 */
+	protected void insertKey(int i, String key) {
+		if (numKeys == 0) {
+			prefix = key.toCharArray();
+		} else {
+			int shared = 0;
+			int n = Math.min(prefix.length, key.length());
+			while (shared < n && prefix[shared] == key.charAt(shared)) {
+				shared++;
+			}
+			if (shared < prefix.length) {
+				shortenPrefix(shared);
+			}
+		}
+		int length = key.length() - prefix.length;
+		int start = start(i);
+		int end = end();
+		if (chars.length < end + length) {
+			chars = Arrays.copyOf(chars, Math.max(end + length, 2 * chars.length));
+		}
+		System.arraycopy(chars, start, chars, start + length, end - start);
+		key.getChars(prefix.length, key.length(), chars, start);
+		System.arraycopy(ends, i, ends, i + 1, numKeys - i);
+		ends[i] = start;
+		numKeys++;
+		for (int j = i; j < numKeys; j++) {
+			ends[j] += length;
+		}
+	}
+
+	protected void removeKey(int i) {
+		int start = start(i);
+		int length = ends[i] - start;
+		System.arraycopy(chars, ends[i], chars, start, end() - ends[i]);
+		numKeys--;
+		for (int j = i; j < numKeys; j++) {
+			ends[j] = ends[j + 1] - length;
+		}
+	}
+
+	public void replaceKey(int i, String key) {
+		removeKey(i);
+		insertKey(i, key);
+	}
+
+	/**
+	 * @return every key of this node, in order
+	 */
+	protected String[] getKeys() {
+		String[] keys = new String[numKeys];
+		for (int i = 0; i < numKeys; i++) {
+			keys[i] = getKey(i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Replace the keys of this node by the sorted keys[from..to), with the
+	 * longest prefix they share.
+	 */
+	protected void setKeys(String[] keys, int from, int to) {
+		numKeys = to - from;
+		if (numKeys == 0) {
+			prefix = EMPTY;
+			return;
+		}
+		// The keys are sorted, so the first and last share the least
+		String first = keys[from], last = keys[to - 1];
+		int shared = 0;
+		int n = Math.min(first.length(), last.length());
+		while (shared < n && first.charAt(shared) == last.charAt(shared)) {
+			shared++;
+		}
+		prefix = first.substring(0, shared).toCharArray();
+		int end = 0;
+		for (int i = from; i < to; i++) {
+			end += keys[i].length() - shared;
+		}
+		if (chars.length < end) {
+			chars = new char[end];
+		}
+		end = 0;
+		for (int i = from; i < to; i++) {
+			keys[i].getChars(shared, keys[i].length(), chars, end);
+			end += keys[i].length() - shared;
+			ends[i - from] = end;
+		}
+	}
+
+	private void shortenPrefix(int length) {
+		int moved = prefix.length - length;
+		char[] larger = new char[end() + numKeys * moved];
+		int start = 0, end = 0;
+		for (int i = 0; i < numKeys; i++) {
+			System.arraycopy(prefix, length, larger, end, moved);
+			end += moved;
+			System.arraycopy(chars, start, larger, end, ends[i] - start);
+			end += ends[i] - start;
+			start = ends[i];
+			ends[i] = end;
+		}
+		chars = larger;
+		prefix = Arrays.copyOf(prefix, length);
+	}
+
+	private int start(int i) {
+		return i == 0 ? 0 : ends[i - 1];
+	}
+
+	private int end() {
+		return numKeys == 0 ? 0 : ends[numKeys - 1];
+	}
+
+	/**
+	 * The shortest string s with below < s <= key, used as the separator
+	 * between two nodes instead of all of key. For URL-like keys that share
+	 * long prefixes this is often only a few chars past the shared part.
+	 *
+	 * @param below
+	 *            - The largest key left of the separator.
+	 * @param key
+	 *            - The smallest key right of the separator, > below.
+	 */
+	public static String shortestSeparator(String below, String key) {
+		int shared = 0;
+		int n = Math.min(below.length(), key.length());
+		while (shared < n && below.charAt(shared) == key.charAt(shared)) {
+			shared++;
+		}
+		if (shared == key.length()) return key;
+		return key.substring(0, shared + 1);
+	}
+}
@@ -2,6 +2,8 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
 
 import org.junit.Test;
 
@@ -214,6 +216,38 @@ public class Tests {
 		assertTrue(treeDepth(tree.getRoot()) < 11);
 	}
 
+	// Random inserts and deletes checked against a TreeMap
+	@Test
+	public void testRandomInsertDelete() {
+		Random random = new Random(333);
+		Integer keys[] = new Integer[5000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		for (int degree : new int[] { 1, 2, 3, 8 }) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(degree);
+			TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+			for (int i = 0; i < 50000; i++) {
+				Integer key = keys[random.nextInt(keys.length)];
+				if (random.nextInt(2) == 0) {
+					tree.delete(key);
+					expected.remove(key);
+				} else if (!expected.containsKey(key)) {
+					tree.insert(key, key);
+					expected.put(key, key);
+				}
+			}
+			testTreeInvariants(tree);
+			for (Integer key : keys) {
+				assertEquals(expected.get(key), tree.exactMatchSearch(key));
+			}
+			for (Integer key : expected.keySet()) {
+				tree.delete(key);
+			}
+			assertEquals("[]$%%", Utils.outputTree(tree));
+		}
+	}
+
 	public <K extends Comparable<K>, T> void testTreeInvariants(
 			BPlusTree<K, T> tree) {
 		for (Node<K, T> child : ((IndexNode<K, T>) (tree.getRoot())).getChildren())
@@ -0,0 +1,108 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy cursor over the entries of a BPlusTree. It walks the leaf chain
+ * (nextLeaf when ascending, previousLeaf when descending) one entry at a time,
+ * so a caller can stop after any number of rows without the rest of the range
+ * ever being touched or copied.
+ * 
+ * next() returns the value of the next entry; getKey() and getValue() give
+ * the key and value of the entry next() returned last.
+ * 
+ * Cursors are obtained from BPlusTree.cursor, cursorFrom,
+ * descendingCursorFrom and rangeCursor. They do not see a consistent view if the tree is
+ * changed while they are in use.
+ */
+public class TreeCursor<K extends Comparable<K>, T> implements Iterator<T> {
+	private LeafNode<K, T> leaf;
+	private int index;
+	private final boolean ascending;
+	private final K bound;
+	private final boolean boundInclusive;
+	private K key;
+	private T value;
+
+	/**
+	 * @param leaf
+	 *            - The leaf holding the first entry, or null for an empty
+	 *            cursor.
+	 * @param index
+	 *            - The position of the first entry in leaf. It may be past
+	 *            either end of leaf, in which case the cursor moves on to the
+	 *            neighbouring leaf.
+	 * @param ascending
+	 *            - Whether to walk towards larger keys.
+	 */
+	TreeCursor(LeafNode<K, T> leaf, int index, boolean ascending) {
+		this(leaf, index, ascending, null, false);
+	}
+
+	/**
+	 * @param bound
+	 *            - The key at which to stop: the largest key returned when
+	 *            ascending, the smallest when descending. Null for no bound.
+	 * @param boundInclusive
+	 *            - Whether an entry with exactly the bound key is returned.
+	 */
+	TreeCursor(LeafNode<K, T> leaf, int index, boolean ascending, K bound, boolean boundInclusive) {
+		this.leaf = leaf;
+		this.index = index;
+		this.ascending = ascending;
+		this.bound = bound;
+		this.boundInclusive = boundInclusive;
+		settle();
+	}
+
+	public boolean hasNext() {
+		return leaf != null;
+	}
+
+	public T next() {
+		if (leaf == null) {
+			throw new NoSuchElementException();
+		}
+		key = leaf.getKey(index);
+		value = leaf.getValue(index);
+		index += ascending ? 1 : -1;
+		settle();
+		return value;
+	}
+
+	/**
+	 * @return the key of the entry last returned by next()
+	 */
+	public K getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the value of the entry last returned by next()
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	// Move past leaves that have no entries left in the walking direction,
+	// and end the cursor once the next entry is beyond the bound
+	private void settle() {
+		if (ascending) {
+			while (leaf != null && index >= leaf.getNumKeys()) {
+				leaf = leaf.getNextLeaf();
+				index = 0;
+			}
+		} else {
+			while (leaf != null && index < 0) {
+				leaf = leaf.getPreviousLeaf();
+				index = leaf == null ? -1 : leaf.getNumKeys() - 1;
+			}
+		}
+		if (leaf != null && bound != null) {
+			int diff = leaf.getKey(index).compareTo(bound);
+			if (!ascending) diff = -diff;
+			if (diff > 0 || diff == 0 && !boundInclusive) {
+				leaf = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a BPlusTree from a text file of whitespace-separated key/value
+ * pairs, one per line, such as largeCase1.txt:
+ *
+ * 533066 533066Data
+ *
+ * The file is memory-mapped and parsed byte by byte, with no Scanner, regex
+ * or per-line String, into arrays of keys and values, which are then
+ * bulk-loaded. Large files are split at line breaks into chunks that are
+ * parsed in parallel, so loading runs at about the speed the file can be
+ * read.
+ *
+ * Keys are decimal longs and values any run of non-whitespace bytes,
+ * decoded as UTF-8. A key without a value at the very end of the file is
+ * ignored, as Scanner-based loading did; any other key that is not a valid
+ * long is an error.
+ */
+public class TreeLoader {
+
+	// Chunks are mapped one at a time, so they must stay below 2GB
+	static final long MAX_CHUNK = 1 << 30;
+	// Files smaller than this are parsed on the calling thread
+	static final long MIN_PARALLEL = 1 << 20;
+
+	/**
+	 * Load a tree from the given file, parsing it on as many threads as
+	 * there are processors.
+	 *
+	 * @param file
+	 * @param degree
+	 *            - The degree of the new tree.
+	 * @return a tree holding every pair in the file
+	 */
+	public static BPlusTree<Long, String> load(File file, int degree) throws IOException {
+		return load(file, degree, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Load a tree from the given file.
+	 *
+	 * @param file
+	 * @param degree
+	 *            - The degree of the new tree.
+	 * @param threads
+	 *            - The number of threads to parse with, at least 1.
+	 * @return a tree holding every pair in the file
+	 */
+	public static BPlusTree<Long, String> load(File file, int degree, int threads) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		List<Pairs> chunks;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			chunks = parse(channel, split(channel, threads), threads);
+		}
+
+		int n = 0;
+		for (Pairs chunk : chunks) {
+			n += chunk.size;
+		}
+		Long[] keys = new Long[n];
+		String[] values = new String[n];
+		int i = 0;
+		for (Pairs chunk : chunks) {
+			for (int j = 0; j < chunk.size; j++, i++) {
+				keys[i] = chunk.keys[j];
+				values[i] = chunk.values[j];
+			}
+		}
+		BPlusTree<Long, String> tree = new BPlusTree<Long, String>(degree);
+		tree.bulkLoad(keys, values);
+		return tree;
+	}
+
+	/**
+	 * Positions to split the file at, from 0 to its size: about one chunk
+	 * per thread, or more to keep chunks under MAX_CHUNK, each starting
+	 * just after a line break.
+	 */
+	static long[] split(FileChannel channel, int threads) throws IOException {
+		long size = channel.size();
+		int chunks = size < MIN_PARALLEL ? 1 : threads;
+		chunks = (int) Math.max(chunks, (size + MAX_CHUNK - 1) / MAX_CHUNK);
+		long[] bounds = new long[chunks + 1];
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		int k = 1;
+		for (int c = 1; c < chunks; c++) {
+			long position = Math.max(bounds[k - 1], size / chunks * c);
+			// Move forward to just after the next line break
+			boolean found = false;
+			while (!found && position < size) {
+				window.clear();
+				int read = channel.read(window, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read && !found; i++) {
+					found = window.get(i) == '\n';
+					position++;
+				}
+			}
+			if (position < size && position > bounds[k - 1]) {
+				bounds[k++] = position;
+			}
+		}
+		bounds[k] = size;
+		return Arrays.copyOf(bounds, k + 1);
+	}
+
+	private static List<Pairs> parse(final FileChannel channel, long[] bounds, int threads) throws IOException {
+		List<Pairs> chunks = new ArrayList<Pairs>(bounds.length - 1);
+		if (bounds.length == 2) {
+			chunks.add(parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, bounds[1])));
+			return chunks;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, bounds.length - 1));
+		try {
+			List<Future<Pairs>> futures = new ArrayList<Future<Pairs>>();
+			for (int c = 0; c + 1 < bounds.length; c++) {
+				final long start = bounds[c], end = bounds[c + 1];
+				futures.add(pool.submit(new Callable<Pairs>() {
+					public Pairs call() throws IOException {
+						return parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+					}
+				}));
+			}
+			for (Future<Pairs> future : futures) {
+				chunks.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		return chunks;
+	}
+
+	/**
+	 * Parse the key/value pairs in buffer, from its position to its limit.
+	 */
+	static Pairs parse(ByteBuffer buffer) throws IOException {
+		Pairs pairs = new Pairs();
+		byte[] token = new byte[64];
+		int i = buffer.position(), limit = buffer.limit();
+		while (true) {
+			i = skipWhitespace(buffer, i, limit);
+			if (i == limit) {
+				return pairs;
+			}
+			// The key
+			int keyStart = i;
+			boolean negative = false;
+			if (buffer.get(i) == '-' || buffer.get(i) == '+') {
+				negative = buffer.get(i) == '-';
+				i++;
+			}
+			int digits = i;
+			long key = 0;
+			for (; i < limit && !isWhitespace(buffer.get(i)); i++) {
+				int digit = buffer.get(i) - '0';
+				// Accumulate negatively so that Long.MIN_VALUE fits
+				if (digit < 0 || digit > 9 || key < (Long.MIN_VALUE + digit) / 10) {
+					throw new IOException("Not a valid key at byte " + keyStart + " of its chunk");
+				}
+				key = key * 10 - digit;
+			}
+			if (i == digits || !negative && key == Long.MIN_VALUE) {
+				throw new IOException("Not a valid key at byte " + keyStart + " of its chunk");
+			}
+
+			// The value
+			i = skipWhitespace(buffer, i, limit);
+			if (i == limit) {
+				return pairs;
+			}
+			int length = 0;
+			for (; i < limit && !isWhitespace(buffer.get(i)); i++) {
+				if (length == token.length) {
+					token = Arrays.copyOf(token, 2 * length);
+				}
+				token[length++] = buffer.get(i);
+			}
+			pairs.add(negative ? key : -key, new String(token, 0, length, StandardCharsets.UTF_8));
+		}
+	}
+
+	private static int skipWhitespace(ByteBuffer buffer, int i, int limit) {
+		while (i < limit && isWhitespace(buffer.get(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+	}
+
+	/**
+	 * Growable arrays of the pairs parsed from one chunk.
+	 */
+	static class Pairs {
+		long[] keys = new long[1024];
+		String[] values = new String[1024];
+		int size;
+
+		void add(long key, String value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * size);
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			keys[size] = key;
+			values[size++] = value;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.Test;
+
+public class TreeLoaderTests {
+
+	private static File write(String contents) throws IOException {
+		File file = File.createTempFile("treeloader", ".txt");
+		file.deleteOnExit();
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			out.write(contents);
+		}
+		return file;
+	}
+
+	// The values in key order, as loading with Scanner and insert gives them
+	private static List<String> scannerLoad(File file) throws IOException {
+		BPlusTree<Long, String> tree = new BPlusTree<Long, String>(4);
+		try (Scanner s = new Scanner(file, "UTF-8")) {
+			while (s.hasNextLong()) {
+				long key = s.nextLong();
+				if (s.hasNext()) {
+					tree.insert(key, s.next());
+				}
+			}
+		}
+		return tree.greaterThanEqualToKeySearch(Long.MIN_VALUE);
+	}
+
+	@Test
+	public void testLargeCaseMatchesScanner() throws IOException {
+		File file = new File(System.getProperty("user.dir") + "/bin/largeCase1.txt");
+		BPlusTree<Long, String> tree = TreeLoader.load(file, 8);
+		assertEquals(scannerLoad(file), tree.greaterThanEqualToKeySearch(Long.MIN_VALUE));
+		assertEquals("763485Data", tree.exactMatchSearch(763485L));
+	}
+
+	@Test
+	public void testSeparatorsAndSigns() throws IOException {
+		File file = write("  3 three\r\n-2\tminus-two\n+1 one\n\n9223372036854775807 max\n"
+				+ "-9223372036854775808 min\n0 caf\u00e9\n7");
+		BPlusTree<Long, String> tree = TreeLoader.load(file, 2, 1);
+		assertEquals(scannerLoad(file), tree.greaterThanEqualToKeySearch(Long.MIN_VALUE));
+		assertEquals("minus-two", tree.exactMatchSearch(-2L));
+		assertEquals("one", tree.exactMatchSearch(1L));
+		assertEquals("max", tree.exactMatchSearch(Long.MAX_VALUE));
+		assertEquals("min", tree.exactMatchSearch(Long.MIN_VALUE));
+		assertEquals("caf\u00e9", tree.exactMatchSearch(0L));
+		assertNull(tree.exactMatchSearch(7L));
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		BPlusTree<Long, String> tree = TreeLoader.load(write(""), 2);
+		assertNull(tree.getRoot());
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidKey() throws IOException {
+		TreeLoader.load(write("1 one\n2x two\n"), 2);
+	}
+
+	@Test(expected = IOException.class)
+	public void testKeyOverflow() throws IOException {
+		TreeLoader.load(write("9223372036854775808 big\n"), 2);
+	}
+
+	// Big enough to be split into chunks, which must give the same tree as
+	// parsing it in one piece
+	@Test
+	public void testParallelChunks() throws IOException {
+		Random random = new Random(20);
+		StringBuilder contents = new StringBuilder();
+		List<Long> keys = new ArrayList<Long>();
+		while (contents.length() < 3 * TreeLoader.MIN_PARALLEL) {
+			long key = random.nextInt(1000000) - 500000;
+			keys.add(key);
+			contents.append(key).append(' ').append("v").append(key).append('\n');
+		}
+		File file = write(contents.toString());
+		BPlusTree<Long, String> serial = TreeLoader.load(file, 16, 1);
+		BPlusTree<Long, String> parallel = TreeLoader.load(file, 16, 4);
+		assertEquals(Utils.outputTree(serial), Utils.outputTree(parallel));
+		List<String> values = parallel.greaterThanEqualToKeySearch(Long.MIN_VALUE);
+		assertEquals(keys.size(), values.size());
+		assertEquals(scannerLoad(file), values);
+	}
+}
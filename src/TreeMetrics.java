@@ -0,0 +1,268 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for one BPlusTree, enabled with
+ * BPlusTree.enableMetrics. A tree with metrics disabled holds no
+ * TreeMetrics at all and pays one null check per operation.
+ *
+ * Everything is kept in LongAdders, which stripe their count over several
+ * cells when threads contend, so recording stays cheap enough to leave on
+ * under load. Every operation is counted, but only one in sampleInterval on
+ * each thread is timed, counted off per thread so that the hot path writes
+ * nothing shared besides the adders: reading the clock around each lookup costs more than the two
+ * clock reads themselves, because it keeps the processor from overlapping
+ * the cache misses of one lookup with the next. Reads are not atomic across
+ * counters: a report taken while the tree is busy may be off by the
+ * operations in flight.
+ */
+public class TreeMetrics {
+
+	public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+	// What start() returns for an operation that is not timed
+	static final long UNSAMPLED = Long.MIN_VALUE;
+
+	/**
+	 * A histogram of latencies in power-of-two buckets: bucket b counts the
+	 * values v with 2^(b-1) <= v < 2^b nanoseconds, and bucket 0 counts 0.
+	 */
+	public static class Histogram {
+		private final LongAdder[] buckets = new LongAdder[64];
+		private final LongAdder total = new LongAdder();
+		private final LongAdder operations = new LongAdder();
+
+		Histogram() {
+			for (int b = 0; b < buckets.length; b++) {
+				buckets[b] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Count one operation that took nanos.
+		 */
+		public void record(long nanos) {
+			operations.increment();
+			buckets[bucket(nanos)].increment();
+			total.add(nanos);
+		}
+
+		/**
+		 * Count count operations that took nanos between them, each as the
+		 * average.
+		 */
+		public void record(long nanos, int count) {
+			if (count == 0) return;
+			operations.add(count);
+			buckets[bucket(nanos / count)].add(count);
+			total.add(nanos);
+		}
+
+		/**
+		 * Count one operation, timing it if it was sampled.
+		 * 
+		 * @param start
+		 *            - What TreeMetrics.start() returned when it began.
+		 */
+		void end(long start) {
+			if (start == UNSAMPLED) {
+				operations.increment();
+			} else {
+				record(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Like end(start), for a batch of count operations.
+		 */
+		void end(long start, int count) {
+			if (start == UNSAMPLED) {
+				operations.add(count);
+			} else {
+				record(System.nanoTime() - start, count);
+			}
+		}
+
+		private static int bucket(long nanos) {
+			return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos);
+		}
+
+		/**
+		 * @return the number of operations, timed or not
+		 */
+		public long getCount() {
+			return operations.sum();
+		}
+
+		/**
+		 * @return the number of operations that were timed
+		 */
+		public long getSampleCount() {
+			long count = 0;
+			for (LongAdder bucket : buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		public long getBucketCount(int b) {
+			return buckets[b].sum();
+		}
+
+		/**
+		 * @return the mean of the times recorded, 0 if there are none
+		 */
+		public double getMean() {
+			long count = getSampleCount();
+			return count == 0 ? 0 : (double) total.sum() / count;
+		}
+
+		/**
+		 * @param fraction
+		 *            - The fraction of values to cover, e.g. 0.99.
+		 * @return the upper end of the bucket holding that fraction of the
+		 *         times recorded, which is within a factor of 2 of the true
+		 *         percentile, or 0 if nothing was recorded
+		 */
+		public long getPercentile(double fraction) {
+			long count = getSampleCount();
+			long target = (long) Math.ceil(count * fraction);
+			long seen = 0;
+			for (int b = 0; b < buckets.length; b++) {
+				seen += buckets[b].sum();
+				if (seen >= target && seen > 0) {
+					return b == 0 ? 0 : b == 63 ? Long.MAX_VALUE : (1L << b) - 1;
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count=%d mean=%.0fns p50<=%dns p99<=%dns", getCount(), getMean(), getPercentile(0.5),
+					getPercentile(0.99));
+		}
+	}
+
+	private final int sampleInterval;
+	// Operations started on each thread, for sampling
+	private final ThreadLocal<int[]> ticks = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	final Histogram lookups = new Histogram();
+	final Histogram rangeScans = new Histogram();
+	final Histogram inserts = new Histogram();
+	final Histogram deletes = new Histogram();
+	final LongAdder cursors = new LongAdder();
+	final LongAdder leafSplits = new LongAdder();
+	final LongAdder indexSplits = new LongAdder();
+	final LongAdder leafMerges = new LongAdder();
+	final LongAdder indexMerges = new LongAdder();
+	final LongAdder leafRedistributions = new LongAdder();
+	final LongAdder indexRedistributions = new LongAdder();
+
+	/**
+	 * @param sampleInterval
+	 *            - Time one operation in this many, at least 1.
+	 */
+	public TreeMetrics(int sampleInterval) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("sampleInterval must be at least 1");
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Call at the start of an operation and pass the result to end() on the
+	 * operation's histogram once it is done.
+	 * 
+	 * @return the start time if the operation is to be timed, otherwise
+	 *         UNSAMPLED
+	 */
+	long start() {
+		int[] ticks = this.ticks.get();
+		if (++ticks[0] % sampleInterval != 0) {
+			return UNSAMPLED;
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * @return latencies of exactMatchSearch, with each key of a multiGet
+	 *         batch recorded as the average over the batch
+	 */
+	public Histogram getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * @return latencies of rangeSearch and the searches built on it
+	 */
+	public Histogram getRangeScans() {
+		return rangeScans;
+	}
+
+	/**
+	 * @return latencies of insert, with each key of an insertAll batch
+	 *         recorded as the average over the batch
+	 */
+	public Histogram getInserts() {
+		return inserts;
+	}
+
+	public Histogram getDeletes() {
+		return deletes;
+	}
+
+	/**
+	 * @return the number of cursors opened
+	 */
+	public long getCursors() {
+		return cursors.sum();
+	}
+
+	/**
+	 * @return the number of nodes split off full leaves
+	 */
+	public long getLeafSplits() {
+		return leafSplits.sum();
+	}
+
+	/**
+	 * @return the number of nodes split off full index nodes
+	 */
+	public long getIndexSplits() {
+		return indexSplits.sum();
+	}
+
+	public long getLeafMerges() {
+		return leafMerges.sum();
+	}
+
+	public long getIndexMerges() {
+		return indexMerges.sum();
+	}
+
+	public long getLeafRedistributions() {
+		return leafRedistributions.sum();
+	}
+
+	public long getIndexRedistributions() {
+		return indexRedistributions.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "lookups: " + lookups + "\nrange scans: " + rangeScans + "\ninserts: " + inserts + "\ndeletes: "
+				+ deletes + "\ncursors=" + getCursors() + " splits=" + getLeafSplits() + "/" + getIndexSplits()
+				+ " merges=" + getLeafMerges() + "/" + getIndexMerges() + " redistributions="
+				+ getLeafRedistributions() + "/" + getIndexRedistributions() + " (leaf/index)";
+	}
+}
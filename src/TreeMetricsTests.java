@@ -0,0 +1,183 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TreeMetricsTests {
+
+	@Test
+	public void testDisabledByDefault() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		assertNull(tree.getMetrics());
+		tree.insert(1, 1);
+		TreeMetrics metrics = tree.enableMetrics();
+		assertSame(metrics, tree.enableMetrics());
+		assertEquals(0, metrics.getInserts().getCount());
+		tree.disableMetrics();
+		assertNull(tree.getMetrics());
+	}
+
+	// Every leaf but the first came from a leaf split, and every index node
+	// from an index split or from a root split growing the tree
+	@Test
+	public void testSplitsMatchTheTree() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		TreeMetrics metrics = tree.enableMetrics();
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(i * 7919 % 1000, i);
+		}
+		assertEquals(1000, metrics.getInserts().getCount());
+		int[] nodes = new int[2];
+		countNodes(tree.getRoot(), nodes);
+		assertEquals(nodes[0] - 1, metrics.getLeafSplits());
+		assertEquals(nodes[1] - (tree.getHeight() - 1), metrics.getIndexSplits());
+
+		// insertAll splits a node several ways at once
+		Integer[] keys = new Integer[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = 1000 + i;
+		}
+		tree.insertAll(keys, keys);
+		assertEquals(2000, metrics.getInserts().getCount());
+		nodes = new int[2];
+		countNodes(tree.getRoot(), nodes);
+		assertEquals(nodes[0] - 1, metrics.getLeafSplits());
+		assertEquals(nodes[1] - (tree.getHeight() - 1), metrics.getIndexSplits());
+	}
+
+	@Test
+	public void testDeletesMergeAndRedistribute() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(i, i);
+		}
+		TreeMetrics metrics = tree.enableMetrics();
+		for (int i = 0; i < 1000; i += 2) {
+			tree.delete(i);
+		}
+		for (int i = 999; i > 0; i -= 2) {
+			tree.delete(i);
+		}
+		assertEquals(1000, metrics.getDeletes().getCount());
+		assertTrue(metrics.getLeafMerges() > 0);
+		assertTrue(metrics.getLeafRedistributions() > 0);
+		assertTrue(metrics.getIndexMerges() > 0);
+		assertEquals(1, tree.getHeight());
+		assertEquals(0, metrics.getLeafSplits());
+	}
+
+	@Test
+	public void testSearchesAreCounted() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		TreeMetrics metrics = tree.enableMetrics();
+		Integer[] keys = { 1, 2, 3, 4, 5 };
+		tree.insertAll(keys, keys);
+		tree.exactMatchSearch(3);
+		tree.multiGet(keys);
+		assertEquals(6, metrics.getLookups().getCount());
+		assertEquals(4, tree.greaterThanEqualToKeySearch(2).size());
+		assertEquals(1, metrics.getRangeScans().getCount());
+		tree.cursor();
+		tree.descendingCursorFrom(3);
+		assertEquals(2, metrics.getCursors());
+		assertEquals(1, metrics.getRangeScans().getCount());
+	}
+
+	@Test
+	public void testHeightAndFillFactor() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		assertEquals(0, tree.getHeight());
+		assertEquals(0, tree.getLeafFillFactor(), 0);
+		Integer[] keys = new Integer[64];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = i;
+		}
+		// 16 full leaves under 4 index nodes of 3 keys and a root of 3 keys
+		tree.bulkLoad(keys, keys);
+		assertEquals(3, tree.getHeight());
+		assertEquals(1.0, tree.getLeafFillFactor(), 1e-9);
+		assertEquals(0.75, tree.getIndexFillFactor(), 1e-9);
+		tree.bulkLoad(keys, keys, 0.5);
+		assertEquals(0.5, tree.getLeafFillFactor(), 1e-9);
+	}
+
+	@Test
+	public void testHistogram() {
+		TreeMetrics.Histogram histogram = new TreeMetrics.Histogram();
+		assertEquals(0, histogram.getMean(), 0);
+		assertEquals(0, histogram.getPercentile(0.5));
+		for (int i = 0; i < 99; i++) {
+			histogram.record(100);
+		}
+		histogram.record(5000);
+		assertEquals(100, histogram.getCount());
+		assertEquals(99, histogram.getBucketCount(7));
+		assertEquals(127, histogram.getPercentile(0.5));
+		assertEquals(127, histogram.getPercentile(0.99));
+		assertEquals(8191, histogram.getPercentile(1));
+		assertEquals(149, histogram.getMean(), 1e-9);
+		histogram.record(1000, 10);
+		assertEquals(110, histogram.getCount());
+		assertEquals(109, histogram.getBucketCount(7));
+	}
+
+	// Every operation is counted but only one in the sample interval timed
+	@Test
+	public void testSampling() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		TreeMetrics metrics = tree.enableMetrics(4);
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		assertEquals(100, metrics.getInserts().getCount());
+		assertEquals(25, metrics.getInserts().getSampleCount());
+		for (int i = 0; i < 100; i++) {
+			tree.exactMatchSearch(i);
+		}
+		assertEquals(100, metrics.getLookups().getCount());
+		assertEquals(25, metrics.getLookups().getSampleCount());
+		assertTrue(metrics.getLookups().getMean() > 0);
+
+		tree.disableMetrics();
+		metrics = tree.enableMetrics(1);
+		tree.delete(0);
+		assertEquals(1, metrics.getDeletes().getSampleCount());
+	}
+
+	// Each thread times one in the sample interval of its own operations
+	@Test
+	public void testSamplingPerThread() throws InterruptedException {
+		final BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(2);
+		for (int i = 0; i < 100; i++) {
+			tree.insert(i, i);
+		}
+		TreeMetrics metrics = tree.enableMetrics(4);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 100; i++) {
+						tree.exactMatchSearch(i);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(400, metrics.getLookups().getCount());
+		assertEquals(100, metrics.getLookups().getSampleCount());
+	}
+
+	private static <K extends Comparable<K>, T> void countNodes(Node<K, T> node, int[] nodes) {
+		if (node.isLeafNode) {
+			nodes[0]++;
+			return;
+		}
+		nodes[1]++;
+		IndexNode<K, T> index = (IndexNode<K, T>) node;
+		for (int i = 0; i < index.getNumChildren(); i++) {
+			countNodes(index.getChild(i), nodes);
+		}
+	}
+}
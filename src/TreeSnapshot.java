@@ -0,0 +1,201 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One version of a CopyOnWriteBPlusTree. The nodes it reaches are immutable,
+ * so everything read through a snapshot, however long it takes, sees the tree
+ * exactly as it was when the snapshot was taken, while writers go on
+ * building newer versions next to it. Taking one costs a single volatile
+ * read; it holds nothing but its root and size, and the nodes it no longer
+ * shares with the tree are collected once it is dropped.
+ */
+public class TreeSnapshot<K extends Comparable<K>, T> {
+
+	private final CopyOnWriteNode<K, T> root;
+	private final int size;
+	private final int height;
+
+	TreeSnapshot(CopyOnWriteNode<K, T> root, int size) {
+		this.root = root;
+		this.size = size;
+		int height = 1;
+		for (CopyOnWriteNode<K, T> node = root; !node.isLeafNode; node = node.getChild(0)) {
+			height++;
+		}
+		this.height = height;
+	}
+
+	public CopyOnWriteNode<K, T> getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return the number of entries in this version of the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Search the value for a specific key.
+	 *
+	 * @param key
+	 *            - The key to search for.
+	 * @return value - The value of the item found. If key not found, null.
+	 */
+	public T exactMatchSearch(K key) {
+		if (key == null) return null;
+		CopyOnWriteNode<K, T> node = root;
+		while (!node.isLeafNode) {
+			node = node.getChild(node.upperBound(key));
+		}
+		int i = node.lowerBound(key);
+		if (i < node.getNumKeys() && node.getKey(i).compareTo(key) == 0) {
+			return node.getValue(i);
+		}
+		return null;
+	}
+
+	/**
+	 * @param key
+	 *            - The value to perform a >= search against.
+	 * @return The values of the items that had a key >= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> greaterThanEqualToKeySearch(K key) {
+		return this.rangeSearch(key, true, null, true);
+	}
+
+	/**
+	 * @param key
+	 *            - The value to perform a <= search against.
+	 * @return The values of the items that had a key <= to what was given, in
+	 *         ascending order by key.
+	 */
+	public List<T> lessThanEqualToKeySearch(K key) {
+		return this.rangeSearch(null, true, key, true);
+	}
+
+	/**
+	 * Performs a bounded range search. See BPlusTree.rangeSearch for the
+	 * meaning of the parameters.
+	 *
+	 * @return The values of the items in the range, in ascending order by key.
+	 */
+	public List<T> rangeSearch(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		ArrayList<T> values = new ArrayList<>();
+		for (Cursor<K, T> cursor = this.rangeCursor(lo, loInclusive, hi, hiInclusive); cursor.hasNext();) {
+			values.add(cursor.next());
+		}
+		return values;
+	}
+
+	/**
+	 * Returns a lazy cursor over the entries between lo and hi, in ascending
+	 * key order. See BPlusTree.rangeSearch for the meaning of the parameters.
+	 *
+	 * @return a cursor positioned before the first key in the range
+	 */
+	public Cursor<K, T> rangeCursor(K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+		return new Cursor<K, T>(this, lo, loInclusive, hi, hiInclusive);
+	}
+
+	/**
+	 * @return a lazy cursor over every entry, in ascending key order
+	 */
+	public Cursor<K, T> cursor() {
+		return this.rangeCursor(null, true, null, true);
+	}
+
+	/**
+	 * A lazy, ascending cursor over a snapshot. Leaves are not linked, so it
+	 * keeps the path from the root to its leaf and moves on to the next leaf
+	 * through the lowest ancestor that has a child further right. Like
+	 * TreeCursor, getKey() and getValue() give the entry next() returned last.
+	 */
+	public static class Cursor<K extends Comparable<K>, T> implements Iterator<T> {
+		// path[h] is the node at depth h and slots[h] the position in it:
+		// the child being walked for an index node, the next entry for the leaf
+		private final CopyOnWriteNode<K, T>[] path;
+		private final int[] slots;
+		private final K bound;
+		private final boolean boundInclusive;
+		private boolean done;
+		private K key;
+		private T value;
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Cursor(TreeSnapshot<K, T> snapshot, K lo, boolean loInclusive, K hi, boolean hiInclusive) {
+			this.path = new CopyOnWriteNode[snapshot.height];
+			this.slots = new int[snapshot.height];
+			this.bound = hi;
+			this.boundInclusive = hiInclusive;
+			CopyOnWriteNode<K, T> node = snapshot.root;
+			int h = 0;
+			while (!node.isLeafNode) {
+				path[h] = node;
+				slots[h] = lo == null ? 0 : node.upperBound(lo);
+				node = node.getChild(slots[h++]);
+			}
+			path[h] = node;
+			slots[h] = lo == null ? 0 : loInclusive ? node.lowerBound(lo) : node.upperBound(lo);
+			settle();
+		}
+
+		public boolean hasNext() {
+			return !done;
+		}
+
+		public T next() {
+			if (done) {
+				throw new NoSuchElementException();
+			}
+			int leaf = path.length - 1;
+			key = path[leaf].getKey(slots[leaf]);
+			value = path[leaf].getValue(slots[leaf]);
+			slots[leaf]++;
+			settle();
+			return value;
+		}
+
+		/**
+		 * @return the key of the entry last returned by next()
+		 */
+		public K getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the value of the entry last returned by next()
+		 */
+		public T getValue() {
+			return value;
+		}
+
+		// Move past the end of exhausted leaves and stop at the bound
+		private void settle() {
+			int leaf = path.length - 1;
+			if (slots[leaf] == path[leaf].getNumKeys()) {
+				int h = leaf - 1;
+				while (h >= 0 && slots[h] == path[h].getNumChildren() - 1) {
+					h--;
+				}
+				if (h < 0) {
+					done = true;
+					return;
+				}
+				slots[h]++;
+				for (; h < leaf; h++) {
+					path[h + 1] = path[h].getChild(slots[h]);
+					slots[h + 1] = 0;
+				}
+			}
+			if (bound != null) {
+				int diff = path[leaf].getKey(slots[leaf]).compareTo(bound);
+				done = diff > 0 || diff == 0 && !boundInclusive;
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+import java.util.function.IntPredicate;
+
+/**
+ * The 2Q policy. Pages seen once wait in a FIFO queue (A1in), and only pages
+ * that are used again after leaving it are promoted to the main LRU queue
+ * (Am). The ids of pages recently evicted from A1in are remembered in A1out
+ * to spot those second uses. A large scan therefore only churns A1in instead
+ * of flushing the hot pages out of the cache.
+ *
+ * A1out is a FrameList of slots, each holding the id of a remembered page,
+ * indexed by page id, so a second use is found and dropped from it in
+ * constant time.
+ */
+public class TwoQueueEviction implements EvictionPolicy {
+	private FrameList in = new FrameList(0);
+	private FrameList main = new FrameList(0);
+	private int[] pageOf = new int[0];
+	// A1out: slots in FIFO order, the page in each slot, and the slot of
+	// each page
+	private FrameList out = new FrameList(0);
+	private int[] outPage = new int[0];
+	private IntIntMap outSlot = new IntIntMap(0);
+	private int[] freeSlots = new int[0];
+	private int numFreeSlots;
+	private static final IntPredicate ANY = new IntPredicate() {
+		public boolean test(int slot) {
+			return true;
+		}
+	};
+
+	private int inTarget;
+	private int outTarget;
+
+	public void reset(int frames) {
+		in = new FrameList(frames);
+		main = new FrameList(frames);
+		pageOf = new int[frames];
+		// Sizes suggested in the 2Q paper
+		inTarget = Math.max(1, frames / 4);
+		outTarget = Math.max(1, frames / 2);
+		// One slot more than A1out holds, for the page remembered last
+		out = new FrameList(outTarget + 1);
+		outPage = new int[outTarget + 1];
+		outSlot = new IntIntMap(outTarget + 1);
+		freeSlots = new int[outTarget + 1];
+		for (numFreeSlots = 0; numFreeSlots <= outTarget; numFreeSlots++) {
+			freeSlots[numFreeSlots] = numFreeSlots;
+		}
+	}
+
+	public void loaded(int frame, int page) {
+		pageOf[frame] = page;
+		int slot = outSlot.remove(page);
+		if (slot != IntIntMap.NONE) {
+			out.remove(slot);
+			freeSlots[numFreeSlots++] = slot;
+			main.addFirst(frame);
+		} else {
+			in.addFirst(frame);
+		}
+	}
+
+	public void accessed(int frame) {
+		if (main.contains(frame)) {
+			main.remove(frame);
+			main.addFirst(frame);
+		}
+	}
+
+	public void removed(int frame) {
+		if (main.contains(frame)) {
+			main.remove(frame);
+		} else {
+			in.remove(frame);
+		}
+	}
+
+	public int victim(IntPredicate evictable) {
+		if (in.size() > inTarget || main.size() == 0) {
+			int frame = in.removeLast(evictable);
+			if (frame != -1) {
+				remember(pageOf[frame]);
+				return frame;
+			}
+		}
+		int frame = main.removeLast(evictable);
+		if (frame == -1) {
+			frame = in.removeLast(evictable);
+			if (frame != -1) {
+				remember(pageOf[frame]);
+			}
+		}
+		return frame;
+	}
+
+	private void remember(int page) {
+		int slot = freeSlots[--numFreeSlots];
+		outPage[slot] = page;
+		outSlot.put(page, slot);
+		out.addFirst(slot);
+		if (out.size() > outTarget) {
+			int oldest = out.removeLast(ANY);
+			outSlot.remove(outPage[oldest]);
+			freeSlots[numFreeSlots++] = oldest;
+		}
+	}
+}
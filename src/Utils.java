@@ -1,5 +1,18 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
 
 /**
  * Class contains methods assisting coding and testing
@@ -7,6 +20,12 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class Utils {
 
+	// "BPT2", the start of every dump written by dumpTree, followed by the
+	// leaf and index degrees
+	private static final int DUMP_MAGIC = 0x42505432;
+	// "BPT1", dumps with a single degree, still read by restoreTree
+	private static final int DUMP_MAGIC_V1 = 0x42505431;
+
 	/**
 	 * Bulk Insert test data
 	 * 
@@ -20,65 +39,266 @@ public class Utils {
 
 	}
 
+	/**
+	 * @return the layout of the tree as written by writeTree
+	 */
 	public static <K extends Comparable<K>, T> String outputTree(BPlusTree<K, T> tree) {
-		/* Temporary queue. */
-		LinkedBlockingQueue<Node<K, T>> queue;
-
-		/* Create a queue to hold node pointers. */
-		queue = new LinkedBlockingQueue<Node<K, T>>();
-		String result = "";
+		StringWriter out = new StringWriter();
+		try {
+			writeTree(tree, out);
+		} catch (IOException e) {
+			// A StringWriter does not throw
+			throw new UncheckedIOException(e);
+		}
+		return out.toString();
+	}
 
-		int nodesInCurrentLevel = 1;
-		int nodesInNextLevel = 0;
-		ArrayList<Integer> childrenPerIndex = new ArrayList<Integer>();
-		queue.add(tree.getRoot());
-		while (!queue.isEmpty()) {
-			Node<K, T> target = queue.poll();
-			nodesInCurrentLevel--;
-			if (target.isLeafNode) {
-				LeafNode<K, T> leaf = (LeafNode<K, T>) target;
-				result += "[";
-				for (int i = 0; i < leaf.getNumKeys(); i++) {
-					result += "(" + leaf.getKey(i) + "," + leaf.getValue(i) + ");";
-				}
-				if (childrenPerIndex.isEmpty()) {
-					result += "]$";
-				} else {
-					childrenPerIndex.set(0, childrenPerIndex.get(0) - 1);
-					if (childrenPerIndex.get(0) == 0) {
-						result += "]$";
-						childrenPerIndex.remove(0);
-					} else {
-						result += "]#";
+	/**
+	 * Write the layout of the tree, level by level from the root. Index nodes
+	 * are written as @key/key/@ and leaves as [(key,value);(key,value);]
+	 * followed by $ for the last child of its parent and # for the others.
+	 * Each level ends with %%. An empty tree writes nothing.
+	 *
+	 * Each node is visited once and written straight to out, so this takes
+	 * time linear in the size of the tree.
+	 *
+	 * @param tree
+	 * @param out
+	 *            - Where to write the layout. It is not flushed or closed.
+	 */
+	public static <K extends Comparable<K>, T> void writeTree(BPlusTree<K, T> tree, Writer out) throws IOException {
+		List<List<Node<K, T>>> levels = levels(tree);
+		for (List<Node<K, T>> level : levels) {
+			if (!level.get(0).isLeafNode) {
+				for (Node<K, T> node : level) {
+					out.write('@');
+					for (int i = 0; i < node.getNumKeys(); i++) {
+						out.write(String.valueOf(node.getKey(i)));
+						out.write('/');
 					}
-
+					out.write('@');
 				}
-			} else {
-				IndexNode<K, T> index = ((IndexNode<K, T>) target);
-				result += "@";
-				for (int i = 0; i < index.getNumKeys(); i++) {
-					result += "" + index.getKey(i) + "/";
+				out.write("%%");
+				continue;
+			}
+			// Find the last child of each parent from the level above
+			List<Node<K, T>> parents = levels.size() > 1 ? levels.get(levels.size() - 2) : null;
+			int parent = 0;
+			int lastChild = parents == null ? 0 : ((IndexNode<K, T>) parents.get(0)).getNumChildren() - 1;
+			for (int j = 0; j < level.size(); j++) {
+				LeafNode<K, T> leaf = (LeafNode<K, T>) level.get(j);
+				out.write('[');
+				for (int i = 0; i < leaf.getNumKeys(); i++) {
+					out.write('(');
+					out.write(String.valueOf(leaf.getKey(i)));
+					out.write(',');
+					out.write(String.valueOf(leaf.getValue(i)));
+					out.write(");");
 				}
-				result += "@";
-				for (int i=0;i<index.getNumChildren();i++) {
-					queue.add(index.getChild(i));
+				if (j == lastChild) {
+					out.write("]$");
+					if (++parent < (parents == null ? 0 : parents.size())) {
+						lastChild += ((IndexNode<K, T>) parents.get(parent)).getNumChildren();
+					}
+				} else {
+					out.write("]#");
 				}
-				if (index.getChild(0).isLeafNode) {
-					childrenPerIndex.add(index.getNumChildren());
+			}
+			out.write("%%");
+		}
+	}
+
+	/**
+	 * Write the layout of the tree to a stream as UTF-8. See
+	 * writeTree(tree, Writer).
+	 *
+	 * @param out
+	 *            - Where to write the layout. It is flushed but not closed.
+	 */
+	public static <K extends Comparable<K>, T> void writeTree(BPlusTree<K, T> tree, OutputStream out)
+			throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+		writeTree(tree, writer);
+		writer.flush();
+	}
+
+	// The nodes of the tree level by level, from the root down
+	private static <K extends Comparable<K>, T> List<List<Node<K, T>>> levels(BPlusTree<K, T> tree) {
+		List<List<Node<K, T>>> levels = new ArrayList<List<Node<K, T>>>();
+		if (tree.getRoot() == null) {
+			return levels;
+		}
+		List<Node<K, T>> level = new ArrayList<Node<K, T>>();
+		level.add(tree.getRoot());
+		while (true) {
+			levels.add(level);
+			if (level.get(0).isLeafNode) {
+				return levels;
+			}
+			List<Node<K, T>> next = new ArrayList<Node<K, T>>();
+			for (Node<K, T> node : level) {
+				IndexNode<K, T> index = (IndexNode<K, T>) node;
+				for (int i = 0; i < index.getNumChildren(); i++) {
+					next.add(index.getChild(i));
 				}
-				nodesInNextLevel += index.getNumChildren();
 			}
+			level = next;
+		}
+	}
 
-			if (nodesInCurrentLevel == 0) {
-				result += "%%";
-				nodesInCurrentLevel = nodesInNextLevel;
-				nodesInNextLevel = 0;
+	/**
+	 * Write a binary snapshot of the tree, node for node, for restoreTree to
+	 * read back. Keys and values are stored with the given codecs, and each
+	 * node adds only its key count, so a dump is about the size of the
+	 * encoded entries plus the index keys.
+	 *
+	 * @param out
+	 *            - Where to write the dump. It is flushed but not closed.
+	 */
+	public static <K extends Comparable<K>, T> void dumpTree(BPlusTree<K, T> tree, OutputStream out,
+			Codec<K> keyCodec, Codec<T> valueCodec) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		// Each node is encoded into buffer and written in one go
+		int degree = Math.max(tree.getLeafDegree(), tree.getIndexDegree());
+		ByteBuffer buffer = ByteBuffer.allocate((2 * degree + 1) * (keyCodec.size() + valueCodec.size()));
+		List<List<Node<K, T>>> levels = levels(tree);
+		data.writeInt(DUMP_MAGIC);
+		data.writeInt(tree.getLeafDegree());
+		data.writeInt(tree.getIndexDegree());
+		data.writeInt(keyCodec.size());
+		data.writeInt(valueCodec.size());
+		data.writeInt(levels.size());
+		for (List<Node<K, T>> level : levels) {
+			data.writeInt(level.size());
+			for (Node<K, T> node : level) {
+				int n = node.getNumKeys();
+				data.writeInt(n);
+				for (int i = 0; i < n; i++) {
+					keyCodec.write(buffer, i * keyCodec.size(), node.getKey(i));
+				}
+				int length = n * keyCodec.size();
+				if (node.isLeafNode) {
+					LeafNode<K, T> leaf = (LeafNode<K, T>) node;
+					for (int i = 0; i < n; i++) {
+						valueCodec.write(buffer, length + i * valueCodec.size(), leaf.getValue(i));
+					}
+					length += n * valueCodec.size();
+				}
+				data.write(buffer.array(), 0, length);
 			}
+		}
+		data.flush();
+	}
 
+	/**
+	 * Read a tree written by dumpTree. The tree comes back with the same
+	 * degrees and exactly the same nodes, leaves linked as before.
+	 *
+	 * @param in
+	 *            - Where to read the dump from. It is not closed, and is
+	 *            left just past the end of the dump. Wrap it in a buffer
+	 *            if it reads one byte at a time slowly.
+	 * @return the restored tree
+	 * @throws IOException
+	 *             if in does not hold a dump made with codecs of the same
+	 *             sizes, or cannot be read
+	 */
+	public static <K extends Comparable<K>, T> BPlusTree<K, T> restoreTree(InputStream in, Codec<K> keyCodec,
+			Codec<T> valueCodec) throws IOException {
+		// Unbuffered, so nothing after the dump is read: the counts are read
+		// as they come, and each node with one readFully
+		DataInputStream data = new DataInputStream(in);
+		int magic = data.readInt();
+		if (magic != DUMP_MAGIC && magic != DUMP_MAGIC_V1) {
+			throw new IOException("Not a tree dump");
+		}
+		int leafDegree = data.readInt();
+		int indexDegree = magic == DUMP_MAGIC_V1 ? leafDegree : data.readInt();
+		if (leafDegree < 1 || indexDegree < 1) {
+			throw new IOException("Corrupt tree dump");
+		}
+		if (data.readInt() != keyCodec.size() || data.readInt() != valueCodec.size()) {
+			throw new IOException("The dump was written with codecs of other sizes");
+		}
+		// Each node is read into buffer in one go
+		int degree = Math.max(leafDegree, indexDegree);
+		ByteBuffer buffer = ByteBuffer.allocate((2 * degree + 1) * (keyCodec.size() + valueCodec.size()));
+		BPlusTree<K, T> tree = new BPlusTree<K, T>(leafDegree, indexDegree);
+		int height = data.readInt();
+		if (height == 0) {
+			return tree;
 		}
 
-		return result;
+		// Read the keys of every level, then build the nodes from the leaves up
+		List<List<List<K>>> levelKeys = new ArrayList<List<List<K>>>(height);
+		List<List<T>> leafValues = null;
+		for (int h = 0; h < height; h++) {
+			int size = data.readInt();
+			if (size < 1) {
+				throw new IOException("Corrupt tree dump");
+			}
+			List<List<K>> keys = new ArrayList<List<K>>(size);
+			boolean leaves = h == height - 1;
+			if (leaves) {
+				leafValues = new ArrayList<List<T>>(size);
+			}
+			for (int j = 0; j < size; j++) {
+				int n = data.readInt();
+				if (n < 0 || n > 2 * (leaves ? leafDegree : indexDegree) + 1) {
+					throw new IOException("Corrupt tree dump");
+				}
+				int length = n * keyCodec.size();
+				data.readFully(buffer.array(), 0, leaves ? length + n * valueCodec.size() : length);
+				List<K> nodeKeys = new ArrayList<K>(n);
+				for (int i = 0; i < n; i++) {
+					nodeKeys.add(keyCodec.read(buffer, i * keyCodec.size()));
+				}
+				keys.add(nodeKeys);
+				if (leaves) {
+					List<T> values = new ArrayList<T>(n);
+					for (int i = 0; i < n; i++) {
+						values.add(valueCodec.read(buffer, length + i * valueCodec.size()));
+					}
+					leafValues.add(values);
+				}
+			}
+			levelKeys.add(keys);
+		}
 
+		List<List<K>> keys = levelKeys.get(height - 1);
+		List<Node<K, T>> level = new ArrayList<Node<K, T>>(keys.size());
+		LeafNode<K, T> previous = null;
+		for (int j = 0; j < keys.size(); j++) {
+			LeafNode<K, T> leaf = new LeafNode<K, T>(keys.get(j), leafValues.get(j), leafDegree);
+			if (previous != null) {
+				previous.setNextLeaf(leaf);
+				leaf.setPreviousLeaf(previous);
+			}
+			level.add(leaf);
+			previous = leaf;
+		}
+		for (int h = height - 2; h >= 0; h--) {
+			keys = levelKeys.get(h);
+			List<Node<K, T>> parents = new ArrayList<Node<K, T>>(keys.size());
+			int from = 0;
+			for (int j = 0; j < keys.size(); j++) {
+				int to = from + keys.get(j).size() + 1;
+				if (to > level.size()) {
+					throw new IOException("Corrupt tree dump");
+				}
+				parents.add(new IndexNode<K, T>(keys.get(j), level.subList(from, to), indexDegree));
+				from = to;
+			}
+			if (from != level.size()) {
+				throw new IOException("Corrupt tree dump");
+			}
+			level = parents;
+		}
+		if (level.size() != 1) {
+			throw new IOException("Corrupt tree dump");
+		}
+		tree.setRoot(level.get(0));
+		return tree;
 	}
 
 	/**
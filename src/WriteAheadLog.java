@@ -0,0 +1,325 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of tree inserts and deletes. Each record is
+ *
+ * op (1 byte), key, value (inserts only), CRC32 of the bytes before it
+ *
+ * with keys and values written by fixed-size Codecs. Appending a record only
+ * copies it into a memory buffer and returns its log sequence number (LSN);
+ * sync(lsn) makes sure it is on disk. The first thread to call sync becomes
+ * the leader: it writes out everything appended so far and forces it to disk
+ * once, while threads arriving in the meantime wait for it and usually find
+ * their records already covered. Concurrent writers therefore share fsyncs
+ * instead of paying for one each, and the file is only ever written
+ * sequentially.
+ *
+ * LSNs count the bytes appended since the log was opened, starting from the
+ * size of the recovered log, and keep growing across rewrites.
+ */
+public class WriteAheadLog<K extends Comparable<K>, T> implements Closeable {
+
+	static final byte INSERT = 1;
+	static final byte DELETE = 2;
+
+	private final File file;
+	private final Codec<K> keyCodec;
+	private final Codec<T> valueCodec;
+	private final int insertSize;
+	private final int deleteSize;
+	private final CRC32 crc = new CRC32();
+	private FileChannel channel;
+
+	// Records are appended to pending while the leader writes out writing
+	private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+	private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+
+	private long appended;
+	private long durable;
+	private boolean syncing;
+	private IOException failure;
+	private long syncs;
+
+	public WriteAheadLog(File file, Codec<K> keyCodec, Codec<T> valueCodec) throws IOException {
+		this.file = file;
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.insertSize = 1 + keyCodec.size() + valueCodec.size() + 4;
+		this.deleteSize = 1 + keyCodec.size() + 4;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		this.appended = this.durable = channel.size();
+		channel.position(appended);
+	}
+
+	/**
+	 * @return the number of times the log was forced to disk
+	 */
+	public synchronized long getSyncCount() {
+		return syncs;
+	}
+
+	/**
+	 * @return the LSN of the last appended record
+	 */
+	public synchronized long getAppendedLsn() {
+		return appended;
+	}
+
+	/**
+	 * Apply every complete record in the log to tree, in order. Recovery stops
+	 * at the first torn or corrupt record, which can only be the tail of a
+	 * write that was cut short by a crash, and cuts the log there.
+	 *
+	 * @return the number of records replayed
+	 */
+	public synchronized int replay(BPlusTree<K, T> tree) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(1 << 16, insertSize));
+		long valid = 0;
+		int count = 0;
+		channel.position(0);
+		boolean more = true;
+		while (more) {
+			more = channel.read(buffer) != -1;
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				int start = buffer.position();
+				byte op = buffer.get(start);
+				int size = op == INSERT ? insertSize : op == DELETE ? deleteSize : -1;
+				if (size > buffer.remaining()) {
+					// Read the rest of the record, unless the log ends here
+					break;
+				}
+				if (size == -1 || checksum(buffer, start, size - 4) != buffer.getInt(start + size - 4)) {
+					more = false;
+					break;
+				}
+				K key = keyCodec.read(buffer, start + 1);
+				if (op == INSERT) {
+					tree.insert(key, valueCodec.read(buffer, start + 1 + keyCodec.size()));
+				} else {
+					tree.delete(key);
+				}
+				buffer.position(start + size);
+				valid += size;
+				count++;
+			}
+			buffer.compact();
+		}
+		channel.truncate(valid);
+		channel.position(valid);
+		appended = durable = valid;
+		return count;
+	}
+
+	/**
+	 * Append an insert record.
+	 *
+	 * @return the LSN to pass to sync
+	 */
+	public synchronized long logInsert(K key, T value) {
+		ensureRoom(insertSize);
+		int start = pending.position();
+		try {
+			pending.put(start, INSERT);
+			keyCodec.write(pending, start + 1, key);
+			valueCodec.write(pending, start + 1 + keyCodec.size(), value);
+		} catch (RuntimeException e) {
+			pending.position(start);
+			throw e;
+		}
+		pending.putInt(start + insertSize - 4, checksum(pending, start, insertSize - 4));
+		pending.position(start + insertSize);
+		appended += insertSize;
+		return appended;
+	}
+
+	/**
+	 * Append a delete record.
+	 *
+	 * @return the LSN to pass to sync
+	 */
+	public synchronized long logDelete(K key) {
+		ensureRoom(deleteSize);
+		int start = pending.position();
+		try {
+			pending.put(start, DELETE);
+			keyCodec.write(pending, start + 1, key);
+		} catch (RuntimeException e) {
+			pending.position(start);
+			throw e;
+		}
+		pending.putInt(start + deleteSize - 4, checksum(pending, start, deleteSize - 4));
+		pending.position(start + deleteSize);
+		appended += deleteSize;
+		return appended;
+	}
+
+	/**
+	 * Wait until every record up to lsn is on disk, writing it out if no
+	 * other thread is already doing so.
+	 */
+	public void sync(long lsn) throws IOException {
+		ByteBuffer batch;
+		long target;
+		synchronized (this) {
+			while (durable < lsn && syncing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for the log");
+				}
+			}
+			if (durable >= lsn) {
+				return;
+			}
+			if (failure != null) {
+				throw new IOException("Log write failed earlier", failure);
+			}
+			// Become the leader for everything appended so far
+			syncing = true;
+			batch = pending;
+			pending = writing;
+			pending.clear();
+			writing = batch;
+			target = appended;
+		}
+		IOException error = null;
+		try {
+			batch.flip();
+			while (batch.hasRemaining()) {
+				channel.write(batch);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			error = e;
+			throw e;
+		} finally {
+			synchronized (this) {
+				syncing = false;
+				if (error == null) {
+					durable = target;
+					syncs++;
+				} else {
+					// Records in batch are lost, so later ones must not follow
+					failure = error;
+				}
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Replace the log with one insert record per entry of cursor, typically
+	 * every entry of the tree, so it stops growing with every change. The new
+	 * log is written next to the old one and moved over it, so a crash leaves
+	 * either of them intact. Callers must not append while this runs.
+	 */
+	public void rewrite(TreeCursor<K, T> cursor) throws IOException {
+		sync(getAppendedLsn());
+		synchronized (this) {
+			while (syncing) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted waiting for the log");
+				}
+			}
+			File temporary = new File(file.getPath() + ".tmp");
+			FileChannel out = FileChannel.open(temporary.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(Math.max(1 << 16, insertSize));
+				while (cursor.hasNext()) {
+					T value = cursor.next();
+					if (buffer.remaining() < insertSize) {
+						buffer.flip();
+						while (buffer.hasRemaining()) {
+							out.write(buffer);
+						}
+						buffer.clear();
+					}
+					int start = buffer.position();
+					buffer.put(start, INSERT);
+					keyCodec.write(buffer, start + 1, cursor.getKey());
+					valueCodec.write(buffer, start + 1 + keyCodec.size(), value);
+					buffer.putInt(start + insertSize - 4, checksum(buffer, start, insertSize - 4));
+					buffer.position(start + insertSize);
+				}
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					out.write(buffer);
+				}
+				out.force(false);
+			} finally {
+				out.close();
+			}
+			channel.close();
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			syncDirectory(file.getAbsoluteFile().getParentFile());
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+		}
+	}
+
+	/**
+	 * Sync everything appended so far and close the file.
+	 */
+	public void close() throws IOException {
+		sync(getAppendedLsn());
+		synchronized (this) {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Force the directory entry changes of a rename in dir to disk, so that
+	 * after a crash the log is the rewritten one and not the stale one it
+	 * replaced. Not every platform can open a directory as a channel (Windows
+	 * cannot, and there renames are durable without it), so failing to do so
+	 * is ignored.
+	 */
+	private static void syncDirectory(File dir) throws IOException {
+		FileChannel directory;
+		try {
+			directory = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try {
+			directory.force(true);
+		} catch (IOException e) {
+			// Some file systems refuse to sync a directory
+		} finally {
+			directory.close();
+		}
+	}
+
+	private void ensureRoom(int size) {
+		if (pending.remaining() < size) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + size));
+			pending.flip();
+			larger.put(pending);
+			pending = larger;
+		}
+	}
+
+	// Callers hold the lock on this, which guards crc
+	private int checksum(ByteBuffer buffer, int start, int length) {
+		crc.reset();
+		crc.update(buffer.array(), buffer.arrayOffset() + start, length);
+		return (int) crc.getValue();
+	}
+}
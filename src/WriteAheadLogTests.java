@@ -0,0 +1,179 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class WriteAheadLogTests {
+
+	private File newFile() throws IOException {
+		File file = File.createTempFile("wal", ".log");
+		file.delete();
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testReopenReplaysLog() throws IOException {
+		File file = newFile();
+		DurableBPlusTree<Long, Long> tree = new DurableBPlusTree<Long, Long>(file, 2, Codec.LONG, Codec.LONG);
+		TreeMap<Long, Long> expected = new TreeMap<Long, Long>();
+		Random random = new Random(11);
+		for (int i = 0; i < 5000; i++) {
+			long key = random.nextInt(1000);
+			if (random.nextInt(3) == 0) {
+				tree.delete(key);
+				expected.remove(key);
+			} else if (!expected.containsKey(key)) {
+				tree.insert(key, -key);
+				expected.put(key, -key);
+			}
+		}
+		tree.close();
+
+		tree = new DurableBPlusTree<Long, Long>(file, 3, Codec.LONG, Codec.LONG);
+		for (long key = 0; key < 1000; key++) {
+			assertEquals(expected.get(key), tree.exactMatchSearch(key));
+		}
+		assertEquals(new ArrayList<Long>(expected.values()), tree.greaterThanEqualToKeySearch(0L));
+		tree.close();
+	}
+
+	// A crash in the middle of a write leaves a partial record at the end
+	@Test
+	public void testTornTailIsDropped() throws IOException {
+		File file = newFile();
+		DurableBPlusTree<Integer, Integer> tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER,
+				Codec.INTEGER);
+		for (int i = 0; i < 10; i++) {
+			tree.insert(i, i);
+		}
+		tree.close();
+		long length = file.length();
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		raw.setLength(length - 3);
+		raw.close();
+
+		tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER, Codec.INTEGER);
+		assertEquals(9, tree.getLog().getAppendedLsn() / 13);
+		assertEquals(null, tree.exactMatchSearch(9));
+		assertEquals(Integer.valueOf(8), tree.exactMatchSearch(8));
+
+		// New records go after the last good one
+		tree.insert(100, 100);
+		tree.close();
+		tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER, Codec.INTEGER);
+		assertEquals(Integer.valueOf(100), tree.exactMatchSearch(100));
+		assertEquals(10, tree.greaterThanEqualToKeySearch(0).size());
+		tree.close();
+	}
+
+	@Test
+	public void testCorruptRecordStopsReplay() throws IOException {
+		File file = newFile();
+		DurableBPlusTree<Integer, Integer> tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER,
+				Codec.INTEGER);
+		for (int i = 0; i < 10; i++) {
+			tree.insert(i, i);
+		}
+		tree.close();
+		// Flip a bit in the value of the fifth record
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		raw.seek(4 * 13 + 5);
+		int b = raw.read();
+		raw.seek(4 * 13 + 5);
+		raw.write(b ^ 1);
+		raw.close();
+
+		tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER, Codec.INTEGER);
+		assertEquals(4, tree.greaterThanEqualToKeySearch(0).size());
+		assertEquals(4 * 13, file.length());
+		tree.close();
+	}
+
+	@Test
+	public void testSyncCoversEverythingAppended() throws IOException {
+		WriteAheadLog<Integer, Integer> log = new WriteAheadLog<Integer, Integer>(newFile(), Codec.INTEGER,
+				Codec.INTEGER);
+		long first = log.logInsert(1, 1);
+		log.logDelete(2);
+		long last = log.logInsert(3, 3);
+		log.sync(last);
+		assertEquals(1, log.getSyncCount());
+		// Already durable, nothing to do
+		log.sync(first);
+		assertEquals(1, log.getSyncCount());
+		log.close();
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		File file = newFile();
+		final DurableBPlusTree<Integer, Integer> tree = new DurableBPlusTree<Integer, Integer>(file, 4,
+				Codec.INTEGER, Codec.INTEGER);
+		final int threads = 8;
+		final int perThread = 500;
+		final IOException[] failure = new IOException[1];
+		Thread[] writers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int base = t * perThread;
+			writers[t] = new Thread() {
+				public void run() {
+					try {
+						for (int i = base; i < base + perThread; i++) {
+							tree.insert(i, i);
+						}
+					} catch (IOException e) {
+						failure[0] = e;
+					}
+				}
+			};
+			writers[t].start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertEquals(null, failure[0]);
+		assertTrue(tree.getLog().getSyncCount() <= threads * perThread);
+		tree.close();
+
+		DurableBPlusTree<Integer, Integer> reopened = new DurableBPlusTree<Integer, Integer>(file, 4,
+				Codec.INTEGER, Codec.INTEGER);
+		for (int i = 0; i < threads * perThread; i++) {
+			assertEquals(Integer.valueOf(i), reopened.exactMatchSearch(i));
+		}
+		reopened.close();
+	}
+
+	@Test
+	public void testCheckpointShrinksLog() throws IOException {
+		File file = newFile();
+		DurableBPlusTree<Integer, Integer> tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER,
+				Codec.INTEGER);
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < 100; i++) {
+				tree.insert(i, round);
+			}
+			for (int i = 0; i < 100; i++) {
+				tree.delete(i);
+			}
+		}
+		for (int i = 0; i < 50; i++) {
+			tree.insert(i, i);
+		}
+		tree.checkpoint();
+		assertEquals(50 * 13, file.length());
+		tree.insert(50, 50);
+		tree.close();
+
+		tree = new DurableBPlusTree<Integer, Integer>(file, 2, Codec.INTEGER, Codec.INTEGER);
+		assertEquals(51, tree.greaterThanEqualToKeySearch(0).size());
+		assertEquals(Integer.valueOf(50), tree.exactMatchSearch(50));
+		tree.close();
+	}
+}